@@ -0,0 +1,36 @@
+package benchmark;
+
+import framework.SourceFilterTemplate;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A source filter that writes bytes held in memory to its output port in a single chunk, so that the benchmarks
+ * measure the pipeline behind it rather than reading a file.
+ *
+ * @since 1.0.0
+ */
+public class ByteArraySourceFilter extends SourceFilterTemplate {
+
+    private final ByteBuffer data;
+
+    public ByteArraySourceFilter(String filterId, byte[] data) {
+        super(filterId);
+        this.data = ByteBuffer.wrap(data);
+    }
+
+    @Override
+    protected byte readOneByte() {
+        return data.get();
+    }
+
+    @Override
+    protected boolean hasReachedEndOfStream() {
+        return !data.hasRemaining();
+    }
+
+    @Override
+    protected ByteBuffer readChunk() {
+        return data;
+    }
+}
@@ -0,0 +1,38 @@
+package benchmark;
+
+import framework.SinkFilterTemplate;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A sink filter that only counts the bytes it reads, so that the benchmarks can check the output of a pipeline
+ * without keeping it.
+ *
+ * @since 1.0.0
+ */
+public class CountingSinkFilter extends SinkFilterTemplate {
+
+    private long byteCount = 0;
+
+    public CountingSinkFilter(String filterId) {
+        super(filterId);
+    }
+
+    @Override
+    protected void writeByteToSink(byte dataByte) {
+        byteCount++;
+    }
+
+    @Override
+    protected void writeToSink(ByteBuffer data) {
+        byteCount += data.remaining();
+        data.position(data.limit());
+    }
+
+    /**
+     * @return the number of bytes read so far.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+}
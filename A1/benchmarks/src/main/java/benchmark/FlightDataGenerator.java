@@ -0,0 +1,190 @@
+package benchmark;
+
+import framework.MeasurementConfig;
+import framework.MeasurementType;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * Writes flight data files of any size for load tests, in the layout of {@link MeasurementConfig#defaultConfig()}:
+ * every frame holds every measurement of the configuration, in its order, each an id followed by the measurement. The
+ * frames come from a {@link FlightModel}, so the same seed and options always give the same files.
+ *
+ * The files are written through a buffer of {@link #BUFFER_SIZE} bytes, so the memory needed is the same for a file
+ * of a few frames and for one of billions.
+ *
+ * Usage: {@code FlightDataGenerator --out=<folder> [options]}, writing {@code FlightData.dat} and the subsets for
+ * System C, {@code SubSetA.dat}, {@code SubSetB.dat}..., to the folder. The options are:
+ * <ul>
+ * <li>{@code --frames=N}: the frames of {@code FlightData.dat}, 100000 by default, 0 not to write it</li>
+ * <li>{@code --subsets=N}: the number of subsets, 2 by default</li>
+ * <li>{@code --subset-frames=N}: the frames of every subset, {@code --frames} by default</li>
+ * <li>{@code --seed=N}: the seed of the random numbers, 17655 by default</li>
+ * <li>{@code --wild-rate=P}: the probability that a run of wild pressure points starts at a frame, 0.01 by
+ * default</li>
+ * <li>{@code --wild-run=MIN-MAX}: the bounds of the number of frames of a run of wild points, 1-3 by default</li>
+ * <li>{@code --interval=MS}: the milliseconds between two frames of a file, 250 by default. The frames of the
+ * subsets interleave: subset k starts k / N intervals after the first one</li>
+ * <li>{@code --start=MS}: the time of the first frame, in milliseconds since the epoch</li>
+ * <li>{@code --flight-frames=N}: the frames from a takeoff to a landing, 20000 by default</li>
+ * </ul>
+ *
+ * @since 1.0.0
+ */
+public class FlightDataGenerator {
+
+    /**
+     * Number of bytes written to a file at a time.
+     */
+    public static final int BUFFER_SIZE = 1024 * 1024;
+
+    private File out;
+    private long frames = 100000L;
+    private int subsets = 2;
+    private long subsetFrames = -1;
+    private long seed = 17655L;
+    private double wildRate = 0.01d;
+    private int minWildRun = 1;
+    private int maxWildRun = 3;
+    private long interval = 250L;
+    private long start = 1389722651294L;
+    private long flightFrames = 20000L;
+
+    private final MeasurementConfig context = MeasurementConfig.defaultConfig();
+
+    public static void main(String[] args) throws Exception {
+        FlightDataGenerator generator = new FlightDataGenerator();
+        try {
+            generator.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: FlightDataGenerator --out=<folder> [--frames=N] [--subsets=N] "
+                    + "[--subset-frames=N] [--seed=N] [--wild-rate=P] [--wild-run=MIN-MAX] [--interval=MS] "
+                    + "[--start=MS] [--flight-frames=N]");
+            System.exit(-1);
+        }
+        generator.generate();
+    }
+
+    private void parse(String[] args) {
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0)
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            String key = arg.substring(2, equals);
+            String value = arg.substring(equals + 1);
+            if (key.equals("out")) {
+                out = new File(value);
+            } else if (key.equals("frames")) {
+                frames = Long.parseLong(value);
+            } else if (key.equals("subsets")) {
+                subsets = Integer.parseInt(value);
+            } else if (key.equals("subset-frames")) {
+                subsetFrames = Long.parseLong(value);
+            } else if (key.equals("seed")) {
+                seed = Long.parseLong(value);
+            } else if (key.equals("wild-rate")) {
+                wildRate = Double.parseDouble(value);
+            } else if (key.equals("wild-run")) {
+                String[] bounds = value.split("-");
+                minWildRun = Integer.parseInt(bounds[0]);
+                maxWildRun = Integer.parseInt(bounds[bounds.length - 1]);
+            } else if (key.equals("interval")) {
+                interval = Long.parseLong(value);
+            } else if (key.equals("start")) {
+                start = Long.parseLong(value);
+            } else if (key.equals("flight-frames")) {
+                flightFrames = Long.parseLong(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if (out == null)
+            throw new IllegalArgumentException("No output folder");
+        if (frames < 0 || subsets < 0 || subsets > 26 || interval < 1)
+            throw new IllegalArgumentException("frames: " + frames + ", subsets: " + subsets + ", interval: "
+                    + interval);
+        if (subsetFrames < 0)
+            subsetFrames = frames;
+    }
+
+    private void generate() throws IOException {
+        if (!out.isDirectory() && !out.mkdirs())
+            throw new IOException("Cannot create " + out);
+
+        if (frames > 0)
+            write(new File(out, "FlightData.dat"), frames, new FlightModel(seed, start, interval, flightFrames,
+                    wildRate, minWildRun, maxWildRun));
+
+        // every subset is another recording of a flight, its frames falling between the frames of the subsets before
+        for (int subset = 0; subset < subsets; subset++) {
+            File file = new File(out, "SubSet" + (char) ('A' + subset) + ".dat");
+            write(file, subsetFrames, new FlightModel(seed + 1 + subset, start + subset * interval / subsets,
+                    interval, flightFrames, wildRate, minWildRun, maxWildRun));
+        }
+    }
+
+    /**
+     * Write the frames of the flight to the file.
+     *
+     * @param file the file to be written, replaced if it exists
+     * @param count the number of frames
+     * @param flight the flight the frames are taken from
+     * @throws IOException thrown when the file cannot be written.
+     */
+    public void write(File file, long count, FlightModel flight) throws IOException {
+        int[] ids = context.getExpectedIds();
+        int idLength = context.getIdLength();
+        for (int id : ids) {
+            if (context.idForMeasurementLength(id) != MeasurementConfig.VALUE_LENGTH
+                    || context.typeOf(id) == MeasurementType.TEXT)
+                throw new IllegalStateException("measurement with id " + id + " is not a number of "
+                        + MeasurementConfig.VALUE_LENGTH + " bytes");
+        }
+
+        long started = System.nanoTime();
+        long wildFrames = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE / context.getFrameLength() * context.getFrameLength());
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            FileChannel channel = stream.getChannel();
+            for (long frame = 0; frame < count; frame++) {
+                flight.next();
+                if (flight.isWild())
+                    wildFrames++;
+                if (buffer.remaining() < context.getFrameLength())
+                    flush(channel, buffer);
+                for (int id : ids) {
+                    putId(buffer, id, idLength);
+                    buffer.putLong(flight.bits(id));
+                }
+            }
+            flush(channel, buffer);
+        } finally {
+            stream.close();
+        }
+
+        System.out.println(String.format(Locale.ROOT, "%s: %d frames, %d wild, %d bytes in %.1f s", file.getPath(),
+                count, wildFrames, file.length(), (System.nanoTime() - started) / 1e9));
+    }
+
+    /**
+     * Put the id in the big-endian bytes of the id length of the configuration.
+     */
+    private static void putId(ByteBuffer buffer, int id, int idLength) {
+        for (int shift = (idLength - 1) * 8; shift >= 0; shift -= 8)
+            buffer.put(shift >= 32 ? 0 : (byte) (id >>> shift));
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+}
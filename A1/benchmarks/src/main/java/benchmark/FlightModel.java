@@ -0,0 +1,141 @@
+package benchmark;
+
+import framework.MeasurementConfig;
+
+import java.util.Random;
+
+/**
+ * A made up flight, frame by frame, shaped like the recordings of {@code DataSets}: flights climb from the ground to
+ * 100,000 feet, cruise and come back down, one after the other, with velocity, pressure, temperature and attitude
+ * following the altitude and drifting a little from frame to frame.
+ *
+ * Wild pressure points come in runs: at every frame outside of a run, a run starts with the probability given, and
+ * lasts a number of frames drawn between the bounds given. A wild pressure is either negative or more than 10 PSI off
+ * the pressure of the flight, as the pressure filters expect.
+ *
+ * The same seed and parameters always give the same frames.
+ *
+ * @since 1.0.0
+ */
+public class FlightModel {
+
+    /**
+     * The altitude the flights climb to, in feet.
+     */
+    private static final double CEILING = 100000d;
+
+    private final Random random;
+    private final long startTime;
+    private final long interval;
+    private final long flightFrames;
+    private final double wildRate;
+    private final int minWildRun;
+    private final int maxWildRun;
+
+    private long frame = -1;
+    private int wildFramesLeft = 0;
+
+    private long time;
+    private double velocity;
+    private double altitude;
+    private double pressure;
+    private double temperature;
+    private double attitude;
+    private boolean wild;
+
+    /**
+     * Default constructor
+     *
+     * @param seed the seed of the random numbers
+     * @param startTime the time of the first frame, in milliseconds
+     * @param interval the milliseconds between two frames
+     * @param flightFrames the number of frames from a takeoff to a landing
+     * @param wildRate the probability that a run of wild pressure points starts at a frame, from 0 to 1
+     * @param minWildRun the least number of frames of a run of wild points, at least 1
+     * @param maxWildRun the largest number of frames of a run of wild points
+     */
+    public FlightModel(long seed, long startTime, long interval, long flightFrames, double wildRate, int minWildRun,
+            int maxWildRun) {
+        if (flightFrames < 4)
+            throw new IllegalArgumentException("flightFrames: " + flightFrames);
+        if (wildRate < 0d || wildRate > 1d)
+            throw new IllegalArgumentException("wildRate: " + wildRate);
+        if (minWildRun < 1 || maxWildRun < minWildRun)
+            throw new IllegalArgumentException("wild runs: [" + minWildRun + ", " + maxWildRun + "]");
+        this.random = new Random(seed);
+        this.startTime = startTime;
+        this.interval = interval;
+        this.flightFrames = flightFrames;
+        this.wildRate = wildRate;
+        this.minWildRun = minWildRun;
+        this.maxWildRun = maxWildRun;
+    }
+
+    /**
+     * Move on to the next frame; call it before reading the first one.
+     */
+    public void next() {
+        frame++;
+        time = startTime + frame * interval;
+
+        // climb during the first quarter of a flight, cruise during the half after it and come down in the last one
+        double phase = (double) (frame % flightFrames) / flightFrames;
+        double height = phase < 0.25d ? phase * 4 : phase < 0.75d ? 1d : (1d - phase) * 4;
+
+        altitude = Math.max(0d, height * CEILING + random.nextGaussian() * 200d);
+        velocity = Math.max(0d, height * 1000d + random.nextGaussian() * 5d);
+        temperature = -175d + height * 250d + random.nextGaussian() * 2d;
+        attitude = height * 20d + random.nextGaussian() * 0.3d;
+        pressure = 50d + height * 30d + random.nextGaussian() * 0.3d;
+
+        if (wildFramesLeft == 0 && wildRate > 0d && random.nextDouble() < wildRate)
+            wildFramesLeft = minWildRun + random.nextInt(maxWildRun - minWildRun + 1);
+        wild = wildFramesLeft > 0;
+        if (wild) {
+            wildFramesLeft--;
+            pressure = random.nextBoolean()
+                    ? -pressure * (50d + random.nextDouble() * 100d)
+                    : pressure + 15d + random.nextDouble() * 50d;
+        }
+    }
+
+    /**
+     * @return the index of the current frame, from 0.
+     */
+    public long getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return whether the pressure of the current frame is a wild point.
+     */
+    public boolean isWild() {
+        return wild;
+    }
+
+    /**
+     * The measurement of the current frame with the given id, in the 8 bytes it takes on the wire: the time as a long,
+     * the other measurements as the bits of a double.
+     *
+     * @param id the id of the measurement
+     * @return the bits of the measurement
+     */
+    public long bits(int id) {
+        switch (id) {
+            case MeasurementConfig.ID_TIME:
+                return time;
+            case MeasurementConfig.ID_VELOCITY:
+                return Double.doubleToRawLongBits(velocity);
+            case MeasurementConfig.ID_ALTITUDE:
+                return Double.doubleToRawLongBits(altitude);
+            case MeasurementConfig.ID_PRESSURE:
+                return Double.doubleToRawLongBits(pressure);
+            case MeasurementConfig.ID_TEMPERATURE:
+                return Double.doubleToRawLongBits(temperature);
+            case MeasurementConfig.ID_ATTITUDE:
+                return Double.doubleToRawLongBits(attitude);
+            default:
+                throw new IllegalArgumentException("no measurement with id " + id);
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package benchmark;
+
+import framework.MeasurementConfig;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end benchmark of Systems A, B and C: every system runs on every input folder, in every framework mode and on
+ * every number of cores asked for, each run in a JVM of its own (see {@link MacroRun}) so that the runs do not share
+ * a heap, a JIT or threads. A run records its wall time, frames per second, peak RSS, GC time and peak thread count.
+ *
+ * The number of cores a run gets is set with {@code -XX:ActiveProcessorCount}, and where {@code taskset} is found,
+ * the run is also pinned to that many cores. The parallel mode uses them all, see {@link Mode#PARALLEL}.
+ *
+ * The runs are written to {@code macro-results.csv} and {@code macro-results.json} in the output folder, the JSON
+ * file also holding the scaling curve of every system, mode and input: the median frames per second by number of
+ * cores, and its knee, the number of cores beyond which doubling them gains less than {@link #KNEE_GAIN}.
+ *
+ * Usage: {@code MacroBenchmark --inputs=<folder>[,<folder>...] [options]}, an input folder holding
+ * {@code FlightData.dat}, {@code SubSetA.dat} and {@code SubSetB.dat}. The options are:
+ * <ul>
+ * <li>{@code --systems=A,B,C}: the systems to run, all by default</li>
+ * <li>{@code --modes=pipe,ring,fused,parallel}: the framework modes, all by default</li>
+ * <li>{@code --cores=1,2,4}: the numbers of cores, by default the powers of 2 up to the cores of the machine</li>
+ * <li>{@code --runs=N}: the runs of every combination, 1 by default</li>
+ * <li>{@code --out=<folder>}: where the reports and the output of every run go, {@code macro-results} by default</li>
+ * <li>{@code --jvm=<option>}: an option for the JVM of every run, e.g. {@code --jvm=-Xmx4g}, repeatable</li>
+ * <li>{@code --timeout=M}: the minutes a run may take before it is killed, 60 by default</li>
+ * </ul>
+ *
+ * @since 1.0.0
+ */
+public class MacroBenchmark {
+
+    /**
+     * The gain in frames per second below which doubling the cores is taken to be past the knee of the curve.
+     */
+    public static final double KNEE_GAIN = 0.10d;
+
+    /**
+     * The number of lines of the output of a run kept in its log. Some filters print every byte they discard, which
+     * on large inputs would take more room than the input itself.
+     */
+    private static final int LOG_LINES = 1000;
+
+    /**
+     * The framework modes the systems run in, as the system properties they set.
+     */
+    public enum Mode {
+
+        /**
+         * The defaults: piped channels and a thread per filter.
+         */
+        PIPE {
+            @Override
+            public List<String> properties(int cores) {
+                return Collections.emptyList();
+            }
+        },
+
+        /**
+         * Ring buffer channels instead of pipes.
+         */
+        RING {
+            @Override
+            public List<String> properties(int cores) {
+                return Arrays.asList("-Dframework.channel=ring_buffer");
+            }
+        },
+
+        /**
+         * Each linear chain of filters fused into a single thread.
+         */
+        FUSED {
+            @Override
+            public List<String> properties(int cores) {
+                return Arrays.asList("-Dframework.channel=ring_buffer", "-Dframework.fusion=true");
+            }
+        },
+
+        /**
+         * The conversions of System A replicated and the input file of Systems A and B processed in chunks, as many
+         * at a time as the run has cores. System C runs as in {@link #RING}.
+         */
+        PARALLEL {
+            @Override
+            public List<String> properties(int cores) {
+                return Arrays.asList("-Dframework.channel=ring_buffer", "-Dframework.parallelism=" + cores,
+                        "-Dframework.scan=" + cores);
+            }
+        };
+
+        /**
+         * @param cores the number of cores of the run
+         * @return the system properties of the mode
+         */
+        public abstract List<String> properties(int cores);
+    }
+
+    private static final String[] INPUT_FILES = {"FlightData.dat", "SubSetA.dat", "SubSetB.dat"};
+
+    private final List<File> inputs = new ArrayList<File>();
+    private List<String> systems = Arrays.asList("A", "B", "C");
+    private List<Mode> modes = Arrays.asList(Mode.values());
+    private List<Integer> cores = defaultCores();
+    private int runs = 1;
+    private File out = new File("macro-results");
+    private final List<String> jvmOptions = new ArrayList<String>();
+    private long timeoutMinutes = 60;
+
+    private final List<Result> results = new ArrayList<Result>();
+
+    public static void main(String[] args) throws Exception {
+        MacroBenchmark benchmark = new MacroBenchmark();
+        try {
+            benchmark.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: MacroBenchmark --inputs=<folder>[,<folder>...] [--systems=A,B,C] "
+                    + "[--modes=pipe,ring,fused,parallel] [--cores=1,2,4] [--runs=N] [--out=<folder>] "
+                    + "[--jvm=<option>]... [--timeout=<minutes>]");
+            System.exit(-1);
+        }
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0)
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            String key = arg.substring(2, equals);
+            String value = arg.substring(equals + 1);
+            if (key.equals("inputs")) {
+                for (String input : value.split(","))
+                    inputs.add(new File(input));
+            } else if (key.equals("systems")) {
+                systems = Arrays.asList(value.toUpperCase(Locale.ROOT).split(","));
+            } else if (key.equals("modes")) {
+                modes = new ArrayList<Mode>();
+                for (String mode : value.split(","))
+                    modes.add(Mode.valueOf(mode.toUpperCase(Locale.ROOT)));
+            } else if (key.equals("cores")) {
+                cores = new ArrayList<Integer>();
+                for (String count : value.split(","))
+                    cores.add(Integer.parseInt(count));
+            } else if (key.equals("runs")) {
+                runs = Integer.parseInt(value);
+            } else if (key.equals("out")) {
+                out = new File(value);
+            } else if (key.equals("jvm")) {
+                jvmOptions.add(value);
+            } else if (key.equals("timeout")) {
+                timeoutMinutes = Long.parseLong(value);
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if (inputs.isEmpty())
+            throw new IllegalArgumentException("No input folder");
+        for (File input : inputs) {
+            for (String file : INPUT_FILES) {
+                if (!new File(input, file).isFile())
+                    throw new IllegalArgumentException("No " + file + " in " + input);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        if (!out.isDirectory() && !out.mkdirs())
+            throw new IOException("Cannot create " + out);
+
+        for (File input : inputs) {
+            for (String system : systems) {
+                for (Mode mode : modes) {
+                    for (int coreCount : cores) {
+                        for (int run = 1; run <= runs; run++) {
+                            Result result = runOnce(input, system, mode, coreCount, run);
+                            results.add(result);
+                            System.out.println(result.describe());
+                        }
+                    }
+                }
+            }
+        }
+
+        writeCsv(new File(out, "macro-results.csv"));
+        writeJson(new File(out, "macro-results.json"));
+        printScaling();
+    }
+
+    /**
+     * Run a system once in a JVM of its own, on links to the input files in a folder of its own.
+     */
+    private Result runOnce(File input, String system, Mode mode, int coreCount, int run) throws Exception {
+        String label = system + "-" + mode.name().toLowerCase(Locale.ROOT) + "-" + coreCount + "c-"
+                + input.getName() + "-" + run;
+        File folder = new File(out, label);
+        if (!folder.isDirectory() && !folder.mkdirs())
+            throw new IOException("Cannot create " + folder);
+        for (String file : INPUT_FILES)
+            link(new File(input, file), new File(folder, file));
+
+        List<String> command = new ArrayList<String>();
+        if (coreCount <= Runtime.getRuntime().availableProcessors() && new File("/usr/bin/taskset").canExecute()) {
+            command.add("/usr/bin/taskset");
+            command.add("-c");
+            command.add(coreCount == 1 ? "0" : "0-" + (coreCount - 1));
+        }
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-XX:ActiveProcessorCount=" + coreCount);
+        command.addAll(jvmOptions);
+        command.addAll(mode.properties(coreCount));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(MacroRun.class.getName());
+        command.add(system);
+        command.add(folder.getAbsolutePath());
+
+        File log = new File(out, label + ".log");
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        OutputReader output = new OutputReader(process.getInputStream(), log);
+        Thread reader = new Thread(output, label + "-output");
+        reader.start();
+        int exitCode;
+        if (process.waitFor(timeoutMinutes, TimeUnit.MINUTES)) {
+            exitCode = process.exitValue();
+        } else {
+            process.destroyForcibly();
+            process.waitFor();
+            exitCode = -1;
+        }
+        reader.join();
+
+        Result result = new Result(input, system, mode, coreCount, run, inputBytes(input, system), exitCode);
+        if (output.resultLine != null)
+            result.read(output.resultLine);
+        delete(folder);
+        return result;
+    }
+
+    private static long inputBytes(File input, String system) {
+        if (system.equals("C"))
+            return new File(input, "SubSetA.dat").length() + new File(input, "SubSetB.dat").length();
+        return new File(input, "FlightData.dat").length();
+    }
+
+    private static void link(File target, File link) throws IOException {
+        Path targetPath = target.getAbsoluteFile().toPath();
+        try {
+            Files.createSymbolicLink(link.toPath(), targetPath);
+        } catch (UnsupportedOperationException e) {
+            Files.copy(targetPath, link.toPath());
+        } catch (IOException e) {
+            Files.copy(targetPath, link.toPath());
+        }
+    }
+
+    private static void delete(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        folder.delete();
+    }
+
+    private static List<Integer> defaultCores() {
+        int available = Runtime.getRuntime().availableProcessors();
+        List<Integer> counts = new ArrayList<Integer>();
+        for (int count = 1; count < available; count *= 2)
+            counts.add(count);
+        counts.add(available);
+        return counts;
+    }
+
+    private void writeCsv(File file) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        try {
+            writer.println("system,mode,cores,input,run,inputBytes,frames,wallMillis,framesPerSecond,peakRssBytes,"
+                    + "gcMillis,gcCount,peakThreads,exitCode");
+            for (Result result : results) {
+                writer.println(result.system + "," + result.mode.name().toLowerCase(Locale.ROOT) + ","
+                        + result.cores + "," + result.input.getPath() + "," + result.run + "," + result.inputBytes
+                        + "," + result.frames() + "," + String.format(Locale.ROOT, "%.1f", result.wallMillis()) + ","
+                        + String.format(Locale.ROOT, "%.1f", result.framesPerSecond()) + "," + result.peakRssBytes
+                        + "," + result.gcMillis + "," + result.gcCount + "," + result.peakThreads + ","
+                        + result.exitCode);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeJson(File file) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        try {
+            writer.println("{");
+            writer.println("  \"runs\": [");
+            for (int i = 0; i < results.size(); i++) {
+                Result result = results.get(i);
+                writer.print("    {\"system\": \"" + result.system + "\", \"mode\": \""
+                        + result.mode.name().toLowerCase(Locale.ROOT) + "\", \"cores\": " + result.cores
+                        + ", \"input\": " + quote(result.input.getPath()) + ", \"run\": " + result.run
+                        + ", \"inputBytes\": " + result.inputBytes + ", \"frames\": " + result.frames()
+                        + ", \"wallMillis\": " + String.format(Locale.ROOT, "%.1f", result.wallMillis())
+                        + ", \"framesPerSecond\": " + String.format(Locale.ROOT, "%.1f", result.framesPerSecond())
+                        + ", \"peakRssBytes\": " + result.peakRssBytes + ", \"gcMillis\": " + result.gcMillis
+                        + ", \"gcCount\": " + result.gcCount + ", \"peakThreads\": " + result.peakThreads
+                        + ", \"exitCode\": " + result.exitCode + "}");
+                writer.println(i + 1 < results.size() ? "," : "");
+            }
+            writer.println("  ],");
+            writer.println("  \"scaling\": [");
+            List<Curve> curves = curves();
+            for (int i = 0; i < curves.size(); i++) {
+                Curve curve = curves.get(i);
+                writer.print("    {\"system\": \"" + curve.system + "\", \"mode\": \""
+                        + curve.mode.name().toLowerCase(Locale.ROOT) + "\", \"input\": " + quote(curve.input)
+                        + ", \"knee\": " + curve.knee() + ", \"points\": [");
+                int point = 0;
+                for (Map.Entry<Integer, Double> entry : curve.points.entrySet()) {
+                    writer.print((point++ > 0 ? ", " : "") + "{\"cores\": " + entry.getKey()
+                            + ", \"framesPerSecond\": " + String.format(Locale.ROOT, "%.1f", entry.getValue()) + "}");
+                }
+                writer.print("]}");
+                writer.println(i + 1 < curves.size() ? "," : "");
+            }
+            writer.println("  ]");
+            writer.println("}");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private void printScaling() {
+        System.out.println();
+        System.out.println("Scaling (median frames/s by cores, knee = cores beyond which doubling gains less than "
+                + Math.round(KNEE_GAIN * 100) + "%):");
+        for (Curve curve : curves()) {
+            StringBuilder line = new StringBuilder();
+            line.append(curve.system).append(' ').append(curve.mode.name().toLowerCase(Locale.ROOT)).append(' ')
+                    .append(curve.input).append(':');
+            for (Map.Entry<Integer, Double> entry : curve.points.entrySet())
+                line.append(String.format(Locale.ROOT, " %dc=%.0f", entry.getKey(), entry.getValue()));
+            line.append(" knee=").append(curve.knee());
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * The scaling curve of every system, mode and input, from the successful runs.
+     */
+    private List<Curve> curves() {
+        Map<String, Curve> curves = new LinkedHashMap<String, Curve>();
+        Map<String, List<Double>> samples = new LinkedHashMap<String, List<Double>>();
+        for (Result result : results) {
+            if (result.exitCode != 0 || result.wallNanos <= 0)
+                continue;
+            String key = result.system + " " + result.mode + " " + result.input.getPath();
+            if (!curves.containsKey(key))
+                curves.put(key, new Curve(result.system, result.mode, result.input.getPath()));
+            String sampleKey = key + " " + result.cores;
+            if (!samples.containsKey(sampleKey))
+                samples.put(sampleKey, new ArrayList<Double>());
+            samples.get(sampleKey).add(result.framesPerSecond());
+        }
+        for (Curve curve : curves.values()) {
+            for (int coreCount : sorted(cores)) {
+                List<Double> values = samples.get(curve.system + " " + curve.mode + " " + curve.input + " "
+                        + coreCount);
+                if (values != null)
+                    curve.points.put(coreCount, median(values));
+            }
+        }
+        return new ArrayList<Curve>(curves.values());
+    }
+
+    private static List<Integer> sorted(List<Integer> values) {
+        List<Integer> copy = new ArrayList<Integer>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static double median(List<Double> values) {
+        List<Double> copy = new ArrayList<Double>(values);
+        Collections.sort(copy);
+        int middle = copy.size() / 2;
+        return copy.size() % 2 == 1 ? copy.get(middle) : (copy.get(middle - 1) + copy.get(middle)) / 2;
+    }
+
+    /**
+     * The median frames per second of a system, mode and input by number of cores.
+     */
+    private static class Curve {
+
+        private final String system;
+        private final Mode mode;
+        private final String input;
+        private final Map<Integer, Double> points = new LinkedHashMap<Integer, Double>();
+
+        private Curve(String system, Mode mode, String input) {
+            this.system = system;
+            this.mode = mode;
+            this.input = input;
+        }
+
+        /**
+         * @return the first number of cores whose next point gains less than {@link #KNEE_GAIN}, or the last number
+         * of cores if the curve still climbs at its end
+         */
+        private int knee() {
+            int previousCores = -1;
+            double previous = 0;
+            for (Map.Entry<Integer, Double> entry : points.entrySet()) {
+                if (previousCores > 0 && entry.getValue() < previous * (1 + KNEE_GAIN))
+                    return previousCores;
+                previousCores = entry.getKey();
+                previous = entry.getValue();
+            }
+            return previousCores;
+        }
+    }
+
+    /**
+     * Reads the output of a run as it comes, keeping its first {@link #LOG_LINES} lines in the log and the line
+     * reported by {@link MacroRun}.
+     */
+    private static class OutputReader implements Runnable {
+
+        private final InputStream output;
+        private final File log;
+        private volatile String resultLine;
+
+        private OutputReader(InputStream output, File log) {
+            this.output = output;
+            this.log = log;
+        }
+
+        @Override
+        public void run() {
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(output));
+                PrintWriter writer = new PrintWriter(new FileWriter(log));
+                try {
+                    long lines = 0;
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith(MacroRun.RESULT_PREFIX))
+                            resultLine = line;
+                        if (lines++ < LOG_LINES || line.startsWith(MacroRun.RESULT_PREFIX))
+                            writer.println(line);
+                    }
+                    if (lines > LOG_LINES)
+                        writer.println("... " + (lines - LOG_LINES) + " more lines");
+                } finally {
+                    writer.close();
+                    reader.close();
+                }
+            } catch (IOException e) {
+                System.out.println("Reading the output of the run failed::" + e);
+            }
+        }
+    }
+
+    /**
+     * One run of a system.
+     */
+    private static class Result {
+
+        private final File input;
+        private final String system;
+        private final Mode mode;
+        private final int cores;
+        private final int run;
+        private final long inputBytes;
+        private final int exitCode;
+
+        private long wallNanos = -1;
+        private long gcMillis = -1;
+        private long gcCount = -1;
+        private long peakThreads = -1;
+        private long peakRssBytes = -1;
+
+        private Result(File input, String system, Mode mode, int cores, int run, long inputBytes, int exitCode) {
+            this.input = input;
+            this.system = system;
+            this.mode = mode;
+            this.cores = cores;
+            this.run = run;
+            this.inputBytes = inputBytes;
+            this.exitCode = exitCode;
+        }
+
+        /**
+         * Read the line reported by {@link MacroRun}.
+         */
+        private void read(String line) {
+            for (String pair : line.substring(MacroRun.RESULT_PREFIX.length()).trim().split(" ")) {
+                String[] keyValue = pair.split("=");
+                long value = Long.parseLong(keyValue[1]);
+                if (keyValue[0].equals("wallNanos"))
+                    wallNanos = value;
+                else if (keyValue[0].equals("gcMillis"))
+                    gcMillis = value;
+                else if (keyValue[0].equals("gcCount"))
+                    gcCount = value;
+                else if (keyValue[0].equals("peakThreads"))
+                    peakThreads = value;
+                else if (keyValue[0].equals("peakRssBytes"))
+                    peakRssBytes = value;
+            }
+        }
+
+        private long frames() {
+            return inputBytes / MeasurementConfig.defaultConfig().getFrameLength();
+        }
+
+        private double wallMillis() {
+            return wallNanos / 1e6;
+        }
+
+        private double framesPerSecond() {
+            return wallNanos > 0 ? frames() * 1e9 / wallNanos : 0d;
+        }
+
+        private String describe() {
+            if (exitCode != 0 || wallNanos <= 0)
+                return String.format(Locale.ROOT, "%s %-8s %2dc %s #%d: FAILED (exit code %d), see the log",
+                        system, mode.name().toLowerCase(Locale.ROOT), cores, input.getName(), run, exitCode);
+            return String.format(Locale.ROOT, "%s %-8s %2dc %s #%d: %.1f ms, %.0f frames/s, peak RSS %d MB, "
+                            + "GC %d ms, %d threads", system, mode.name().toLowerCase(Locale.ROOT), cores,
+                    input.getName(), run, wallMillis(), framesPerSecond(), peakRssBytes / (1024 * 1024), gcMillis,
+                    peakThreads);
+        }
+    }
+}
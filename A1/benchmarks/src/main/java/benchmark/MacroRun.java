@@ -0,0 +1,86 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * One run of a system for {@link MacroBenchmark}, in a JVM of its own: it runs the plumber of the system on a folder,
+ * then prints a line starting with {@value #RESULT_PREFIX} with what the run cost the JVM, for the harness to read
+ * from the output.
+ *
+ * Usage: {@code MacroRun A|B|C <folder>}
+ *
+ * @since 1.0.0
+ */
+public class MacroRun {
+
+    /**
+     * Start of the line reporting the run, followed by space separated {@code key=value} pairs.
+     */
+    public static final String RESULT_PREFIX = "MACRO-RESULT";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println("Usage: MacroRun A|B|C <folder>");
+            System.exit(-1);
+        }
+        String[] plumberArgs = {args[1]};
+
+        long start = System.nanoTime();
+        if ("A".equals(args[0]))
+            system.SystemAPlumber.main(plumberArgs);
+        else if ("B".equals(args[0]))
+            system.SystemBPlumber.main(plumberArgs);
+        else if ("C".equals(args[0]))
+            system.SystemCPlumber.main(plumberArgs);
+        else
+            throw new IllegalArgumentException("no system " + args[0]);
+        long wallNanos = System.nanoTime() - start;
+
+        long gcMillis = 0;
+        long gcCount = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcMillis += Math.max(0, collector.getCollectionTime());
+            gcCount += Math.max(0, collector.getCollectionCount());
+        }
+
+        System.out.println(RESULT_PREFIX
+                + " wallNanos=" + wallNanos
+                + " gcMillis=" + gcMillis
+                + " gcCount=" + gcCount
+                + " peakThreads=" + ManagementFactory.getThreadMXBean().getPeakThreadCount()
+                + " peakRssBytes=" + peakRssBytes());
+        System.out.flush();
+
+        // threads a plumber left behind must not keep the run going
+        System.exit(0);
+    }
+
+    /**
+     * The peak resident set size of this process, from {@code /proc/self/status} on Linux.
+     *
+     * @return the peak RSS in bytes, or -1 where it cannot be read
+     */
+    static long peakRssBytes() {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader("/proc/self/status"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("VmHWM:"))
+                        return Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim()) * 1024;
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // not on Linux
+        } catch (NumberFormatException e) {
+            // unexpected format
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,64 @@
+package benchmark;
+
+import framework.MeasurementConfig;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flight data made up in memory for the benchmarks, laid out the way the sources hand it to the pipelines: frames of
+ * a 4 byte id followed by an 8 byte measurement for every id asked for, in the order asked for. The frames come from a
+ * {@link FlightModel} with wild points of a single frame, and are the same at every call; see
+ * {@link FlightDataGenerator} for files of any size.
+ *
+ * @since 1.0.0
+ */
+public final class SyntheticFlight {
+
+    /**
+     * Milliseconds between two frames.
+     */
+    public static final long FRAME_INTERVAL = 1000L;
+
+    /**
+     * The number of frames of a flight, from takeoff to landing.
+     */
+    private static final long FLIGHT_FRAMES = 10000L;
+
+    private static final long SEED = 17655L;
+
+    private static final int RECORD_LENGTH = 4 + MeasurementConfig.VALUE_LENGTH;
+
+    private SyntheticFlight() {
+    }
+
+    /**
+     * @param frames the number of frames
+     * @param wildRate the share of the frames, from 0 to 1, with a wild pressure point
+     * @param ids the ids of the measurements of every frame, in order
+     * @return the bytes of the frames
+     */
+    public static byte[] frames(int frames, double wildRate, int... ids) {
+        return frames(frames, wildRate, 0L, 1L, ids);
+    }
+
+    /**
+     * @param frames the number of frames
+     * @param wildRate the share of the frames, from 0 to 1, with a wild pressure point
+     * @param firstTime the time of the first frame
+     * @param timeStride the number of {@link #FRAME_INTERVAL}s between the times of two frames, to interleave the
+     * frames of several recordings
+     * @param ids the ids of the measurements of every frame, in order
+     * @return the bytes of the frames
+     */
+    public static byte[] frames(int frames, double wildRate, long firstTime, long timeStride, int... ids) {
+        FlightModel flight = new FlightModel(SEED + firstTime, firstTime, timeStride * FRAME_INTERVAL, FLIGHT_FRAMES,
+                wildRate, 1, 1);
+        ByteBuffer buffer = ByteBuffer.allocate(frames * ids.length * RECORD_LENGTH);
+        for (int frame = 0; frame < frames; frame++) {
+            flight.next();
+            for (int id : ids)
+                buffer.putInt(id).putLong(flight.bits(id));
+        }
+        return buffer.array();
+    }
+}
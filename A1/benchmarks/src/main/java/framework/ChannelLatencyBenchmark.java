@@ -0,0 +1,124 @@
+package framework;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the channels between two filters: the time for a frame to go to a thread standing for the next filter
+ * and come back, over a channel each way. Sampled, so the percentiles show how long a frame waits for the thread
+ * reading it to wake up, besides the copy.
+ *
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChannelLatencyBenchmark {
+
+    private static final int[] FRAME_IDS = {MeasurementConfig.ID_TIME, MeasurementConfig.ID_ALTITUDE,
+            MeasurementConfig.ID_PRESSURE};
+
+    @Param({"PIPE", "RING_BUFFER", "FRAME"})
+    public ChannelType type;
+
+    private Channel there;
+    private Channel back;
+    private Thread echo;
+
+    private MeasurementFrame frame;
+    private byte[] frameBytes;
+    private byte[] received;
+
+    @Setup
+    public void setUp() throws IOException {
+        frame = new MeasurementFrame();
+        frame.setLong(MeasurementConfig.ID_TIME, System.currentTimeMillis());
+        frame.setDouble(MeasurementConfig.ID_ALTITUDE, 9000d);
+        frame.setDouble(MeasurementConfig.ID_PRESSURE, 50d);
+        frameBytes = frame.toBytes();
+        received = new byte[frameBytes.length];
+
+        there = type.newChannel();
+        back = type.newChannel();
+        echo = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                echo();
+            }
+        }, "echo");
+        echo.setDaemon(true);
+        echo.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        there.closeOutput();
+        echo.join(TimeUnit.SECONDS.toMillis(10));
+        back.closeInput();
+    }
+
+    @Benchmark
+    public Object roundTrip() throws IOException {
+        if (type == ChannelType.FRAME) {
+            ((FrameChannel) there).writeFrame(frame);
+            there.flush();
+            return ((FrameChannel) back).readFrame();
+        }
+        there.write(frameBytes, 0, frameBytes.length);
+        there.flush();
+        readFully(back, received);
+        return received;
+    }
+
+    /**
+     * Send every frame read back the way it came, until the channel there ends.
+     */
+    private void echo() {
+        try {
+            byte[] bytes = new byte[frameBytes.length];
+            while (true) {
+                if (type == ChannelType.FRAME) {
+                    MeasurementFrame echoed = ((FrameChannel) there).readFrame();
+                    if (echoed == null)
+                        break;
+                    ((FrameChannel) back).writeFrame(echoed);
+                } else {
+                    if (!readFully(there, bytes))
+                        break;
+                    back.write(bytes, 0, bytes.length);
+                }
+                back.flush();
+            }
+            back.closeOutput();
+        } catch (IOException e) {
+            // the benchmark is over
+        }
+    }
+
+    private static boolean readFully(Channel channel, byte[] b) throws IOException {
+        int off = 0;
+        while (off < b.length) {
+            int read = channel.read(b, off, b.length - off);
+            if (read < 0)
+                return false;
+            off += read;
+        }
+        return true;
+    }
+}
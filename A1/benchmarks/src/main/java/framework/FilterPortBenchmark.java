@@ -0,0 +1,109 @@
+package framework;
+
+import benchmark.ByteArraySourceFilter;
+import benchmark.CountingSinkFilter;
+import benchmark.SyntheticFlight;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the ports of {@link FilterFramework}: frames per second through a source, a chain of filters passing
+ * every measurement on as is, and a sink, each filter on a thread of its own. The filters do no work, so the score is
+ * what the channels between them and the reading and writing of the ports cost.
+ *
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterPortBenchmark {
+
+    private static final int FRAMES = 20000;
+
+    /**
+     * The channel between two filters of the chain. Sources and sinks are connected with a byte channel, a
+     * {@link ChannelType#RING_BUFFER} when the chain passes frames.
+     */
+    @Param({"PIPE", "RING_BUFFER", "FRAME"})
+    public ChannelType link;
+
+    /**
+     * The number of filters between the source and the sink.
+     */
+    @Param({"1", "4"})
+    public int stages;
+
+    private byte[] flight;
+
+    @Setup
+    public void setUp() {
+        flight = SyntheticFlight.frames(FRAMES, 0d, MeasurementConfig.ID_TIME, MeasurementConfig.ID_VELOCITY,
+                MeasurementConfig.ID_ALTITUDE, MeasurementConfig.ID_PRESSURE, MeasurementConfig.ID_TEMPERATURE,
+                MeasurementConfig.ID_ATTITUDE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public long chain() throws InterruptedException {
+        ChannelType channel = link == ChannelType.PIPE ? ChannelType.PIPE : ChannelType.RING_BUFFER;
+
+        List<FilterFramework> filters = new ArrayList<FilterFramework>();
+        ByteArraySourceFilter source = new ByteArraySourceFilter("source", flight);
+        filters.add(source);
+        FilterFramework previous = source;
+        for (int stage = 0; stage < stages; stage++) {
+            PassThroughFilter filter = new PassThroughFilter(String.valueOf(stage));
+            filter.connect(previous, previous == source ? channel : link);
+            filters.add(filter);
+            previous = filter;
+        }
+        CountingSinkFilter sink = new CountingSinkFilter("sink");
+        sink.connect(previous, channel);
+        filters.add(sink);
+
+        FilterRunner runner = new ThreadPerFilterRunner();
+        runner.start(filters);
+        runner.awaitCompletion();
+        runner.shutdown();
+        if (sink.getByteCount() != flight.length)
+            throw new IllegalStateException("the sink read " + sink.getByteCount() + " of " + flight.length + " bytes");
+        return sink.getByteCount();
+    }
+
+    /**
+     * A filter passing every measurement on as is.
+     */
+    static class PassThroughFilter extends SimpleFilter {
+
+        PassThroughFilter(String filterId) {
+            super(MeasurementConfig.defaultConfig(), filterId);
+        }
+
+        @Override
+        protected byte[] doTransform(int id, byte[] measurement) {
+            return measurement;
+        }
+
+        @Override
+        protected void transformFrame(MeasurementFrame frame) {
+            // pass the frame on as is
+        }
+    }
+}
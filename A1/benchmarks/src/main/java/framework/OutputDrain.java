@@ -0,0 +1,53 @@
+package framework;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The far end of the output port of a filter that is not run, for benchmarks calling the methods of the filter
+ * directly. Whatever the filter writes to its port collects in a {@link RingBufferChannel} until {@link #drain()}
+ * throws it away.
+ *
+ * @since 1.0.0
+ */
+public class OutputDrain {
+
+    private final Channel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(RingBufferChannel.DEFAULT_CAPACITY);
+
+    /**
+     * Connect the output port of the filter to a new drain.
+     *
+     * @param filter the filter whose output is drained
+     */
+    public OutputDrain(FilterFramework filter) {
+        FilterFramework end = new FilterFramework("drain-" + filter.filterId) {
+            @Override
+            public void run() {
+                // never run, the benchmark drains the channel itself
+            }
+        };
+        end.connect(filter, ChannelType.RING_BUFFER);
+        this.channel = end.inputForKey(filter.filterId);
+    }
+
+    /**
+     * Throw away what the filter has written so far. Call it often enough for the ring never to fill up, or the
+     * filter blocks.
+     *
+     * @return the number of bytes thrown away
+     */
+    public int drain() {
+        try {
+            int drained = 0;
+            while (channel.available() > 0) {
+                buffer.clear();
+                drained += channel.read(buffer);
+            }
+            return drained;
+        } catch (IOException e) {
+            throw new IllegalStateException("draining " + channel + " failed", e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package shared;
+
+import benchmark.SyntheticFlight;
+import framework.MeasurementConfig;
+import framework.OutputDrain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.ConversionUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@code doTransform} of every shared filter, called directly on measurements of a synthetic flight, without
+ * the ports around it. The filters are configured the way the plumber of System B configures them.
+ *
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleFilterTransformBenchmark {
+
+    /**
+     * The number of frames the measurements are taken from, a power of 2.
+     */
+    private static final int SAMPLES = 1024;
+
+    private static final int[] RAW_IDS = {MeasurementConfig.ID_TIME, MeasurementConfig.ID_VELOCITY,
+            MeasurementConfig.ID_ALTITUDE, MeasurementConfig.ID_PRESSURE, MeasurementConfig.ID_TEMPERATURE,
+            MeasurementConfig.ID_ATTITUDE};
+
+    private TimeConvertingFilter timeConvertingFilter;
+    private TemperatureConvertingFilter temperatureConvertingFilter;
+    private AltitudeConvertingFilter altitudeConvertingFilter;
+    private PressureFormattingFilter pressureFormattingFilter;
+    private DataDroppingFilter dataDroppingFilter;
+    private FormattingFilter formattingFilter;
+    private OutputDrain formattingOutput;
+
+    /**
+     * The measurements of every frame as the source reads them, indexed by id then frame, and the time and pressure
+     * formatted the way the formatting filter reads them.
+     */
+    private byte[][][] raw;
+    private byte[][] formattedTimes;
+    private byte[][] formattedPressures;
+
+    private int frame = 0;
+    private int rawId = 0;
+
+    @Setup
+    public void setUp() {
+        timeConvertingFilter = new TimeConvertingFilter("3.2", MeasurementConfig.defaultConfig());
+        temperatureConvertingFilter = new TemperatureConvertingFilter("4.2", MeasurementConfig.defaultConfig()
+                .expectTimeWithLength(16));
+        altitudeConvertingFilter = new AltitudeConvertingFilter("5.2", MeasurementConfig.defaultConfig()
+                .expectTimeWithLength(16)
+                .expectTemperatureWithLength(10));
+        pressureFormattingFilter = new PressureFormattingFilter("6.2", MeasurementConfig.defaultConfig()
+                .expectTimeWithLength(16)
+                .expectTemperatureWithLength(10)
+                .expectAltitudeWithLength(13));
+        pressureFormattingFilter.setTreatNegativeValueAsExtrapolated(true);
+        dataDroppingFilter = new DataDroppingFilter("1", MeasurementConfig.defaultConfig());
+        dataDroppingFilter.setDropAttitude(true);
+        dataDroppingFilter.setDropVelocity(true);
+        formattingFilter = new FormattingFilter("6.1", MeasurementConfig.defaultConfig()
+                .expectTimeWithLength(16)
+                .expectPressureWithLength(9));
+        formattingFilter.setTimeRequired(true);
+        formattingFilter.setPressureRequired(true);
+        formattingOutput = new OutputDrain(formattingFilter);
+
+        byte[] flight = SyntheticFlight.frames(SAMPLES, 0.05d, RAW_IDS);
+        raw = new byte[MeasurementConfig.MAX_ID + 1][SAMPLES][];
+        formattedTimes = new byte[SAMPLES][];
+        formattedPressures = new byte[SAMPLES][];
+        int offset = 0;
+        for (int f = 0; f < SAMPLES; f++) {
+            for (int id : RAW_IDS) {
+                offset += 4;
+                byte[] measurement = new byte[MeasurementConfig.VALUE_LENGTH];
+                System.arraycopy(flight, offset, measurement, 0, measurement.length);
+                raw[id][f] = measurement;
+                offset += measurement.length;
+            }
+            formattedTimes[f] = timeConvertingFilter.doTransform(MeasurementConfig.ID_TIME,
+                    raw[MeasurementConfig.ID_TIME][f]);
+            formattedPressures[f] = pressureFormattingFilter.doTransform(MeasurementConfig.ID_PRESSURE,
+                    raw[MeasurementConfig.ID_PRESSURE][f]);
+        }
+    }
+
+    private int nextFrame() {
+        frame = (frame + 1) & (SAMPLES - 1);
+        return frame;
+    }
+
+    @Benchmark
+    public byte[] timeConverting() {
+        return timeConvertingFilter.doTransform(MeasurementConfig.ID_TIME, raw[MeasurementConfig.ID_TIME][nextFrame()]);
+    }
+
+    @Benchmark
+    public byte[] temperatureConverting() {
+        return temperatureConvertingFilter.doTransform(MeasurementConfig.ID_TEMPERATURE,
+                raw[MeasurementConfig.ID_TEMPERATURE][nextFrame()]);
+    }
+
+    @Benchmark
+    public byte[] altitudeConverting() {
+        return altitudeConvertingFilter.doTransform(MeasurementConfig.ID_ALTITUDE,
+                raw[MeasurementConfig.ID_ALTITUDE][nextFrame()]);
+    }
+
+    @Benchmark
+    public byte[] pressureFormatting() {
+        return pressureFormattingFilter.doTransform(MeasurementConfig.ID_PRESSURE,
+                raw[MeasurementConfig.ID_PRESSURE][nextFrame()]);
+    }
+
+    /**
+     * One measurement of every id in turn, a third of them dropped.
+     */
+    @Benchmark
+    public byte[] dataDropping() {
+        int id = RAW_IDS[rawId];
+        rawId = (rawId + 1) % RAW_IDS.length;
+        return dataDroppingFilter.doTransform(id, raw[id][rawId == 0 ? nextFrame() : frame]);
+    }
+
+    /**
+     * A line of time and pressure, as on the wild stream of System B: two measurements, the second one completing the
+     * line and writing it to the output port.
+     */
+    @Benchmark
+    public int formatting() {
+        int f = nextFrame();
+        formattingFilter.doTransform(MeasurementConfig.ID_TIME, formattedTimes[f]);
+        formattingFilter.doTransform(MeasurementConfig.ID_PRESSURE, formattedPressures[f]);
+        return formattingOutput.drain();
+    }
+
+    /**
+     * The lower bound of the converting benchmarks: decoding the measurement only.
+     */
+    @Benchmark
+    public double decodeOnly() {
+        return ConversionUtil.readDouble(raw[MeasurementConfig.ID_ALTITUDE][nextFrame()], 0);
+    }
+}
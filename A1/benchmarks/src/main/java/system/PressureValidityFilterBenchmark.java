@@ -0,0 +1,86 @@
+package system;
+
+import benchmark.ByteArraySourceFilter;
+import benchmark.CountingSinkFilter;
+import benchmark.SyntheticFlight;
+import framework.ChannelType;
+import framework.FilterRunner;
+import framework.FrameBacklog;
+import framework.MeasurementConfig;
+import framework.ThreadPerFilterRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the {@link PressureValidityFilter} of System B, in frames per second, on flights with more or fewer
+ * wild points. The filter reads from a source holding the frames in memory and writes to two sinks counting bytes.
+ *
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PressureValidityFilterBenchmark {
+
+    private static final int FRAMES = 50000;
+
+    /**
+     * The ids of a frame as the filter reads them, behind the dropping filter of System B.
+     */
+    private static final int[] FRAME_IDS = {MeasurementConfig.ID_TIME, MeasurementConfig.ID_ALTITUDE,
+            MeasurementConfig.ID_PRESSURE, MeasurementConfig.ID_TEMPERATURE};
+
+    /**
+     * The share of the frames with a wild pressure point.
+     */
+    @Param({"0", "0.01", "0.1", "0.5"})
+    public double wildRate;
+
+    /**
+     * The number of wild points the filter keeps in memory.
+     */
+    @Param({"" + FrameBacklog.DEFAULT_CAPACITY})
+    public int backlog;
+
+    private byte[] flight;
+
+    @Setup
+    public void setUp() {
+        flight = SyntheticFlight.frames(FRAMES, wildRate, FRAME_IDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public long route() throws InterruptedException {
+        ByteArraySourceFilter source = new ByteArraySourceFilter("0", flight);
+        PressureValidityFilter filter = new PressureValidityFilter("2", MeasurementConfig.defaultConfig());
+        filter.useBacklog(backlog, filter.getBacklog().getPolicy());
+        CountingSinkFilter wildSink = new CountingSinkFilter("3.1");
+        CountingSinkFilter validSink = new CountingSinkFilter("3.2");
+        filter.connect(source, ChannelType.RING_BUFFER);
+        wildSink.connect(filter, ChannelType.RING_BUFFER);
+        validSink.connect(filter, ChannelType.RING_BUFFER);
+
+        FilterRunner runner = new ThreadPerFilterRunner();
+        runner.start(Arrays.asList(source, filter, wildSink, validSink));
+        runner.awaitCompletion();
+        runner.shutdown();
+        return wildSink.getByteCount() + validSink.getByteCount();
+    }
+}
@@ -0,0 +1,87 @@
+package system;
+
+import benchmark.ByteArraySourceFilter;
+import benchmark.CountingSinkFilter;
+import benchmark.SyntheticFlight;
+import framework.ChannelType;
+import framework.FilterFramework;
+import framework.FilterRunner;
+import framework.MeasurementConfig;
+import framework.ThreadPerFilterRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the {@link TimeSortFilter} of System C, in frames per second, merging recordings whose frames
+ * interleave in time, so that the input port to read from changes at every frame.
+ *
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimeSortFilterBenchmark {
+
+    private static final int FRAMES = 48000;
+
+    private static final int[] FRAME_IDS = {MeasurementConfig.ID_TIME, MeasurementConfig.ID_ALTITUDE,
+            MeasurementConfig.ID_PRESSURE};
+
+    /**
+     * The number of recordings merged, System C merging 2.
+     */
+    @Param({"2", "8"})
+    public int inputs;
+
+    @Param({"PIPE", "RING_BUFFER"})
+    public ChannelType channel;
+
+    private byte[][] recordings;
+
+    @Setup
+    public void setUp() {
+        recordings = new byte[inputs][];
+        for (int input = 0; input < inputs; input++)
+            recordings[input] = SyntheticFlight.frames(FRAMES / inputs, 0d, input * SyntheticFlight.FRAME_INTERVAL,
+                    inputs, FRAME_IDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public long merge() throws InterruptedException {
+        List<FilterFramework> filters = new ArrayList<FilterFramework>();
+        TimeSortFilter sortFilter = new TimeSortFilter("sort", MeasurementConfig.defaultConfig());
+        for (int input = 0; input < inputs; input++) {
+            ByteArraySourceFilter source = new ByteArraySourceFilter(String.valueOf(input), recordings[input]);
+            sortFilter.connect(source, channel);
+            filters.add(source);
+        }
+        CountingSinkFilter sink = new CountingSinkFilter("sink");
+        sink.connect(sortFilter, channel);
+        filters.add(sortFilter);
+        filters.add(sink);
+
+        FilterRunner runner = new ThreadPerFilterRunner();
+        runner.start(filters);
+        runner.awaitCompletion();
+        runner.shutdown();
+        return sink.getByteCount();
+    }
+}
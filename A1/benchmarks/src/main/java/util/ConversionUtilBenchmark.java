@@ -0,0 +1,113 @@
+package util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding of ids and measurements by {@link ConversionUtil}, from and to arrays and buffers.
+ *
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionUtilBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    private byte[] bytes;
+    private ByteBuffer buffer;
+    private double[] values;
+    private int[] ids;
+
+    private int index = 0;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(17655);
+        bytes = new byte[SAMPLES * 8];
+        random.nextBytes(bytes);
+        buffer = ByteBuffer.wrap(bytes.clone());
+        values = new double[SAMPLES];
+        ids = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            values[i] = random.nextGaussian() * 1000d;
+            ids[i] = random.nextInt(6);
+        }
+    }
+
+    private int next() {
+        index = (index + 1) & (SAMPLES - 1);
+        return index;
+    }
+
+    @Benchmark
+    public int readInt() {
+        return ConversionUtil.readInt(bytes, next() * 8);
+    }
+
+    @Benchmark
+    public double readDouble() {
+        return ConversionUtil.readDouble(bytes, next() * 8);
+    }
+
+    @Benchmark
+    public double readDoubleFromBuffer() {
+        return ConversionUtil.readDouble(buffer, next() * 8);
+    }
+
+    @Benchmark
+    public byte[] writeDouble() {
+        int i = next();
+        ConversionUtil.writeDouble(bytes, i * 8, values[i]);
+        return bytes;
+    }
+
+    @Benchmark
+    public ByteBuffer writeDoubleToBuffer() {
+        int i = next();
+        ConversionUtil.writeDouble(buffer, i * 8, values[i]);
+        return buffer;
+    }
+
+    /**
+     * Decoding through a new array per measurement, the way the filters reading byte by byte do.
+     */
+    @Benchmark
+    public double convertToDouble() {
+        int i = next();
+        byte[] measurement = new byte[8];
+        System.arraycopy(bytes, i * 8, measurement, 0, 8);
+        return ConversionUtil.convertToDouble(measurement);
+    }
+
+    @Benchmark
+    public byte[] convertToByteArray() {
+        return ConversionUtil.convertToByteArray(values[next()]);
+    }
+
+    @Benchmark
+    public byte[] idBytes() {
+        return ConversionUtil.idBytes(ids[next()]);
+    }
+
+    @Benchmark
+    public int convertToInt() {
+        return ConversionUtil.convertToInt(ConversionUtil.idBytes(ids[next()]));
+    }
+}
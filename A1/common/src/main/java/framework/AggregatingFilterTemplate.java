@@ -2,14 +2,15 @@ package framework;
 
 import util.ConversionUtil;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * A filter template than represents an aggregating filter. A aggregating filter is a filter that reads from two input
  * ports but writes to only one output port (In theory, it can have N input ports but our implementation will restrict it
- * to two input ports for simplicity and readability of API).
+ * to two input ports for simplicity and readability of API). To merge more than two time sorted inputs, see
+ * {@link TimeMergeFilter}.
  *
  * @since 1.0.0
  */
@@ -27,10 +28,16 @@ public abstract class AggregatingFilterTemplate extends FilterFramework {
     protected List<String> inputFilterIds = new ArrayList<String>();
 
     /**
-     * The id of the output filter. It is used to lookup {@link java.io.PipedOutputStream} by calling {@link #outputForKey(String)}.
+     * The id of the output filter. It is used to lookup {@link Channel} by calling {@link #outputForKey(String)}.
      */
     protected String outputFilterId = null;
 
+    /**
+     * Readers for the upper and lower input ports when the filter works frame by frame, null otherwise.
+     */
+    private FrameReader portOneReader = null;
+    private FrameReader portTwoReader = null;
+
     /**
      * Default constructor
      *
@@ -46,12 +53,13 @@ public abstract class AggregatingFilterTemplate extends FilterFramework {
      * Perform connection and integrity check
      *
      * @param Filter the filter requesting connection to this filter as input
+     * @param type the type of channel to wire between the two filters
      */
     @Override
-    public void connect(FilterFramework Filter) {
+    public void connect(FilterFramework Filter, ChannelType type) {
         if (inputs.size() >= 2)
             throw new RuntimeException("An aggregating filter can only accept 2 connections");
-        super.connect(Filter);
+        super.connect(Filter, type);
     }
 
     /**
@@ -108,6 +116,80 @@ public abstract class AggregatingFilterTemplate extends FilterFramework {
         writeToOutput(data, outputFilterId);
     }
 
+    /**
+     * Utility method to read exactly {@code len} bytes from the input port from the upper stream.
+     *
+     * @param b the buffer into which the data is read.
+     * @param off the start offset in {@code b}.
+     * @param len the number of bytes to read.
+     * @throws EndOfStreamException
+     */
+    protected void ReadFilterInputPortOne(byte[] b, int off, int len) throws EndOfStreamException {
+        readFromInput(inputFilterIds.get(0), b, off, len);
+    }
+
+    /**
+     * Utility method to fill the remaining space of a buffer from the input port from the upper stream.
+     *
+     * @param dst the buffer into which the data is read.
+     * @throws EndOfStreamException
+     */
+    protected void ReadFilterInputPortOne(ByteBuffer dst) throws EndOfStreamException {
+        readFromInput(inputFilterIds.get(0), dst);
+    }
+
+    /**
+     * Utility method to read exactly {@code len} bytes from the input port from the lower stream.
+     *
+     * @param b the buffer into which the data is read.
+     * @param off the start offset in {@code b}.
+     * @param len the number of bytes to read.
+     * @throws EndOfStreamException
+     */
+    protected void ReadFilterInputPortTwo(byte[] b, int off, int len) throws EndOfStreamException {
+        readFromInput(inputFilterIds.get(1), b, off, len);
+    }
+
+    /**
+     * Utility method to fill the remaining space of a buffer from the input port from the lower stream.
+     *
+     * @param dst the buffer into which the data is read.
+     * @throws EndOfStreamException
+     */
+    protected void ReadFilterInputPortTwo(ByteBuffer dst) throws EndOfStreamException {
+        readFromInput(inputFilterIds.get(1), dst);
+    }
+
+    /**
+     * Utility method to write {@code len} bytes to output port.
+     *
+     * @param b data to be written to output
+     * @param off the start offset in {@code b}.
+     * @param len the number of bytes to write.
+     */
+    protected void WriteFilterOutputPort(byte[] b, int off, int len) {
+        writeToOutput(b, off, len, outputFilterId);
+    }
+
+    /**
+     * Utility method to write the remaining bytes of a buffer to output port.
+     *
+     * @param src data to be written to output
+     */
+    protected void WriteFilterOutputPort(ByteBuffer src) {
+        writeToOutput(src, outputFilterId);
+    }
+
+    /**
+     * Utility method to write a frame to output port. It is serialized to bytes unless the port is a
+     * {@link FrameChannel}.
+     *
+     * @param frame frame to be written to output
+     */
+    protected void WriteFilterOutputPort(MeasurementFrame frame) {
+        writeFrameToOutput(frame, outputFilterId);
+    }
+
     /**
      * Utility method to read id from upper port.
      *
@@ -115,12 +197,9 @@ public abstract class AggregatingFilterTemplate extends FilterFramework {
      * @throws EndOfStreamException
      */
     protected byte[] readIdFromInputPortOne() throws EndOfStreamException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        for (int i = 0; i < context.getIdLength(); i++) {
-            byte databyte = ReadFilterInputPortOne();
-            out.write(databyte);
-        }
-        return out.toByteArray();
+        byte[] id = new byte[context.getIdLength()];
+        ReadFilterInputPortOne(id, 0, id.length);
+        return id;
     }
 
     /**
@@ -132,9 +211,7 @@ public abstract class AggregatingFilterTemplate extends FilterFramework {
      */
     protected byte[] readMeasurementFromInputPortOne(int length) throws EndOfStreamException {
         byte[] measurement = new byte[length];
-        for (int i = 0; i < length; i++) {
-            measurement[i] = ReadFilterInputPortOne();
-        }
+        ReadFilterInputPortOne(measurement, 0, length);
         return measurement;
     }
 
@@ -145,12 +222,9 @@ public abstract class AggregatingFilterTemplate extends FilterFramework {
      * @throws EndOfStreamException
      */
     protected byte[] readIdFromInputPortTwo() throws EndOfStreamException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        for (int i = 0; i < context.getIdLength(); i++) {
-            byte databyte = ReadFilterInputPortTwo();
-            out.write(databyte);
-        }
-        return out.toByteArray();
+        byte[] id = new byte[context.getIdLength()];
+        ReadFilterInputPortTwo(id, 0, id.length);
+        return id;
     }
 
     /**
@@ -162,9 +236,7 @@ public abstract class AggregatingFilterTemplate extends FilterFramework {
      */
     protected byte[] readMeasurementFromInputPortTwo(int length) throws EndOfStreamException {
         byte[] measurement = new byte[length];
-        for (int i = 0; i < length; i++) {
-            measurement[i] = ReadFilterInputPortTwo();
-        }
+        ReadFilterInputPortTwo(measurement, 0, length);
         return measurement;
     }
 
@@ -200,6 +272,34 @@ public abstract class AggregatingFilterTemplate extends FilterFramework {
      */
     protected abstract void dataReadForPortTwo(int id, byte[] measurement);
 
+    /**
+     * Template method for subclasses to override when this filter reads or writes {@link MeasurementFrame}s, i.e. it
+     * is connected with a {@link FrameChannel}. It passes the frame read from upper port to the subclass. By default,
+     * every measurement of the frame is passed to {@link #dataReadForPortOne(int, byte[])} in order.
+     *
+     * @param frame frame read
+     */
+    protected void frameReadForPortOne(MeasurementFrame frame) {
+        for (int i = 0; i < frame.size(); i++) {
+            int id = frame.idAt(i);
+            dataReadForPortOne(id, frame.getBytes(id));
+        }
+    }
+
+    /**
+     * Template method for subclasses to override when this filter reads or writes {@link MeasurementFrame}s, i.e. it
+     * is connected with a {@link FrameChannel}. It passes the frame read from lower port to the subclass. By default,
+     * every measurement of the frame is passed to {@link #dataReadForPortTwo(int, byte[])} in order.
+     *
+     * @param frame frame read
+     */
+    protected void frameReadForPortTwo(MeasurementFrame frame) {
+        for (int i = 0; i < frame.size(); i++) {
+            int id = frame.idAt(i);
+            dataReadForPortTwo(id, frame.getBytes(id));
+        }
+    }
+
     /**
      * Template method for subclasses to implement. This instructs the filter that subclasses have finished doing
      * aggregation and it can call {@link #aggregatedBytes()} to retrieve the aggregated result.
@@ -217,6 +317,28 @@ public abstract class AggregatingFilterTemplate extends FilterFramework {
      */
     protected abstract byte[] aggregatedBytes() throws Exception;
 
+    /**
+     * Frame counterpart of {@link #aggregatedBytes()}, used when this filter reads or writes {@link MeasurementFrame}s.
+     * By default, it cuts the bytes returned by {@link #aggregatedBytes()} into measurements and collects them in one
+     * frame. Subclasses working on frames should override it and return their frame directly.
+     *
+     * @return aggregated frame to be flushed to the output port.
+     * @throws Exception
+     */
+    protected MeasurementFrame aggregatedFrame() throws Exception {
+        ByteBuffer bytes = ByteBuffer.wrap(aggregatedBytes());
+        MeasurementFrame frame = new MeasurementFrame(context);
+        byte[] idBytes = new byte[context.getIdLength()];
+        while (bytes.hasRemaining()) {
+            bytes.get(idBytes);
+            int id = ConversionUtil.convertToInt(idBytes);
+            byte[] measurement = new byte[context.idForMeasurementLength(id)];
+            bytes.get(measurement);
+            frame.setBytes(id, measurement, context.typeOf(id));
+        }
+        return frame;
+    }
+
     /**
      * Event call back method for the event that upper input port has closed. By default, it would read all data
      * from the lower input port and flushed it to the output port immediately. Subclasses may provide reasonable
@@ -225,9 +347,10 @@ public abstract class AggregatingFilterTemplate extends FilterFramework {
      * @throws EndOfStreamException
      */
     protected void portOneStreamHasEnded() throws EndOfStreamException {
-        while (true) {
-            WriteFilterOutputPort(ReadFilterInputPortTwo());
-        }
+        if (portTwoReader != null)
+            transferFrames(portTwoReader);
+        else
+            transferToOutput(inputFilterIds.get(1), outputFilterId);
     }
 
     /**
@@ -238,9 +361,21 @@ public abstract class AggregatingFilterTemplate extends FilterFramework {
      * @throws EndOfStreamException
      */
     protected void portTwoStreamHasEnded() throws EndOfStreamException {
-        while (true) {
-            WriteFilterOutputPort(ReadFilterInputPortOne());
-        }
+        if (portOneReader != null)
+            transferFrames(portOneReader);
+        else
+            transferToOutput(inputFilterIds.get(0), outputFilterId);
+    }
+
+    /**
+     * Utility method to pass all remaining frames from an input port to the output port.
+     *
+     * @param reader the reader of the input port
+     * @throws EndOfStreamException when the input port has been drained; always thrown eventually.
+     */
+    private void transferFrames(FrameReader reader) throws EndOfStreamException {
+        while (true)
+            WriteFilterOutputPort(reader.next());
     }
 
     /**
@@ -251,32 +386,79 @@ public abstract class AggregatingFilterTemplate extends FilterFramework {
      * In the case that one input port has closed, it will try to call {@link #portOneStreamHasEnded()} or
      * {@link #portTwoStreamHasEnded()}, which by default just flushes data from the other input port to the
      * output port immediately. When the other port has also depleted, it closes all ports.
+     *
+     * When any port carries frames, the filter reads a whole frame at a time and passes it to
+     * {@link #frameReadForPortOne(MeasurementFrame)} or {@link #frameReadForPortTwo(MeasurementFrame)}, and flushes
+     * {@link #aggregatedFrame()} instead of {@link #aggregatedBytes()}.
      */
     @Override
     public void run() {
+        if (inputCarriesFrames(inputFilterIds.get(0)) || inputCarriesFrames(inputFilterIds.get(1))
+                || outputCarriesFrames(outputFilterId)) {
+            portOneReader = new FrameReader(this, inputFilterIds.get(0), context);
+            portTwoReader = new FrameReader(this, inputFilterIds.get(1), context);
+        }
+
         while (true) {
             try {
                 // read id and measurement from upper port if necessary and pass on to subclass for any processing
                 if (shouldReadFromPortOne()) {
-                    byte[] idBytes = readIdFromInputPortOne();
-                    int id = ConversionUtil.convertToInt(idBytes);
-                    byte[] measurement = readMeasurementFromInputPortOne(context.idForMeasurementLength(id));
-                    dataReadForPortOne(id, measurement);
+                    if (portOneReader != null) {
+                        MeasurementFrame frame = portOneReader.next();
+                        Object sample = sampleProcessing(frame.size());
+                        long started = metrics == null ? 0L : System.nanoTime();
+                        frameReadForPortOne(frame);
+                        if (metrics != null)
+                            metrics.transformed(System.nanoTime() - started);
+                        FlightEvents.processingEnded(sample);
+                    } else {
+                        byte[] idBytes = readIdFromInputPortOne();
+                        int id = ConversionUtil.convertToInt(idBytes);
+                        byte[] measurement = readMeasurementFromInputPortOne(context.idForMeasurementLength(id));
+                        Object sample = sampleProcessing(1);
+                        long started = metrics == null ? 0L : System.nanoTime();
+                        dataReadForPortOne(id, measurement);
+                        if (metrics != null) {
+                            metrics.measurementRead();
+                            metrics.transformed(System.nanoTime() - started);
+                        }
+                        FlightEvents.processingEnded(sample);
+                    }
                 }
 
                 // read id and measurement from lower port if necessary and pass on to subclass for any processing
                 if (shouldReadFromPortTwo()) {
-                    byte[] idBytes = readIdFromInputPortTwo();
-                    int id = ConversionUtil.convertToInt(idBytes);
-                    byte[] measurement = readMeasurementFromInputPortTwo(context.idForMeasurementLength(id));
-                    dataReadForPortTwo(id, measurement);
+                    if (portTwoReader != null) {
+                        MeasurementFrame frame = portTwoReader.next();
+                        Object sample = sampleProcessing(frame.size());
+                        long started = metrics == null ? 0L : System.nanoTime();
+                        frameReadForPortTwo(frame);
+                        if (metrics != null)
+                            metrics.transformed(System.nanoTime() - started);
+                        FlightEvents.processingEnded(sample);
+                    } else {
+                        byte[] idBytes = readIdFromInputPortTwo();
+                        int id = ConversionUtil.convertToInt(idBytes);
+                        byte[] measurement = readMeasurementFromInputPortTwo(context.idForMeasurementLength(id));
+                        Object sample = sampleProcessing(1);
+                        long started = metrics == null ? 0L : System.nanoTime();
+                        dataReadForPortTwo(id, measurement);
+                        if (metrics != null) {
+                            metrics.measurementRead();
+                            metrics.transformed(System.nanoTime() - started);
+                        }
+                        FlightEvents.processingEnded(sample);
+                    }
                 }
 
                 // pass the aggregated data onto the output port if it has finished aggregating.
                 if (hasCompletedAggregation()) {
-                    byte[] bytesToFlush = aggregatedBytes();
-                    for (byte eachByte : bytesToFlush)
-                        WriteFilterOutputPort(eachByte);
+                    if (portOneReader != null) {
+                        WriteFilterOutputPort(aggregatedFrame());
+                    } else {
+                        byte[] bytesToFlush = aggregatedBytes();
+                        WriteFilterOutputPort(bytesToFlush, 0, bytesToFlush.length);
+                    }
                 }
             } catch (Exception ex) {
                 if (ex instanceof EndOfStreamException) {
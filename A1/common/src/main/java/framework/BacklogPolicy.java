@@ -0,0 +1,22 @@
+package framework;
+
+/**
+ * What a {@link FrameBacklog} does with the frames added once it holds as many as its capacity.
+ *
+ * @since 1.0.0
+ */
+public enum BacklogPolicy {
+
+    /**
+     * Keep every frame, writing the frames beyond the capacity to a temporary file until they are polled. The output
+     * is the same as with an unbounded backlog.
+     */
+    SPILL,
+
+    /**
+     * Hand the oldest frame back to the filter for every frame added beyond the capacity, see
+     * {@link FrameBacklog#pollOverflow(FrameBatch)}, for the filter to resolve it early, e.g. from the last valid value
+     * alone. Frames are spilled while the filter has nothing to resolve them from.
+     */
+    EXTRAPOLATE
+}
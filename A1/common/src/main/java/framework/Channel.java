@@ -0,0 +1,156 @@
+package framework;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A channel is the connection between the output port of one filter and the input port of another filter. It is
+ * written by exactly one filter (the upstream filter) and read by exactly one filter (the downstream filter). The
+ * semantics mirror a pair of connected {@link java.io.PipedOutputStream} and {@link java.io.PipedInputStream}: bytes
+ * are delivered in order, {@link #read()} returns -1 once the writer has closed and all data has been consumed, and
+ * writing to a channel whose reader has closed raises an {@link IOException}.
+ *
+ * @since 1.0.0
+ */
+public abstract class Channel {
+
+    /**
+     * Size of the intermediate array used to move data between a direct {@link ByteBuffer} and a channel that
+     * cannot access it directly.
+     */
+    protected static final int TRANSFER_CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * The ids of the upstream and the downstream filter, set by
+     * {@link FilterFramework#connect(FilterFramework, ChannelType)}.
+     */
+    String name;
+
+    /**
+     * @return the name of the channel, {@code "<upstream filter id>-><downstream filter id>"} once it is connected.
+     */
+    public String getName() {
+        return name == null ? getClass().getSimpleName() : name;
+    }
+
+    /**
+     * Number of bytes that can be read without blocking.
+     *
+     * @return the number of bytes currently buffered in the channel.
+     * @throws IOException when the channel is broken.
+     */
+    public abstract int available() throws IOException;
+
+    /**
+     * Whether the channel has reached the end of the stream, i.e. the writer has closed its end and every byte
+     * written has been read, or the reader has closed its end.
+     *
+     * @return true if no more data can be read from this channel.
+     */
+    public abstract boolean isEndOfStream();
+
+    /**
+     * Read a byte of data from the channel, blocking until data is available or the writer has closed.
+     *
+     * @return the byte read as an unsigned value, or -1 if the writer has closed and the channel has been drained.
+     * @throws IOException when the channel is broken or has been closed by the reader.
+     */
+    public abstract int read() throws IOException;
+
+    /**
+     * Read up to {@code len} bytes of data from the channel into an array, blocking until at least one byte is
+     * available or the writer has closed.
+     *
+     * @param b the buffer into which the data is read.
+     * @param off the start offset in {@code b}.
+     * @param len the maximum number of bytes to read.
+     * @return the number of bytes read, or -1 if the writer has closed and the channel has been drained.
+     * @throws IOException when the channel is broken or has been closed by the reader.
+     */
+    public abstract int read(byte[] b, int off, int len) throws IOException;
+
+    /**
+     * Read bytes of data from the channel into a buffer, blocking until at least one byte is available or the writer
+     * has closed. At most {@link ByteBuffer#remaining()} bytes are read and the position of the buffer is advanced
+     * by the number of bytes read.
+     *
+     * @param dst the buffer into which the data is read.
+     * @return the number of bytes read, or -1 if the writer has closed and the channel has been drained.
+     * @throws IOException when the channel is broken or has been closed by the reader.
+     */
+    public int read(ByteBuffer dst) throws IOException {
+        if (!dst.hasRemaining())
+            return 0;
+        if (dst.hasArray()) {
+            int count = read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (count > 0)
+                dst.position(dst.position() + count);
+            return count;
+        }
+        byte[] chunk = new byte[Math.min(dst.remaining(), TRANSFER_CHUNK_SIZE)];
+        int count = read(chunk, 0, chunk.length);
+        if (count > 0)
+            dst.put(chunk, 0, count);
+        return count;
+    }
+
+    /**
+     * Write a byte of data to the channel.
+     *
+     * @param b the byte to be written (only the lower 8 bits are used).
+     * @throws IOException when the channel is broken or has been closed.
+     */
+    public abstract void write(int b) throws IOException;
+
+    /**
+     * Write {@code len} bytes of data from an array to the channel, blocking while the channel is full.
+     *
+     * @param b the data.
+     * @param off the start offset in {@code b}.
+     * @param len the number of bytes to write.
+     * @throws IOException when the channel is broken or has been closed.
+     */
+    public abstract void write(byte[] b, int off, int len) throws IOException;
+
+    /**
+     * Write all remaining bytes of a buffer to the channel, blocking while the channel is full. The position of the
+     * buffer is advanced to its limit.
+     *
+     * @param src the data.
+     * @throws IOException when the channel is broken or has been closed.
+     */
+    public void write(ByteBuffer src) throws IOException {
+        if (src.hasArray()) {
+            write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+            src.position(src.limit());
+            return;
+        }
+        byte[] chunk = new byte[Math.min(src.remaining(), TRANSFER_CHUNK_SIZE)];
+        while (src.hasRemaining()) {
+            int count = Math.min(src.remaining(), chunk.length);
+            src.get(chunk, 0, count);
+            write(chunk, 0, count);
+        }
+    }
+
+    /**
+     * Make any written data visible to the reader.
+     *
+     * @throws IOException when the channel is broken.
+     */
+    public abstract void flush() throws IOException;
+
+    /**
+     * Close the reading end of the channel. Called by the downstream filter.
+     *
+     * @throws IOException when the channel cannot be closed.
+     */
+    public abstract void closeInput() throws IOException;
+
+    /**
+     * Close the writing end of the channel. Called by the upstream filter.
+     *
+     * @throws IOException when the channel cannot be closed.
+     */
+    public abstract void closeOutput() throws IOException;
+}
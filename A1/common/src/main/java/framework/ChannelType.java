@@ -0,0 +1,51 @@
+package framework;
+
+import java.io.IOException;
+
+/**
+ * The kinds of {@link Channel} that {@link FilterFramework#connect(FilterFramework, ChannelType)} can wire between
+ * two filters.
+ *
+ * @since 1.0.0
+ */
+public enum ChannelType {
+
+    /**
+     * {@link PipedChannel}: a pair of connected piped streams.
+     */
+    PIPE {
+        @Override
+        public Channel newChannel() throws IOException {
+            return new PipedChannel();
+        }
+    },
+
+    /**
+     * {@link RingBufferChannel}: a lock-free single-producer/single-consumer ring buffer.
+     */
+    RING_BUFFER {
+        @Override
+        public Channel newChannel() {
+            return new RingBufferChannel();
+        }
+    },
+
+    /**
+     * {@link FrameChannel}: decoded {@link MeasurementFrame}s instead of bytes. Only for connections between two
+     * measurement filters; sources and sinks need one of the byte channels.
+     */
+    FRAME {
+        @Override
+        public Channel newChannel() {
+            return new FrameChannel();
+        }
+    };
+
+    /**
+     * Construct a new, unconnected channel of this type.
+     *
+     * @return the new channel
+     * @throws IOException thrown when the channel cannot be set up.
+     */
+    public abstract Channel newChannel() throws IOException;
+}
@@ -0,0 +1,218 @@
+package framework;
+
+import util.ConversionUtil;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Processes a measurement file in chunks side by side. Every frame of the file starts with a time measurement, so the
+ * file can be cut into chunks of about {@link #getChunkSize()} bytes, each moved forward to the next frame start, and
+ * every chunk run through a pipeline of its own. The chunks are forked onto a {@link ForkJoinPool} of
+ * {@code parallelism} workers and their outputs written in the order of the chunks, so the result is the same as
+ * running the whole file through a single pipeline.
+ *
+ * Subclasses run a chunk in {@link #scanChunk(int, long, long)}, usually by reading the byte range with a
+ * {@code FileSourceFilter} and collecting the outputs in memory. A pipeline with state carried from one frame to the
+ * next has to be handed the state at the start of its chunk; see {@code PressureValidityFilter} for an example.
+ *
+ * Cutting the file needs the measurements to be found without reading it from the start, so every measurement of the
+ * file must have the same length, as in the raw flight data files.
+ *
+ * @since 1.0.0
+ */
+public abstract class ChunkedScan {
+
+    /**
+     * Default number of bytes of the file per chunk.
+     */
+    public static final long DEFAULT_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    /**
+     * Number of chunks per worker run or waiting to be written before the scan waits for the oldest one.
+     */
+    private static final int CHUNKS_IN_FLIGHT_PER_WORKER = 2;
+
+    private final String fileName;
+
+    private final MeasurementConfig context;
+
+    private final int parallelism;
+
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Default constructor.
+     *
+     * @param fileName the absolute path of the file to be processed
+     * @param context the configuration object containing the length information of the measurements in the file
+     * @param parallelism the number of chunks processed at the same time
+     */
+    protected ChunkedScan(String fileName, MeasurementConfig context, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism: " + parallelism);
+        this.fileName = fileName;
+        this.context = context;
+        this.parallelism = parallelism;
+    }
+
+    public ChunkedScan useChunkSize(long chunkSize) {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("chunkSize: " + chunkSize);
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Template method for subclasses to process the bytes of the file from {@code start} inclusive to {@code end}
+     * exclusive, which hold whole frames. It is called from several threads at a time.
+     *
+     * @param index the index of the chunk, from 0
+     * @param start the position in the file the chunk starts at
+     * @param end the position in the file the chunk ends at
+     * @return the output of the chunk for every output of the scan, in the order given to
+     * {@link #run(long[], OutputStream...)}
+     * @throws Exception if processing fails; the scan fails with it
+     */
+    protected abstract byte[][] scanChunk(int index, long start, long end) throws Exception;
+
+    /**
+     * Cut the file into chunks at frame starts.
+     *
+     * @return the positions in the file the chunks start at, followed by the size of the file
+     * @throws IOException thrown when the file cannot be read.
+     */
+    public long[] cutAtFrames() throws IOException {
+        int recordLength = context.getIdLength() + uniformMeasurementLength();
+        FileInputStream in = new FileInputStream(fileName);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            ByteBuffer id = ByteBuffer.allocate(context.getIdLength());
+            List<Long> cuts = new ArrayList<Long>();
+            cuts.add(0L);
+            for (long target = chunkSize; target < size; target += chunkSize) {
+                // the first measurement starting at or after the target, moved on to the next time measurement
+                long cut = (target + recordLength - 1) / recordLength * recordLength;
+                while (cut < size && readId(channel, id, cut) != MeasurementConfig.ID_TIME)
+                    cut += recordLength;
+                if (cut >= size)
+                    break;
+                if (cut > cuts.get(cuts.size() - 1))
+                    cuts.add(cut);
+            }
+            cuts.add(size);
+
+            long[] result = new long[cuts.size()];
+            for (int i = 0; i < result.length; i++)
+                result[i] = cuts.get(i);
+            return result;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Process the chunks side by side and write their outputs in order.
+     *
+     * @param cuts the positions the chunks start at followed by the size of the file, see {@link #cutAtFrames()}
+     * @param outputs the streams to write the outputs of the chunks to
+     * @throws Exception the failure of the first chunk that failed, or of writing to an output
+     */
+    public void run(long[] cuts, OutputStream... outputs) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ArrayDeque<ForkJoinTask<byte[][]>> inFlight = new ArrayDeque<ForkJoinTask<byte[][]>>();
+        int maxInFlight = parallelism * CHUNKS_IN_FLIGHT_PER_WORKER;
+        try {
+            for (int i = 0; i + 1 < cuts.length; i++) {
+                if (inFlight.size() >= maxInFlight)
+                    write(inFlight.removeFirst(), outputs);
+                inFlight.addLast(pool.submit(new Chunk(i, cuts[i], cuts[i + 1])));
+            }
+            while (!inFlight.isEmpty())
+                write(inFlight.removeFirst(), outputs);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void write(ForkJoinTask<byte[][]> chunk, OutputStream[] outputs) throws Exception {
+        byte[][] output = chunk.join();
+        if (output.length != outputs.length)
+            throw new IllegalStateException("a chunk has " + output.length + " outputs but the scan has "
+                    + outputs.length);
+        for (int i = 0; i < outputs.length; i++)
+            outputs[i].write(output[i]);
+    }
+
+    /**
+     * The length all measurements of the file have.
+     */
+    private int uniformMeasurementLength() {
+        int length = -1;
+        for (int id : context.getExpectedIds()) {
+            if (length >= 0 && context.idForMeasurementLength(id) != length)
+                throw new IllegalStateException("measurements of different lengths, the file cannot be cut into "
+                        + "chunks");
+            length = context.idForMeasurementLength(id);
+        }
+        if (length < 0)
+            throw new IllegalStateException("no measurement is expected, the file cannot be cut into chunks");
+        return length;
+    }
+
+    private static int readId(FileChannel channel, ByteBuffer id, long position) throws IOException {
+        id.clear();
+        while (id.hasRemaining()) {
+            if (channel.read(id, position + id.position()) < 0)
+                return -1;
+        }
+        return ConversionUtil.convertToInt(id.array());
+    }
+
+    /**
+     * A chunk of the file, processed by a worker of the pool.
+     */
+    private class Chunk extends RecursiveTask<byte[][]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+        private final long start;
+        private final long end;
+
+        private Chunk(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected byte[][] compute() {
+            try {
+                return scanChunk(index, start, end);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("chunk " + index + " [" + start + ", " + end + ") failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package framework;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A filter that sorts the frames of a stream on their time, for recordings whose frames are not in time order, using
+ * about a given memory budget however long the stream is.
+ *
+ * Frames are collected as bytes into a run until the run reaches the memory budget. The run is then sorted with a
+ * stable merge sort of frame indices keyed on a primitive array of the frame times and spilled to a temporary file
+ * through a {@link FileChannel}. When the input port goes down, a stream that fitted in a single run is written
+ * straight from memory; otherwise the runs are merged back with a min-heap keyed on the time of the next frame of each
+ * run, every run read through a buffer of its own share of the budget. Frames with the same time keep the order they
+ * were read in. The temporary files are deleted as soon as the merge is done.
+ *
+ * The context must give the lengths of the measurements in the stream, as spilled frames are cut into measurements
+ * again when the output carries frames. A frame without a time measurement sorts before every frame with one.
+ *
+ * @since 1.0.0
+ */
+public class ExternalSortFilter extends FilterFramework {
+
+    /**
+     * Default number of bytes of memory the frames of a run may take.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * Number of bytes of memory a frame of a run takes besides its bytes: its time, offset and length, and two indices
+     * while the run is sorted.
+     */
+    private static final int FRAME_OVERHEAD = 8 + 4 + 4 + 4 + 4;
+
+    /**
+     * Number of bytes ahead of every frame in a run file: its time and its length.
+     */
+    private static final int RUN_HEADER_LENGTH = 8 + 4;
+
+    /**
+     * Smallest buffer a run file is written or read through.
+     */
+    private static final int MIN_IO_BUFFER_SIZE = 8 * 1024;
+
+    private static final int INITIAL_FRAMES = 1024;
+
+    /**
+     * The configuration object containing the length information of byte data.
+     */
+    protected final MeasurementConfig context;
+
+    /**
+     * The id of the input filter. It is used to lookup {@link Channel} by calling {@link #inputForKey(String)}.
+     */
+    protected String inputFilterId = null;
+
+    /**
+     * The id of the output filter. It is used to lookup {@link Channel} by calling {@link #outputForKey(String)}.
+     */
+    protected String outputFilterId = null;
+
+    private final long memoryBudget;
+
+    /**
+     * The directory the runs are spilled to, the default temporary directory if null.
+     */
+    private File tempDirectory = null;
+
+    /**
+     * The run being collected: the bytes of its frames back to back, and the time, offset and length of every frame.
+     */
+    private byte[] runBytes = new byte[0];
+    private ByteBuffer runBuffer = ByteBuffer.wrap(runBytes);
+    private long[] times = new long[INITIAL_FRAMES];
+    private int[] offsets = new int[INITIAL_FRAMES];
+    private int[] lengths = new int[INITIAL_FRAMES];
+    private int frameCount = 0;
+
+    /**
+     * The runs spilled so far, in the order they were collected.
+     */
+    private final List<Run> spilledRuns = new ArrayList<Run>();
+
+    /**
+     * Buffer collecting frames to be written to the output port in one call, when the output carries bytes.
+     */
+    private ByteBuffer pending;
+
+    /**
+     * Constructor with the {@link #DEFAULT_MEMORY_BUDGET}.
+     *
+     * @param filterId the filter id of this filter.
+     * @param context the configuration object containing the length information for byte data.
+     */
+    public ExternalSortFilter(String filterId, MeasurementConfig context) {
+        this(filterId, context, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Default constructor
+     *
+     * @param filterId the filter id of this filter.
+     * @param context the configuration object containing the length information for byte data.
+     * @param memoryBudget the number of bytes of memory the frames of a run may take.
+     */
+    public ExternalSortFilter(String filterId, MeasurementConfig context, long memoryBudget) {
+        super(filterId);
+        if (memoryBudget < MIN_IO_BUFFER_SIZE)
+            throw new IllegalArgumentException("memoryBudget: " + memoryBudget);
+        this.context = context;
+        this.memoryBudget = memoryBudget;
+    }
+
+    public void setTempDirectory(File tempDirectory) {
+        this.tempDirectory = tempDirectory;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Register input filter id and do integrity check
+     *
+     * @param inputFilter the input filter connected
+     */
+    @Override
+    protected void inputConnected(FilterFramework inputFilter) {
+        super.inputConnected(inputFilter);
+        if (this.inputFilterId != null)
+            throw new RuntimeException("A sorting filter can only connect to 1 input filter");
+        this.inputFilterId = inputFilter.filterId;
+    }
+
+    /**
+     * Register output filter id and do integrity check
+     *
+     * @param outputFilter the output filter connected
+     */
+    @Override
+    protected void outputConnected(FilterFramework outputFilter) {
+        if (this.outputFilterId != null)
+            throw new RuntimeException("A sorting filter can only connect to 1 filter");
+        this.outputFilterId = outputFilter.filterId;
+    }
+
+    /**
+     * Main execution method for this filter. It collects the frames read into runs, spilling every run that reaches
+     * the memory budget, and when input port goes down, writes the frames in time order and closes all ports.
+     */
+    @Override
+    public void run() {
+        if (!outputCarriesFrames(outputFilterId))
+            pending = ByteBuffer.allocate(Channel.TRANSFER_CHUNK_SIZE);
+        FrameReader reader = new FrameReader(this, inputFilterId, context);
+        try {
+            while (true) {
+                try {
+                    collect(reader.next());
+                } catch (EndOfStreamException e) {
+                    break;
+                }
+            }
+
+            if (spilledRuns.isEmpty()) {
+                int[] order = sortRun();
+                for (int i = 0; i < frameCount; i++)
+                    write(runBytes, offsets[order[i]], lengths[order[i]]);
+            } else {
+                if (frameCount > 0)
+                    spillRun();
+                releaseRun();
+                mergeRuns();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("filter " + filterId + " failed to spill or merge its runs", e);
+        } finally {
+            deleteRuns();
+        }
+
+        flushPending();
+        closeAllPorts();
+    }
+
+    /**
+     * Add the frame to the run being collected, spilling the run first if the frame would take it over the budget.
+     */
+    private void collect(MeasurementFrame frame) throws IOException {
+        int length = frame.byteLength();
+        long used = runBuffer.position() + (long) frameCount * FRAME_OVERHEAD;
+        if (frameCount > 0 && used + length + FRAME_OVERHEAD > memoryBudget)
+            spillRun();
+
+        if (runBuffer.remaining() < length)
+            growRunBytes(length);
+        if (frameCount == times.length) {
+            times = Arrays.copyOf(times, frameCount * 2);
+            offsets = Arrays.copyOf(offsets, frameCount * 2);
+            lengths = Arrays.copyOf(lengths, frameCount * 2);
+        }
+        times[frameCount] = frame.has(MeasurementConfig.ID_TIME)
+                ? frame.getLong(MeasurementConfig.ID_TIME) : Long.MIN_VALUE;
+        offsets[frameCount] = runBuffer.position();
+        lengths[frameCount] = length;
+        frameCount++;
+        frame.writeTo(runBuffer);
+    }
+
+    /**
+     * Grow the bytes of the run to fit {@code length} more bytes, doubling them up to the budget.
+     */
+    private void growRunBytes(int length) {
+        int used = runBuffer.position();
+        long capacity = Math.max(runBytes.length, MIN_IO_BUFFER_SIZE);
+        while (capacity < used + length)
+            capacity *= 2;
+        capacity = Math.max(Math.min(capacity, memoryBudget), used + length);
+        if (capacity > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("filter " + filterId + " cannot hold a run of " + capacity + " bytes");
+        runBytes = Arrays.copyOf(runBytes, (int) capacity);
+        runBuffer = ByteBuffer.wrap(runBytes);
+        runBuffer.position(used);
+    }
+
+    private void releaseRun() {
+        runBytes = new byte[0];
+        runBuffer = ByteBuffer.wrap(runBytes);
+        times = new long[0];
+        offsets = new int[0];
+        lengths = new int[0];
+        frameCount = 0;
+    }
+
+    /**
+     * @return the indices of the frames of the run, sorted on their time, frames with the same time in the order
+     * they were read.
+     */
+    private int[] sortRun() {
+        int[] order = new int[frameCount];
+        for (int i = 0; i < frameCount; i++)
+            order[i] = i;
+        mergeSort(times, order, new int[frameCount], 0, frameCount);
+        return order;
+    }
+
+    /**
+     * Stable merge sort of {@code order} from {@code from} inclusive to {@code to} exclusive on the keys they index.
+     * Halves already in order are not merged, so a run that is mostly in order costs little more than a pass.
+     */
+    private static void mergeSort(long[] keys, int[] order, int[] scratch, int from, int to) {
+        if (to - from < 2)
+            return;
+        int mid = (from + to) >>> 1;
+        mergeSort(keys, order, scratch, from, mid);
+        mergeSort(keys, order, scratch, mid, to);
+        if (keys[order[mid - 1]] <= keys[order[mid]])
+            return;
+
+        System.arraycopy(order, from, scratch, from, to - from);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to)
+            order[k++] = keys[scratch[j]] < keys[scratch[i]] ? scratch[j++] : scratch[i++];
+        while (i < mid)
+            order[k++] = scratch[i++];
+        while (j < to)
+            order[k++] = scratch[j++];
+    }
+
+    /**
+     * Sort the run being collected, write it to a new temporary file, each frame behind its time and length, and
+     * start a new run.
+     */
+    private void spillRun() throws IOException {
+        int[] order = sortRun();
+        Path path = tempDirectory == null
+                ? Files.createTempFile(filterId + "-run-", ".tmp")
+                : Files.createTempFile(tempDirectory.toPath(), filterId + "-run-", ".tmp");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        spilledRuns.add(new Run(channel));
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(MIN_IO_BUFFER_SIZE, Channel.TRANSFER_CHUNK_SIZE));
+        for (int i = 0; i < frameCount; i++) {
+            int frame = order[i];
+            if (buffer.remaining() < RUN_HEADER_LENGTH + lengths[frame])
+                flush(channel, buffer);
+            buffer.putLong(times[frame]).putInt(lengths[frame]);
+            if (buffer.remaining() < lengths[frame]) {
+                flush(channel, buffer);
+                writeFully(channel, ByteBuffer.wrap(runBytes, offsets[frame], lengths[frame]));
+            } else {
+                buffer.put(runBytes, offsets[frame], lengths[frame]);
+            }
+        }
+        flush(channel, buffer);
+
+        runBuffer.clear();
+        frameCount = 0;
+    }
+
+    /**
+     * Write the bytes put into the buffer to the file and clear it.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Merge the spilled runs, writing the frame with the smallest time next, the run spilled first on the same time.
+     */
+    private void mergeRuns() throws IOException {
+        int bufferSize = (int) Math.max(MIN_IO_BUFFER_SIZE,
+                Math.min(memoryBudget / spilledRuns.size(), Channel.TRANSFER_CHUNK_SIZE * 16L));
+        TimeHeap heap = new TimeHeap(spilledRuns.size());
+        for (int i = 0; i < spilledRuns.size(); i++) {
+            Run run = spilledRuns.get(i);
+            run.startReading(bufferSize);
+            if (run.next())
+                heap.insert(run.time, i);
+        }
+
+        while (!heap.isEmpty()) {
+            int i = heap.top();
+            Run run = spilledRuns.get(i);
+            write(run.buffer.array(), run.buffer.position(), run.length);
+            run.buffer.position(run.buffer.position() + run.length);
+            if (run.next())
+                heap.replaceTop(run.time, i);
+            else
+                heap.removeTop();
+        }
+    }
+
+    private void deleteRuns() {
+        for (Run run : spilledRuns) {
+            try {
+                run.channel.close();
+            } catch (IOException e) {
+                System.out.println("\n" + this.getName() + " failed to delete a run::" + e);
+            }
+        }
+        spilledRuns.clear();
+    }
+
+    /**
+     * Write the bytes of a frame to the output port, collecting them in {@link #pending} if the output carries bytes,
+     * or cutting them into a frame again if it carries frames.
+     */
+    private void write(byte[] bytes, int offset, int length) {
+        if (pending == null) {
+            writeFrameToOutput(toFrame(bytes, offset, length), outputFilterId);
+            return;
+        }
+        if (pending.remaining() < length) {
+            flushPending();
+            if (pending.capacity() < length) {
+                writeToOutput(ByteBuffer.wrap(bytes, offset, length), outputFilterId);
+                return;
+            }
+        }
+        pending.put(bytes, offset, length);
+    }
+
+    private void flushPending() {
+        if (pending == null || pending.position() == 0)
+            return;
+        pending.flip();
+        writeToOutput(pending, outputFilterId);
+        pending.clear();
+    }
+
+    /**
+     * Cut the bytes of a frame into measurements, using the lengths of the {@link #context}.
+     */
+    private MeasurementFrame toFrame(byte[] bytes, int offset, int length) {
+        MeasurementFrame frame = new MeasurementFrame(context);
+        int idLength = context.getIdLength();
+        int end = offset + length;
+        while (offset < end) {
+            int id = 0;
+            for (int i = 0; i < idLength; i++)
+                id = (id << 8) | (bytes[offset++] & 0xFF);
+            int measurementLength = context.idForMeasurementLength(id);
+            frame.setBytes(id, Arrays.copyOfRange(bytes, offset, offset + measurementLength), context.typeOf(id));
+            offset += measurementLength;
+        }
+        return frame;
+    }
+
+    /**
+     * A run spilled to a temporary file, and the frame of it to be merged next once reading has started.
+     */
+    private static class Run {
+
+        private final FileChannel channel;
+
+        private long position = 0;
+
+        private ByteBuffer buffer;
+
+        /**
+         * Time and length of the next frame, whose bytes start at the position of {@link #buffer}.
+         */
+        private long time;
+        private int length;
+
+        private Run(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void startReading(int bufferSize) {
+            buffer = ByteBuffer.allocate(bufferSize);
+            buffer.limit(0);
+        }
+
+        /**
+         * Read the header of the next frame and make sure its bytes are in {@link #buffer}.
+         *
+         * @return false if the run has ended
+         */
+        private boolean next() throws IOException {
+            if (!fill(RUN_HEADER_LENGTH))
+                return false;
+            time = buffer.getLong();
+            length = buffer.getInt();
+            if (!fill(length))
+                throw new IOException("run ends within a frame of " + length + " bytes");
+            return true;
+        }
+
+        /**
+         * Read from the file until {@link #buffer} has at least {@code count} bytes remaining, growing it if needed.
+         *
+         * @return false if the file ends first
+         */
+        private boolean fill(int count) throws IOException {
+            if (buffer.remaining() >= count)
+                return true;
+            if (buffer.capacity() < count) {
+                ByteBuffer larger = ByteBuffer.allocate(count);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < count) {
+                int read = channel.read(buffer, position);
+                if (read < 0)
+                    break;
+                position += read;
+            }
+            buffer.flip();
+            return buffer.remaining() >= count;
+        }
+    }
+}
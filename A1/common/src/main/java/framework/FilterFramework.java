@@ -1,7 +1,7 @@
 package framework;
 
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -13,29 +13,47 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * @since 1.0.0
  */
-public abstract class FilterFramework extends Thread {
+public abstract class FilterFramework implements Runnable {
 
     /**
-     * The id of this filter. It will be used as the name of the thread and as they key to look up
+     * The id of this filter. It will be used as the name of the filter and as they key to look up
      * input ports and output ports from the port registries.
      */
     protected final String filterId;
 
+    /**
+     * The name of this filter, used in log messages and as the name of the thread running it.
+     */
+    private final String name;
+
     /**
      * The input port registry of this filter. The registry is keyed by the filterId of the connecting filter.
      */
-    protected Map<String, PipedInputStream> inputs = new ConcurrentHashMap<String, PipedInputStream>();
+    protected Map<String, Channel> inputs = new ConcurrentHashMap<String, Channel>();
 
     /**
      * The output port registry of this filter. The registry is keyed by the filterId of the connecting filter.
      */
-    protected Map<String, PipedOutputStream> outputs = new ConcurrentHashMap<String, PipedOutputStream>();
+    protected Map<String, Channel> outputs = new ConcurrentHashMap<String, Channel>();
 
     /**
      * The input filter registry of this filter. The registry is keyed by the filterId of the connecting filter.
      */
     protected Map<String, FilterFramework> inputFilters = new HashMap<String, FilterFramework>();
 
+    /**
+     * The runtime metrics of this filter, null unless its pipeline is started with them, see
+     * {@link PipelineMetrics#register(FilterFramework)}. Set before the filter starts, and only updated by the
+     * thread running it.
+     */
+    FilterMetrics metrics;
+
+    /**
+     * Number of calls left until the next one is sampled as a flight event, see {@link #isSampled()}. Only touched
+     * by the thread running the filter.
+     */
+    private int unsampled;
+
     /**
      * Default constructor of the filter framework.
      *
@@ -43,7 +61,81 @@ public abstract class FilterFramework extends Thread {
      */
     public FilterFramework(String filterId) {
         this.filterId = filterId;
-        this.setName("Thread-" + filterId);
+        this.name = "Thread-" + filterId;
+    }
+
+    /**
+     * @return the name of this filter.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the runtime metrics of this filter, null unless its pipeline is started with them.
+     */
+    public FilterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The backlog of the frames this filter holds back, if any, whose counters are part of the metrics of this
+     * filter. By default, a filter holds no frames back; subclasses with a {@link FrameBacklog} override it.
+     *
+     * @return the backlog, or null
+     */
+    public FrameBacklog getBacklog() {
+        return null;
+    }
+
+    /**
+     * Run this filter on the calling thread until it has finished. {@link FilterRunner}s call this rather than
+     * {@link #run()}: closing the output channels is the end-of-stream marker for the downstream filters, so a filter
+     * that dies of an exception must still close them before the exception is reported.
+     *
+     * The start and the stop of the filter are recorded as flight events, see {@link FlightEvents}.
+     */
+    public final void execute() {
+        Object stop = FlightEvents.filterStarted(this);
+        try {
+            run();
+            FlightEvents.filterStopped(stop, false);
+        } catch (Throwable Error) {
+            closeAllPorts();
+            FlightEvents.filterStopped(stop, true);
+            throw Error;
+        }
+    }
+
+    /**
+     * Whether the current call, of the transformation or of any other frequent step of this filter, is one of the
+     * calls recorded as a flight event: one in {@link FlightEvents#SAMPLE_INTERVAL}, starting with the first.
+     *
+     * @return true if the call is to be recorded
+     */
+    final boolean isSampled() {
+        if (--unsampled > 0)
+            return false;
+        unsampled = FlightEvents.SAMPLE_INTERVAL;
+        return FlightEvents.ENABLED;
+    }
+
+    /**
+     * Begin the flight event of a call of the transformation of this filter, if the call is sampled.
+     *
+     * @param measurements the number of measurements handed to the transformation
+     * @return the event to hand to {@link FlightEvents#processingEnded(Object)}, or null
+     */
+    final Object sampleProcessing(int measurements) {
+        return isSampled() ? FlightEvents.processingStarted(this, measurements) : null;
+    }
+
+    /**
+     * Run this filter on a platform thread of its own, see {@link ThreadPerFilterRunner}. Plumbers starting a whole
+     * pipeline should rather hand all filters to one {@link FilterRunner}.
+     */
+    public void start() {
+        new ThreadPerFilterRunner().start(this);
     }
 
     /**
@@ -67,131 +159,362 @@ public abstract class FilterFramework extends Thread {
 
     /**
      * Connect the filter represented by the {@code Filter} object as the input to the filter represented by
-     * {@code this}. Upon connecting, a new {@link PipedInputStream} is constructed and entered into the input
-     * registry with the {@link FilterFramework#filterId} of the {@code Filter} object. A new {@link PipedOutputStream}
-     * is also constructed and entered into the output registry of {@code Filter} keyed by the {@link FilterFramework#filterId}
-     * of {@code this} object. Then the {@link PipedInputStream} and {@link PipedOutputStream} are connected together.
-     * Finally, event callbacks like {@link #inputConnected(FilterFramework)} and {@link #outputConnected(FilterFramework)}
-     * are notified so the subclasses can react to the connection event.
+     * {@code this} using a {@link ChannelType#PIPE} channel.
      *
      * @param Filter the filter requesting connection to this filter as input
+     * @see #connect(FilterFramework, ChannelType)
      */
     public void connect(FilterFramework Filter) {
-        // update input registry
-        if (!this.inputs.containsKey(Filter.filterId))
-            this.inputs.put(Filter.filterId, new PipedInputStream());
-
-        // update the connecting filter's output registry
-        if (!Filter.outputs.containsKey(this.filterId))
-            Filter.outputs.put(this.filterId, new PipedOutputStream());
+        connect(Filter, ChannelType.PIPE);
+    }
 
+    /**
+     * Connect the filter represented by the {@code Filter} object as the input to the filter represented by
+     * {@code this}. Upon connecting, a new {@link Channel} of the given {@code type} is constructed and entered into
+     * the input registry with the {@link FilterFramework#filterId} of the {@code Filter} object. The same channel is
+     * also entered into the output registry of {@code Filter} keyed by the {@link FilterFramework#filterId} of
+     * {@code this} object. Finally, event callbacks like {@link #inputConnected(FilterFramework)} and
+     * {@link #outputConnected(FilterFramework)} are notified so the subclasses can react to the connection event.
+     *
+     * @param Filter the filter requesting connection to this filter as input
+     * @param type the type of channel to wire between the two filters
+     */
+    public void connect(FilterFramework Filter, ChannelType type) {
         try {
-            // connect the two piped streams
-            PipedInputStream InputReadPort = inputForKey(Filter.filterId);
-            PipedOutputStream OutputWritePort = Filter.outputForKey(this.filterId);
-            InputReadPort.connect(OutputWritePort);
+            // update input registry and the connecting filter's output registry with the same channel
+            Channel channel = this.inputs.get(Filter.filterId);
+            if (channel == null) {
+                channel = type.newChannel();
+                channel.name = Filter.filterId + "->" + this.filterId;
+                this.inputs.put(Filter.filterId, channel);
+            }
+            Filter.outputs.put(this.filterId, channel);
 
             // notify event callbacks
             this.inputConnected(Filter);
             Filter.outputConnected(this);
-        } catch(Exception Error) {
+        } catch (IOException Error) {
             System.out.println( "\n" + this.getName() + " FilterFramework error connecting::"+ Error );
         }
     }
 
     /**
-     * Read a byte of data from the {@link PipedInputStream} represented by the {@code key}. Subclasses are expected
-     * to encapsulate this behavior and provide a function making more sense to its context.
+     * Read a byte of data from the {@link Channel} represented by the {@code key}. Subclasses are expected
+     * to encapsulate this behavior and provide a function making more sense to its context. The call blocks until
+     * data arrives; the channel wakes it up as soon as the upstream filter writes or closes its end.
      *
-     * @param key the filterId key to the corresponding {@link PipedInputStream} in the input registry.
+     * @param key the filterId key to the corresponding {@link Channel} in the input registry.
      * @return a byte of data
-     * @throws EndOfStreamException when the stream is closed or no longer alive
+     * @throws EndOfStreamException when the upstream filter has closed the channel and all data has been read, or
+     * the channel is broken
      */
     byte readFromInput(String key) throws EndOfStreamException {
-        PipedInputStream InputReadPort = inputForKey(key);
-        byte datum = 0;
+        Channel InputReadPort = inputForKey(key);
+        long started = metrics == null ? 0L : System.nanoTime();
+        int datum;
 
         try {
-            while (InputReadPort.available() == 0) {
-                if (endOfInputForKey(key)) {
+            datum = InputReadPort.read();
+        } catch (IOException Error) {
+            throw new EndOfStreamException(key, "Input stream broken: " + Error.getMessage());
+        }
+
+        if (datum < 0)
+            throw new EndOfStreamException(key, "End of input stream reached");
+        if (metrics != null)
+            metrics.bytesRead(1, System.nanoTime() - started);
+        return (byte) datum;
+    }
+
+    /**
+     * Read exactly {@code len} bytes of data from the {@link Channel} represented by the {@code key} into an array.
+     * The call blocks until all bytes have arrived. Reading a whole measurement this way crosses the channel in one
+     * call instead of one call per byte.
+     *
+     * @param key the filterId key to the corresponding {@link Channel} in the input registry.
+     * @param b the buffer into which the data is read.
+     * @param off the start offset in {@code b}.
+     * @param len the number of bytes to read.
+     * @throws EndOfStreamException when the stream ends (or breaks) before {@code len} bytes have been read.
+     */
+    void readFromInput(String key, byte[] b, int off, int len) throws EndOfStreamException {
+        Channel InputReadPort = inputForKey(key);
+        long started = metrics == null ? 0L : System.nanoTime();
+        int total = len;
+
+        try {
+            while (len > 0) {
+                int count = InputReadPort.read(b, off, len);
+                if (count < 0)
                     throw new EndOfStreamException(key, "End of input stream reached");
-                }
-                sleep(250);
+                off += count;
+                len -= count;
             }
-        } catch (EndOfStreamException Error) {
-            throw Error;
-        } catch (Exception Error) {
-            System.out.println( "\n" + this.getName() + " Error in read port wait loop::" + Error );
+        } catch (IOException Error) {
+            throw new EndOfStreamException(key, "Input stream broken: " + Error.getMessage());
         }
 
+        if (metrics != null)
+            metrics.bytesRead(total, System.nanoTime() - started);
+    }
+
+    /**
+     * Read bytes of data from the {@link Channel} represented by the {@code key} until the buffer has no
+     * {@link ByteBuffer#remaining()} space left.
+     *
+     * @param key the filterId key to the corresponding {@link Channel} in the input registry.
+     * @param dst the buffer into which the data is read.
+     * @throws EndOfStreamException when the stream ends (or breaks) before the buffer has been filled.
+     */
+    void readFromInput(String key, ByteBuffer dst) throws EndOfStreamException {
+        Channel InputReadPort = inputForKey(key);
+        long started = metrics == null ? 0L : System.nanoTime();
+        int total = dst.remaining();
+
         try {
-            datum = (byte) InputReadPort.read();
-            return datum;
-        } catch (Exception Error) {
-            System.out.println( "\n" + this.getName() + " Pipe read error::" + Error );
-            return datum;
+            while (dst.hasRemaining()) {
+                if (InputReadPort.read(dst) < 0)
+                    throw new EndOfStreamException(key, "End of input stream reached");
+            }
+        } catch (IOException Error) {
+            throw new EndOfStreamException(key, "Input stream broken: " + Error.getMessage());
+        }
+
+        if (metrics != null)
+            metrics.bytesRead(total, System.nanoTime() - started);
+    }
+
+    /**
+     * Read whatever bytes of data are available from the {@link Channel} represented by the {@code key} into an
+     * array, up to {@code len} bytes. The call only blocks until the first byte has arrived, so a consumer that does
+     * not care about measurement boundaries, e.g. a sink, can take the data in chunks as it comes.
+     *
+     * @param key the filterId key to the corresponding {@link Channel} in the input registry.
+     * @param b the buffer into which the data is read.
+     * @param off the start offset in {@code b}.
+     * @param len the maximum number of bytes to read.
+     * @return the number of bytes read, at least 1.
+     * @throws EndOfStreamException when the stream has ended (or broken) and every byte has been read.
+     */
+    int readAvailableFromInput(String key, byte[] b, int off, int len) throws EndOfStreamException {
+        Channel InputReadPort = inputForKey(key);
+        long started = metrics == null ? 0L : System.nanoTime();
+        int count;
+
+        try {
+            count = InputReadPort.read(b, off, len);
+        } catch (IOException Error) {
+            throw new EndOfStreamException(key, "Input stream broken: " + Error.getMessage());
         }
+
+        if (count < 0)
+            throw new EndOfStreamException(key, "End of input stream reached");
+        if (metrics != null)
+            metrics.bytesRead(count, System.nanoTime() - started);
+        return count;
     }
 
     /**
-     * Write a byte to the {@link PipedOutputStream} represented by the {@code key}. Subclasses are expected
+     * Write a byte to the {@link Channel} represented by the {@code key}. Subclasses are expected
      * to encapsulate this behavior and provide a function making more sense to its context.
      *
      * @param datum the byte data to be written
-     * @param key the filterId key to the corresponding {@link PipedOutputStream} in the output registry.
+     * @param key the filterId key to the corresponding {@link Channel} in the output registry.
      */
     void writeToOutput(byte datum, String key) {
-        PipedOutputStream OutputWritePort = outputForKey(key);
+        Channel OutputWritePort = outputForKey(key);
+        long started = metrics == null ? 0L : System.nanoTime();
         try {
             OutputWritePort.write((int) datum);
             OutputWritePort.flush();
+            if (metrics != null)
+                metrics.bytesWritten(1, System.nanoTime() - started);
+        } catch (Exception Error) {
+            System.out.println("\n" + this.getName() + " Pipe write error::" + Error );
+        }
+    }
+
+    /**
+     * Write {@code len} bytes from an array to the {@link Channel} represented by the {@code key}.
+     *
+     * @param b the data to be written
+     * @param off the start offset in {@code b}.
+     * @param len the number of bytes to write.
+     * @param key the filterId key to the corresponding {@link Channel} in the output registry.
+     */
+    void writeToOutput(byte[] b, int off, int len, String key) {
+        Channel OutputWritePort = outputForKey(key);
+        long started = metrics == null ? 0L : System.nanoTime();
+        try {
+            OutputWritePort.write(b, off, len);
+            OutputWritePort.flush();
+            if (metrics != null)
+                metrics.bytesWritten(len, System.nanoTime() - started);
+        } catch (Exception Error) {
+            System.out.println("\n" + this.getName() + " Pipe write error::" + Error );
+        }
+    }
+
+    /**
+     * Write the remaining bytes of a buffer to the {@link Channel} represented by the {@code key}.
+     *
+     * @param src the data to be written
+     * @param key the filterId key to the corresponding {@link Channel} in the output registry.
+     */
+    void writeToOutput(ByteBuffer src, String key) {
+        Channel OutputWritePort = outputForKey(key);
+        long started = metrics == null ? 0L : System.nanoTime();
+        int length = src.remaining();
+        try {
+            OutputWritePort.write(src);
+            OutputWritePort.flush();
+            if (metrics != null)
+                metrics.bytesWritten(length, System.nanoTime() - started);
+        } catch (Exception Error) {
+            System.out.println("\n" + this.getName() + " Pipe write error::" + Error );
+        }
+    }
+
+    /**
+     * Pass all remaining data from the {@link Channel} represented by {@code inputKey} to the {@link Channel}
+     * represented by {@code outputKey} as is, in chunks of whatever is available. Frames are passed on frame by frame
+     * (serialized if the output carries bytes); bytes cannot be passed on to an output carrying frames this way since
+     * the framework alone doesn't know how to cut them into measurements.
+     *
+     * @param inputKey the filterId key to the corresponding {@link Channel} in the input registry.
+     * @param outputKey the filterId key to the corresponding {@link Channel} in the output registry.
+     * @throws EndOfStreamException when the input stream has been drained; always thrown eventually.
+     */
+    void transferToOutput(String inputKey, String outputKey) throws EndOfStreamException {
+        if (inputCarriesFrames(inputKey)) {
+            while (true)
+                writeFrameToOutput(readFrameFromInput(inputKey), outputKey);
+        }
+
+        byte[] chunk = new byte[Channel.TRANSFER_CHUNK_SIZE];
+
+        while (true) {
+            int count = readAvailableFromInput(inputKey, chunk, 0, chunk.length);
+            writeToOutput(chunk, 0, count, outputKey);
+        }
+    }
+
+    /**
+     * Whether the {@link Channel} represented by {@code key} in the input registry carries {@link MeasurementFrame}s
+     * rather than bytes.
+     *
+     * @param key the filterId key to the corresponding {@link Channel} in the input registry.
+     * @return true if the input is a {@link FrameChannel}
+     */
+    protected boolean inputCarriesFrames(String key) {
+        return inputForKey(key) instanceof FrameChannel;
+    }
+
+    /**
+     * Whether the {@link Channel} represented by {@code key} in the output registry carries {@link MeasurementFrame}s
+     * rather than bytes.
+     *
+     * @param key the filterId key to the corresponding {@link Channel} in the output registry.
+     * @return true if the output is a {@link FrameChannel}
+     */
+    protected boolean outputCarriesFrames(String key) {
+        return outputForKey(key) instanceof FrameChannel;
+    }
+
+    /**
+     * Read a frame from the {@link FrameChannel} represented by the {@code key}, blocking until one arrives.
+     *
+     * @param key the filterId key to the corresponding {@link FrameChannel} in the input registry.
+     * @return the frame read
+     * @throws EndOfStreamException when the upstream filter has closed the channel and all frames have been read, or
+     * the channel is broken
+     */
+    MeasurementFrame readFrameFromInput(String key) throws EndOfStreamException {
+        FrameChannel InputReadPort = (FrameChannel) inputForKey(key);
+        long started = metrics == null ? 0L : System.nanoTime();
+        MeasurementFrame frame;
+
+        try {
+            frame = InputReadPort.readFrame();
+        } catch (IOException Error) {
+            throw new EndOfStreamException(key, "Input stream broken: " + Error.getMessage());
+        }
+
+        if (frame == null)
+            throw new EndOfStreamException(key, "End of input stream reached");
+        if (metrics != null)
+            metrics.frameRead(frame.size(), System.nanoTime() - started);
+        return frame;
+    }
+
+    /**
+     * Write a frame to the {@link Channel} represented by the {@code key}. A {@link FrameChannel} takes the frame as
+     * is; any other channel gets it serialized to bytes, which is where the frame transport meets the byte transport.
+     *
+     * @param frame the frame to be written
+     * @param key the filterId key to the corresponding {@link Channel} in the output registry.
+     */
+    void writeFrameToOutput(MeasurementFrame frame, String key) {
+        Channel OutputWritePort = outputForKey(key);
+        if (!(OutputWritePort instanceof FrameChannel)) {
+            byte[] bytes = frame.toBytes();
+            if (metrics != null)
+                metrics.frameWritten(frame.size(), 0L);
+            writeToOutput(bytes, 0, bytes.length, key);
+            return;
+        }
+
+        long started = metrics == null ? 0L : System.nanoTime();
+        try {
+            int measurements = frame.size();
+            ((FrameChannel) OutputWritePort).writeFrame(frame);
+            if (metrics != null)
+                metrics.frameWritten(measurements, System.nanoTime() - started);
         } catch (Exception Error) {
             System.out.println("\n" + this.getName() + " Pipe write error::" + Error );
         }
     }
 
     /**
-     * Whether the {@link PipedInputStream} represented by {@code key} has reached the end.
+     * Whether the {@link Channel} represented by {@code key} has reached the end.
      *
-     * @param key the filterId key to the corresponding {@link PipedInputStream} in the input registry.
+     * @param key the filterId key to the corresponding {@link Channel} in the input registry.
      * @return whether the input stream has ended.
      */
     protected boolean endOfInputForKey(String key) {
-        FilterFramework InputFilter = inputFilterForKey(key);
-        return !InputFilter.isAlive();
+        return inputForKey(key).isEndOfStream();
     }
 
     /**
-     * Close the {@link PipedInputStream} represented by {@code key}.
+     * Close the reading end of the {@link Channel} represented by {@code key}.
      *
-     * @param key the filterId key to the corresponding {@link PipedInputStream} in the input registry.
+     * @param key the filterId key to the corresponding {@link Channel} in the input registry.
      */
     protected void closeInputForKey(String key) {
-        PipedInputStream InputReadPort = inputForKey(key);
+        Channel InputReadPort = inputForKey(key);
         try {
-            InputReadPort.close();
+            InputReadPort.closeInput();
         } catch (Exception Error) {
             System.out.println( "\n" + this.getName() + " ClosePorts error::" + Error );
         }
     }
 
     /**
-     * Close the {@link PipedOutputStream} represented by {@code key}.
+     * Close the writing end of the {@link Channel} represented by {@code key}.
      *
-     * @param key the filterId key to the corresponding {@link PipedOutputStream} in the output registry.
+     * @param key the filterId key to the corresponding {@link Channel} in the output registry.
      */
     void closeOutputForKey(String key) {
-        PipedOutputStream OutputWritePort = outputForKey(key);
+        Channel OutputWritePort = outputForKey(key);
         try {
-            OutputWritePort.close();
+            OutputWritePort.closeOutput();
         } catch (Exception Error) {
             System.out.println( "\n" + this.getName() + " ClosePorts error::" + Error );
         }
     }
 
     /**
-     * Close all registered {@link PipedInputStream} and {@link PipedOutputStream} connections registered in the
-     * input registry and output registry.
+     * Close all {@link Channel} connections registered in the input registry and output registry.
      */
     void closeAllPorts() {
         for (String key : inputs.keySet())
@@ -201,22 +524,22 @@ public abstract class FilterFramework extends Thread {
     }
 
     /**
-     * Utility method to retrieve the {@link PipedInputStream} from the input registry.
+     * Utility method to retrieve the {@link Channel} from the input registry.
      *
-     * @param key the filterId key to the corresponding {@link PipedInputStream} in the input registry.
-     * @return the registered input stream
+     * @param key the filterId key to the corresponding {@link Channel} in the input registry.
+     * @return the registered input channel
      */
-    protected PipedInputStream inputForKey(String key) {
+    protected Channel inputForKey(String key) {
         return inputs.get(key);
     }
 
     /**
-     * Utility method to retrieve the {@link PipedOutputStream} from the output registry.
+     * Utility method to retrieve the {@link Channel} from the output registry.
      *
-     * @param key the filterId key to the corresponding {@link PipedOutputStream} in the output registry.
-     * @return the registered output stream
+     * @param key the filterId key to the corresponding {@link Channel} in the output registry.
+     * @return the registered output channel
      */
-    protected PipedOutputStream outputForKey(String key) {
+    protected Channel outputForKey(String key) {
         return outputs.get(key);
     }
 
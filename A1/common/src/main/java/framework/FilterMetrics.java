@@ -0,0 +1,283 @@
+package framework;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The runtime counters of a filter: what it has read and written, how long it has waited on its ports, what is
+ * waiting in its input ports and how long its transformation takes. {@link FilterFramework} and the filter templates
+ * update them as the filter runs, on the thread of the filter; the counters can be read from any thread at any time,
+ * through JMX or a {@link PipelineMetrics} snapshot.
+ *
+ * Since only the thread of the filter writes them, the counters are updated with a plain read and an ordered write,
+ * with neither a lock nor a compare-and-set, and padded so the counters of filters running side by side do not share
+ * a cache line.
+ *
+ * Filters only keep metrics when their pipeline is started with them, see {@link PipelineConfig#METRICS_PROPERTY};
+ * otherwise the ports and templates skip the bookkeeping altogether.
+ *
+ * @since 1.0.0
+ */
+public class FilterMetrics implements FilterMetricsMXBean {
+
+    /**
+     * Number of longs in front of and behind the counters, a cache line of 64 bytes each.
+     */
+    private static final int PADDING = 8;
+
+    /**
+     * Indexes of the counters.
+     */
+    private static final int BYTES_IN = PADDING;
+    private static final int BYTES_OUT = PADDING + 1;
+    private static final int MEASUREMENTS_IN = PADDING + 2;
+    private static final int MEASUREMENTS_OUT = PADDING + 3;
+    private static final int FRAMES_IN = PADDING + 4;
+    private static final int FRAMES_OUT = PADDING + 5;
+    private static final int READ_WAIT_NANOS = PADDING + 6;
+    private static final int WRITE_WAIT_NANOS = PADDING + 7;
+
+    private final String pipeline;
+
+    private final FilterFramework filter;
+
+    private final AtomicLongArray counters = new AtomicLongArray(PADDING + 8 + PADDING);
+
+    /**
+     * Durations of the calls of the transformation of the filter: {@link SimpleFilter#doTransform(int, byte[])} or
+     * {@link SimpleFilter#transformFrame(MeasurementFrame)}, the routing of a {@link SplittingFilterTemplate} or the
+     * processing of the data read by an {@link AggregatingFilterTemplate}.
+     */
+    private final LatencyHistogram transformLatency = new LatencyHistogram();
+
+    /**
+     * Default constructor.
+     *
+     * @param pipeline the name of the pipeline the filter belongs to
+     * @param filter the filter to keep the metrics of
+     */
+    public FilterMetrics(String pipeline, FilterFramework filter) {
+        this.pipeline = pipeline;
+        this.filter = filter;
+    }
+
+    /**
+     * Count bytes read from an input port.
+     *
+     * @param count the number of bytes
+     * @param nanos the time the read took
+     */
+    void bytesRead(int count, long nanos) {
+        add(BYTES_IN, count);
+        add(READ_WAIT_NANOS, nanos);
+    }
+
+    /**
+     * Count bytes written to an output port.
+     *
+     * @param count the number of bytes
+     * @param nanos the time the write took
+     */
+    void bytesWritten(int count, long nanos) {
+        add(BYTES_OUT, count);
+        add(WRITE_WAIT_NANOS, nanos);
+    }
+
+    /**
+     * Count a frame read, from a {@link FrameChannel} or collected from bytes.
+     *
+     * @param measurements the number of measurements of the frame
+     * @param nanos the time the read took, 0 if the time is counted with the bytes
+     */
+    void frameRead(int measurements, long nanos) {
+        add(FRAMES_IN, 1);
+        add(MEASUREMENTS_IN, measurements);
+        add(READ_WAIT_NANOS, nanos);
+    }
+
+    /**
+     * Count a frame written, to a {@link FrameChannel} or serialized to bytes.
+     *
+     * @param measurements the number of measurements of the frame
+     * @param nanos the time the write took, 0 if the time is counted with the bytes
+     */
+    void frameWritten(int measurements, long nanos) {
+        add(FRAMES_OUT, 1);
+        add(MEASUREMENTS_OUT, measurements);
+        add(WRITE_WAIT_NANOS, nanos);
+    }
+
+    /**
+     * Count a measurement read on its own, outside of a frame.
+     */
+    void measurementRead() {
+        add(MEASUREMENTS_IN, 1);
+    }
+
+    /**
+     * Count a measurement written on its own, outside of a frame.
+     */
+    void measurementWritten() {
+        add(MEASUREMENTS_OUT, 1);
+    }
+
+    /**
+     * Record a call of the transformation of the filter.
+     *
+     * @param nanos the time the call took
+     */
+    void transformed(long nanos) {
+        transformLatency.record(nanos);
+    }
+
+    /**
+     * Add to a counter. Only the thread of the filter calls it, so the sum cannot get lost between the read and the
+     * write.
+     */
+    private void add(int counter, long value) {
+        counters.lazySet(counter, counters.get(counter) + value);
+    }
+
+    /**
+     * @return the durations of the calls of the transformation of the filter.
+     */
+    public LatencyHistogram getTransformLatency() {
+        return transformLatency;
+    }
+
+    @Override
+    public String getPipeline() {
+        return pipeline;
+    }
+
+    @Override
+    public String getFilterId() {
+        return filter.filterId;
+    }
+
+    @Override
+    public long getBytesIn() {
+        return counters.get(BYTES_IN);
+    }
+
+    @Override
+    public long getBytesOut() {
+        return counters.get(BYTES_OUT);
+    }
+
+    @Override
+    public long getMeasurementsIn() {
+        return counters.get(MEASUREMENTS_IN);
+    }
+
+    @Override
+    public long getMeasurementsOut() {
+        return counters.get(MEASUREMENTS_OUT);
+    }
+
+    @Override
+    public long getFramesIn() {
+        return counters.get(FRAMES_IN);
+    }
+
+    @Override
+    public long getFramesOut() {
+        return counters.get(FRAMES_OUT);
+    }
+
+    @Override
+    public long getReadWaitNanos() {
+        return counters.get(READ_WAIT_NANOS);
+    }
+
+    @Override
+    public long getWriteWaitNanos() {
+        return counters.get(WRITE_WAIT_NANOS);
+    }
+
+    @Override
+    public long getInputBacklogBytes() {
+        return inputBacklog(false);
+    }
+
+    @Override
+    public long getInputBacklogFrames() {
+        return inputBacklog(true);
+    }
+
+    /**
+     * Sum up what is waiting in the input ports carrying frames, or in those carrying bytes.
+     */
+    private long inputBacklog(boolean frames) {
+        long waiting = 0;
+        for (Channel channel : filter.inputs.values()) {
+            if ((channel instanceof FrameChannel) != frames)
+                continue;
+            try {
+                waiting += channel.available();
+            } catch (IOException e) {
+                // the filter has closed the port, nothing is waiting in it any more
+            }
+        }
+        return waiting;
+    }
+
+    @Override
+    public long getTransformCount() {
+        return transformLatency.getCount();
+    }
+
+    @Override
+    public long getTransformMeanNanos() {
+        return transformLatency.getMean();
+    }
+
+    @Override
+    public long getTransformP50Nanos() {
+        return transformLatency.getPercentile(50d);
+    }
+
+    @Override
+    public long getTransformP90Nanos() {
+        return transformLatency.getPercentile(90d);
+    }
+
+    @Override
+    public long getTransformP99Nanos() {
+        return transformLatency.getPercentile(99d);
+    }
+
+    @Override
+    public long getTransformP999Nanos() {
+        return transformLatency.getPercentile(99.9d);
+    }
+
+    @Override
+    public long getTransformMaxNanos() {
+        return transformLatency.getMax();
+    }
+
+    @Override
+    public String getBacklogPolicy() {
+        FrameBacklog backlog = filter.getBacklog();
+        return backlog == null ? "" : backlog.getPolicy().name();
+    }
+
+    @Override
+    public long getBacklogPeakSize() {
+        FrameBacklog backlog = filter.getBacklog();
+        return backlog == null ? 0 : backlog.getPeakSize();
+    }
+
+    @Override
+    public long getBacklogSpilledFrames() {
+        FrameBacklog backlog = filter.getBacklog();
+        return backlog == null ? 0 : backlog.getSpilledFrames();
+    }
+
+    @Override
+    public long getBacklogOverflowFrames() {
+        FrameBacklog backlog = filter.getBacklog();
+        return backlog == null ? 0 : backlog.getOverflowFrames();
+    }
+}
@@ -0,0 +1,106 @@
+package framework;
+
+/**
+ * The management interface of {@link FilterMetrics}, under which every filter of a pipeline started with
+ * {@code -Dframework.metrics=true} shows up in JMX clients such as JConsole or VisualVM, named
+ * {@code framework:type=Filter,pipeline=<pipeline>,filter=<filterId>}.
+ *
+ * @since 1.0.0
+ */
+public interface FilterMetricsMXBean {
+
+    String getPipeline();
+
+    String getFilterId();
+
+    /**
+     * @return the number of bytes read from input ports carrying bytes.
+     */
+    long getBytesIn();
+
+    /**
+     * @return the number of bytes written to output ports carrying bytes.
+     */
+    long getBytesOut();
+
+    /**
+     * @return the number of measurements read, one by one or as part of a frame.
+     */
+    long getMeasurementsIn();
+
+    /**
+     * @return the number of measurements written, one by one or as part of a frame.
+     */
+    long getMeasurementsOut();
+
+    /**
+     * @return the number of frames read, from a {@link FrameChannel} or collected from bytes.
+     */
+    long getFramesIn();
+
+    /**
+     * @return the number of frames written, to a {@link FrameChannel} or serialized to bytes.
+     */
+    long getFramesOut();
+
+    /**
+     * @return the nanoseconds spent in reads from the input ports, mostly waiting for the filters upstream.
+     */
+    long getReadWaitNanos();
+
+    /**
+     * @return the nanoseconds spent in writes to the output ports, mostly waiting for the filters downstream.
+     */
+    long getWriteWaitNanos();
+
+    /**
+     * @return the number of bytes waiting in the input ports carrying bytes.
+     */
+    long getInputBacklogBytes();
+
+    /**
+     * @return the number of frames waiting in the input ports carrying frames.
+     */
+    long getInputBacklogFrames();
+
+    /**
+     * @return the number of calls of the transformation of the filter, see {@link FilterMetrics#getTransformLatency()}.
+     */
+    long getTransformCount();
+
+    long getTransformMeanNanos();
+
+    long getTransformP50Nanos();
+
+    long getTransformP90Nanos();
+
+    long getTransformP99Nanos();
+
+    long getTransformP999Nanos();
+
+    long getTransformMaxNanos();
+
+    /**
+     * @return the {@link BacklogPolicy} of the frames held back, empty if the filter holds none back.
+     * @see FrameBacklog#getPolicy()
+     */
+    String getBacklogPolicy();
+
+    /**
+     * @return the largest number of frames held back at a time, 0 if the filter holds none back.
+     * @see FrameBacklog#getPeakSize()
+     */
+    long getBacklogPeakSize();
+
+    /**
+     * @return the number of frames held back on disk, 0 if the filter holds none back.
+     * @see FrameBacklog#getSpilledFrames()
+     */
+    long getBacklogSpilledFrames();
+
+    /**
+     * @return the number of frames beyond the capacity of the backlog, 0 if the filter holds none back.
+     * @see FrameBacklog#getOverflowFrames()
+     */
+    long getBacklogOverflowFrames();
+}
@@ -0,0 +1,125 @@
+package framework;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs filters. A filter is a {@link Runnable} that blocks on its channels until its input ends, so how it gets a
+ * thread is up to the runner: one platform thread per filter ({@link ThreadPerFilterRunner}), one virtual thread per
+ * filter ({@link VirtualThreadRunner}), or a thread from a bounded pool shared by many pipelines
+ * ({@link PooledRunner}).
+ *
+ * A runner keeps count of the filters it has started so the plumber can wait for all of them to finish, and fail if
+ * any of them has died rather than report a run that has written incomplete output. Given {@link PipelineMetrics}, it
+ * also registers the filters with them before starting them.
+ *
+ * @since 1.0.0
+ */
+public abstract class FilterRunner {
+
+    /**
+     * Number of filters started by this runner that have not finished yet.
+     */
+    private int running = 0;
+
+    /**
+     * The metrics of the filters started by this runner, null if they keep none.
+     */
+    private PipelineMetrics metrics;
+
+    /**
+     * The first filter started by this runner that has died of an exception or an error, and what it died of.
+     */
+    private FilterFramework failedFilter;
+    private Throwable failure;
+
+    /**
+     * Register every filter started from now on with the metrics, see
+     * {@link PipelineMetrics#register(FilterFramework)}. The metrics are closed when the runner shuts down.
+     *
+     * @param metrics the metrics of the pipeline
+     * @return this runner
+     */
+    public FilterRunner useMetrics(PipelineMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Start filters, typically all filters of a pipeline. They are handed to the runner in one go, so the filters of
+     * one pipeline are not interleaved with those of another pipeline started from a different thread.
+     *
+     * @param filters the filters to be started
+     */
+    public void start(FilterFramework... filters) {
+        start(Arrays.asList(filters));
+    }
+
+    /**
+     * @param filters the filters to be started
+     * @see #start(FilterFramework...)
+     */
+    public synchronized void start(List<? extends FilterFramework> filters) {
+        for (final FilterFramework filter : filters) {
+            if (metrics != null)
+                metrics.register(filter);
+            running++;
+            launch(filter, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        filter.execute();
+                    } catch (Throwable e) {
+                        failed(filter, e);
+                        throw e;
+                    } finally {
+                        finished();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Wait until every filter started by this runner so far has finished.
+     *
+     * @throws InterruptedException thrown when the waiting thread is interrupted.
+     * @throws IllegalStateException thrown when a filter has died of an exception or an error, with it as the cause.
+     */
+    public synchronized void awaitCompletion() throws InterruptedException {
+        while (running > 0)
+            wait();
+        if (failure != null)
+            throw new IllegalStateException("Filter " + failedFilter.getName() + " has died", failure);
+    }
+
+    /**
+     * Release the threads held by this runner, if any, and close its metrics. Filters still running are not
+     * affected; no more filters can be started afterwards. Subclasses holding threads have to call it.
+     */
+    public void shutdown() {
+        if (metrics != null)
+            metrics.close();
+    }
+
+    /**
+     * Template method for subclasses to implement. It should run the task, which runs the filter, on a thread of the
+     * subclass's choice and return without waiting for it.
+     *
+     * @param filter the filter to be run, e.g. to name the thread after {@link FilterFramework#getName()}
+     * @param task the task running the filter
+     */
+    protected abstract void launch(FilterFramework filter, Runnable task);
+
+    private synchronized void failed(FilterFramework filter, Throwable e) {
+        if (failure != null)
+            return;
+        failedFilter = filter;
+        failure = e;
+    }
+
+    private synchronized void finished() {
+        running--;
+        notifyAll();
+    }
+}
@@ -0,0 +1,225 @@
+package framework;
+
+/**
+ * The Java Flight Recorder events of the framework: filters starting and stopping, ports stalling on a channel,
+ * samples of the processing of frames, merge decisions, wild point backlog flushes and slow file accesses. They show
+ * up under the "Pipe and Filter" category of JDK Mission Control, or with {@code jfr print --events 'framework.*'}.
+ *
+ * The events cost next to nothing while no recording is running, and little when one is: frequent events are either
+ * sampled, one call in {@link #SAMPLE_INTERVAL}, or only begun on the slow path of a channel, once a port has found
+ * it empty or full, and dropped below their threshold. None of them records a stack trace.
+ *
+ * The systems also run on Java 8 runtimes, which have no {@code jdk.jfr} package, and the framework is compiled
+ * against the Java 8 API. The event classes therefore live in a {@link Recorder} compiled apart and loaded by name,
+ * and callers only ever hand the events around as {@link Object}s; without the flight recorder, {@link #ENABLED} is
+ * false and every method does nothing and returns null.
+ *
+ * @since 1.0.0
+ */
+public final class FlightEvents {
+
+    private static final Recorder RECORDER = loadRecorder();
+
+    /**
+     * Whether the runtime has the flight recorder API.
+     */
+    public static final boolean ENABLED = RECORDER != null;
+
+    /**
+     * Number of calls of the transformation of a filter, or of merge decisions, per event recorded.
+     */
+    static final int SAMPLE_INTERVAL = 1024;
+
+    /**
+     * Operations of channel stalls and file accesses.
+     */
+    public static final String READ = "read";
+    public static final String WRITE = "write";
+    public static final String MAP = "map";
+    public static final String FORCE = "force";
+
+    /**
+     * Causes of backlog flushes.
+     */
+    public static final String FLUSH_VALID_PRESSURE = "valid pressure";
+    public static final String FLUSH_END_OF_STREAM = "end of stream";
+    public static final String FLUSH_OVERFLOW = "overflow";
+
+    private FlightEvents() {
+    }
+
+    /**
+     * Record that a filter has started, and begin the event recording when it stops.
+     *
+     * @param filter the filter starting
+     * @return the event to hand to {@link #filterStopped(Object, boolean)}, or null
+     */
+    static Object filterStarted(FilterFramework filter) {
+        return ENABLED ? RECORDER.filterStarted(filter) : null;
+    }
+
+    /**
+     * Record that a filter has stopped.
+     *
+     * @param stop the event returned by {@link #filterStarted(FilterFramework)}
+     * @param failed whether the filter has died of an exception
+     */
+    static void filterStopped(Object stop, boolean failed) {
+        if (stop != null)
+            RECORDER.filterStopped(stop, failed);
+    }
+
+    /**
+     * Whether stalls are being recorded, for channels that have to do extra work to find out they are about to
+     * stall.
+     *
+     * @return true if a recording has {@code framework.ChannelStall} enabled
+     */
+    static boolean isStallRecorded() {
+        return ENABLED && RECORDER.isStallRecorded();
+    }
+
+    /**
+     * Begin a stall of a port, when a read has found the channel empty or a write has found it full.
+     *
+     * @param channel the channel stalling
+     * @param operation {@link #READ} or {@link #WRITE}
+     * @return the event to hand to {@link #stallEnded(Object)}, or null
+     */
+    static Object stallStarted(Channel channel, String operation) {
+        return isStallRecorded() ? RECORDER.stallStarted(channel, operation) : null;
+    }
+
+    /**
+     * End a stall; it is recorded if it has lasted longer than the threshold of the event.
+     *
+     * @param stall the event returned by {@link #stallStarted(Channel, String)}
+     */
+    static void stallEnded(Object stall) {
+        if (stall != null)
+            RECORDER.stallEnded(stall);
+    }
+
+    /**
+     * Begin a sampled call of the transformation of a filter, see {@link FilterFramework#sampleProcessing(int)}.
+     *
+     * @param filter the filter transforming
+     * @param measurements the number of measurements handed to the transformation
+     * @return the event to hand to {@link #processingEnded(Object)}, or null
+     */
+    static Object processingStarted(FilterFramework filter, int measurements) {
+        return ENABLED ? RECORDER.processingStarted(filter, measurements) : null;
+    }
+
+    /**
+     * End a sampled call of the transformation of a filter.
+     *
+     * @param processing the event returned by {@link #processingStarted(FilterFramework, int)}
+     */
+    static void processingEnded(Object processing) {
+        if (processing != null)
+            RECORDER.processingEnded(processing);
+    }
+
+    /**
+     * Record which input port a merging filter has taken its next frame from.
+     *
+     * @param filter the merging filter
+     * @param input the filter id of the input port chosen
+     * @param time the time of the frame chosen
+     * @param open the number of input ports that have not ended yet
+     */
+    static void mergeDecided(FilterFramework filter, String input, long time, int open) {
+        if (ENABLED)
+            RECORDER.mergeDecided(filter, input, time, open);
+    }
+
+    /**
+     * Begin the flush of the wild point backlog of a filter.
+     *
+     * @param filter the filter flushing its backlog
+     * @param cause {@link #FLUSH_VALID_PRESSURE}, {@link #FLUSH_END_OF_STREAM} or {@link #FLUSH_OVERFLOW}
+     * @param frames the number of frames flushed
+     * @param pressure the pressure the wild points are replaced with
+     * @return the event to hand to {@link #backlogFlushed(Object)}, or null
+     */
+    public static Object backlogFlushStarted(FilterFramework filter, String cause, int frames, double pressure) {
+        return ENABLED ? RECORDER.backlogFlushStarted(filter, cause, frames, pressure) : null;
+    }
+
+    /**
+     * End the flush of a wild point backlog.
+     *
+     * @param flush the event returned by {@link #backlogFlushStarted(FilterFramework, String, int, double)}
+     */
+    public static void backlogFlushed(Object flush) {
+        if (flush != null)
+            RECORDER.backlogFlushed(flush);
+    }
+
+    /**
+     * Begin an access of a file by a source or a sink.
+     *
+     * @param filter the filter accessing the file
+     * @param path the path of the file
+     * @param operation {@link #READ}, {@link #WRITE}, {@link #MAP} or {@link #FORCE}
+     * @return the event to hand to {@link #fileAccessed(Object, long)}, or null
+     */
+    public static Object fileAccessStarted(FilterFramework filter, String path, String operation) {
+        return ENABLED ? RECORDER.fileAccessStarted(filter, path, operation) : null;
+    }
+
+    /**
+     * End an access of a file; it is recorded if it has lasted longer than the threshold of the event.
+     *
+     * @param access the event returned by {@link #fileAccessStarted(FilterFramework, String, String)}
+     * @param bytes the number of bytes read, written or mapped
+     */
+    public static void fileAccessed(Object access, long bytes) {
+        if (access != null)
+            RECORDER.fileAccessed(access, bytes);
+    }
+
+    /**
+     * Load the recorder, unless the runtime is older than Java 11 or lacks the {@code jdk.jfr} module.
+     */
+    private static Recorder loadRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName("framework.FlightEventRecorder").newInstance();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * The recording side of the events, one method per method of {@link FlightEvents}. The methods are only called
+     * with a non null event.
+     */
+    abstract static class Recorder {
+
+        abstract Object filterStarted(FilterFramework filter);
+
+        abstract void filterStopped(Object stop, boolean failed);
+
+        abstract boolean isStallRecorded();
+
+        abstract Object stallStarted(Channel channel, String operation);
+
+        abstract void stallEnded(Object stall);
+
+        abstract Object processingStarted(FilterFramework filter, int measurements);
+
+        abstract void processingEnded(Object processing);
+
+        abstract void mergeDecided(FilterFramework filter, String input, long time, int open);
+
+        abstract Object backlogFlushStarted(FilterFramework filter, String cause, int frames, double pressure);
+
+        abstract void backlogFlushed(Object flush);
+
+        abstract Object fileAccessStarted(FilterFramework filter, String path, String operation);
+
+        abstract void fileAccessed(Object access, long bytes);
+    }
+}
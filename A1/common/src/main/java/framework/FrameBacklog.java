@@ -0,0 +1,335 @@
+package framework;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A first in, first out queue of frames a filter holds back, e.g. wild points waiting for the next valid pressure, that
+ * keeps at most {@link #getCapacity()} frames in memory.
+ *
+ * The frames are kept in a ring buffer of primitive columns, one per measurement id given to the constructor, plus a
+ * bit mask of the ids present in every frame, so a frame takes a few longs instead of a frame object and its arrays.
+ * Measurements with other ids are not kept, and kept measurements must still be numbers. Frames are added from and
+ * polled into a {@link FrameBatch}, so neither allocates anything.
+ *
+ * What happens to the frames added once the ring is full is up to the {@link BacklogPolicy}. The frames spilled to a
+ * temporary file are read back once the frames in the ring have been polled, so the order is kept either way. The
+ * counters of the backlog, see {@link #toString()}, tell how deep it got and how often it overflowed.
+ *
+ * @since 1.0.0
+ */
+public class FrameBacklog {
+
+    /**
+     * Default number of frames kept in memory.
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private static final int INITIAL_ROWS = 64;
+
+    /**
+     * Number of bytes of spilled frames written or read at a time.
+     */
+    private static final int SPILL_BUFFER_SIZE = 64 * 1024;
+
+    private final String name;
+
+    private final int[] ids;
+
+    private final int capacity;
+
+    private final BacklogPolicy policy;
+
+    /**
+     * The ring: the bit mask of the ids present and the measurements of every frame, in columns, from {@link #head}
+     * on for {@link #count} frames.
+     */
+    private int[] presence = new int[0];
+    private long[][] columns;
+    private int head = 0;
+    private int count = 0;
+
+    /**
+     * The temporary file frames are spilled to, created on the first spill, and the frames in it not polled yet.
+     */
+    private FileChannel spillChannel;
+    private final int spillRowLength;
+    private ByteBuffer spillWriteBuffer;
+    private ByteBuffer spillReadBuffer;
+    private long spillWritePosition = 0;
+    private long spillReadPosition = 0;
+    private int spillCount = 0;
+
+    /**
+     * Batch a frame added as a {@link MeasurementFrame} is copied into first.
+     */
+    private final FrameBatch scratch;
+
+    /**
+     * Counters, read by the metrics of the filter from other threads.
+     */
+    private volatile int peakSize = 0;
+    private volatile long spilledFrames = 0;
+    private volatile long overflowFrames = 0;
+
+    /**
+     * Default constructor
+     *
+     * @param name the name of the backlog, e.g. the id of its filter, used for its temporary file and its counters.
+     * @param capacity the number of frames kept in memory.
+     * @param policy what to do with the frames added beyond the capacity.
+     * @param ids the ids of the measurements kept.
+     */
+    public FrameBacklog(String name, int capacity, BacklogPolicy policy, int... ids) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity: " + capacity);
+        for (int id : ids) {
+            if (id < 0 || id > MeasurementConfig.MAX_ID)
+                throw new IllegalArgumentException("id: " + id + " is out of range [0, " + MeasurementConfig.MAX_ID
+                        + "]");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.ids = ids.clone();
+        this.columns = new long[ids.length][0];
+        this.spillRowLength = 4 + 8 * ids.length;
+        this.scratch = new FrameBatch(1, ids);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public BacklogPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the largest number of frames the backlog has held at a time.
+     */
+    public int getPeakSize() {
+        return peakSize;
+    }
+
+    /**
+     * @return the number of frames spilled to the temporary file so far.
+     */
+    public long getSpilledFrames() {
+        return spilledFrames;
+    }
+
+    /**
+     * @return the number of frames handed back by {@link #pollOverflow(FrameBatch)} so far.
+     */
+    public long getOverflowFrames() {
+        return overflowFrames;
+    }
+
+    public int size() {
+        return count + spillCount;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Add a frame to the end of the backlog. Only the measurements with the ids of the columns are kept.
+     *
+     * @param frame the frame to be added
+     */
+    public void add(MeasurementFrame frame) {
+        scratch.clear();
+        add(scratch, scratch.addFrame(frame));
+    }
+
+    /**
+     * Add a frame of a batch to the end of the backlog. Only the measurements with the ids of the columns are kept.
+     *
+     * @param batch the batch holding the frame
+     * @param row the index of the frame in the batch
+     */
+    public void add(FrameBatch batch, int row) {
+        int mask = 0;
+        for (int c = 0; c < ids.length; c++) {
+            if (batch.holds(ids[c]) && batch.has(row, ids[c]))
+                mask |= 1 << c;
+        }
+
+        if (spillCount > 0 || count == capacity) {
+            spill(batch, row, mask);
+        } else {
+            if (count == presence.length)
+                growRing();
+            int slot = (head + count) % presence.length;
+            for (int c = 0; c < ids.length; c++) {
+                if ((mask & (1 << c)) != 0)
+                    columns[c][slot] = batch.getLong(row, ids[c]);
+            }
+            presence[slot] = mask;
+            count++;
+        }
+        if (size() > peakSize)
+            peakSize = size();
+    }
+
+    /**
+     * Remove the frame at the front of the backlog and add it to the end of a batch.
+     *
+     * @param batch the batch to add the frame to, with a column for every id of the backlog
+     * @return the index of the frame in the batch, -1 if the backlog is empty
+     */
+    public int poll(FrameBatch batch) {
+        if (count == 0 && spillCount > 0)
+            return pollSpilled(batch);
+        if (count == 0)
+            return -1;
+
+        int row = batch.addFrame();
+        int mask = presence[head];
+        for (int c = 0; c < ids.length; c++) {
+            if ((mask & (1 << c)) != 0)
+                batch.setLong(row, ids[c], columns[c][head]);
+        }
+        head = (head + 1) % presence.length;
+        count--;
+        return row;
+    }
+
+    /**
+     * With the {@link BacklogPolicy#EXTRAPOLATE} policy, remove the frame at the front of the backlog if it is full,
+     * to make room for the frame about to be added, and add it to the end of a batch. The filter calls it before
+     * adding a frame when it can resolve the frame without waiting.
+     *
+     * @param batch the batch to add the frame to, with a column for every id of the backlog
+     * @return the index of the frame in the batch, or -1 if the backlog is not full or the policy is to spill
+     */
+    public int pollOverflow(FrameBatch batch) {
+        if (policy != BacklogPolicy.EXTRAPOLATE || size() < capacity)
+            return -1;
+        overflowFrames++;
+        return poll(batch);
+    }
+
+    /**
+     * Delete the temporary file, if any. The backlog can still be used, it creates a new one if needed.
+     */
+    public void close() {
+        if (spillChannel == null)
+            return;
+        try {
+            spillChannel.close();
+        } catch (IOException e) {
+            System.out.println("\nbacklog " + name + " failed to delete its spill file::" + e);
+        }
+        spillChannel = null;
+        spillCount = 0;
+    }
+
+    /**
+     * @return the counters of the backlog, one line.
+     */
+    @Override
+    public String toString() {
+        return "backlog " + name + ": policy " + policy + ", capacity " + capacity + ", peak " + peakSize
+                + ", spilled " + spilledFrames + ", resolved early " + overflowFrames;
+    }
+
+    /**
+     * Double the ring up to the capacity, moving the frames to the start of it.
+     */
+    private void growRing() {
+        int rows = Math.min(capacity, Math.max(INITIAL_ROWS, presence.length * 2));
+        presence = unwrap(presence, rows);
+        for (int c = 0; c < ids.length; c++)
+            columns[c] = unwrap(columns[c], rows);
+        head = 0;
+    }
+
+    private int[] unwrap(int[] ring, int rows) {
+        int[] grown = new int[rows];
+        int first = Math.min(count, ring.length - head);
+        System.arraycopy(ring, head, grown, 0, first);
+        System.arraycopy(ring, 0, grown, first, count - first);
+        return grown;
+    }
+
+    private long[] unwrap(long[] ring, int rows) {
+        long[] grown = new long[rows];
+        int first = Math.min(count, ring.length - head);
+        System.arraycopy(ring, head, grown, 0, first);
+        System.arraycopy(ring, 0, grown, first, count - first);
+        return grown;
+    }
+
+    private void spill(FrameBatch batch, int row, int mask) {
+        try {
+            if (spillChannel == null) {
+                Path path = Files.createTempFile(name + "-backlog-", ".tmp");
+                spillChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+                spillWriteBuffer = ByteBuffer.allocate(SPILL_BUFFER_SIZE / spillRowLength * spillRowLength);
+                spillReadBuffer = ByteBuffer.allocate(spillWriteBuffer.capacity());
+                spillReadBuffer.limit(0);
+            }
+            if (spillCount == 0) {
+                spillWritePosition = 0;
+                spillReadPosition = 0;
+                spillReadBuffer.limit(0);
+            }
+            if (spillWriteBuffer.remaining() < spillRowLength)
+                flushSpilled();
+
+            spillWriteBuffer.putInt(mask);
+            for (int c = 0; c < ids.length; c++)
+                spillWriteBuffer.putLong((mask & (1 << c)) != 0 ? batch.getLong(row, ids[c]) : 0L);
+            spillCount++;
+            spilledFrames++;
+        } catch (IOException e) {
+            throw new IllegalStateException("backlog " + name + " failed to spill a frame", e);
+        }
+    }
+
+    private void flushSpilled() throws IOException {
+        spillWriteBuffer.flip();
+        while (spillWriteBuffer.hasRemaining())
+            spillWritePosition += spillChannel.write(spillWriteBuffer, spillWritePosition);
+        spillWriteBuffer.clear();
+    }
+
+    private int pollSpilled(FrameBatch batch) {
+        try {
+            if (!spillReadBuffer.hasRemaining()) {
+                if (spillWriteBuffer.position() > 0)
+                    flushSpilled();
+                spillReadBuffer.clear();
+                long end = Math.min(spillWritePosition, spillReadPosition + spillReadBuffer.capacity());
+                spillReadBuffer.limit((int) (end - spillReadPosition));
+                while (spillReadBuffer.hasRemaining()) {
+                    int read = spillChannel.read(spillReadBuffer, spillReadPosition);
+                    if (read < 0)
+                        throw new IOException("spill file ends within a frame");
+                    spillReadPosition += read;
+                }
+                spillReadBuffer.flip();
+            }
+
+            int row = batch.addFrame();
+            int mask = spillReadBuffer.getInt();
+            for (int c = 0; c < ids.length; c++) {
+                long value = spillReadBuffer.getLong();
+                if ((mask & (1 << c)) != 0)
+                    batch.setLong(row, ids[c], value);
+            }
+            spillCount--;
+            return row;
+        } catch (IOException e) {
+            throw new IllegalStateException("backlog " + name + " failed to read a spilled frame", e);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package framework;
+
+import util.ConversionUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A batch of frames stored column by column: one primitive column per measurement id given to the constructor, plus a
+ * bit mask per frame of the measurements present in it. Filters assemble frames measurement by measurement into a
+ * batch and serialize them straight into an output buffer, so neither assembling nor writing a frame allocates
+ * anything once the batch has been created.
+ *
+ * Measurements are kept as the longs they are on the wire, so the batch only holds measurements that have not been
+ * transformed into something else than a number; {@link MeasurementFrame} holds those. Frames are serialized with
+ * their measurements in the order of the columns, whatever order they were put in.
+ *
+ * @since 1.0.0
+ */
+public class FrameBatch {
+
+    private static final int VALUE_LENGTH = MeasurementConfig.VALUE_LENGTH;
+
+    /**
+     * Length of the ids of the frames on the wire.
+     */
+    private final int idLength;
+
+    private final int[] ids;
+
+    /**
+     * The column of every id, indexed by id, -1 for the ids without a column.
+     */
+    private final int[] columnOfId = new int[MeasurementConfig.MAX_ID + 1];
+
+    /**
+     * The measurements, indexed by column then by frame, and the bit mask of the columns present in every frame.
+     */
+    private final long[][] columns;
+    private final int[] presence;
+
+    private final int completeMask;
+
+    private int size = 0;
+
+    /**
+     * Default constructor, for frames written with the id length of the source files, see
+     * {@link MeasurementConfig#DEFAULT_ID_LENGTH}.
+     *
+     * @param capacity the number of frames the batch holds.
+     * @param ids the ids of the measurements of the frames, in the order they are serialized.
+     */
+    public FrameBatch(int capacity, int... ids) {
+        this(capacity, ids, MeasurementConfig.DEFAULT_ID_LENGTH);
+    }
+
+    /**
+     * Construct a batch of frames written with the id length of the given schema.
+     *
+     * @param context the schema of the measurements of the frames.
+     * @param capacity the number of frames the batch holds.
+     * @param ids the ids of the measurements of the frames, in the order they are serialized.
+     */
+    public FrameBatch(MeasurementConfig context, int capacity, int... ids) {
+        this(capacity, ids, context.getIdLength());
+    }
+
+    private FrameBatch(int capacity, int[] ids, int idLength) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity: " + capacity);
+        if (ids.length > Integer.SIZE)
+            throw new IllegalArgumentException("a batch holds at most " + Integer.SIZE + " measurements per frame");
+        Arrays.fill(columnOfId, -1);
+        for (int c = 0; c < ids.length; c++) {
+            if (ids[c] < 0 || ids[c] > MeasurementConfig.MAX_ID)
+                throw new IllegalArgumentException("id: " + ids[c] + " is out of range [0, " + MeasurementConfig.MAX_ID
+                        + "]");
+            if (columnOfId[ids[c]] >= 0)
+                throw new IllegalArgumentException("id: " + ids[c] + " is given twice");
+            columnOfId[ids[c]] = c;
+        }
+        this.idLength = idLength;
+        this.ids = ids.clone();
+        this.columns = new long[ids.length][capacity];
+        this.presence = new int[capacity];
+        this.completeMask = ids.length == Integer.SIZE ? -1 : (1 << ids.length) - 1;
+    }
+
+    /**
+     * @return the ids of the measurements of the frames, in the order they are serialized.
+     */
+    public int[] getIds() {
+        return ids.clone();
+    }
+
+    /**
+     * Whether the frames of this batch have a column for the measurement with the given id.
+     *
+     * @param id the id of the measurement
+     * @return true if a frame can hold it
+     */
+    public boolean holds(int id) {
+        return id >= 0 && id <= MeasurementConfig.MAX_ID && columnOfId[id] >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return presence.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == presence.length;
+    }
+
+    /**
+     * Remove every frame of the batch.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Start a new frame at the end of the batch, with no measurement in it.
+     *
+     * @return the index of the new frame
+     */
+    public int addFrame() {
+        if (isFull())
+            throw new IllegalStateException("the batch is full, " + size + " frames");
+        presence[size] = 0;
+        return size++;
+    }
+
+    /**
+     * Start a new frame at the end of the batch holding the measurements of {@code frame} this batch has a column for.
+     *
+     * @param frame the frame to be copied
+     * @return the index of the new frame
+     */
+    public int addFrame(MeasurementFrame frame) {
+        int row = addFrame();
+        for (int c = 0; c < ids.length; c++) {
+            if (frame.has(ids[c]))
+                setLong(row, ids[c], frame.getLong(ids[c]));
+        }
+        return row;
+    }
+
+    /**
+     * Whether the frame has a measurement for every column.
+     *
+     * @param row the index of the frame
+     * @return true if the frame is complete
+     */
+    public boolean isComplete(int row) {
+        return presence[checkRow(row)] == completeMask;
+    }
+
+    public boolean has(int row, int id) {
+        return (presence[checkRow(row)] & (1 << column(id))) != 0;
+    }
+
+    public long getLong(int row, int id) {
+        if (!has(row, id))
+            throw new IllegalStateException("frame " + row + " has no measurement with id " + id);
+        return columns[columnOfId[id]][row];
+    }
+
+    public double getDouble(int row, int id) {
+        return Double.longBitsToDouble(getLong(row, id));
+    }
+
+    public void setLong(int row, int id, long value) {
+        int c = column(id);
+        columns[c][checkRow(row)] = value;
+        presence[row] |= 1 << c;
+    }
+
+    public void setDouble(int row, int id, double value) {
+        setLong(row, id, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Put the bytes of a measurement the way they appear on the wire (without the id).
+     *
+     * @param row the index of the frame
+     * @param id the id of the measurement
+     * @param measurement the measurement bytes, the length of a number
+     */
+    public void setBytes(int row, int id, byte[] measurement) {
+        if (measurement.length != VALUE_LENGTH)
+            throw new IllegalArgumentException("measurement with id " + id + " has " + measurement.length
+                    + " bytes, a batch only holds numbers");
+        long value = 0;
+        for (int i = 0; i < VALUE_LENGTH; i++)
+            value = (value << 8) | (measurement[i] & 0xFF);
+        setLong(row, id, value);
+    }
+
+    /**
+     * @return the number of bytes the frame takes on the wire, ids included.
+     */
+    public int byteLength(int row) {
+        return Integer.bitCount(presence[checkRow(row)]) * (idLength + VALUE_LENGTH);
+    }
+
+    /**
+     * @return the number of bytes every frame of the batch takes on the wire, ids included.
+     */
+    public int byteLength() {
+        int length = 0;
+        for (int row = 0; row < size; row++)
+            length += byteLength(row);
+        return length;
+    }
+
+    /**
+     * Serialize the frame into the buffer, id followed by measurement for each measurement in the order of the
+     * columns.
+     *
+     * @param row the index of the frame
+     * @param buffer the buffer to write to, with at least {@link #byteLength(int)} bytes remaining
+     */
+    public void writeTo(int row, ByteBuffer buffer) {
+        int mask = presence[checkRow(row)];
+        for (int c = 0; c < ids.length; c++) {
+            if ((mask & (1 << c)) != 0) {
+                ConversionUtil.putId(buffer, ids[c], idLength);
+                buffer.putLong(columns[c][row]);
+            }
+        }
+    }
+
+    /**
+     * Serialize every frame of the batch into the buffer, in order, see {@link #writeTo(int, ByteBuffer)}.
+     *
+     * @param buffer the buffer to write to, with at least {@link #byteLength()} bytes remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        for (int row = 0; row < size; row++)
+            writeTo(row, buffer);
+    }
+
+    /**
+     * @return a new {@link MeasurementFrame} with the measurements of the frame, in the order of the columns.
+     */
+    public MeasurementFrame toFrame(int row) {
+        MeasurementFrame frame = new MeasurementFrame(idLength);
+        int mask = presence[checkRow(row)];
+        for (int c = 0; c < ids.length; c++) {
+            if ((mask & (1 << c)) != 0)
+                frame.setLong(ids[c], columns[c][row]);
+        }
+        return frame;
+    }
+
+    private int column(int id) {
+        if (!holds(id))
+            throw new IllegalArgumentException("id: " + id + " has no column in this batch");
+        return columnOfId[id];
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size)
+            throw new IndexOutOfBoundsException("row: " + row + ", size: " + size);
+        return row;
+    }
+}
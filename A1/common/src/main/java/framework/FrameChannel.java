@@ -0,0 +1,188 @@
+package framework;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A channel that hands decoded {@link MeasurementFrame}s from one filter to the next instead of bytes. It only makes
+ * sense between two filters that understand frames (the measurement filter templates); sources and sinks read and
+ * write bytes and must be connected with a byte channel. The byte methods of this channel are therefore unsupported.
+ *
+ * The frames are queued in a bounded {@link BlockingQueue}, so a fast writer blocks once the reader falls
+ * {@link #DEFAULT_CAPACITY} frames behind. The end of stream travels through the queue as a marker frame so the reader
+ * sees it only after every frame written before it. A reader or a writer that has to wait is recorded as a stall
+ * flight event, see {@link FlightEvents}.
+ *
+ * @since 1.0.0
+ */
+public class FrameChannel extends Channel {
+
+    /**
+     * Default number of frames that can be queued in the channel.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Marker queued by the writer when it closes its end.
+     */
+    private static final MeasurementFrame END_OF_STREAM = new MeasurementFrame();
+
+    private final BlockingQueue<MeasurementFrame> frames;
+
+    /**
+     * Whether the writing end has been closed.
+     */
+    private volatile boolean closedByWriter = false;
+
+    /**
+     * Whether the reading end has been closed.
+     */
+    private volatile boolean closedByReader = false;
+
+    /**
+     * Whether the reader has taken the end of stream marker. Only touched by the reader.
+     */
+    private boolean endOfStreamRead = false;
+
+    public FrameChannel() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FrameChannel(int capacity) {
+        this.frames = new ArrayBlockingQueue<MeasurementFrame>(capacity);
+    }
+
+    /**
+     * Read a frame from the channel, blocking until one is available or the writer has closed.
+     *
+     * @return the frame read, or null if the writer has closed and the channel has been drained.
+     * @throws IOException when the channel has been closed by the reader or the reading thread is interrupted.
+     */
+    public MeasurementFrame readFrame() throws IOException {
+        if (closedByReader)
+            throw new IOException("Pipe closed");
+        if (endOfStreamRead)
+            return null;
+
+        MeasurementFrame frame = frames.poll();
+        if (frame == null) {
+            Object stall = FlightEvents.stallStarted(this, FlightEvents.READ);
+            try {
+                frame = frames.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a frame");
+            } finally {
+                FlightEvents.stallEnded(stall);
+            }
+        }
+
+        if (frame == END_OF_STREAM) {
+            endOfStreamRead = true;
+            return null;
+        }
+        return frame;
+    }
+
+    /**
+     * Write a frame to the channel, blocking while the channel is full. The frame belongs to the reader afterwards.
+     *
+     * @param frame the frame to be written
+     * @throws IOException when either end of the channel has been closed or the writing thread is interrupted.
+     */
+    public void writeFrame(MeasurementFrame frame) throws IOException {
+        if (closedByReader || closedByWriter)
+            throw new IOException("Pipe closed");
+        if (frames.offer(frame))
+            return;
+        Object stall = FlightEvents.stallStarted(this, FlightEvents.WRITE);
+        try {
+            frames.put(frame);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for space");
+        } finally {
+            FlightEvents.stallEnded(stall);
+        }
+    }
+
+    /**
+     * @return the number of frames, not bytes, currently queued in the channel.
+     */
+    @Override
+    public int available() {
+        return frames.size();
+    }
+
+    @Override
+    public boolean isEndOfStream() {
+        if (closedByReader || endOfStreamRead)
+            return true;
+        if (!closedByWriter)
+            return false;
+        MeasurementFrame next = frames.peek();
+        return next == null || next == END_OF_STREAM;
+    }
+
+    @Override
+    public int read() {
+        throw new UnsupportedOperationException("A frame channel carries frames, not bytes");
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        throw new UnsupportedOperationException("A frame channel carries frames, not bytes");
+    }
+
+    @Override
+    public void write(int b) {
+        throw new UnsupportedOperationException("A frame channel carries frames, not bytes");
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        throw new UnsupportedOperationException("A frame channel carries frames, not bytes");
+    }
+
+    /**
+     * Frames are visible to the reader as soon as they are written, nothing to flush.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (closedByReader)
+            throw new IOException("Pipe closed");
+    }
+
+    /**
+     * Close the reading end and drop any queued frames so a writer blocked on a full channel wakes up; its next
+     * write fails.
+     */
+    @Override
+    public void closeInput() {
+        closedByReader = true;
+        frames.clear();
+    }
+
+    /**
+     * Close the writing end by queueing the end of stream marker behind the frames written so far.
+     */
+    @Override
+    public void closeOutput() throws IOException {
+        if (closedByWriter)
+            return;
+        closedByWriter = true;
+        try {
+            // a reader that has gone away will not drain the queue, so don't wait for space on its behalf
+            while (!closedByReader) {
+                if (frames.offer(END_OF_STREAM, 10, TimeUnit.MILLISECONDS))
+                    break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the channel");
+        }
+    }
+}
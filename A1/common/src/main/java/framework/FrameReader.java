@@ -0,0 +1,97 @@
+package framework;
+
+import framework.FilterFramework.EndOfStreamException;
+import util.ConversionUtil;
+
+/**
+ * Reads {@link MeasurementFrame}s from one input port of a filter, whatever the port carries. A {@link FrameChannel}
+ * hands over frames as they are. Bytes are cut into measurements using the lengths of the {@link MeasurementConfig}
+ * and collected into frames; a frame is complete when a time measurement, or a measurement already present in the
+ * frame, starts the next one, or when the stream ends.
+ *
+ * @since 1.0.0
+ */
+final class FrameReader {
+
+    private final FilterFramework filter;
+
+    /**
+     * The filterId key of the input port in the input registry of {@link #filter}.
+     */
+    private final String key;
+
+    private final MeasurementConfig context;
+
+    /**
+     * Buffer the id bytes are read into.
+     */
+    private final byte[] idBuffer;
+
+    /**
+     * The frame being collected from bytes.
+     */
+    private MeasurementFrame pending;
+
+    /**
+     * The end of stream hit while collecting {@link #pending}, thrown again once it has been returned.
+     */
+    private EndOfStreamException endOfStream;
+
+    FrameReader(FilterFramework filter, String key, MeasurementConfig context) {
+        this.filter = filter;
+        this.key = key;
+        this.context = context;
+        this.idBuffer = new byte[context.getIdLength()];
+    }
+
+    /**
+     * Read the next frame, blocking until it is complete.
+     *
+     * @return the next frame, never empty
+     * @throws EndOfStreamException when the input stream has ended and every frame has been returned
+     */
+    MeasurementFrame next() throws EndOfStreamException {
+        if (filter.inputCarriesFrames(key))
+            return filter.readFrameFromInput(key);
+
+        while (endOfStream == null) {
+            try {
+                filter.readFromInput(key, idBuffer, 0, idBuffer.length);
+                int id = ConversionUtil.convertToInt(idBuffer);
+                byte[] measurement = new byte[context.idForMeasurementLength(id)];
+                filter.readFromInput(key, measurement, 0, measurement.length);
+
+                MeasurementFrame completed = null;
+                if (pending != null && (id == MeasurementConfig.ID_TIME || pending.has(id))) {
+                    completed = pending;
+                    pending = null;
+                }
+                if (pending == null)
+                    pending = new MeasurementFrame(context);
+                pending.setBytes(id, measurement, context.typeOf(id));
+
+                if (completed != null)
+                    return collected(completed);
+            } catch (EndOfStreamException ex) {
+                endOfStream = ex;
+            }
+        }
+
+        if (pending != null) {
+            MeasurementFrame completed = pending;
+            pending = null;
+            return collected(completed);
+        }
+        throw endOfStream;
+    }
+
+    /**
+     * Count a frame collected from bytes in the metrics of the filter; the time waited for it is counted with the
+     * bytes.
+     */
+    private MeasurementFrame collected(MeasurementFrame frame) {
+        if (filter.metrics != null)
+            filter.metrics.frameRead(frame.size(), 0L);
+        return frame;
+    }
+}
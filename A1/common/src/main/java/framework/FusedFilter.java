@@ -0,0 +1,133 @@
+package framework;
+
+import java.util.Arrays;
+
+/**
+ * A filter that runs a linear chain of {@link SimpleFilter}s in a single thread. Instead of each stage reading from a
+ * channel, transforming and writing to the next channel in its own thread, the fused filter reads a measurement once
+ * and passes it through the {@link SimpleFilter#doTransform(int, byte[])} of every stage back to back (or the frame
+ * through every {@link SimpleFilter#transformFrame(MeasurementFrame)}), so the chain costs no channel hand-off and no
+ * context switch between stages.
+ *
+ * The stages are only used for their transformation and must be neither connected nor started. The fused filter reads
+ * with the {@link MeasurementConfig} of the first stage; the measurement lengths expected by the later stages are
+ * checked against what the stage before them produces, just as reading them from a channel would. A stage that writes
+ * to its output port by itself, like {@code FormattingFilter}, can only be the last stage: its output port is the one
+ * of the fused filter.
+ *
+ * @since 1.0.0
+ */
+public class FusedFilter extends SimpleFilter {
+
+    /**
+     * The stages in the order data flows through them.
+     */
+    private final SimpleFilter[] stages;
+
+    /**
+     * Default constructor.
+     *
+     * @param filterId the filter id of this filter.
+     * @param stages the filters to be fused, in the order data flows through them.
+     */
+    public FusedFilter(String filterId, SimpleFilter... stages) {
+        super(firstStage(stages).context, filterId);
+        for (SimpleFilter stage : stages) {
+            if (!stage.inputs.isEmpty() || !stage.outputs.isEmpty())
+                throw new IllegalArgumentException("filter " + stage.filterId + " is already connected, cannot fuse it");
+        }
+        this.stages = stages.clone();
+        handleIdsOfStages();
+    }
+
+    /**
+     * Handle the ids handled by any stage, so measurements no stage handles are passed through without calling any
+     * stage.
+     */
+    private void handleIdsOfStages() {
+        int[] ids = new int[MeasurementConfig.MAX_ID + 1];
+        int count = 0;
+        for (int id = 0; id <= MeasurementConfig.MAX_ID; id++) {
+            for (SimpleFilter stage : stages) {
+                if (stage.handlesId(id)) {
+                    ids[count++] = id;
+                    break;
+                }
+            }
+        }
+        if (count <= MeasurementConfig.MAX_ID)
+            handleIds(Arrays.copyOf(ids, count));
+    }
+
+    private static SimpleFilter firstStage(SimpleFilter[] stages) {
+        if (stages.length == 0)
+            throw new IllegalArgumentException("At least one filter is needed for fusion");
+        return stages[0];
+    }
+
+    /**
+     * A fused filter is stateless if all of its stages are.
+     */
+    @Override
+    protected boolean isStateless() {
+        for (SimpleFilter stage : stages) {
+            if (!stage.isStateless())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Register the output filter and hand the output port over to the last stage, so a stage writing to its output
+     * port by itself writes to the output of the fused filter, after what the fused filter has collected so far.
+     *
+     * @param outputFilter the output filter connected
+     */
+    @Override
+    protected void outputConnected(FilterFramework outputFilter) {
+        super.outputConnected(outputFilter);
+        SimpleFilter last = stages[stages.length - 1];
+        last.outputs.put(outputFilter.filterId, outputForKey(outputFilter.filterId));
+        last.outputConnected(outputFilter);
+        last.outputOwner = this;
+    }
+
+    /**
+     * Pass the measurement through every stage handling it in order. It stops as soon as a stage discards the
+     * measurement.
+     *
+     * @param id the id of the measurement data
+     * @param measurement data
+     * @return the measurement transformed by every stage, or a 0-length byte array if a stage discarded it
+     */
+    @Override
+    protected byte[] doTransform(int id, byte[] measurement) {
+        for (int i = 0; i < stages.length; i++) {
+            if (i > 0 && measurement.length != stages[i].context.idForMeasurementLength(id))
+                throw new IllegalStateException("filter " + stages[i].filterId + " expects measurement with id " + id
+                        + " to have length " + stages[i].context.idForMeasurementLength(id) + " but "
+                        + stages[i - 1].filterId + " produces length " + measurement.length);
+
+            if (!stages[i].handlesId(id))
+                continue;
+            measurement = stages[i].doTransform(id, measurement);
+            if (measurement == null || measurement.length == 0)
+                return new byte[0];
+        }
+        return measurement;
+    }
+
+    /**
+     * Pass the frame through every stage in order. It stops as soon as the frame is left empty.
+     *
+     * @param frame the frame to be transformed
+     */
+    @Override
+    protected void transformFrame(MeasurementFrame frame) {
+        for (SimpleFilter stage : stages) {
+            stage.transformFrame(frame);
+            if (frame.isEmpty())
+                return;
+        }
+    }
+}
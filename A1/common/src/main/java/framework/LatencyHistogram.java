@@ -0,0 +1,123 @@
+package framework;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in nanoseconds, in the manner of an HDR histogram: every power of two is split into
+ * {@link #SUB_BUCKETS} buckets of equal width, so a percentile is off by at most an eighth of its value however wide
+ * the range of the durations recorded, from a few nanoseconds to hours, in a fixed table of {@link #BUCKETS} counts.
+ *
+ * Durations are recorded by one thread at a time, such as the thread running a filter, with a plain read and an
+ * ordered write per count, taking neither a lock nor a compare-and-set. They can be read from any thread; the
+ * percentiles read while durations are being recorded may lag by the last few.
+ *
+ * @since 1.0.0
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * Number of buckets every power of two is split into.
+     */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Number of buckets, enough for any positive long.
+     */
+    static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * Indexes of the number, the sum and the largest of the durations recorded, behind the counts of the buckets.
+     */
+    private static final int COUNT = BUCKETS;
+    private static final int SUM = BUCKETS + 1;
+    private static final int MAX = BUCKETS + 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 3);
+
+    /**
+     * Record a duration. Negative durations, from a clock going backwards, count as 0.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        int bucket = bucketOf(nanos);
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+        counts.lazySet(COUNT, counts.get(COUNT) + 1);
+        counts.lazySet(SUM, counts.get(SUM) + nanos);
+        if (nanos > counts.get(MAX))
+            counts.lazySet(MAX, nanos);
+    }
+
+    /**
+     * @return the number of durations recorded.
+     */
+    public long getCount() {
+        return counts.get(COUNT);
+    }
+
+    /**
+     * @return the mean of the durations recorded, 0 if there are none.
+     */
+    public long getMean() {
+        long recorded = counts.get(COUNT);
+        return recorded == 0 ? 0 : counts.get(SUM) / recorded;
+    }
+
+    /**
+     * @return the longest duration recorded, 0 if there are none.
+     */
+    public long getMax() {
+        return counts.get(MAX);
+    }
+
+    /**
+     * The duration that the given share of the durations recorded did not exceed, rounded up to the end of its
+     * bucket.
+     *
+     * @param percentile the share, from 0 to 100
+     * @return the duration in nanoseconds, 0 if there are none.
+     */
+    public long getPercentile(double percentile) {
+        long recorded = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+            recorded += counts.get(bucket);
+        if (recorded == 0)
+            return 0;
+
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100d * recorded));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank)
+                return Math.min(highestValueOf(bucket), counts.get(MAX));
+        }
+        return counts.get(MAX);
+    }
+
+    /**
+     * The bucket a duration falls into: durations below {@link #SUB_BUCKETS} have a bucket each, the others share
+     * theirs with the durations having the same highest bit and the same {@link #SUB_BUCKET_BITS} bits below it.
+     */
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int) nanos;
+        int highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * The largest duration falling into the bucket.
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long next = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift;
+        return next < 0 ? Long.MAX_VALUE : next - 1;
+    }
+}
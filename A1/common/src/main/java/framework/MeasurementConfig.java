@@ -1,10 +1,18 @@
 package framework;
 
+import java.util.Arrays;
+
 /**
  * A configuration object specifying the length of the incoming data. By default, id is 4 bytes and the rest are
  * 8 bytes. However, this may change as data are transformed, processed or filtered. Hence, the filter will be
  * configured with this object to prepare for the changed byte length.
  *
+ * The configuration is a schema over an open set of measurement ids: besides the six well known ids below, any id from
+ * 0 to {@link #MAX_ID} can be declared with {@link #expectMeasurement(int, int, MeasurementType)}. The schema is kept
+ * in flat arrays indexed by id, so looking up the length of a measurement is a single array access. The ids are also
+ * remembered in the order they were declared, which is the order of the measurements in a frame, to lay out
+ * fixed-shape frames (see {@link #offsetInFrame(int)}).
+ *
  * @since 1.0.0
  */
 public class MeasurementConfig {
@@ -19,16 +27,47 @@ public class MeasurementConfig {
     public static final int ID_TEMPERATURE = 4;
     public static final int ID_ATTITUDE = 5;
 
+    /**
+     * The largest measurement id a configuration can declare.
+     */
+    public static final int MAX_ID = 31;
+
+    /**
+     * Length of an id in the source files.
+     */
+    public static final int DEFAULT_ID_LENGTH = 4;
+
+    /**
+     * Length of a measurement that has not been formatted, i.e. a long or a double.
+     */
+    public static final int VALUE_LENGTH = 8;
+
     /**
      * Length for data.
      */
     private int idLength;
-    private int timeLength;
-    private int velocityLength;
-    private int altitudeLength;
-    private int pressureLength;
-    private int temperatureLength;
-    private int attitudeLength;
+
+    /**
+     * Length of the measurement by id, -1 for ids not declared.
+     */
+    private int[] lengths = new int[0];
+
+    /**
+     * Type of the measurement by id, null for ids not declared.
+     */
+    private MeasurementType[] types = new MeasurementType[0];
+
+    /**
+     * The declared ids in the order they were first declared.
+     */
+    private int[] ids = new int[0];
+
+    /**
+     * Offset of the measurement (its id included) by id in a frame carrying every declared measurement once, in the
+     * order of {@link #ids}, and the length of such a frame.
+     */
+    private int[] offsets = new int[0];
+    private int frameLength;
 
     /**
      * Convenience method to construct a new configuration.
@@ -46,7 +85,7 @@ public class MeasurementConfig {
      */
     public static MeasurementConfig defaultConfig() {
         return newConfig()
-                .expectIdWithLength(4)
+                .expectIdWithLength(DEFAULT_ID_LENGTH)
                 .expectTimeWithLength(8)
                 .expectVelocityWithLength(8)
                 .expectAltitudeWithLength(8)
@@ -62,84 +101,169 @@ public class MeasurementConfig {
      * @return the length of the data.
      */
     public int idForMeasurementLength(int id) {
-        switch (id) {
-            case ID_TIME:
-                return timeLength;
-            case ID_VELOCITY:
-                return velocityLength;
-            case ID_ALTITUDE:
-                return altitudeLength;
-            case ID_PRESSURE:
-                return pressureLength;
-            case ID_TEMPERATURE:
-                return temperatureLength;
-            case ID_ATTITUDE:
-                return attitudeLength;
-            default:
-                throw new IllegalArgumentException("id: " + id + " does not have corresponding measurement");
+        if (id < 0 || id >= lengths.length || lengths[id] < 0)
+            throw new IllegalArgumentException("id: " + id + " does not have corresponding measurement");
+        return lengths[id];
+    }
+
+    /**
+     * Whether a measurement with the given id has been declared.
+     *
+     * @param id the id of the data.
+     * @return true if declared
+     */
+    public boolean isExpected(int id) {
+        return id >= 0 && id < lengths.length && lengths[id] >= 0;
+    }
+
+    /**
+     * Retrieve the type of the data by the corresponding id.
+     *
+     * @param id the id of the data.
+     * @return the type of the data.
+     */
+    public MeasurementType typeOf(int id) {
+        idForMeasurementLength(id);
+        return types[id];
+    }
+
+    /**
+     * @return the declared ids in the order they were first declared, a copy.
+     */
+    public int[] getExpectedIds() {
+        return ids.clone();
+    }
+
+    /**
+     * Offset of a measurement, its id included, in a fixed-shape frame, i.e. a frame carrying every declared
+     * measurement exactly once in the order they were declared, like the frames of the source files.
+     *
+     * @param id the id of the data.
+     * @return the offset of the id of the measurement from the start of the frame
+     */
+    public int offsetInFrame(int id) {
+        idForMeasurementLength(id);
+        return offsets[id];
+    }
+
+    /**
+     * @return the length of a fixed-shape frame, see {@link #offsetInFrame(int)}.
+     */
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * Declare a measurement, or change the length and type of a measurement already declared. Declaring a new
+     * measurement appends it to the frame layout.
+     *
+     * @param id the id of the data, from 0 to {@link #MAX_ID}
+     * @param length the length of the data
+     * @param type the type of the data
+     * @return this configuration
+     */
+    public MeasurementConfig expectMeasurement(int id, int length, MeasurementType type) {
+        if (id < 0 || id > MAX_ID)
+            throw new IllegalArgumentException("id: " + id + " is out of range [0, " + MAX_ID + "]");
+        if (length < 0)
+            throw new IllegalArgumentException("length: " + length);
+
+        if (id >= lengths.length) {
+            int oldLength = lengths.length;
+            lengths = Arrays.copyOf(lengths, id + 1);
+            Arrays.fill(lengths, oldLength, lengths.length, -1);
+            types = Arrays.copyOf(types, id + 1);
+            offsets = Arrays.copyOf(offsets, id + 1);
+        }
+        if (lengths[id] < 0) {
+            ids = Arrays.copyOf(ids, ids.length + 1);
+            ids[ids.length - 1] = id;
         }
+        lengths[id] = length;
+        types[id] = type;
+        layOutFrame();
+        return this;
+    }
+
+    /**
+     * Declare a measurement of the given length: a value of the given type if it is {@link #VALUE_LENGTH} long,
+     * otherwise text formatted by an upstream filter.
+     */
+    private MeasurementConfig expectValue(int id, int length, MeasurementType valueType) {
+        return expectMeasurement(id, length, length == VALUE_LENGTH ? valueType : MeasurementType.TEXT);
+    }
+
+    private void layOutFrame() {
+        int offset = 0;
+        for (int id : ids) {
+            offsets[id] = offset;
+            offset += idLength + lengths[id];
+        }
+        frameLength = offset;
     }
 
     public MeasurementConfig expectIdWithLength(int idLength) {
         this.idLength = idLength;
+        layOutFrame();
         return this;
     }
 
     public MeasurementConfig expectTimeWithLength(int timeLength) {
-        this.timeLength = timeLength;
-        return this;
+        return expectValue(ID_TIME, timeLength, MeasurementType.LONG);
     }
 
     public MeasurementConfig expectVelocityWithLength(int velocityLength) {
-        this.velocityLength = velocityLength;
-        return this;
+        return expectValue(ID_VELOCITY, velocityLength, MeasurementType.DOUBLE);
     }
 
     public MeasurementConfig expectAltitudeWithLength(int altitudeLength) {
-        this.altitudeLength = altitudeLength;
-        return this;
+        return expectValue(ID_ALTITUDE, altitudeLength, MeasurementType.DOUBLE);
     }
 
     public MeasurementConfig expectPressureWithLength(int pressureLength) {
-        this.pressureLength = pressureLength;
-        return this;
+        return expectValue(ID_PRESSURE, pressureLength, MeasurementType.DOUBLE);
     }
 
     public MeasurementConfig expectTemperatureWithLength(int temperatureLength) {
-        this.temperatureLength = temperatureLength;
-        return this;
+        return expectValue(ID_TEMPERATURE, temperatureLength, MeasurementType.DOUBLE);
     }
 
     public MeasurementConfig expectAttitudeWithLength(int attitudeLength) {
-        this.attitudeLength = attitudeLength;
-        return this;
+        return expectValue(ID_ATTITUDE, attitudeLength, MeasurementType.DOUBLE);
     }
 
     public int getIdLength() {
         return idLength;
     }
 
+    /**
+     * The getters of the well known measurements return 0 for a measurement that has not been declared.
+     */
     public int getTimeLength() {
-        return timeLength;
+        return lengthOrZero(ID_TIME);
     }
 
     public int getVelocityLength() {
-        return velocityLength;
+        return lengthOrZero(ID_VELOCITY);
     }
 
     public int getAltitudeLength() {
-        return altitudeLength;
+        return lengthOrZero(ID_ALTITUDE);
     }
 
     public int getPressureLength() {
-        return pressureLength;
+        return lengthOrZero(ID_PRESSURE);
     }
 
     public int getTemperatureLength() {
-        return temperatureLength;
+        return lengthOrZero(ID_TEMPERATURE);
     }
 
     public int getAttitudeLength() {
-        return attitudeLength;
+        return lengthOrZero(ID_ATTITUDE);
+    }
+
+    private int lengthOrZero(int id) {
+        return isExpected(id) ? lengths[id] : 0;
     }
 }
@@ -0,0 +1,318 @@
+package framework;
+
+import util.ConversionUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A decoded frame of measurements, i.e. one time measurement and the measurements following it up to the next time
+ * measurement. Filters living in the same JVM can pass frames to each other over a {@link FrameChannel} instead of
+ * serializing every measurement to bytes and parsing it again at the next filter.
+ *
+ * A measurement is kept as its decoded 8 byte value (the time in milliseconds, or the bits of a double for all other
+ * measurements) until a filter changes its representation, e.g. formats it into a string. From then on the frame
+ * keeps the new bytes as is. Measurements read from the wire are decoded according to their
+ * {@link MeasurementType} in the schema of the reading filter, and ids are written back with the id length of that
+ * schema. The measurements remember the order they were put in, which is the order they are
+ * written in when the frame is serialized back to bytes.
+ *
+ * A frame is handed over to the next filter when it is written, so the writing filter should not touch it afterwards.
+ *
+ * @since 1.0.0
+ */
+public class MeasurementFrame {
+
+    /**
+     * Number of measurement ids a frame can hold, ids from 0 to {@link MeasurementConfig#MAX_ID}.
+     */
+    public static final int CAPACITY = MeasurementConfig.MAX_ID + 1;
+
+    /**
+     * Number of ids a frame has a slot for until a larger id is put in, enough for the well known ids.
+     */
+    private static final int INITIAL_SLOTS = MeasurementConfig.ID_ATTITUDE + 1;
+
+    private static final int VALUE_LENGTH = MeasurementConfig.VALUE_LENGTH;
+
+    /**
+     * Length of the ids of this frame on the wire.
+     */
+    private final int idLength;
+
+    /**
+     * Bit mask of the ids present in this frame, bit {@code n} standing for id {@code n}.
+     */
+    private int presence;
+
+    /**
+     * Decoded measurements, indexed by id.
+     */
+    private long[] values = new long[INITIAL_SLOTS];
+
+    /**
+     * Bytes of the measurements whose representation has been changed by a filter, indexed by id.
+     */
+    private byte[][] encoded = new byte[INITIAL_SLOTS][];
+
+    /**
+     * The ids present in this frame, in the order they were put in.
+     */
+    private int[] order = new int[INITIAL_SLOTS];
+    private int size;
+
+    /**
+     * Construct a frame written with the id length of the source files, see
+     * {@link MeasurementConfig#DEFAULT_ID_LENGTH}.
+     */
+    public MeasurementFrame() {
+        this(MeasurementConfig.DEFAULT_ID_LENGTH);
+    }
+
+    /**
+     * Construct a frame written with the id length of the given schema.
+     *
+     * @param context the schema of the measurements of the frame
+     */
+    public MeasurementFrame(MeasurementConfig context) {
+        this(context.getIdLength());
+    }
+
+    MeasurementFrame(int idLength) {
+        this.idLength = idLength;
+    }
+
+    /**
+     * Whether the measurement with the given id is present in this frame.
+     *
+     * @param id the id of the measurement
+     * @return true if present
+     */
+    public boolean has(int id) {
+        return (presence & (1 << checkId(id))) != 0;
+    }
+
+    /**
+     * @return the bit mask of the ids present in this frame, bit {@code n} standing for id {@code n}.
+     */
+    public int presenceMask() {
+        return presence;
+    }
+
+    /**
+     * @return the number of measurements in this frame.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Retrieve the id of the {@code index}-th measurement of this frame, in the order they were put in.
+     *
+     * @param index the index of the measurement, from 0 to {@link #size()} - 1
+     * @return the id of the measurement
+     */
+    public int idAt(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        return order[index];
+    }
+
+    /**
+     * Retrieve a measurement as a long, e.g. the time in milliseconds.
+     *
+     * @param id the id of the measurement
+     * @return the decoded measurement
+     */
+    public long getLong(int id) {
+        checkPresent(id);
+        if (encoded[id] != null)
+            throw new IllegalStateException("measurement with id " + id + " is no longer a number");
+        return values[id];
+    }
+
+    /**
+     * Retrieve a measurement as a double, e.g. the altitude in feet.
+     *
+     * @param id the id of the measurement
+     * @return the decoded measurement
+     */
+    public double getDouble(int id) {
+        return Double.longBitsToDouble(getLong(id));
+    }
+
+    public MeasurementFrame setLong(int id, long value) {
+        add(id);
+        values[id] = value;
+        encoded[id] = null;
+        return this;
+    }
+
+    public MeasurementFrame setDouble(int id, double value) {
+        return setLong(id, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Retrieve the bytes of a measurement the way they appear on the wire (without the id).
+     *
+     * @param id the id of the measurement
+     * @return the measurement bytes
+     */
+    public byte[] getBytes(int id) {
+        checkPresent(id);
+        if (encoded[id] != null)
+            return encoded[id];
+        byte[] bytes = new byte[VALUE_LENGTH];
+        ConversionUtil.writeLong(bytes, 0, values[id]);
+        return bytes;
+    }
+
+    /**
+     * Put the bytes of a measurement the way they appear on the wire (without the id), decoded according to its type:
+     * a {@link MeasurementType#LONG} or a {@link MeasurementType#DOUBLE} is kept as its value, a
+     * {@link MeasurementType#TEXT} as is. Filters reading the wire pass the type of the measurement in their schema,
+     * see {@link MeasurementConfig#typeOf(int)}.
+     *
+     * @param id the id of the measurement
+     * @param measurement the measurement bytes
+     * @param type the type of the measurement
+     * @return this frame
+     */
+    public MeasurementFrame setBytes(int id, byte[] measurement, MeasurementType type) {
+        if (type != MeasurementType.TEXT) {
+            if (measurement.length != VALUE_LENGTH)
+                throw new IllegalArgumentException("measurement with id " + id + " is " + measurement.length
+                        + " bytes, a " + type + " is " + VALUE_LENGTH);
+            return setLong(id, ConversionUtil.readLong(measurement, 0));
+        }
+        add(id);
+        encoded[id] = measurement;
+        return this;
+    }
+
+    /**
+     * Put the bytes a filter has transformed a measurement into, when the filter does not say what they are: 8 bytes
+     * are taken to be a number and decoded, any other length is kept as is. Filters knowing the type of their output
+     * use {@link #setBytes(int, byte[], MeasurementType)}.
+     *
+     * @param id the id of the measurement
+     * @param measurement the measurement bytes
+     * @return this frame
+     */
+    public MeasurementFrame setBytes(int id, byte[] measurement) {
+        return setBytes(id, measurement,
+                measurement.length == VALUE_LENGTH ? MeasurementType.LONG : MeasurementType.TEXT);
+    }
+
+    /**
+     * Whether the measurement has been transformed into something that is no longer a number, e.g. a string.
+     *
+     * @param id the id of the measurement
+     * @return true if the measurement is only available through {@link #getBytes(int)}
+     */
+    public boolean isEncoded(int id) {
+        checkPresent(id);
+        return encoded[id] != null;
+    }
+
+    /**
+     * Remove a measurement from this frame. Removing an absent measurement does nothing.
+     *
+     * @param id the id of the measurement
+     * @return this frame
+     */
+    public MeasurementFrame remove(int id) {
+        if (!has(id))
+            return this;
+        presence &= ~(1 << id);
+        encoded[id] = null;
+        int index = 0;
+        while (order[index] != id)
+            index++;
+        System.arraycopy(order, index + 1, order, index, size - index - 1);
+        size--;
+        return this;
+    }
+
+    /**
+     * Copy this frame, e.g. to write one frame to two output ports. Transformed measurement bytes are shared since
+     * filters replace them rather than modify them.
+     *
+     * @return a new frame with the same measurements in the same order
+     */
+    public MeasurementFrame copy() {
+        MeasurementFrame copy = new MeasurementFrame(idLength);
+        copy.presence = presence;
+        copy.values = values.clone();
+        copy.encoded = encoded.clone();
+        copy.order = order.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * @return the number of bytes this frame takes on the wire, ids included.
+     */
+    public int byteLength() {
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            int id = order[i];
+            length += idLength + (encoded[id] != null ? encoded[id].length : VALUE_LENGTH);
+        }
+        return length;
+    }
+
+    /**
+     * Serialize this frame into the buffer, id followed by measurement for each measurement in the order they were
+     * put in.
+     *
+     * @param buffer the buffer to write to, with at least {@link #byteLength()} bytes remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        for (int i = 0; i < size; i++) {
+            int id = order[i];
+            ConversionUtil.putId(buffer, id, idLength);
+            if (encoded[id] != null)
+                buffer.put(encoded[id]);
+            else
+                buffer.putLong(values[id]);
+        }
+    }
+
+    /**
+     * @return this frame serialized to bytes, see {@link #writeTo(ByteBuffer)}.
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(byteLength());
+        writeTo(buffer);
+        return buffer.array();
+    }
+
+    private void add(int id) {
+        if (has(id))
+            return;
+        if (id >= values.length) {
+            int slots = Math.max(id + 1, Math.min(CAPACITY, values.length * 2));
+            values = Arrays.copyOf(values, slots);
+            encoded = Arrays.copyOf(encoded, slots);
+            order = Arrays.copyOf(order, slots);
+        }
+        presence |= 1 << id;
+        order[size++] = id;
+    }
+
+    private void checkPresent(int id) {
+        if (!has(id))
+            throw new IllegalArgumentException("id: " + id + " is not present in the frame");
+    }
+
+    private static int checkId(int id) {
+        if (id < 0 || id >= CAPACITY)
+            throw new IllegalArgumentException("id: " + id + " does not have corresponding measurement");
+        return id;
+    }
+}
@@ -0,0 +1,24 @@
+package framework;
+
+/**
+ * How the bytes of a measurement are to be interpreted, as declared in a {@link MeasurementConfig}.
+ *
+ * @since 1.0.0
+ */
+public enum MeasurementType {
+
+    /**
+     * An 8 byte big-endian long, e.g. the time in milliseconds.
+     */
+    LONG,
+
+    /**
+     * The 8 byte big-endian bits of a double, e.g. the altitude in feet.
+     */
+    DOUBLE,
+
+    /**
+     * Text of a fixed length, e.g. a measurement formatted by an upstream filter.
+     */
+    TEXT
+}
@@ -0,0 +1,253 @@
+package framework;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A filter that runs several replicas of a stateless {@link SimpleFilter} side by side, so a stage that caps the
+ * throughput of a pipeline can use more than one core. The filter reads frames from its input port, hands them out in
+ * batches of {@link #BATCH_SIZE} frames to worker threads, each transforming a batch with a replica that is free, and
+ * writes the transformed batches to its output port in the order they were read, whichever worker finishes first.
+ *
+ * The batches in flight are queued in the order they were read, at most {@link #BATCHES_IN_FLIGHT_PER_REPLICA} per
+ * replica, and that queue serves as the reorder buffer: a batch is only written once every batch read before it has
+ * been. The replicas must be stateless (see {@link SimpleFilter#isStateless()}), of the same class, configured alike,
+ * and neither connected nor started, like the stages of a {@link FusedFilter}. A replica writing to its output port by
+ * itself, like {@code FormattingFilter}, is stateful and cannot be used.
+ *
+ * @since 1.0.0
+ */
+public class ParallelFilter extends SimpleFilter {
+
+    /**
+     * Number of frames handed to a worker at a time.
+     */
+    public static final int BATCH_SIZE = 256;
+
+    /**
+     * Number of batches waiting or being transformed per replica before the filter waits for the oldest one.
+     */
+    private static final int BATCHES_IN_FLIGHT_PER_REPLICA = 4;
+
+    /**
+     * The replicas that are not transforming a batch right now.
+     */
+    private final BlockingQueue<SimpleFilter> idleReplicas;
+
+    private final SimpleFilter[] replicas;
+
+    /**
+     * Default constructor.
+     *
+     * @param filterId the filter id of this filter.
+     * @param replicas the stateless filters to run side by side, one per worker thread.
+     */
+    public ParallelFilter(String filterId, SimpleFilter... replicas) {
+        super(firstReplica(replicas).context, filterId);
+        for (SimpleFilter replica : replicas) {
+            if (!replica.isStateless())
+                throw new IllegalArgumentException("filter " + replica.filterId + " is not stateless, cannot run it "
+                        + "in parallel");
+            if (replica.getClass() != replicas[0].getClass())
+                throw new IllegalArgumentException("filter " + replica.filterId + " is not a replica of filter "
+                        + replicas[0].filterId);
+            if (!replica.inputs.isEmpty() || !replica.outputs.isEmpty())
+                throw new IllegalArgumentException("filter " + replica.filterId + " is already connected, cannot run "
+                        + "it in parallel");
+        }
+        this.replicas = replicas.clone();
+        this.idleReplicas = new ArrayBlockingQueue<SimpleFilter>(replicas.length);
+        for (SimpleFilter replica : replicas)
+            idleReplicas.add(replica);
+        handleIdsOfReplica();
+    }
+
+    private static SimpleFilter firstReplica(SimpleFilter[] replicas) {
+        if (replicas.length == 0)
+            throw new IllegalArgumentException("At least one filter is needed to run in parallel");
+        return replicas[0];
+    }
+
+    /**
+     * Handle the ids handled by the replicas, so measurements they don't handle are passed through without calling
+     * them when this filter is itself a stage of a {@link FusedFilter}.
+     */
+    private void handleIdsOfReplica() {
+        int[] ids = new int[MeasurementConfig.MAX_ID + 1];
+        int count = 0;
+        for (int id = 0; id <= MeasurementConfig.MAX_ID; id++) {
+            if (replicas[0].handlesId(id))
+                ids[count++] = id;
+        }
+        if (count <= MeasurementConfig.MAX_ID)
+            handleIds(Arrays.copyOf(ids, count));
+    }
+
+    /**
+     * @return the number of replicas, i.e. of worker threads.
+     */
+    public int getParallelism() {
+        return replicas.length;
+    }
+
+    @Override
+    protected boolean isStateless() {
+        return true;
+    }
+
+    /**
+     * Transform the measurement with the first replica, for when this filter is a stage of a {@link FusedFilter} and
+     * does not run by itself.
+     */
+    @Override
+    protected byte[] doTransform(int id, byte[] measurement) {
+        return replicas[0].doTransform(id, measurement);
+    }
+
+    /**
+     * Transform the frame with the first replica, for when this filter is a stage of a {@link FusedFilter} and does
+     * not run by itself.
+     */
+    @Override
+    protected void transformFrame(MeasurementFrame frame) {
+        replicas[0].transformFrame(frame);
+    }
+
+    /**
+     * Main execution method for this filter. It reads frames into batches, hands each full batch to the workers and
+     * writes the batches that are done in the order they were read. A batch that is not full is handed out as well
+     * when the input port has nothing more to read right away, and the filter then waits for the batches in flight
+     * and writes them, oldest first, until the input has data again, so frames are not held back while the input is
+     * idle.
+     *
+     * When input port goes down, it waits for the batches in flight, writes them and closes all ports.
+     */
+    @Override
+    public void run() {
+        ExecutorService workers = Executors.newFixedThreadPool(replicas.length, new WorkerThreadFactory());
+        ArrayDeque<Future<Batch>> inFlight = new ArrayDeque<Future<Batch>>();
+        int maxInFlight = replicas.length * BATCHES_IN_FLIGHT_PER_REPLICA;
+        boolean serialize = !outputCarriesFrames(outputFilterId);
+        FrameReader reader = new FrameReader(this, inputFilterId, context);
+        Batch batch = new Batch(serialize);
+        try {
+            while (true) {
+                try {
+                    batch.frames.add(reader.next());
+                } catch (EndOfStreamException e) {
+                    break;
+                }
+                if (batch.frames.size() < BATCH_SIZE && inputHasData())
+                    continue;
+
+                inFlight.addLast(workers.submit(batch));
+                batch = new Batch(serialize);
+                while (!inFlight.isEmpty() && (inFlight.size() >= maxInFlight || inFlight.peekFirst().isDone()
+                        || !inputHasData()))
+                    writeBatch(inFlight.removeFirst());
+            }
+
+            if (!batch.frames.isEmpty())
+                inFlight.addLast(workers.submit(batch));
+            while (!inFlight.isEmpty())
+                writeBatch(inFlight.removeFirst());
+            closeAllPorts();
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Wait for the batch to be transformed and write it to the output port.
+     */
+    private void writeBatch(Future<Batch> future) {
+        Batch batch;
+        try {
+            batch = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("filter " + filterId + " was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("filter " + filterId + " failed to transform a batch", e.getCause());
+        }
+
+        if (batch.bytes != null) {
+            if (batch.bytes.length > 0)
+                WriteFilterOutputPort(batch.bytes, 0, batch.bytes.length);
+            return;
+        }
+        for (MeasurementFrame frame : batch.frames) {
+            if (!frame.isEmpty())
+                WriteFilterOutputPort(frame);
+        }
+    }
+
+    /**
+     * A batch of frames read in a row, transformed by a worker with whichever replica is free. If the output port
+     * carries bytes, the worker serializes the transformed frames too.
+     */
+    private class Batch implements Callable<Batch> {
+
+        private final List<MeasurementFrame> frames = new ArrayList<MeasurementFrame>(BATCH_SIZE);
+
+        private final boolean serialize;
+
+        /**
+         * The transformed frames serialized, set by {@link #call()} if {@link #serialize} is on.
+         */
+        private byte[] bytes;
+
+        private Batch(boolean serialize) {
+            this.serialize = serialize;
+        }
+
+        @Override
+        public Batch call() throws InterruptedException {
+            SimpleFilter replica = idleReplicas.take();
+            try {
+                for (MeasurementFrame frame : frames)
+                    replica.transformFrame(frame);
+            } finally {
+                idleReplicas.put(replica);
+            }
+
+            if (serialize) {
+                int length = 0;
+                for (MeasurementFrame frame : frames)
+                    length += frame.byteLength();
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                for (MeasurementFrame frame : frames)
+                    frame.writeTo(buffer);
+                bytes = buffer.array();
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Names the worker threads after the thread of this filter, and makes them daemon threads so a pipeline that
+     * failed does not keep the JVM alive.
+     */
+    private class WorkerThreadFactory implements ThreadFactory {
+
+        private int count = 0;
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, getName() + "-worker-" + count++);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
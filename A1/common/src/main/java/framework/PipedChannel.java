@@ -0,0 +1,142 @@
+package framework;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+/**
+ * A channel backed by a connected pair of {@link PipedInputStream} and {@link PipedOutputStream}. This is the
+ * original transport of the framework.
+ *
+ * The piped streams do not tell when they are about to block, so while a flight recording has stalls enabled, the
+ * channel checks whether the pipe is empty before a read, or too full for a write, and records a stall flight event
+ * if it is, see {@link FlightEvents}.
+ *
+ * @since 1.0.0
+ */
+public class PipedChannel extends Channel {
+
+    /**
+     * Number of bytes the pipe can buffer, the default of {@link PipedInputStream}.
+     */
+    private static final int PIPE_CAPACITY = 1024;
+
+    /**
+     * The reading end of the pipe, owned by the downstream filter.
+     */
+    private final PipedInputStream in = new PipedInputStream(PIPE_CAPACITY);
+
+    /**
+     * The writing end of the pipe, owned by the upstream filter.
+     */
+    private final PipedOutputStream out = new PipedOutputStream();
+
+    /**
+     * Whether the writing end has been closed.
+     */
+    private volatile boolean closedByWriter = false;
+
+    /**
+     * Whether the reading end has been closed.
+     */
+    private volatile boolean closedByReader = false;
+
+    /**
+     * Default constructor. Connects the two ends of the pipe.
+     *
+     * @throws IOException thrown when the pipe cannot be connected.
+     */
+    public PipedChannel() throws IOException {
+        in.connect(out);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return in.available();
+    }
+
+    @Override
+    public boolean isEndOfStream() {
+        try {
+            return closedByReader || (closedByWriter && in.available() == 0);
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * The piped stream blocks on its monitor until the writer flushes data or closes the pipe.
+     */
+    @Override
+    public int read() throws IOException {
+        Object stall = stallStarted(FlightEvents.READ, 0);
+        try {
+            return in.read();
+        } finally {
+            FlightEvents.stallEnded(stall);
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Object stall = stallStarted(FlightEvents.READ, 0);
+        try {
+            return in.read(b, off, len);
+        } finally {
+            FlightEvents.stallEnded(stall);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        Object stall = stallStarted(FlightEvents.WRITE, 1);
+        try {
+            out.write(b);
+        } finally {
+            FlightEvents.stallEnded(stall);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        Object stall = stallStarted(FlightEvents.WRITE, len);
+        try {
+            out.write(b, off, len);
+        } finally {
+            FlightEvents.stallEnded(stall);
+        }
+    }
+
+    /**
+     * Begin a stall if stalls are recorded and the pipe is about to block: it is empty for a read, or has no room for
+     * the bytes of a write.
+     *
+     * @param operation {@link FlightEvents#READ} or {@link FlightEvents#WRITE}
+     * @param length the number of bytes to be written, 0 for a read
+     * @return the stall to end once the read or the write has returned, or null
+     */
+    private Object stallStarted(String operation, int length) throws IOException {
+        if (!FlightEvents.isStallRecorded())
+            return null;
+        int buffered = in.available();
+        boolean blocking = length == 0 ? buffered == 0 : buffered + length > PIPE_CAPACITY;
+        return blocking ? FlightEvents.stallStarted(this, operation) : null;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void closeInput() throws IOException {
+        closedByReader = true;
+        in.close();
+    }
+
+    @Override
+    public void closeOutput() throws IOException {
+        closedByWriter = true;
+        out.close();
+    }
+}
@@ -0,0 +1,446 @@
+package framework;
+
+import java.io.File;
+
+/**
+ * A configuration object specifying how the filters of a pipeline are wired together. Plumbers create one per
+ * pipeline, usually from system properties, so the transport can be switched without code changes, e.g.
+ * {@code java -Dframework.channel=ring_buffer -jar systemA.jar ...}.
+ *
+ * @since 1.0.0
+ */
+public class PipelineConfig {
+
+    /**
+     * System property selecting the {@link ChannelType}, case insensitive.
+     */
+    public static final String CHANNEL_PROPERTY = "framework.channel";
+
+    /**
+     * System property turning on the frame transport between measurement filters, {@code true} or {@code false}.
+     */
+    public static final String FRAMES_PROPERTY = "framework.frames";
+
+    /**
+     * System property turning on the fusion of linear chains of simple filters, {@code true} or {@code false}.
+     */
+    public static final String FUSION_PROPERTY = "framework.fusion";
+
+    /**
+     * System property setting the number of replicas a plumber runs its slowest stateless stage in, see
+     * {@link ParallelFilter}. 1 runs it as a single filter.
+     */
+    public static final String PARALLELISM_PROPERTY = "framework.parallelism";
+
+    /**
+     * System property setting the number of chunks of the input file a plumber processes side by side, see
+     * {@link ChunkedScan}. 1 reads the file as a single stream.
+     */
+    public static final String SCAN_PROPERTY = "framework.scan";
+
+    /**
+     * System property setting the memory budget, in megabytes, of the {@link ExternalSortFilter} a plumber puts in
+     * front of a stage needing time sorted input. 0 leaves the sort stage out.
+     */
+    public static final String SORT_PROPERTY = "framework.sort";
+
+    /**
+     * System property setting the number of frames a filter holding frames back keeps in memory, see
+     * {@link FrameBacklog}.
+     */
+    public static final String BACKLOG_PROPERTY = "framework.backlog";
+
+    /**
+     * System property selecting the {@link BacklogPolicy} for the frames beyond the capacity of a backlog, case
+     * insensitive.
+     */
+    public static final String BACKLOG_POLICY_PROPERTY = "framework.backlog.policy";
+
+    /**
+     * System property selecting the {@link ReadMode} of the file sources, case insensitive.
+     */
+    public static final String SOURCE_PROPERTY = "framework.source";
+
+    /**
+     * System property turning on the projection of the measurements in the sources instead of dropping them in the
+     * filter behind them, {@code true} or {@code false}.
+     */
+    public static final String PROJECTION_PROPERTY = "framework.projection";
+
+    /**
+     * System property selecting the {@link WriteMode} of the file sinks, case insensitive.
+     */
+    public static final String SINK_PROPERTY = "framework.sink";
+
+    /**
+     * System property selecting the {@link RunnerType}, case insensitive.
+     */
+    public static final String RUNNER_PROPERTY = "framework.runner";
+
+    /**
+     * System property setting the number of threads of a {@link RunnerType#POOL} runner.
+     */
+    public static final String RUNNER_THREADS_PROPERTY = "framework.runner.threads";
+
+    /**
+     * System property turning on the {@link FilterMetrics} of the filters, registered as MBeans, {@code true} or
+     * {@code false}.
+     */
+    public static final String METRICS_PROPERTY = "framework.metrics";
+
+    /**
+     * System property naming the file snapshots of the {@link FilterMetrics} are appended to, see
+     * {@link PipelineMetrics}. Setting it turns the metrics on.
+     */
+    public static final String METRICS_FILE_PROPERTY = "framework.metrics.file";
+
+    /**
+     * System property setting the milliseconds between two snapshots of the metrics.
+     */
+    public static final String METRICS_INTERVAL_PROPERTY = "framework.metrics.interval";
+
+    /**
+     * Default milliseconds between two snapshots of the metrics.
+     */
+    public static final long DEFAULT_METRICS_INTERVAL = 1000L;
+
+    /**
+     * Default number of threads of a {@link RunnerType#POOL} runner, enough for the largest pipeline of the systems.
+     */
+    public static final int DEFAULT_RUNNER_THREADS = 32;
+
+    /**
+     * The type of channel connecting the filters.
+     */
+    private ChannelType channelType = ChannelType.PIPE;
+
+    /**
+     * Whether measurement filters pass {@link MeasurementFrame}s to each other instead of bytes.
+     */
+    private boolean frameTransport = false;
+
+    /**
+     * Whether plumbers run linear chains of simple filters in one {@link FusedFilter} instead of one thread each.
+     */
+    private boolean fusion = false;
+
+    /**
+     * The number of replicas of the stage run in a {@link ParallelFilter}, 1 if it runs as a single filter.
+     */
+    private int parallelism = 1;
+
+    /**
+     * The number of chunks of the input file processed side by side, 1 if the file is read as a single stream.
+     */
+    private int scanParallelism = 1;
+
+    /**
+     * The number of bytes of memory an {@link ExternalSortFilter} may use for its runs, 0 if inputs are not sorted.
+     */
+    private long sortMemoryBudget = 0;
+
+    /**
+     * The number of frames a {@link FrameBacklog} keeps in memory.
+     */
+    private int backlogCapacity = FrameBacklog.DEFAULT_CAPACITY;
+
+    /**
+     * What a {@link FrameBacklog} does with the frames beyond its capacity.
+     */
+    private BacklogPolicy backlogPolicy = BacklogPolicy.SPILL;
+
+    /**
+     * How the sources read their external resource.
+     */
+    private ReadMode readMode = ReadMode.STREAM;
+
+    /**
+     * Whether the sources drop the measurements not needed by the pipeline themselves, so plumbers leave out the
+     * dropping filter right behind them.
+     */
+    private boolean projection = false;
+
+    /**
+     * How the sinks write to their external resource.
+     */
+    private WriteMode writeMode = WriteMode.LINE;
+
+    /**
+     * The type of runner the filters are run on.
+     */
+    private RunnerType runnerType = RunnerType.THREAD;
+
+    /**
+     * The number of threads of a {@link RunnerType#POOL} runner.
+     */
+    private int runnerThreads = DEFAULT_RUNNER_THREADS;
+
+    /**
+     * Whether the filters keep {@link FilterMetrics}.
+     */
+    private boolean metrics = false;
+
+    /**
+     * The file snapshots of the metrics are appended to, null for none.
+     */
+    private File metricsFile = null;
+
+    /**
+     * The milliseconds between two snapshots of the metrics.
+     */
+    private long metricsInterval = DEFAULT_METRICS_INTERVAL;
+
+    /**
+     * Convenience method to construct a new configuration with default settings.
+     *
+     * @return a new configuration
+     */
+    public static PipelineConfig newConfig() {
+        return new PipelineConfig();
+    }
+
+    /**
+     * Convenience method to construct a new configuration from system properties. Properties not set keep their
+     * default value.
+     *
+     * @return a new configuration
+     */
+    public static PipelineConfig fromSystemProperties() {
+        PipelineConfig config = newConfig();
+        String channel = System.getProperty(CHANNEL_PROPERTY);
+        if (channel != null)
+            config.useChannelType(ChannelType.valueOf(channel.trim().toUpperCase()));
+        String frames = System.getProperty(FRAMES_PROPERTY);
+        if (frames != null)
+            config.useFrameTransport(Boolean.parseBoolean(frames.trim()));
+        String fusion = System.getProperty(FUSION_PROPERTY);
+        if (fusion != null)
+            config.useFusion(Boolean.parseBoolean(fusion.trim()));
+        String parallelism = System.getProperty(PARALLELISM_PROPERTY);
+        if (parallelism != null)
+            config.useParallelism(Integer.parseInt(parallelism.trim()));
+        String scan = System.getProperty(SCAN_PROPERTY);
+        if (scan != null)
+            config.useScanParallelism(Integer.parseInt(scan.trim()));
+        String sort = System.getProperty(SORT_PROPERTY);
+        if (sort != null)
+            config.useSortMemoryBudget(Long.parseLong(sort.trim()) * 1024 * 1024);
+        String backlog = System.getProperty(BACKLOG_PROPERTY);
+        if (backlog != null)
+            config.useBacklogCapacity(Integer.parseInt(backlog.trim()));
+        String backlogPolicy = System.getProperty(BACKLOG_POLICY_PROPERTY);
+        if (backlogPolicy != null)
+            config.useBacklogPolicy(BacklogPolicy.valueOf(backlogPolicy.trim().toUpperCase()));
+        String source = System.getProperty(SOURCE_PROPERTY);
+        if (source != null)
+            config.useReadMode(ReadMode.valueOf(source.trim().toUpperCase()));
+        String projection = System.getProperty(PROJECTION_PROPERTY);
+        if (projection != null)
+            config.useProjection(Boolean.parseBoolean(projection.trim()));
+        String sink = System.getProperty(SINK_PROPERTY);
+        if (sink != null)
+            config.useWriteMode(WriteMode.valueOf(sink.trim().toUpperCase()));
+        String runner = System.getProperty(RUNNER_PROPERTY);
+        if (runner != null)
+            config.useRunnerType(RunnerType.valueOf(runner.trim().toUpperCase()));
+        String runnerThreads = System.getProperty(RUNNER_THREADS_PROPERTY);
+        if (runnerThreads != null)
+            config.useRunnerThreads(Integer.parseInt(runnerThreads.trim()));
+        String metrics = System.getProperty(METRICS_PROPERTY);
+        if (metrics != null)
+            config.useMetrics(Boolean.parseBoolean(metrics.trim()));
+        String metricsFile = System.getProperty(METRICS_FILE_PROPERTY);
+        if (metricsFile != null)
+            config.useMetricsFile(new File(metricsFile.trim()));
+        String metricsInterval = System.getProperty(METRICS_INTERVAL_PROPERTY);
+        if (metricsInterval != null)
+            config.useMetricsInterval(Long.parseLong(metricsInterval.trim()));
+        return config;
+    }
+
+    public PipelineConfig useChannelType(ChannelType channelType) {
+        this.channelType = channelType;
+        return this;
+    }
+
+    public PipelineConfig useFrameTransport(boolean frameTransport) {
+        this.frameTransport = frameTransport;
+        return this;
+    }
+
+    public PipelineConfig useFusion(boolean fusion) {
+        this.fusion = fusion;
+        return this;
+    }
+
+    public PipelineConfig useParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism: " + parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public PipelineConfig useScanParallelism(int scanParallelism) {
+        if (scanParallelism < 1)
+            throw new IllegalArgumentException("scanParallelism: " + scanParallelism);
+        this.scanParallelism = scanParallelism;
+        return this;
+    }
+
+    public PipelineConfig useSortMemoryBudget(long sortMemoryBudget) {
+        if (sortMemoryBudget < 0)
+            throw new IllegalArgumentException("sortMemoryBudget: " + sortMemoryBudget);
+        this.sortMemoryBudget = sortMemoryBudget;
+        return this;
+    }
+
+    public PipelineConfig useBacklogCapacity(int backlogCapacity) {
+        if (backlogCapacity < 1)
+            throw new IllegalArgumentException("backlogCapacity: " + backlogCapacity);
+        this.backlogCapacity = backlogCapacity;
+        return this;
+    }
+
+    public PipelineConfig useBacklogPolicy(BacklogPolicy backlogPolicy) {
+        this.backlogPolicy = backlogPolicy;
+        return this;
+    }
+
+    public PipelineConfig useReadMode(ReadMode readMode) {
+        this.readMode = readMode;
+        return this;
+    }
+
+    public PipelineConfig useProjection(boolean projection) {
+        this.projection = projection;
+        return this;
+    }
+
+    public PipelineConfig useWriteMode(WriteMode writeMode) {
+        this.writeMode = writeMode;
+        return this;
+    }
+
+    public PipelineConfig useRunnerType(RunnerType runnerType) {
+        this.runnerType = runnerType;
+        return this;
+    }
+
+    public PipelineConfig useRunnerThreads(int runnerThreads) {
+        if (runnerThreads < 1)
+            throw new IllegalArgumentException("runnerThreads: " + runnerThreads);
+        this.runnerThreads = runnerThreads;
+        return this;
+    }
+
+    public PipelineConfig useMetrics(boolean metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public PipelineConfig useMetricsFile(File metricsFile) {
+        this.metricsFile = metricsFile;
+        if (metricsFile != null)
+            this.metrics = true;
+        return this;
+    }
+
+    public PipelineConfig useMetricsInterval(long metricsInterval) {
+        if (metricsInterval < 1)
+            throw new IllegalArgumentException("metricsInterval: " + metricsInterval);
+        this.metricsInterval = metricsInterval;
+        return this;
+    }
+
+    public ChannelType getChannelType() {
+        return channelType;
+    }
+
+    public boolean isFrameTransport() {
+        return frameTransport;
+    }
+
+    public boolean isFusion() {
+        return fusion;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getScanParallelism() {
+        return scanParallelism;
+    }
+
+    public boolean isSort() {
+        return sortMemoryBudget > 0;
+    }
+
+    public long getSortMemoryBudget() {
+        return sortMemoryBudget;
+    }
+
+    public int getBacklogCapacity() {
+        return backlogCapacity;
+    }
+
+    public BacklogPolicy getBacklogPolicy() {
+        return backlogPolicy;
+    }
+
+    public ReadMode getReadMode() {
+        return readMode;
+    }
+
+    public boolean isProjection() {
+        return projection;
+    }
+
+    public WriteMode getWriteMode() {
+        return writeMode;
+    }
+
+    public RunnerType getRunnerType() {
+        return runnerType;
+    }
+
+    public int getRunnerThreads() {
+        return runnerThreads;
+    }
+
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    public File getMetricsFile() {
+        return metricsFile;
+    }
+
+    public long getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    /**
+     * Construct a new runner of the configured type to start the filters of the pipeline on, keeping the metrics of
+     * the filters if they are turned on.
+     *
+     * @return a new runner
+     */
+    public FilterRunner newRunner() {
+        FilterRunner runner = runnerType.newRunner(runnerThreads);
+        if (metrics)
+            runner.useMetrics(new PipelineMetrics(metricsFile, metricsInterval));
+        return runner;
+    }
+
+    /**
+     * The type of channel to wire between two measurement filters: {@link ChannelType#FRAME} when the frame
+     * transport is on, otherwise {@link #getChannelType()}. Connections to sources and sinks always use
+     * {@link #getChannelType()} since those read and write bytes.
+     *
+     * @return the channel type for connections between measurement filters
+     */
+    public ChannelType getFilterChannelType() {
+        return frameTransport ? ChannelType.FRAME : channelType;
+    }
+}
@@ -0,0 +1,194 @@
+package framework;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link FilterMetrics} of the filters of one pipeline. A {@link FilterRunner} given one hands every filter it
+ * starts to it, which turns the metrics of the filter on and registers them with the platform MBean server; when the
+ * runner shuts down, the metrics are unregistered again.
+ *
+ * Given a file, it also appends a snapshot of the metrics of every filter to it at a fixed interval, and a last one
+ * when the runner shuts down. The file is a CSV file with the columns of {@link #HEADER}, written with a header when
+ * it is empty; pipelines running side by side can share one.
+ *
+ * @since 1.0.0
+ */
+public class PipelineMetrics {
+
+    /**
+     * The columns of the snapshot file.
+     */
+    public static final String HEADER = "time,pipeline,filter,bytesIn,bytesOut,measurementsIn,measurementsOut,"
+            + "framesIn,framesOut,readWaitNanos,writeWaitNanos,inputBacklogBytes,inputBacklogFrames,transformCount,"
+            + "transformMeanNanos,transformP50Nanos,transformP90Nanos,transformP99Nanos,transformP999Nanos,"
+            + "transformMaxNanos,backlogPolicy,backlogPeakSize,backlogSpilledFrames,backlogOverflowFrames";
+
+    /**
+     * Number of the last pipeline started with metrics in this JVM, used to name the next one.
+     */
+    private static final AtomicInteger pipelines = new AtomicInteger();
+
+    /**
+     * Lock serializing the snapshots of all pipelines, since they may go to the same file.
+     */
+    private static final Object snapshotLock = new Object();
+
+    private final String name;
+
+    private final File snapshotFile;
+
+    private final long snapshotInterval;
+
+    private final List<FilterMetrics> filters = new CopyOnWriteArrayList<FilterMetrics>();
+
+    private final List<ObjectName> registered = new CopyOnWriteArrayList<ObjectName>();
+
+    /**
+     * The timer taking the snapshots, started with the first filter.
+     */
+    private Timer timer;
+
+    /**
+     * Construct the metrics of a new pipeline, named after the number of pipelines started with metrics before it.
+     *
+     * @param snapshotFile the file the snapshots are appended to, null for none
+     * @param snapshotInterval the milliseconds between two snapshots
+     */
+    public PipelineMetrics(File snapshotFile, long snapshotInterval) {
+        if (snapshotInterval < 1)
+            throw new IllegalArgumentException("snapshotInterval: " + snapshotInterval);
+        this.name = String.valueOf(pipelines.incrementAndGet());
+        this.snapshotFile = snapshotFile;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * @return the name of the pipeline, the value of the {@code pipeline} key of the MBean names.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the metrics of the filters registered so far, in the order they were registered.
+     */
+    public List<FilterMetrics> getFilters() {
+        return filters;
+    }
+
+    /**
+     * Turn the metrics of a filter on and register them. Must be called before the filter is started.
+     *
+     * @param filter the filter
+     */
+    public synchronized void register(FilterFramework filter) {
+        FilterMetrics metrics = new FilterMetrics(name, filter);
+        filter.metrics = metrics;
+        filters.add(metrics);
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("framework:type=Filter,pipeline=" + name + ",filter="
+                    + filter.filterId);
+            server.registerMBean(metrics, objectName);
+            registered.add(objectName);
+        } catch (JMException Error) {
+            System.out.println("\n" + filter.getName() + " Metrics registration error::" + Error);
+        }
+
+        if (snapshotFile != null && timer == null) {
+            timer = new Timer("Metrics-" + name, true);
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    snapshot();
+                }
+            }, snapshotInterval, snapshotInterval);
+        }
+    }
+
+    /**
+     * Take a last snapshot, stop taking them and unregister the metrics of every filter.
+     */
+    public synchronized void close() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+            snapshot();
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registered) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException Error) {
+                System.out.println("\nPipeline " + name + " Metrics unregistration error::" + Error);
+            }
+        }
+        registered.clear();
+    }
+
+    /**
+     * Append a line per filter with its current metrics to the snapshot file.
+     */
+    public void snapshot() {
+        if (snapshotFile == null)
+            return;
+
+        StringBuilder lines = new StringBuilder();
+        long time = System.currentTimeMillis();
+        for (FilterMetrics metrics : filters) {
+            lines.append(time).append(',').append(name).append(',').append(metrics.getFilterId())
+                    .append(',').append(metrics.getBytesIn())
+                    .append(',').append(metrics.getBytesOut())
+                    .append(',').append(metrics.getMeasurementsIn())
+                    .append(',').append(metrics.getMeasurementsOut())
+                    .append(',').append(metrics.getFramesIn())
+                    .append(',').append(metrics.getFramesOut())
+                    .append(',').append(metrics.getReadWaitNanos())
+                    .append(',').append(metrics.getWriteWaitNanos())
+                    .append(',').append(metrics.getInputBacklogBytes())
+                    .append(',').append(metrics.getInputBacklogFrames())
+                    .append(',').append(metrics.getTransformCount())
+                    .append(',').append(metrics.getTransformMeanNanos())
+                    .append(',').append(metrics.getTransformP50Nanos())
+                    .append(',').append(metrics.getTransformP90Nanos())
+                    .append(',').append(metrics.getTransformP99Nanos())
+                    .append(',').append(metrics.getTransformP999Nanos())
+                    .append(',').append(metrics.getTransformMaxNanos())
+                    .append(',').append(metrics.getBacklogPolicy())
+                    .append(',').append(metrics.getBacklogPeakSize())
+                    .append(',').append(metrics.getBacklogSpilledFrames())
+                    .append(',').append(metrics.getBacklogOverflowFrames())
+                    .append('\n');
+        }
+
+        synchronized (snapshotLock) {
+            try {
+                boolean empty = snapshotFile.length() == 0;
+                Writer out = new FileWriter(snapshotFile, true);
+                try {
+                    if (empty)
+                        out.write(HEADER + "\n");
+                    out.write(lines.toString());
+                } finally {
+                    out.close();
+                }
+            } catch (IOException Error) {
+                System.out.println("\nPipeline " + name + " Metrics snapshot error::" + Error);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package framework;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs filters on a bounded pool of platform threads, so the number of OS threads stays fixed however many pipelines
+ * are started. Filters beyond the pool size wait in a queue, in the order they were started, until a running filter
+ * finishes.
+ *
+ * Since a filter blocks until its upstream filters write or close, a pipeline only makes progress when all of its
+ * filters run at the same time. The pool therefore needs at least as many threads as the largest pipeline has
+ * filters, and starting a larger pipeline fails rather than hang; every pipeline started before the last one then
+ * runs in full and hands its threads on when it finishes.
+ *
+ * The worker threads of a {@link ParallelFilter} are not taken from the pool: they never block on a channel, but
+ * would wait forever in the queue of a pool whose threads are all held by blocked filters. They come on top of the
+ * pool, one per replica, and do not count towards the pool size.
+ *
+ * @since 1.0.0
+ */
+public class PooledRunner extends FilterRunner {
+
+    private final ExecutorService pool;
+
+    private final int threads;
+
+    /**
+     * Default constructor.
+     *
+     * @param threads the number of threads in the pool
+     */
+    public PooledRunner(int threads) {
+        this.threads = threads;
+        final AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable task) {
+                        return new Thread(task, "FilterPool-" + count.incrementAndGet());
+                    }
+                });
+    }
+
+    /**
+     * Start the filters of a pipeline, once checked that the pool can run them all at the same time.
+     *
+     * @throws IllegalStateException thrown when the pipeline has more filters than the pool has threads.
+     */
+    @Override
+    public synchronized void start(List<? extends FilterFramework> filters) {
+        if (filters.size() > threads)
+            throw new IllegalStateException("A pipeline of " + filters.size() + " filters would hang on a pool of "
+                    + threads + " threads, set " + PipelineConfig.RUNNER_THREADS_PROPERTY + " to at least "
+                    + filters.size());
+        super.start(filters);
+    }
+
+    /**
+     * Run the filter on the next free thread of the pool. The thread carries the name of the filter while it runs it.
+     */
+    @Override
+    protected void launch(final FilterFramework filter, final Runnable task) {
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                Thread thread = Thread.currentThread();
+                String poolName = thread.getName();
+                thread.setName(filter.getName());
+                try {
+                    task.run();
+                } finally {
+                    thread.setName(poolName);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+        super.shutdown();
+    }
+}
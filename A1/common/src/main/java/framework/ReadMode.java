@@ -0,0 +1,24 @@
+package framework;
+
+/**
+ * How a source reads its external resource, e.g. how {@code FileSourceFilter} reads its file.
+ *
+ * @since 1.0.0
+ */
+public enum ReadMode {
+
+    /**
+     * Read one byte at a time through an input stream, see {@link SourceFilterTemplate#readOneByte()}.
+     */
+    STREAM,
+
+    /**
+     * Read large chunks into a reused direct buffer, see {@link SourceFilterTemplate#readChunk()}.
+     */
+    CHUNKED,
+
+    /**
+     * Map the resource into memory and hand out slices of the mapping, see {@link SourceFilterTemplate#readChunk()}.
+     */
+    MAPPED
+}
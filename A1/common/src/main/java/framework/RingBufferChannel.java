@@ -0,0 +1,342 @@
+package framework;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free, single-producer/single-consumer channel backed by a ring buffer. The producer (upstream
+ * filter) advances the {@link #tail} sequence and the consumer (downstream filter) advances the {@link #head}
+ * sequence. Neither side ever takes a monitor: a byte is handed over with one plain array store and one write of the
+ * producer's sequence.
+ *
+ * A side that runs out of data (consumer) or space (producer) spins briefly and then parks its thread. The opposite
+ * side unparks it as soon as it has published data or freed space, or closed its end. Idle filters therefore cost no
+ * CPU and wake up as soon as there is work. Closing the writing end is an in-band end-of-stream marker: the reader
+ * first receives every byte written before the close, then -1. A side parked for long is recorded as a stall flight
+ * event, see {@link FlightEvents}.
+ *
+ * The byte semantics are identical to {@link PipedChannel}, so it can be wired in place of pipes without any change
+ * to the filters.
+ *
+ * @since 1.0.0
+ */
+public class RingBufferChannel extends Channel {
+
+    /**
+     * Default capacity of the ring buffer in bytes.
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    /**
+     * Number of times a side re-checks the opposite sequence before it parks.
+     */
+    private static final int SPIN_TRIES = 100;
+
+    /**
+     * Storage for the bytes in transit.
+     */
+    private final byte[] buffer;
+
+    /**
+     * Mask to map a sequence to an index of {@link #buffer}. The capacity is always a power of 2.
+     */
+    private final int mask;
+
+    /**
+     * Sequence of the next byte to be read. Written by the consumer only. Its {@link Sequence#cached} field holds the
+     * last value of {@link #tail} seen by the consumer.
+     */
+    private final Sequence head = new Sequence();
+
+    /**
+     * Sequence of the next byte to be written. Written by the producer only. Its {@link Sequence#cached} field holds
+     * the last value of {@link #head} seen by the producer.
+     */
+    private final Sequence tail = new Sequence();
+
+    /**
+     * Whether the writing end has been closed.
+     */
+    private volatile boolean closedByWriter = false;
+
+    /**
+     * Whether the reading end has been closed.
+     */
+    private volatile boolean closedByReader = false;
+
+    /**
+     * The consumer thread, while it is parked waiting for data.
+     */
+    private volatile Thread waitingReader = null;
+
+    /**
+     * The producer thread, while it is parked waiting for space.
+     */
+    private volatile Thread waitingWriter = null;
+
+    /**
+     * Construct a channel with the {@link #DEFAULT_CAPACITY}.
+     */
+    public RingBufferChannel() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct a channel with at least the given capacity. The capacity is rounded up to a power of 2.
+     *
+     * @param capacity the minimum number of bytes the channel can buffer.
+     */
+    public RingBufferChannel(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30))
+            throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        this.buffer = new byte[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return the number of bytes this channel can buffer.
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (closedByReader)
+            throw new IOException("Pipe closed");
+        return (int) (tail.get() - head.get());
+    }
+
+    @Override
+    public boolean isEndOfStream() {
+        return closedByReader || (closedByWriter && tail.get() == head.get());
+    }
+
+    @Override
+    public int read() throws IOException {
+        long current = head.get();
+        if (awaitReadable(current) < 0)
+            return -1;
+        int datum = buffer[(int) current & mask] & 0xFF;
+        head.set(current + 1);
+        wakeUp(waitingWriter);
+        return datum;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        long current = head.get();
+        int readable = awaitReadable(current);
+        if (readable < 0)
+            return -1;
+
+        // copy up to the end of the array, then wrap around to its start
+        int count = Math.min(len, readable);
+        int index = (int) current & mask;
+        int first = Math.min(count, buffer.length - index);
+        System.arraycopy(buffer, index, b, off, first);
+        if (count > first)
+            System.arraycopy(buffer, 0, b, off + first, count - first);
+
+        head.set(current + count);
+        wakeUp(waitingWriter);
+        return count;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!dst.hasRemaining())
+            return 0;
+        long current = head.get();
+        int readable = awaitReadable(current);
+        if (readable < 0)
+            return -1;
+
+        int count = Math.min(dst.remaining(), readable);
+        int index = (int) current & mask;
+        int first = Math.min(count, buffer.length - index);
+        dst.put(buffer, index, first);
+        if (count > first)
+            dst.put(buffer, 0, count - first);
+
+        head.set(current + count);
+        wakeUp(waitingWriter);
+        return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        long current = tail.get();
+        awaitWritable(current);
+        buffer[(int) current & mask] = (byte) b;
+        tail.set(current + 1);
+        wakeUp(waitingReader);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            long current = tail.get();
+            int count = Math.min(len, awaitWritable(current));
+
+            // copy up to the end of the array, then wrap around to its start
+            int index = (int) current & mask;
+            int first = Math.min(count, buffer.length - index);
+            System.arraycopy(b, off, buffer, index, first);
+            if (count > first)
+                System.arraycopy(b, off + first, buffer, 0, count - first);
+
+            tail.set(current + count);
+            wakeUp(waitingReader);
+            off += count;
+            len -= count;
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            long current = tail.get();
+            int count = Math.min(src.remaining(), awaitWritable(current));
+
+            int index = (int) current & mask;
+            int first = Math.min(count, buffer.length - index);
+            src.get(buffer, index, first);
+            if (count > first)
+                src.get(buffer, 0, count - first);
+
+            tail.set(current + count);
+            wakeUp(waitingReader);
+        }
+    }
+
+    /**
+     * Nothing to do: every write is published immediately.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (closedByReader)
+            throw new IOException("Pipe closed");
+    }
+
+    @Override
+    public void closeInput() {
+        closedByReader = true;
+        wakeUp(waitingWriter);
+    }
+
+    @Override
+    public void closeOutput() {
+        closedByWriter = true;
+        wakeUp(waitingReader);
+    }
+
+    /**
+     * Called by the consumer to wait until there is data to read.
+     *
+     * @param current the sequence of the next byte to read
+     * @return the number of bytes that can be read, or -1 at the end of stream
+     * @throws IOException thrown when the reading end has been closed.
+     */
+    private int awaitReadable(long current) throws IOException {
+        int tries = 0;
+        Object stall = null;
+        try {
+            while (current == head.cached) {
+                head.cached = tail.get();
+                if (current != head.cached)
+                    break;
+                if (closedByReader)
+                    throw new IOException("Pipe closed");
+                if (closedByWriter) {
+                    // the writer may have published more data right before closing
+                    head.cached = tail.get();
+                    if (current == head.cached)
+                        return -1;
+                    break;
+                }
+                if (++tries > SPIN_TRIES) {
+                    if (stall == null)
+                        stall = FlightEvents.stallStarted(this, FlightEvents.READ);
+                    awaitData(current);
+                }
+            }
+        } finally {
+            FlightEvents.stallEnded(stall);
+        }
+        return (int) (head.cached - current);
+    }
+
+    /**
+     * Called by the producer to wait until there is space to write.
+     *
+     * @param current the sequence of the next byte to write
+     * @return the number of bytes that can be written
+     * @throws IOException thrown when either end has been closed.
+     */
+    private int awaitWritable(long current) throws IOException {
+        if (closedByWriter || closedByReader)
+            throw new IOException("Pipe closed");
+        int tries = 0;
+        Object stall = null;
+        try {
+            while (current - tail.cached >= buffer.length) {
+                tail.cached = head.get();
+                if (current - tail.cached < buffer.length)
+                    break;
+                if (closedByReader)
+                    throw new IOException("Pipe closed");
+                if (++tries > SPIN_TRIES) {
+                    if (stall == null)
+                        stall = FlightEvents.stallStarted(this, FlightEvents.WRITE);
+                    awaitSpace(current);
+                }
+            }
+        } finally {
+            FlightEvents.stallEnded(stall);
+        }
+        return (int) (buffer.length - (current - tail.cached));
+    }
+
+    /**
+     * Called by the consumer when the ring buffer is empty. The consumer announces itself before re-checking the
+     * producer's sequence, and the producer publishes its sequence before checking for a waiting consumer. Both are
+     * volatile accesses, so at least one of them sees the other and no wakeup is lost.
+     *
+     * @param current the sequence the consumer is waiting to read
+     */
+    private void awaitData(long current) {
+        waitingReader = Thread.currentThread();
+        if (tail.get() == current && !closedByWriter && !closedByReader)
+            LockSupport.park(this);
+        waitingReader = null;
+    }
+
+    /**
+     * Called by the producer when the ring buffer is full. Mirror image of {@link #awaitData(long)}.
+     *
+     * @param current the sequence the producer is waiting to write
+     */
+    private void awaitSpace(long current) {
+        waitingWriter = Thread.currentThread();
+        if (current - head.get() >= buffer.length && !closedByReader)
+            LockSupport.park(this);
+        waitingWriter = null;
+    }
+
+    /**
+     * Unpark the given thread if it is waiting on this channel.
+     *
+     * @param waiter the parked thread, or null if no one is waiting
+     */
+    private static void wakeUp(Thread waiter) {
+        if (waiter != null)
+            LockSupport.unpark(waiter);
+    }
+}
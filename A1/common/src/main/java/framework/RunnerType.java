@@ -0,0 +1,47 @@
+package framework;
+
+/**
+ * The kinds of {@link FilterRunner} a plumber can run its filters on.
+ *
+ * @since 1.0.0
+ */
+public enum RunnerType {
+
+    /**
+     * {@link ThreadPerFilterRunner}: a platform thread per filter.
+     */
+    THREAD {
+        @Override
+        public FilterRunner newRunner(int threads) {
+            return new ThreadPerFilterRunner();
+        }
+    },
+
+    /**
+     * {@link VirtualThreadRunner}: a virtual thread per filter, Java 21 or newer.
+     */
+    VIRTUAL_THREAD {
+        @Override
+        public FilterRunner newRunner(int threads) {
+            return new VirtualThreadRunner();
+        }
+    },
+
+    /**
+     * {@link PooledRunner}: a bounded pool of platform threads.
+     */
+    POOL {
+        @Override
+        public FilterRunner newRunner(int threads) {
+            return new PooledRunner(threads);
+        }
+    };
+
+    /**
+     * Construct a new runner of this type.
+     *
+     * @param threads the number of threads of a pooled runner, ignored by the others
+     * @return the new runner
+     */
+    public abstract FilterRunner newRunner(int threads);
+}
@@ -0,0 +1,53 @@
+package framework;
+
+/**
+ * A sequence counter padded on both sides so it occupies a cache line of its own. The producer and the consumer of a
+ * {@link RingBufferChannel} each own one sequence; padding keeps the two from invalidating each other's cache line
+ * (false sharing) on every update.
+ *
+ * Next to the published {@link #get() value}, a sequence also holds a plain {@link #cached} field that only the owning
+ * thread touches. It is used to remember the last observed value of the opposite sequence, so the owner only has to
+ * read the other side's cache line when it has run out of data or space.
+ *
+ * @since 1.0.0
+ */
+final class Sequence extends SequenceRightPadding {
+
+    /**
+     * @return the current value, with volatile read semantics.
+     */
+    long get() {
+        return value;
+    }
+
+    /**
+     * Set the value with volatile write semantics.
+     *
+     * @param value the new value
+     */
+    void set(long value) {
+        this.value = value;
+    }
+}
+
+/**
+ * Padding before the value.
+ */
+abstract class SequenceLeftPadding {
+    long p1, p2, p3, p4, p5, p6, p7;
+}
+
+/**
+ * The value and the owner-private cache.
+ */
+abstract class SequenceValue extends SequenceLeftPadding {
+    volatile long value;
+    long cached;
+}
+
+/**
+ * Padding after the value.
+ */
+abstract class SequenceRightPadding extends SequenceValue {
+    long p9, p10, p11, p12, p13, p14, p15;
+}
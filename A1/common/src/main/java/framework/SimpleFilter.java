@@ -2,10 +2,16 @@ package framework;
 
 import util.ConversionUtil;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Generic case of a filter where it reads from only one input port and writes to only one output port.
+ *
+ * A subclass that only acts on some measurements can declare their ids with {@link #handleIds(int...)}. Every other
+ * measurement is then passed through as is, read from the input port straight into the output buffer, without being
+ * copied into an array of its own or handed to {@link #doTransform(int, byte[])}. The output is collected in a buffer
+ * and written to the output port in one call whenever the input port has nothing more to read right away.
  */
 public abstract class SimpleFilter extends FilterFramework {
 
@@ -15,15 +21,39 @@ public abstract class SimpleFilter extends FilterFramework {
 	protected final MeasurementConfig context;
 
 	/**
-	 * The id of the input filter. It is used to lookup {@link java.io.PipedInputStream} by calling {@link #inputForKey(String)}.
+	 * The id of the input filter. It is used to lookup {@link Channel} by calling {@link #inputForKey(String)}.
 	 */
 	protected String inputFilterId = null;
 
 	/**
-	 * The id of the output filter. It is used to lookup {@link java.io.PipedOutputStream} by calling {@link #outputForKey(String)}.
+	 * The id of the output filter. It is used to lookup {@link Channel} by calling {@link #outputForKey(String)}.
 	 */
 	protected String outputFilterId = null;
 
+	/**
+	 * Buffer the id bytes are read into. Its content is only valid until the next measurement is read.
+	 */
+	private final byte[] idBuffer;
+
+	/**
+	 * Handler table indexed by id: whether {@link #doTransform(int, byte[])} handles the measurement with that id.
+	 * Null if it handles every measurement.
+	 */
+	private boolean[] handledIds = null;
+
+	/**
+	 * Buffer collecting ids and measurements to be written to the output port in a single call, and the number of
+	 * bytes collected.
+	 */
+	private byte[] pending = new byte[Channel.TRANSFER_CHUNK_SIZE];
+	private int pendingLength = 0;
+
+	/**
+	 * The filter whose output buffer has to be written out before this filter writes to its output port directly:
+	 * this filter, or the {@link FusedFilter} this filter is the last stage of.
+	 */
+	SimpleFilter outputOwner = this;
+
 	/**
 	 * Default constructor.
 	 *
@@ -33,18 +63,20 @@ public abstract class SimpleFilter extends FilterFramework {
 	protected SimpleFilter(final MeasurementConfig context, String filterId) {
 		super(filterId);
 		this.context = context;
+		this.idBuffer = new byte[context.getIdLength()];
 	}
 
 	/**
 	 * Perform connection and do a integrity check to ensure it's only connected once.
 	 *
 	 * @param Filter the filter requesting connection to this filter as input
+	 * @param type the type of channel to wire between the two filters
 	 */
 	@Override
-	public void connect(FilterFramework Filter) {
+	public void connect(FilterFramework Filter, ChannelType type) {
 		if (inputs.size() >= 1)
 			throw new RuntimeException("A basic filter can only accept 1 connection");
-		super.connect(Filter);
+		super.connect(Filter, type);
 	}
 
 	/**
@@ -71,6 +103,52 @@ public abstract class SimpleFilter extends FilterFramework {
 		this.outputFilterId = outputFilter.filterId;
 	}
 
+	/**
+	 * Declare the ids of the measurements {@link #doTransform(int, byte[])} and the default
+	 * {@link #transformFrame(MeasurementFrame)} act on; all other measurements are passed on as is without calling
+	 * them. By default, a filter handles every measurement. Subclasses typically call it from their constructor.
+	 *
+	 * @param ids the ids of the measurements handled by this filter
+	 */
+	protected final void handleIds(int... ids) {
+		boolean[] table = new boolean[MeasurementConfig.MAX_ID + 1];
+		for (int id : ids) {
+			if (id < 0 || id > MeasurementConfig.MAX_ID)
+				throw new IllegalArgumentException(
+						"id: " + id + " is out of range [0, " + MeasurementConfig.MAX_ID + "]");
+			table[id] = true;
+		}
+		this.handledIds = table;
+	}
+
+	/**
+	 * Undo {@link #handleIds(int...)}, so the filter handles every measurement again.
+	 */
+	protected final void handleAllIds() {
+		this.handledIds = null;
+	}
+
+	/**
+	 * Whether the measurement with the given id is handled by this filter, see {@link #handleIds(int...)}.
+	 *
+	 * @param id the id of the measurement data
+	 * @return true if the measurement is to be passed to {@link #doTransform(int, byte[])}
+	 */
+	protected boolean handlesId(int id) {
+		return handledIds == null || (id >= 0 && id < handledIds.length && handledIds[id]);
+	}
+
+	/**
+	 * Whether this filter keeps no state from one measurement or frame to the next, i.e. it transforms every frame
+	 * the same way no matter which frames came before it. Only stateless filters can be run as the replicas of a
+	 * {@link ParallelFilter}. By default, a filter is taken to be stateful; stateless subclasses override it.
+	 *
+	 * @return true if this filter is stateless
+	 */
+	protected boolean isStateless() {
+		return false;
+	}
+
 	/**
 	 * Template method left for subclasses to implement. Here, subclasses should transform the measurement
 	 * data and return the transformed bytes. If the subclass is not responsible for transforming a specific
@@ -84,7 +162,36 @@ public abstract class SimpleFilter extends FilterFramework {
 	protected abstract byte[] doTransform(int id, byte[] measurement);
 
 	/**
-	 * Utility method to read from the {@link java.io.PipedInputStream} represented by {@link #inputFilterId}.
+	 * Template method for subclasses to override when this filter reads or writes {@link MeasurementFrame}s, i.e. it
+	 * is connected with a {@link FrameChannel}. Subclasses should transform the measurements of the frame in place
+	 * and remove the ones they wish to discard; a frame left empty is not passed on.
+	 *
+	 * By default, every measurement of the frame this filter handles is passed through
+	 * {@link #doTransform(int, byte[])} in order, so subclasses work on frames unchanged. Overriding it lets them work
+	 * on the decoded values directly.
+	 *
+	 * @param frame the frame to be transformed
+	 */
+	protected void transformFrame(MeasurementFrame frame) {
+		int index = 0;
+		while (index < frame.size()) {
+			int id = frame.idAt(index);
+			if (!handlesId(id)) {
+				index++;
+				continue;
+			}
+			byte[] transformedMeasurement = doTransform(id, frame.getBytes(id));
+			if (transformedMeasurement == null || transformedMeasurement.length == 0) {
+				frame.remove(id);
+			} else {
+				frame.setBytes(id, transformedMeasurement);
+				index++;
+			}
+		}
+	}
+
+	/**
+	 * Utility method to read from the {@link Channel} represented by {@link #inputFilterId}.
 	 *
 	 * @return a byte of data read from the input port
 	 * @throws EndOfStreamException
@@ -94,29 +201,83 @@ public abstract class SimpleFilter extends FilterFramework {
 	}
 
 	/**
-	 * Utility method write to the {@link java.io.PipedOutputStream} represented by {@link #outputFilterId}.
+	 * Utility method write to the {@link Channel} represented by {@link #outputFilterId}.
 	 *
 	 * @param data a byte of data to be written to the output port.
 	 */
 	protected void WriteFilterOutputPort(byte data) {
+		outputOwner.flushPending();
 		writeToOutput(data, outputFilterId);
 	}
 
+	/**
+	 * Utility method to read exactly {@code len} bytes from the {@link Channel} represented by {@link #inputFilterId}.
+	 *
+	 * @param b the buffer into which the data is read.
+	 * @param off the start offset in {@code b}.
+	 * @param len the number of bytes to read.
+	 * @throws EndOfStreamException
+	 */
+	protected void ReadFilterInputPort(byte[] b, int off, int len) throws EndOfStreamException {
+		readFromInput(inputFilterId, b, off, len);
+	}
+
+	/**
+	 * Utility method to fill the remaining space of a buffer from the {@link Channel} represented by
+	 * {@link #inputFilterId}.
+	 *
+	 * @param dst the buffer into which the data is read.
+	 * @throws EndOfStreamException
+	 */
+	protected void ReadFilterInputPort(ByteBuffer dst) throws EndOfStreamException {
+		readFromInput(inputFilterId, dst);
+	}
+
+	/**
+	 * Utility method to write {@code len} bytes to the {@link Channel} represented by {@link #outputFilterId}. Like
+	 * all {@code WriteFilterOutputPort} methods, it first writes out what {@link #run()} has collected so far, so the
+	 * output keeps its order.
+	 *
+	 * @param b the data to be written to the output port.
+	 * @param off the start offset in {@code b}.
+	 * @param len the number of bytes to write.
+	 */
+	protected void WriteFilterOutputPort(byte[] b, int off, int len) {
+		outputOwner.flushPending();
+		writeToOutput(b, off, len, outputFilterId);
+	}
+
+	/**
+	 * Utility method to write the remaining bytes of a buffer to the {@link Channel} represented by
+	 * {@link #outputFilterId}.
+	 *
+	 * @param src the data to be written to the output port.
+	 */
+	protected void WriteFilterOutputPort(ByteBuffer src) {
+		outputOwner.flushPending();
+		writeToOutput(src, outputFilterId);
+	}
+
+	/**
+	 * Utility method to write a frame to the {@link Channel} represented by {@link #outputFilterId}. It is serialized
+	 * to bytes unless the channel is a {@link FrameChannel}.
+	 *
+	 * @param frame the frame to be written to the output port.
+	 */
+	protected void WriteFilterOutputPort(MeasurementFrame frame) {
+		outputOwner.flushPending();
+		writeFrameToOutput(frame, outputFilterId);
+	}
+
 	/**
 	 * Utility method to read id.
 	 *
-	 * @return byte array of id bytes.
+	 * @return byte array of id bytes, only valid until the next call.
 	 * @throws EndOfStreamException
 	 */
 	private byte[] readId() throws EndOfStreamException {
-		//System.out.println("[" + this.getName() + "]length to read: " + context.getIdLength());
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		for (int i = 0; i < context.getIdLength(); i++) {
-			byte databyte = ReadFilterInputPort();
-			//System.out.println("[" + this.getName() + "]byte read: " + databyte);
-			out.write(databyte);
-		}
-		return out.toByteArray();
+		ReadFilterInputPort(idBuffer, 0, idBuffer.length);
+		return idBuffer;
 	}
 
 	/**
@@ -127,45 +288,136 @@ public abstract class SimpleFilter extends FilterFramework {
 	 * @throws EndOfStreamException
 	 */
 	private byte[] readMeasurement(int length) throws EndOfStreamException {
-		//System.out.println("[" + this.getName() + "]length to read: " + length);
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		for (int i = 0; i < length; i++) {
-			byte databyte = ReadFilterInputPort();
-			//System.out.println("[" + this.getName() + "]byte read: " + databyte);
-			out.write(databyte);
-		}
-		return out.toByteArray();
+		byte[] measurement = new byte[length];
+		ReadFilterInputPort(measurement, 0, length);
+		return measurement;
 	}
 
 	/**
 	 * Main execution method for this filter. It tries to read id and measurement from the input port and pass it
 	 * to {@link #doTransform(int, byte[])} for any transformation the subclasses provides. If the transformed bytes
 	 * has a length greater than 0, the id bytes and measurement bytes will be passed onto the output port. Otherwise,
-	 * the id and measurement is simply discarded.
+	 * the id and measurement is simply discarded. Measurements this filter does not handle are passed onto the output
+	 * port as is.
+	 *
+	 * When either port carries frames, the filter works frame by frame instead, see {@link #runOnFrames()}.
 	 *
 	 * When input port goes down, it will attempt to close all ports.
 	 */
 	public void run() {
+		if (inputCarriesFrames(inputFilterId) || outputCarriesFrames(outputFilterId)) {
+			runOnFrames();
+			return;
+		}
+
 		while (true) {
 			try {
+				// write out what has been collected before waiting for more input
+				if (pendingLength > 0 && !inputHasData())
+					flushPending();
+
 				// read id
 				byte[] idBytes = readId();
 				int id = ConversionUtil.convertToInt(idBytes);
+				int length = context.idForMeasurementLength(id);
+				if (metrics != null)
+					metrics.measurementRead();
+
+				// pass data this filter doesn't handle straight from the input port to the output buffer
+				if (!handlesId(id)) {
+					byte[] buffer = reserve(idBytes.length + length);
+					System.arraycopy(idBytes, 0, buffer, pendingLength, idBytes.length);
+					ReadFilterInputPort(buffer, pendingLength + idBytes.length, length);
+					pendingLength += idBytes.length + length;
+					if (metrics != null)
+						metrics.measurementWritten();
+					continue;
+				}
 
 				// read measurement
-				byte[] measurement = readMeasurement(context.idForMeasurementLength(id));
+				byte[] measurement = readMeasurement(length);
 
 				// do transformation
+				Object sample = sampleProcessing(1);
+				long started = metrics == null ? 0L : System.nanoTime();
 				byte[] transformedMeasurement = doTransform(id, measurement);
+				if (metrics != null)
+					metrics.transformed(System.nanoTime() - started);
+				FlightEvents.processingEnded(sample);
 
 				// pass data onto output port if length is > 0
 				if (transformedMeasurement != null && transformedMeasurement.length > 0) {
-					for (int i = 0; i < idBytes.length; i++)
-						WriteFilterOutputPort(idBytes[i]);
-					for (int i = 0; i < transformedMeasurement.length; i++) {
-						WriteFilterOutputPort(transformedMeasurement[i]);
-					}
+					byte[] buffer = reserve(idBytes.length + transformedMeasurement.length);
+					System.arraycopy(idBytes, 0, buffer, pendingLength, idBytes.length);
+					System.arraycopy(transformedMeasurement, 0, buffer, pendingLength + idBytes.length,
+							transformedMeasurement.length);
+					pendingLength += idBytes.length + transformedMeasurement.length;
+					if (metrics != null)
+						metrics.measurementWritten();
 				}
+			} catch (EndOfStreamException e) {
+				flushPending();
+				closeAllPorts();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Make room for {@code length} more bytes in the output buffer, writing out what it holds if necessary.
+	 *
+	 * @param length the number of bytes to be added
+	 * @return the output buffer, with room from {@link #pendingLength} on
+	 */
+	private byte[] reserve(int length) {
+		if (pendingLength + length > pending.length) {
+			flushPending();
+			if (length > pending.length)
+				pending = new byte[length];
+		}
+		return pending;
+	}
+
+	/**
+	 * Write the output buffer to the output port.
+	 */
+	void flushPending() {
+		if (pendingLength == 0)
+			return;
+		int length = pendingLength;
+		pendingLength = 0;
+		writeToOutput(pending, 0, length, outputFilterId);
+	}
+
+	/**
+	 * Whether the input port has data that can be read without waiting.
+	 */
+	boolean inputHasData() {
+		try {
+			return inputForKey(inputFilterId).available() > 0;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Frame by frame counterpart of {@link #run()}. It reads frames from the input port (collecting them from bytes
+	 * if the input carries bytes), passes each to {@link #transformFrame(MeasurementFrame)} and writes what is left of
+	 * it to the output port (serializing it if the output carries bytes).
+	 */
+	private void runOnFrames() {
+		FrameReader reader = new FrameReader(this, inputFilterId, context);
+		while (true) {
+			try {
+				MeasurementFrame frame = reader.next();
+				Object sample = sampleProcessing(frame.size());
+				long started = metrics == null ? 0L : System.nanoTime();
+				transformFrame(frame);
+				if (metrics != null)
+					metrics.transformed(System.nanoTime() - started);
+				FlightEvents.processingEnded(sample);
+				if (!frame.isEmpty())
+					WriteFilterOutputPort(frame);
 			} catch (EndOfStreamException e) {
 				closeAllPorts();
 				break;
@@ -1,5 +1,7 @@
 package framework;
 
+import java.nio.ByteBuffer;
+
 /**
  * This class represents the sink, a special kind of filter which writes to an external resource. It provides basic
  * functionality to read from the input pipe and leave the write function to its implementations.
@@ -9,7 +11,7 @@ package framework;
 public abstract class SinkFilterTemplate extends FilterFramework {
 
 	/**
-	 * The filter id for the input pipe, used to lookup the {@link java.io.PipedInputStream} from the input registry.
+	 * The filter id for the input pipe, used to lookup the {@link Channel} from the input registry.
 	 */
 	private String inputKey;
 
@@ -21,6 +23,26 @@ public abstract class SinkFilterTemplate extends FilterFramework {
 	 */
 	protected abstract void writeByteToSink(byte dataByte);
 
+	/**
+	 * Template method for the subclasses to write a chunk of data at once, from the position to the limit of
+	 * {@code data}. The chunk is only valid during the call. By default, it writes the chunk byte by byte with
+	 * {@link #writeByteToSink(byte)}.
+	 *
+	 * @param data the data to be written to external resource.
+	 */
+	protected void writeToSink(ByteBuffer data) {
+		while (data.hasRemaining())
+			writeByteToSink(data.get());
+	}
+
+	/**
+	 * Template method for the subclasses to flush and release the external resource once the input has ended. By
+	 * default, it does nothing.
+	 */
+	protected void closeSink() {
+		// do nothing
+	}
+
 	/**
 	 * Default constructor
 	 *
@@ -42,21 +64,25 @@ public abstract class SinkFilterTemplate extends FilterFramework {
 	}
 
 	/**
-	 * Main execution method for the sink. It reads a byte of data from the input and let the subclasses decide
-	 * how to write it to the external resource.
+	 * Main execution method for the sink. It reads whatever data has arrived at the input and let the subclasses
+	 * decide how to write it to the external resource.
 	 */
 	public void run() {
-		byte databyte = 0;
+		byte[] chunk = new byte[Channel.TRANSFER_CHUNK_SIZE];
+		ByteBuffer data = ByteBuffer.wrap(chunk);
 
 		while (true) {
 			try {
 				// read data
-				databyte = readFromInput(inputKey);
+				int count = readAvailableFromInput(inputKey, chunk, 0, chunk.length);
 
 				// write data
-				writeByteToSink(databyte);
+				data.clear();
+				data.limit(count);
+				writeToSink(data);
 			} catch (EndOfStreamException e) {
-				// close ports if there's no more input data
+				// release the external resource and close ports if there's no more input data
+				closeSink();
 				closeAllPorts();
 				break;
 			}
@@ -1,6 +1,7 @@
 package framework;
 
 import java.io.EOFException;
+import java.nio.ByteBuffer;
 
 /**
  * The class represents the source, a special kind of filter that reads data from an external resource and pass it on.
@@ -35,26 +36,56 @@ public abstract class SourceFilterTemplate extends FilterFramework
 	protected abstract boolean hasReachedEndOfStream();
 
 	/**
-	 * Main execution method for the source filter. It reads a byte of data and pass it onto output port.
+	 * Template method to read a chunk of data from the external resource, for sources that can hand out more than
+	 * one byte at a time. The bytes from the position to the limit of the chunk are written to the output port as
+	 * they are, and the source may reuse the chunk on the next call. By default, chunks are not supported and the
+	 * data is read with {@link #readOneByte()}.
+	 *
+	 * @return the chunk read, or null if the data is to be read byte by byte
+	 */
+	protected ByteBuffer readChunk() {
+		return null;
+	}
+
+	/**
+	 * Template method for the subclasses to release the external resource once the data has been read, or reading it
+	 * has failed. By default, it does nothing.
+	 */
+	protected void closeSource() {
+		// do nothing
+	}
+
+	/**
+	 * Main execution method for the source filter. It reads a chunk (or a byte) of data and pass it onto output port.
 	 * If the external resource has ended, it throws {@link EOFException}
 	 */
 	public void run() {
 
 		byte databyte = 0;
+		ByteBuffer chunk = null;
 
 		try {
 			while (true) {
 				if (hasReachedEndOfStream())
 					throw new EOFException("Has reached end of data stream.");
 
+				chunk = readChunk();
+				if (chunk != null) {
+					writeToOutput(chunk, outputKey);
+					continue;
+				}
+
 				databyte = readOneByte();
 				writeToOutput(databyte, outputKey);
 			}
 		} catch (EOFException eof) {
 			System.out.println("Reached end of data stream.");
+			closeSource();
 			closeAllPorts();
 		} catch (Exception ex) {
 			System.out.println("Encountered exception: " + ex.getMessage());
+			closeSource();
+			closeAllPorts();
 		}
    	}
 }
\ No newline at end of file
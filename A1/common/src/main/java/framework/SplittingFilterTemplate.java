@@ -2,7 +2,7 @@ package framework;
 
 import util.ConversionUtil;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,7 +21,7 @@ public abstract class SplittingFilterTemplate extends FilterFramework {
     protected final MeasurementConfig context;
 
     /**
-     * The id of the input filter. It is used to lookup {@link java.io.PipedInputStream} by calling {@link #inputForKey(String)}.
+     * The id of the input filter. It is used to lookup {@link Channel} by calling {@link #inputForKey(String)}.
      */
     protected String inputFilterId = null;
 
@@ -46,12 +46,13 @@ public abstract class SplittingFilterTemplate extends FilterFramework {
      * Perform connection and do an integrity check.
      *
      * @param Filter the filter requesting connection to this filter as input
+     * @param type the type of channel to wire between the two filters
      */
     @Override
-    public void connect(FilterFramework Filter) {
+    public void connect(FilterFramework Filter, ChannelType type) {
         if (inputs.size() >= 1)
             throw new RuntimeException("A splitting filter can only accept 1 connection");
-        super.connect(Filter);
+        super.connect(Filter, type);
     }
 
     /**
@@ -80,7 +81,7 @@ public abstract class SplittingFilterTemplate extends FilterFramework {
     }
 
     /**
-     * Utility method to read from the {@link java.io.PipedInputStream} represented by {@link #inputFilterId}.
+     * Utility method to read from the {@link Channel} represented by {@link #inputFilterId}.
      *
      * @return a byte of data read from the input port
      * @throws EndOfStreamException
@@ -90,7 +91,7 @@ public abstract class SplittingFilterTemplate extends FilterFramework {
     }
 
     /**
-     * Utility method write to the {@link java.io.PipedOutputStream} connecting the output filter in the upper stream.
+     * Utility method write to the {@link Channel} connecting the output filter in the upper stream.
      *
      * @param data a byte of data to be written to the output port.
      */
@@ -99,7 +100,7 @@ public abstract class SplittingFilterTemplate extends FilterFramework {
     }
 
     /**
-     * Utility method write to the {@link java.io.PipedOutputStream} connecting the output filter in the lower stream.
+     * Utility method write to the {@link Channel} connecting the output filter in the lower stream.
      *
      * @param data a byte of data to be written to the output port.
      */
@@ -107,6 +108,93 @@ public abstract class SplittingFilterTemplate extends FilterFramework {
         writeToOutput(data, outputFilterIds.get(1));
     }
 
+    /**
+     * Utility method to read exactly {@code len} bytes from the {@link Channel} represented by {@link #inputFilterId}.
+     *
+     * @param b the buffer into which the data is read.
+     * @param off the start offset in {@code b}.
+     * @param len the number of bytes to read.
+     * @throws EndOfStreamException
+     */
+    protected void ReadFilterInputPort(byte[] b, int off, int len) throws EndOfStreamException {
+        readFromInput(inputFilterId, b, off, len);
+    }
+
+    /**
+     * Utility method to fill the remaining space of a buffer from the {@link Channel} represented by
+     * {@link #inputFilterId}.
+     *
+     * @param dst the buffer into which the data is read.
+     * @throws EndOfStreamException
+     */
+    protected void ReadFilterInputPort(ByteBuffer dst) throws EndOfStreamException {
+        readFromInput(inputFilterId, dst);
+    }
+
+    /**
+     * Utility method to write {@code len} bytes to the {@link Channel} connecting the output filter in the upper
+     * stream.
+     *
+     * @param b the data to be written to the output port.
+     * @param off the start offset in {@code b}.
+     * @param len the number of bytes to write.
+     */
+    protected void WriteFilterOutputPortOne(byte[] b, int off, int len) {
+        writeToOutput(b, off, len, outputFilterIds.get(0));
+    }
+
+    /**
+     * Utility method to write the remaining bytes of a buffer to the {@link Channel} connecting the output filter in
+     * the upper stream.
+     *
+     * @param src the data to be written to the output port.
+     */
+    protected void WriteFilterOutputPortOne(ByteBuffer src) {
+        writeToOutput(src, outputFilterIds.get(0));
+    }
+
+    /**
+     * Utility method to write {@code len} bytes to the {@link Channel} connecting the output filter in the lower
+     * stream.
+     *
+     * @param b the data to be written to the output port.
+     * @param off the start offset in {@code b}.
+     * @param len the number of bytes to write.
+     */
+    protected void WriteFilterOutputPortTwo(byte[] b, int off, int len) {
+        writeToOutput(b, off, len, outputFilterIds.get(1));
+    }
+
+    /**
+     * Utility method to write the remaining bytes of a buffer to the {@link Channel} connecting the output filter in
+     * the lower stream.
+     *
+     * @param src the data to be written to the output port.
+     */
+    protected void WriteFilterOutputPortTwo(ByteBuffer src) {
+        writeToOutput(src, outputFilterIds.get(1));
+    }
+
+    /**
+     * Utility method to write a frame to the {@link Channel} connecting the output filter in the upper stream. It is
+     * serialized to bytes unless the channel is a {@link FrameChannel}.
+     *
+     * @param frame the frame to be written to the output port.
+     */
+    protected void WriteFilterOutputPortOne(MeasurementFrame frame) {
+        writeFrameToOutput(frame, outputFilterIds.get(0));
+    }
+
+    /**
+     * Utility method to write a frame to the {@link Channel} connecting the output filter in the lower stream. It is
+     * serialized to bytes unless the channel is a {@link FrameChannel}.
+     *
+     * @param frame the frame to be written to the output port.
+     */
+    protected void WriteFilterOutputPortTwo(MeasurementFrame frame) {
+        writeFrameToOutput(frame, outputFilterIds.get(1));
+    }
+
     /**
      * Utility method to read id.
      *
@@ -114,12 +202,9 @@ public abstract class SplittingFilterTemplate extends FilterFramework {
      * @throws EndOfStreamException
      */
     private byte[] readId() throws EndOfStreamException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        for (int i = 0; i < context.getIdLength(); i++) {
-            byte databyte = ReadFilterInputPort();
-            out.write(databyte);
-        }
-        return out.toByteArray();
+        byte[] id = new byte[context.getIdLength()];
+        ReadFilterInputPort(id, 0, id.length);
+        return id;
     }
 
     /**
@@ -131,9 +216,7 @@ public abstract class SplittingFilterTemplate extends FilterFramework {
      */
     private byte[] readMeasurement(int length) throws EndOfStreamException {
         byte[] measurement = new byte[length];
-        for (int i = 0; i < length; i++) {
-            measurement[i] = ReadFilterInputPort();
-        }
+        ReadFilterInputPort(measurement, 0, length);
         return measurement;
     }
 
@@ -146,6 +229,23 @@ public abstract class SplittingFilterTemplate extends FilterFramework {
      */
     protected abstract void routeMeasurement(byte[] id, byte[] measurement);
 
+    /**
+     * Template method for subclasses to override when this filter reads or writes {@link MeasurementFrame}s, i.e. it
+     * is connected with a {@link FrameChannel}. Subclasses are expected to route whole frames here using
+     * {@link #WriteFilterOutputPortOne(MeasurementFrame)} and {@link #WriteFilterOutputPortTwo(MeasurementFrame)}.
+     *
+     * By default, every measurement of the frame is passed to {@link #routeMeasurement(byte[], byte[])} in order. This
+     * only works as long as both output ports carry bytes, since that method writes bytes.
+     *
+     * @param frame the frame to be routed
+     */
+    protected void routeFrame(MeasurementFrame frame) {
+        for (int i = 0; i < frame.size(); i++) {
+            int id = frame.idAt(i);
+            routeMeasurement(ConversionUtil.idBytes(id), frame.getBytes(id));
+        }
+    }
+
     /**
      * Callback method for subclasses to implement. It provides an opportunity for subclasses to react to the event
      * of input port closing. Subclasses, for instance, may choose to flush any remaining data cache to the output
@@ -156,10 +256,16 @@ public abstract class SplittingFilterTemplate extends FilterFramework {
     /**
      * Main execution method for this filter. It attempts to read id and measurement and defer to subclasses for any
      * routing logic. In the case of input port closing, it also notifies the subclass of the event before closing all
-     * ports.
+     * ports. When any port carries frames, the filter works frame by frame instead, see {@link #runOnFrames()}.
      */
     @Override
     public void run() {
+        if (inputCarriesFrames(inputFilterId) || outputCarriesFrames(outputFilterIds.get(0))
+                || outputCarriesFrames(outputFilterIds.get(1))) {
+            runOnFrames();
+            return;
+        }
+
         while (true) {
             try {
                 // read id
@@ -168,9 +274,42 @@ public abstract class SplittingFilterTemplate extends FilterFramework {
 
                 // read measurement
                 byte[] measurement = readMeasurement(context.idForMeasurementLength(id));
+                if (metrics != null)
+                    metrics.measurementRead();
 
                 // route data
+                Object sample = sampleProcessing(1);
+                long started = metrics == null ? 0L : System.nanoTime();
                 routeMeasurement(idBytes, measurement);
+                if (metrics != null)
+                    metrics.transformed(System.nanoTime() - started);
+                FlightEvents.processingEnded(sample);
+            } catch (EndOfStreamException ex) {
+                // notify input port closing
+                reachedEndOfStream();
+
+                // close input and output ports.
+                closeAllPorts();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Frame by frame counterpart of {@link #run()}. It reads frames from the input port (collecting them from bytes
+     * if the input carries bytes) and defers to {@link #routeFrame(MeasurementFrame)} for the routing logic.
+     */
+    private void runOnFrames() {
+        FrameReader reader = new FrameReader(this, inputFilterId, context);
+        while (true) {
+            try {
+                MeasurementFrame frame = reader.next();
+                Object sample = sampleProcessing(frame.size());
+                long started = metrics == null ? 0L : System.nanoTime();
+                routeFrame(frame);
+                if (metrics != null)
+                    metrics.transformed(System.nanoTime() - started);
+                FlightEvents.processingEnded(sample);
             } catch (EndOfStreamException ex) {
                 // notify input port closing
                 reachedEndOfStream();
@@ -0,0 +1,15 @@
+package framework;
+
+/**
+ * Runs every filter on a platform thread of its own, named after the filter. This is the original execution model of
+ * the framework.
+ *
+ * @since 1.0.0
+ */
+public class ThreadPerFilterRunner extends FilterRunner {
+
+    @Override
+    protected void launch(FilterFramework filter, Runnable task) {
+        new Thread(task, filter.getName()).start();
+    }
+}
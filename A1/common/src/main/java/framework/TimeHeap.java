@@ -0,0 +1,101 @@
+package framework;
+
+/**
+ * A min-heap of entries, e.g. the input ports of a merge, keyed on a time in milliseconds and kept in primitive
+ * arrays. Entries with the same time come out smallest entry first, so a merge preferring the entry that comes first,
+ * the input connected or the run written first, is stable.
+ *
+ * @since 1.0.0
+ */
+final class TimeHeap {
+
+    private final long[] times;
+    private final int[] entries;
+    private int size = 0;
+
+    /**
+     * @param capacity the number of entries the heap can hold
+     */
+    TimeHeap(int capacity) {
+        this.times = new long[capacity];
+        this.entries = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the entry with the smallest time, on the same time the smallest entry.
+     */
+    int top() {
+        return entries[0];
+    }
+
+    void insert(long time, int entry) {
+        int i = size++;
+        times[i] = time;
+        entries[i] = entry;
+        while (i > 0 && before(i, (i - 1) / 2)) {
+            swap(i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    /**
+     * Replace the top entry with the given one, which is cheaper than removing the top entry and inserting.
+     */
+    void replaceTop(long time, int entry) {
+        times[0] = time;
+        entries[0] = entry;
+        siftDown(0);
+    }
+
+    void removeTop() {
+        size--;
+        if (size == 0)
+            return;
+        times[0] = times[size];
+        entries[0] = entries[size];
+        siftDown(0);
+    }
+
+    /**
+     * Whether heap position {@code a} comes before heap position {@code b}: the smaller time, or on the same time, the
+     * smaller entry.
+     */
+    private boolean before(int a, int b) {
+        if (times[a] != times[b])
+            return times[a] < times[b];
+        return entries[a] < entries[b];
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && before(left, smallest))
+                smallest = left;
+            if (right < size && before(right, smallest))
+                smallest = right;
+            if (smallest == i)
+                return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long time = times[a];
+        times[a] = times[b];
+        times[b] = time;
+        int entry = entries[a];
+        entries[a] = entries[b];
+        entries[b] = entry;
+    }
+}
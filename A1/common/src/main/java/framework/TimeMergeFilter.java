@@ -0,0 +1,197 @@
+package framework;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A filter that merges any number of time sorted input streams into one time sorted output stream, frame by frame.
+ * Unlike an {@link AggregatingFilterTemplate}, which is restricted to two input ports, it accepts as many input
+ * connections as there are recordings to merge.
+ *
+ * The filter holds the next frame of every input port that has not ended, and a min-heap of the input ports keyed on
+ * the time of that frame, kept in primitive arrays. Writing a frame costs one heap update, O(log N) for N input ports.
+ * Frames with the same time are written in the order their input ports were connected, so the merge is stable. When
+ * an input port ends it simply leaves the heap, and the filter closes once every input port has ended.
+ *
+ * A frame without a time measurement sorts before every frame with one.
+ *
+ * @since 1.0.0
+ */
+public class TimeMergeFilter extends FilterFramework {
+
+    /**
+     * The configuration object containing the length information of byte data.
+     */
+    protected final MeasurementConfig context;
+
+    /**
+     * The ids of the input filters, in the order they were connected.
+     */
+    protected List<String> inputFilterIds = new ArrayList<String>();
+
+    /**
+     * The id of the output filter. It is used to lookup {@link Channel} by calling {@link #outputForKey(String)}.
+     */
+    protected String outputFilterId = null;
+
+    /**
+     * Reader and next frame of every input port, indexed by port.
+     */
+    private FrameReader[] readers;
+    private MeasurementFrame[] heads;
+
+    /**
+     * The min-heap of the input ports with a next frame, keyed on the time of that frame.
+     */
+    private TimeHeap heap;
+
+    /**
+     * Buffer collecting serialized frames to be written to the output port in one call, when the output carries bytes.
+     */
+    private ByteBuffer pending;
+
+    /**
+     * Default constructor
+     *
+     * @param filterId the filter id of this filter.
+     * @param context the configuration object containing the length information for byte data.
+     */
+    public TimeMergeFilter(String filterId, MeasurementConfig context) {
+        super(filterId);
+        this.context = context;
+    }
+
+    /**
+     * Register input filter ids, in the order they are connected.
+     *
+     * @param inputFilter the input filter connected
+     */
+    @Override
+    protected void inputConnected(FilterFramework inputFilter) {
+        super.inputConnected(inputFilter);
+        this.inputFilterIds.add(inputFilter.filterId);
+    }
+
+    /**
+     * Register output filter id and do integrity check
+     *
+     * @param outputFilter the output filter connected
+     */
+    @Override
+    protected void outputConnected(FilterFramework outputFilter) {
+        if (this.outputFilterId != null)
+            throw new RuntimeException("A merging filter can only connect to 1 filter");
+        this.outputFilterId = outputFilter.filterId;
+    }
+
+    /**
+     * Template method for subclasses to check or transform every frame read, before it is merged. By default, it does
+     * nothing.
+     *
+     * @param port the index of the input port, in the order the ports were connected
+     * @param frame the frame read
+     */
+    protected void frameRead(int port, MeasurementFrame frame) {
+        // do nothing
+    }
+
+    /**
+     * Main execution method for this filter. It reads the first frame of every input port, then repeatedly writes the
+     * frame with the smallest time and reads the next frame of its port, until every input port has ended. A sample
+     * of the choices made is recorded as flight events, see {@link FlightEvents}.
+     */
+    @Override
+    public void run() {
+        int ports = inputFilterIds.size();
+        readers = new FrameReader[ports];
+        heads = new MeasurementFrame[ports];
+        heap = new TimeHeap(ports);
+        if (!outputCarriesFrames(outputFilterId))
+            pending = ByteBuffer.allocate(Channel.TRANSFER_CHUNK_SIZE);
+
+        for (int port = 0; port < ports; port++) {
+            readers[port] = new FrameReader(this, inputFilterIds.get(port), context);
+            if (readNext(port))
+                heap.insert(frameTime(heads[port]), port);
+        }
+
+        while (!heap.isEmpty()) {
+            int port = heap.top();
+            if (isSampled())
+                FlightEvents.mergeDecided(this, inputFilterIds.get(port), frameTime(heads[port]), heap.size());
+            write(heads[port]);
+            heads[port] = null;
+            if (!inputHasData(port))
+                flushPending();
+            if (readNext(port))
+                heap.replaceTop(frameTime(heads[port]), port);
+            else
+                heap.removeTop();
+        }
+
+        flushPending();
+        closeAllPorts();
+    }
+
+    /**
+     * Read the next frame of the port into {@link #heads}.
+     *
+     * @return false if the port has ended
+     */
+    private boolean readNext(int port) {
+        try {
+            MeasurementFrame frame = readers[port].next();
+            frameRead(port, frame);
+            heads[port] = frame;
+            return true;
+        } catch (EndOfStreamException e) {
+            return false;
+        }
+    }
+
+    private long frameTime(MeasurementFrame frame) {
+        if (!frame.has(MeasurementConfig.ID_TIME))
+            return Long.MIN_VALUE;
+        return frame.getLong(MeasurementConfig.ID_TIME);
+    }
+
+    /**
+     * Write the frame to the output port, or collect it in {@link #pending} if the output carries bytes.
+     */
+    private void write(MeasurementFrame frame) {
+        if (pending == null) {
+            writeFrameToOutput(frame, outputFilterId);
+            return;
+        }
+        int length = frame.byteLength();
+        if (metrics != null)
+            metrics.frameWritten(frame.size(), 0L);
+        if (pending.remaining() < length) {
+            flushPending();
+            if (pending.capacity() < length)
+                pending = ByteBuffer.allocate(length);
+        }
+        frame.writeTo(pending);
+    }
+
+    private void flushPending() {
+        if (pending == null || pending.position() == 0)
+            return;
+        pending.flip();
+        writeToOutput(pending, outputFilterId);
+        pending.clear();
+    }
+
+    /**
+     * Whether the input port has data that can be read without waiting.
+     */
+    private boolean inputHasData(int port) {
+        try {
+            return inputForKey(inputFilterIds.get(port)).available() > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package framework;
+
+import java.lang.reflect.Method;
+
+/**
+ * Runs every filter on a virtual thread of its own, named after the filter. Virtual threads are cheap to create and
+ * park while a filter blocks on a channel, so many pipelines can run in one JVM without an OS thread per filter.
+ *
+ * The framework is built for Java 8, so virtual threads are reached through reflection; constructing this runner on a
+ * JVM without them (before Java 21) fails with an {@link UnsupportedOperationException}. Note that virtual threads do
+ * not keep the JVM alive, so the plumber has to {@link #awaitCompletion()}.
+ *
+ * @since 1.0.0
+ */
+public class VirtualThreadRunner extends FilterRunner {
+
+    /**
+     * {@code Thread.ofVirtual()}, {@code Thread.Builder.name(String)} and {@code Thread.Builder.start(Runnable)}.
+     */
+    private final Method ofVirtual;
+    private final Method name;
+    private final Method start;
+
+    public VirtualThreadRunner() {
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class);
+            start = builder.getMethod("start", Runnable.class);
+
+            // preview builds of Java 19 and 20 have the methods but refuse to run them unless previews are enabled
+            ofVirtual.invoke(null);
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or newer", e);
+        }
+    }
+
+    @Override
+    protected void launch(FilterFramework filter, Runnable task) {
+        try {
+            start.invoke(name.invoke(ofVirtual.invoke(null), filter.getName()), task);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to start virtual thread for " + filter.getName(), e);
+        }
+    }
+}
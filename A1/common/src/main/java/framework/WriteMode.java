@@ -0,0 +1,25 @@
+package framework;
+
+/**
+ * How a sink writes to its external resource, e.g. how {@code FileSinkFilter} writes its file.
+ *
+ * @since 1.0.0
+ */
+public enum WriteMode {
+
+    /**
+     * Write and flush every line as soon as it is complete.
+     */
+    LINE,
+
+    /**
+     * Collect the data in a large buffer and write it out when the buffer is full or has not been written out for a
+     * while.
+     */
+    BUFFERED,
+
+    /**
+     * Like {@link #BUFFERED}, and force the data to the storage device when the sink is closed.
+     */
+    DURABLE
+}
@@ -2,10 +2,10 @@ package shared;
 
 import framework.SimpleFilter;
 import framework.MeasurementConfig;
+import framework.MeasurementFrame;
+import framework.MeasurementType;
 import util.ConversionUtil;
-
-import java.text.DecimalFormat;
-import java.util.Arrays;
+import util.FixedPointFormat;
 
 /**
  * A filter that converts altitude data from feet to meter and then formats it into string format.
@@ -19,8 +19,22 @@ public class AltitudeConvertingFilter extends SimpleFilter {
      */
     private String numberFormat = "#000000.00000";
 
+    /**
+     * The number format compiled once, see {@link #setNumberFormat(String)}.
+     */
+    private FixedPointFormat format = new FixedPointFormat(numberFormat);
+
     public AltitudeConvertingFilter(String filterId, MeasurementConfig context) {
         super(context, filterId);
+        handleIds(MeasurementConfig.ID_ALTITUDE);
+    }
+
+    /**
+     * Every altitude is converted on its own.
+     */
+    @Override
+    protected boolean isStateless() {
+        return true;
     }
 
     /**
@@ -37,17 +51,37 @@ public class AltitudeConvertingFilter extends SimpleFilter {
             return measurement;
 
         // read altitude data in feet
-        double altitudeInFeet = ConversionUtil.convertToDouble(measurement);
+        double altitudeInFeet = ConversionUtil.readDouble(measurement, 0);
+
+        return convert(altitudeInFeet);
+    }
 
+    /**
+     * Perform altitude data unit conversion and format on the decoded altitude of the frame and leave everything
+     * else as is.
+     *
+     * @param frame the frame to be transformed
+     */
+    @Override
+    protected void transformFrame(MeasurementFrame frame) {
+        if (frame.has(MeasurementConfig.ID_ALTITUDE))
+            frame.setBytes(MeasurementConfig.ID_ALTITUDE, convert(frame.getDouble(MeasurementConfig.ID_ALTITUDE)),
+                    MeasurementType.TEXT);
+    }
+
+    /**
+     * Convert altitude from feet to meter and format it.
+     *
+     * @param altitudeInFeet altitude in feet
+     * @return padded bytes of the formatted altitude in meter
+     */
+    private byte[] convert(double altitudeInFeet) {
         // convert altitude data in feet to meter
         double altitudeInMeter = altitudeInFeet / 3.2808d;
 
-        // format altitude data in meter to string format.
-        String formatted = new DecimalFormat(numberFormat).format(altitudeInMeter);
-
-        // load the data into a byte array. Note that we must specify the length of the byte array since
-        // String#getBytes() returns variable length array depending on the presence of negative number.
-        return Arrays.copyOf(formatted.getBytes(), 13);
+        // format altitude data in meter straight into a byte array. Note that we must specify the length of the
+        // byte array since the formatted length varies depending on the presence of negative number.
+        return format.format(altitudeInMeter, 13);
     }
 
     public String getNumberFormat() {
@@ -56,5 +90,6 @@ public class AltitudeConvertingFilter extends SimpleFilter {
 
     public void setNumberFormat(String numberFormat) {
         this.numberFormat = numberFormat;
+        this.format = new FixedPointFormat(numberFormat);
     }
 }
@@ -2,32 +2,46 @@ package shared;
 
 import framework.SimpleFilter;
 import framework.MeasurementConfig;
+import framework.MeasurementFrame;
+
+import java.util.Arrays;
 
 /**
  * A filter that discards certain measurement to boost performance. Some measurements are not needed in the trailing
  * filters. They should be dropped that the following filters don't have to waste time parse them and pass them on.
  *
+ * The measurements to drop are kept by id, so any measurement declared in the schema can be dropped with
+ * {@link #setDrop(int, boolean)}, and every measurement not configured to be dropped is passed on, whatever its id.
+ * The filter only handles the ids it drops (see {@link SimpleFilter#handleIds(int...)}), so the others are passed on
+ * without calling it.
+ *
  * @since 1.0.0
  */
 public class DataDroppingFilter extends SimpleFilter {
 
+    private static final byte[] DROPPED = new byte[0];
+
     /**
-     * Configuration options on whether a certain measurement should be dropped.
+     * Bit mask of the ids of the measurements to be dropped, bit {@code n} standing for id {@code n}.
      */
-    private boolean dropTime = false;
-    private boolean dropVelocity = false;
-    private boolean dropAltitude = false;
-    private boolean dropPressure = false;
-    private boolean dropTemperature = false;
-    private boolean dropAttitude = false;
+    private int droppedMask = 0;
 
     public DataDroppingFilter(String filterId, MeasurementConfig context) {
         super(context, filterId);
+        handleIds();
+    }
+
+    /**
+     * Whether a measurement is dropped depends on its id alone.
+     */
+    @Override
+    protected boolean isStateless() {
+        return true;
     }
 
     /**
-     * A a certain measurement is configured to be dropped, return a empty byte array so {@link SimpleFilter} will
-     * not pass it on. Otherwise, return the data as is so {@link SimpleFilter} passes it on.
+     * Only called for the measurements configured to be dropped: return a empty byte array so {@link SimpleFilter}
+     * will not pass it on.
      *
      * @param id the id of the measurement data
      * @param measurement data
@@ -35,48 +49,98 @@ public class DataDroppingFilter extends SimpleFilter {
      */
     @Override
     protected byte[] doTransform(int id, byte[] measurement) {
-        if (id == MeasurementConfig.ID_TIME)
-            return dropTime ? new byte[0] : measurement;
-
-        if (id == MeasurementConfig.ID_VELOCITY)
-            return dropVelocity ? new byte[0] : measurement;
-
-        if (id == MeasurementConfig.ID_ALTITUDE)
-            return dropAltitude ? new byte[0] : measurement;
+        return DROPPED;
+    }
 
-        if (id == MeasurementConfig.ID_PRESSURE)
-            return dropPressure ? new byte[0] : measurement;
+    /**
+     * Remove the measurements configured to be dropped from the frame, so {@link SimpleFilter} passes on only the
+     * rest.
+     *
+     * @param frame the frame to be transformed
+     */
+    @Override
+    protected void transformFrame(MeasurementFrame frame) {
+        int dropped = frame.presenceMask() & droppedMask;
+        while (dropped != 0) {
+            frame.remove(Integer.numberOfTrailingZeros(dropped));
+            dropped &= dropped - 1;
+        }
+    }
 
-        if (id == MeasurementConfig.ID_TEMPERATURE)
-            return dropTemperature ? new byte[0] : measurement;
+    /**
+     * The ids of the measurements declared in the schema this filter passes on, in the order they were declared, e.g.
+     * to hand the dropping over to a source with {@link FileSourceFilter#setProjection(MeasurementConfig, int...)}.
+     *
+     * @return the ids not configured to be dropped
+     */
+    public int[] getKeptIds() {
+        int[] ids = context.getExpectedIds();
+        int count = 0;
+        for (int id : ids) {
+            if (!isDropped(id))
+                ids[count++] = id;
+        }
+        return Arrays.copyOf(ids, count);
+    }
 
-        if (id == MeasurementConfig.ID_ATTITUDE)
-            return dropAttitude ? new byte[0] : measurement;
+    /**
+     * Whether the measurement with the given id is configured to be dropped.
+     *
+     * @param id the id of the measurement
+     * @return true if dropped
+     */
+    public boolean isDropped(int id) {
+        return (droppedMask & (1 << checkId(id))) != 0;
+    }
 
-        return new byte[0];
+    /**
+     * Configure whether the measurement with the given id is to be dropped.
+     *
+     * @param id the id of the measurement, from 0 to {@link MeasurementConfig#MAX_ID}
+     * @param drop true to drop it
+     */
+    public void setDrop(int id, boolean drop) {
+        if (drop)
+            droppedMask |= 1 << checkId(id);
+        else
+            droppedMask &= ~(1 << checkId(id));
+
+        int[] dropped = new int[Integer.bitCount(droppedMask)];
+        int count = 0;
+        for (int i = 0; i <= MeasurementConfig.MAX_ID; i++) {
+            if ((droppedMask & (1 << i)) != 0)
+                dropped[count++] = i;
+        }
+        handleIds(dropped);
     }
 
     public void setDropTime(boolean dropTime) {
-        this.dropTime = dropTime;
+        setDrop(MeasurementConfig.ID_TIME, dropTime);
     }
 
     public void setDropVelocity(boolean dropVelocity) {
-        this.dropVelocity = dropVelocity;
+        setDrop(MeasurementConfig.ID_VELOCITY, dropVelocity);
     }
 
     public void setDropAltitude(boolean dropAltitude) {
-        this.dropAltitude = dropAltitude;
+        setDrop(MeasurementConfig.ID_ALTITUDE, dropAltitude);
     }
 
     public void setDropPressure(boolean dropPressure) {
-        this.dropPressure = dropPressure;
+        setDrop(MeasurementConfig.ID_PRESSURE, dropPressure);
     }
 
     public void setDropTemperature(boolean dropTemperature) {
-        this.dropTemperature = dropTemperature;
+        setDrop(MeasurementConfig.ID_TEMPERATURE, dropTemperature);
     }
 
     public void setDropAttitude(boolean dropAttitude) {
-        this.dropAttitude = dropAttitude;
+        setDrop(MeasurementConfig.ID_ATTITUDE, dropAttitude);
+    }
+
+    private static int checkId(int id) {
+        if (id < 0 || id > MeasurementConfig.MAX_ID)
+            throw new IllegalArgumentException("id: " + id + " is out of range [0, " + MeasurementConfig.MAX_ID + "]");
+        return id;
     }
 }
@@ -1,19 +1,49 @@
 package shared;
 
+import framework.FlightEvents;
 import framework.SinkFilterTemplate;
+import framework.WriteMode;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 
 /**
  * A sink filter that writes data out to a file.
  *
+ * In the {@link WriteMode#LINE} mode, every line is printed to the file as soon as its new line character has arrived.
+ * In the {@link WriteMode#BUFFERED} and {@link WriteMode#DURABLE} modes, the raw bytes are collected in a direct
+ * buffer of {@link #BUFFER_SIZE} bytes, which is written to the file channel when it is full, or when data arrives
+ * more than {@link #FLUSH_INTERVAL_MILLIS} after the last write, and once more when the input has ended. The
+ * {@link WriteMode#DURABLE} mode additionally forces the file to the storage device before closing it. Writing out
+ * the buffer or forcing the file is recorded as a flight event when it takes long, see {@link FlightEvents}.
+ *
  * @since 1.0.0
  */
 public class FileSinkFilter extends SinkFilterTemplate {
 
     /**
-     * The print stream corresponding to the file to write.
+     * Size of the buffer the data is collected in before it is written to the file.
+     */
+    public static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Maximum time in milliseconds data is held in the buffer while more data keeps arriving.
+     */
+    public static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private static final byte NEW_LINE = '\n';
+
+    private final WriteMode mode;
+
+    /**
+     * The path of the file.
+     */
+    private final String fileName;
+
+    /**
+     * The print stream corresponding to the file to write, in the {@link WriteMode#LINE} mode.
      */
     private PrintStream out;
 
@@ -22,9 +52,24 @@ public class FileSinkFilter extends SinkFilterTemplate {
      */
     private ByteArrayOutputStream cache = new ByteArrayOutputStream();
 
+    /**
+     * The file channel corresponding to the file to write, in the buffered modes.
+     */
+    private FileChannel channel;
+
+    /**
+     * The buffer the data is collected in, in the buffered modes.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * The time in milliseconds the buffer was last written to the file.
+     */
+    private long lastFlush;
+
     /**
      * Default constructor. It first tests if the specified file exists or not. If it does not exist,
-     * it will attempt to create it.
+     * it will attempt to create it. The file is written line by line.
      *
      * @param filterId id for this filter.
      * @param fileName the absolute path of the file to be written.
@@ -32,6 +77,20 @@ public class FileSinkFilter extends SinkFilterTemplate {
      * @throws IOException thrown when a file cannot be created.
      */
     public FileSinkFilter(final String filterId, final String fileName) throws IOException {
+        this(filterId, fileName, WriteMode.LINE);
+    }
+
+    /**
+     * Constructor. It first tests if the specified file exists or not. If it does not exist, it will attempt to
+     * create it. The file is written in the given mode.
+     *
+     * @param filterId id for this filter.
+     * @param fileName the absolute path of the file to be written.
+     * @param mode how the file is written.
+     *
+     * @throws IOException thrown when a file cannot be created.
+     */
+    public FileSinkFilter(final String filterId, final String fileName, final WriteMode mode) throws IOException {
         super(filterId);
         File file = new File(fileName);
         if (!file.exists()) {
@@ -39,7 +98,15 @@ public class FileSinkFilter extends SinkFilterTemplate {
             if (!result)
                 throw new IOException("Failed to create file: " + fileName);
         }
-        out = new PrintStream(fileName);
+        this.mode = mode;
+        this.fileName = fileName;
+        if (mode == WriteMode.LINE) {
+            out = new PrintStream(fileName);
+        } else {
+            channel = new FileOutputStream(file).getChannel();
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            lastFlush = System.currentTimeMillis();
+        }
     }
 
     /**
@@ -47,19 +114,98 @@ public class FileSinkFilter extends SinkFilterTemplate {
      * the end of line has reached when it has detected the new line character byte. Then it converts the cached bytes
      * to string and writes it out to the file. Finally, it clears the data cache and repeat the process.
      *
+     * In the buffered modes, the byte is simply added to the buffer.
+     *
      * @param dataByte the data to be written to external resource.
      */
     @Override
     protected void writeByteToSink(byte dataByte) {
+        if (mode != WriteMode.LINE) {
+            if (!buffer.hasRemaining())
+                flushBuffer();
+            buffer.put(dataByte);
+            return;
+        }
+
         // cache data first
         cache.write(dataByte);
 
         // write the entire line to file if the last byte is a new line character
-        if ("\n".getBytes()[0] == dataByte) {
+        if (dataByte == NEW_LINE) {
             String line = new String(cache.toByteArray(), StandardCharsets.UTF_8);
             out.print(line);
             out.flush();
             cache.reset();
         }
     }
+
+    /**
+     * In the buffered modes, copy the chunk into the buffer, writing the buffer to the file whenever it fills up or
+     * has been held for longer than {@link #FLUSH_INTERVAL_MILLIS}. In the {@link WriteMode#LINE} mode, write the
+     * chunk byte by byte.
+     *
+     * @param data the data to be written to external resource.
+     */
+    @Override
+    protected void writeToSink(ByteBuffer data) {
+        if (mode == WriteMode.LINE) {
+            super.writeToSink(data);
+            return;
+        }
+
+        while (data.hasRemaining()) {
+            if (!buffer.hasRemaining())
+                flushBuffer();
+            int count = Math.min(data.remaining(), buffer.remaining());
+            int limit = data.limit();
+            data.limit(data.position() + count);
+            buffer.put(data);
+            data.limit(limit);
+        }
+        if (System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL_MILLIS)
+            flushBuffer();
+    }
+
+    /**
+     * Write out what is left in the buffer, force it to the storage device in the {@link WriteMode#DURABLE} mode, and
+     * close the file.
+     */
+    @Override
+    protected void closeSink() {
+        if (mode == WriteMode.LINE) {
+            out.close();
+            return;
+        }
+
+        try {
+            flushBuffer();
+            if (mode == WriteMode.DURABLE) {
+                Object access = FlightEvents.fileAccessStarted(this, fileName, FlightEvents.FORCE);
+                channel.force(true);
+                FlightEvents.fileAccessed(access, channel.size());
+            }
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Write the buffered data to the file channel. throw an {@link RuntimeException} if {@link IOException} occurs
+     * while writing the file.
+     */
+    private void flushBuffer() {
+        buffer.flip();
+        Object access = FlightEvents.fileAccessStarted(this, fileName, FlightEvents.WRITE);
+        int length = buffer.remaining();
+        try {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            FlightEvents.fileAccessed(access, length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        buffer.clear();
+        lastFlush = System.currentTimeMillis();
+    }
 }
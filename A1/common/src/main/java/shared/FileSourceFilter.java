@@ -1,26 +1,98 @@
 package shared;
 
+import framework.FlightEvents;
+import framework.MeasurementConfig;
+import framework.ReadMode;
 import framework.SourceFilterTemplate;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * A source filter that reads from a file. The file must be specified as an absolute path.
  *
+ * The file is read in one of the {@link ReadMode}s: byte by byte from the input stream, in chunks of
+ * {@link #CHUNK_SIZE} bytes into a direct buffer, or through memory mappings of the file handed out in slices of
+ * {@link #CHUNK_SIZE} bytes. A mapping covers at most {@link #MAPPING_SIZE} bytes and the next one is mapped when it
+ * has been used up, so files larger than 2 GB (the limit of a single mapping) can be read as well.
+ *
+ * With a projection set by {@link #setProjection(MeasurementConfig, int...)}, the source takes the place of a source
+ * followed by a {@link DataDroppingFilter}: it skips the measurements that are not kept while scanning the file and
+ * hands out only the kept ones, in chunks in every mode, so the dropped bytes never reach a channel.
+ *
+ * Reading a chunk or mapping the file is recorded as a flight event when it takes long, see {@link FlightEvents}.
+ *
  * @since 1.0.0
  */
 public class FileSourceFilter extends SourceFilterTemplate {
 
+    /**
+     * Number of bytes read or handed out at a time in the {@link ReadMode#CHUNKED} and {@link ReadMode#MAPPED} modes.
+     */
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Number of bytes of the file mapped at a time in the {@link ReadMode#MAPPED} mode.
+     */
+    public static final int MAPPING_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The path of the file.
+     */
+    private final String fileName;
+
     /**
      * The input stream corresponding to the file to read data from.
      */
     private InputStream in;
 
     /**
-     * Default constructor. It will attempt to open the file input stream for the file specified.
+     * The file channel of {@link #in}, used by all modes but {@link ReadMode#STREAM}.
+     */
+    private final FileChannel channel;
+
+    private final ReadMode mode;
+
+    /**
+     * The position in the file of the next byte to be handed out.
+     */
+    private long position = 0;
+
+    /**
+     * The position in the file the source stops at, see {@link #setRange(long, long)}.
+     */
+    private long end = Long.MAX_VALUE;
+
+    /**
+     * The buffer chunks are read into in the {@link ReadMode#CHUNKED} mode, and in the {@link ReadMode#STREAM} mode
+     * with a projection.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * The current mapping of the file in the {@link ReadMode#MAPPED} mode, positioned at the next byte to be handed
+     * out.
+     */
+    private MappedByteBuffer mapping;
+
+    /**
+     * The projection of the measurements kept, or null if the file is handed out as is.
+     */
+    private MeasurementProjection projection;
+
+    /**
+     * The buffer the kept measurements are copied to when there is a projection.
+     */
+    private ByteBuffer projected;
+
+    /**
+     * Default constructor. It will attempt to open the file input stream for the file specified, to be read byte by
+     * byte.
      *
      * @param filterId id for this filter
      * @param fileName the absolute file path for the file to be read
@@ -28,8 +100,53 @@ public class FileSourceFilter extends SourceFilterTemplate {
      * @throws FileNotFoundException thrown when file cannot be found.
      */
     public FileSourceFilter(final String filterId, final String fileName) throws FileNotFoundException {
+        this(filterId, fileName, ReadMode.STREAM);
+    }
+
+    /**
+     * Constructor. It will attempt to open the file specified, to be read in the given mode.
+     *
+     * @param filterId id for this filter
+     * @param fileName the absolute file path for the file to be read
+     * @param mode how the file is read
+     *
+     * @throws FileNotFoundException thrown when file cannot be found.
+     */
+    public FileSourceFilter(final String filterId, final String fileName, final ReadMode mode)
+            throws FileNotFoundException {
         super(filterId);
-        in = new FileInputStream(fileName);
+        FileInputStream file = new FileInputStream(fileName);
+        this.fileName = fileName;
+        this.in = file;
+        this.channel = file.getChannel();
+        this.mode = mode;
+    }
+
+    /**
+     * Keep only the measurements with the given ids, and drop all others before they are written to the output, just
+     * like a {@link DataDroppingFilter} dropping the other ids would. Must be set before the filter is started.
+     *
+     * @param context the configuration object containing the length information of the measurements in the file
+     * @param keptIds the ids of the measurements to be kept
+     */
+    public void setProjection(MeasurementConfig context, int... keptIds) {
+        this.projection = new MeasurementProjection(context, keptIds);
+    }
+
+    /**
+     * Read only the bytes of the file from {@code start} inclusive to {@code end} exclusive, e.g. a chunk of a file
+     * cut at frame starts by {@code ChunkedScan}. Must be set before the filter is started.
+     *
+     * @param start the position in the file to start reading at
+     * @param end the position in the file to stop reading at
+     * @throws IOException thrown when the file cannot be positioned.
+     */
+    public void setRange(long start, long end) throws IOException {
+        if (start < 0 || end < start)
+            throw new IllegalArgumentException("range: [" + start + ", " + end + ")");
+        this.position = start;
+        this.end = end;
+        channel.position(start);
     }
 
     /**
@@ -41,12 +158,110 @@ public class FileSourceFilter extends SourceFilterTemplate {
     @Override
     protected byte readOneByte() {
         try {
+            position++;
             return (byte) in.read();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Read the next chunk of the file, unless the file is read byte by byte. throw an {@link RuntimeException} if
+     * {@link IOException} occurs while reading the file.
+     *
+     * @return the next chunk of the file (or of the kept measurements if there is a projection), or null in the
+     * {@link ReadMode#STREAM} mode without a projection.
+     */
+    @Override
+    protected ByteBuffer readChunk() {
+        try {
+            if (projection != null)
+                return readProjectedChunk();
+            return mode == ReadMode.STREAM ? null : readRawChunk();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Read chunks of the file until some of it is kept, or the file has ended.
+     */
+    private ByteBuffer readProjectedChunk() throws IOException {
+        if (projected == null)
+            projected = ByteBuffer.allocateDirect(projection.maxProjectedLength(CHUNK_SIZE));
+        projected.clear();
+        while (projected.position() == 0 && !hasReachedEndOfStream())
+            projection.project(readRawChunk(), projected);
+        projected.flip();
+        return projected;
+    }
+
+    private ByteBuffer readRawChunk() throws IOException {
+        switch (mode) {
+            case CHUNKED:
+                return readIntoBuffer();
+            case MAPPED:
+                return sliceOfMapping();
+            default:
+                return readFromStream();
+        }
+    }
+
+    private ByteBuffer readFromStream() throws IOException {
+        if (buffer == null)
+            buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        buffer.clear();
+        Object access = FlightEvents.fileAccessStarted(this, fileName, FlightEvents.READ);
+        int count = in.read(buffer.array(), 0, (int) Math.min(CHUNK_SIZE, end - position));
+        FlightEvents.fileAccessed(access, Math.max(count, 0));
+        if (count > 0)
+            position += count;
+        buffer.limit(Math.max(count, 0));
+        return buffer;
+    }
+
+    private ByteBuffer readIntoBuffer() throws IOException {
+        if (buffer == null)
+            buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        buffer.clear();
+        buffer.limit((int) Math.min(CHUNK_SIZE, end - position));
+        Object access = FlightEvents.fileAccessStarted(this, fileName, FlightEvents.READ);
+        int count = channel.read(buffer, position);
+        FlightEvents.fileAccessed(access, Math.max(count, 0));
+        if (count > 0)
+            position += count;
+        buffer.flip();
+        return buffer;
+    }
+
+    private ByteBuffer sliceOfMapping() throws IOException {
+        if (mapping == null || !mapping.hasRemaining()) {
+            // the previous mapping is unmapped once it is garbage collected
+            long length = Math.min(MAPPING_SIZE, Math.min(end, channel.size()) - position);
+            Object access = FlightEvents.fileAccessStarted(this, fileName, FlightEvents.MAP);
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            FlightEvents.fileAccessed(access, length);
+        }
+        ByteBuffer slice = mapping.slice();
+        slice.limit(Math.min(CHUNK_SIZE, slice.remaining()));
+        mapping.position(mapping.position() + slice.remaining());
+        position += slice.remaining();
+        return slice;
+    }
+
+    /**
+     * Close the file, and its channel with it, so a source reading one chunk of a file does not keep it open after
+     * its pipeline has finished.
+     */
+    @Override
+    protected void closeSource() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            System.out.println("Could not close " + fileName + ": " + e.getMessage());
+        }
+    }
+
     /**
      * Whether the file input stream has reached to an end.
      *
@@ -55,7 +270,9 @@ public class FileSourceFilter extends SourceFilterTemplate {
     @Override
     protected boolean hasReachedEndOfStream() {
         try {
-            return in.available() == 0;
+            if (mode == ReadMode.STREAM)
+                return position >= end || in.available() == 0;
+            return position >= Math.min(end, channel.size());
         } catch (IOException e) {
             return true;
         }
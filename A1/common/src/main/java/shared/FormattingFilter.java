@@ -6,6 +6,7 @@ import framework.MeasurementConfig;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * A filter that formats several incoming measurements into a single line of string. It assumes the incoming measurements
@@ -22,24 +23,24 @@ public class FormattingFilter extends SimpleFilter {
     private static final String NEW_LINE = "\n";
 
     /**
-     * Configuration options to specify what measurement to obtain and include in the line.
+     * The order of the well known measurements in the line. Any other measurement required follows them, in the
+     * order of the ids.
      */
-    private boolean timeRequired;
-    private boolean velocityRequired;
-    private boolean altitudeRequired;
-    private boolean pressureRequired;
-    private boolean temperatureRequired;
-    private boolean attitudeRequired;
+    private static final int[] LINE_ORDER = {MeasurementConfig.ID_TIME, MeasurementConfig.ID_VELOCITY,
+            MeasurementConfig.ID_TEMPERATURE, MeasurementConfig.ID_ALTITUDE, MeasurementConfig.ID_PRESSURE,
+            MeasurementConfig.ID_ATTITUDE};
 
     /**
-     * Data cache for any incoming measurement. It will be cleared once we flush the formatted line out.
+     * Configuration options to specify what measurement to obtain and include in the line, by id, and the ids
+     * required in the order of the line.
      */
-    private byte[] time;
-    private byte[] velocity;
-    private byte[] altitude;
-    private byte[] pressure;
-    private byte[] temperature;
-    private byte[] attitude;
+    private final boolean[] required = new boolean[MeasurementConfig.MAX_ID + 1];
+    private int[] requiredIds = new int[0];
+
+    /**
+     * Data cache for any incoming measurement, by id. It will be cleared once we flush the formatted line out.
+     */
+    private final byte[][] cache = new byte[MeasurementConfig.MAX_ID + 1][];
 
     public FormattingFilter(String filterId, MeasurementConfig context) {
         super(context, filterId);
@@ -59,18 +60,7 @@ public class FormattingFilter extends SimpleFilter {
     protected byte[] doTransform(int id, byte[] measurement) {
 
         // cache data
-        if (id == MeasurementConfig.ID_TIME)
-            time = measurement;
-        else if (id == MeasurementConfig.ID_VELOCITY)
-            velocity = measurement;
-        else if (id == MeasurementConfig.ID_ALTITUDE)
-            altitude = measurement;
-        else if (id == MeasurementConfig.ID_PRESSURE)
-            pressure = measurement;
-        else if (id == MeasurementConfig.ID_TEMPERATURE)
-            temperature = measurement;
-        else if (id == MeasurementConfig.ID_ATTITUDE)
-            attitude = measurement;
+        cache[id] = measurement;
 
         // format and flush if we have all required data
         formatAndFlushIfNecessary();
@@ -80,44 +70,24 @@ public class FormattingFilter extends SimpleFilter {
     }
 
     /**
-     * In the order of "time velocity temperature altitude pressure attitude", put a tab
-     * between the required measurements and add a new line at the end. Write all the formatted
-     * bytes to the output and clear the cache.
+     * In the order of "time velocity temperature altitude pressure attitude", followed by any other required
+     * measurement, put a tab between the required measurements and add a new line at the end. Write all the
+     * formatted bytes to the output and clear the cache.
      */
     private void formatAndFlushIfNecessary() {
         if (hasCachedAllRequiredItems()) {
             try {
                 // do format
                 ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-                if (timeRequired) {
-                    buffer.write(trimBytes(time));
-                    buffer.write(TAB.getBytes());
-                }
-                if (velocityRequired) {
-                    buffer.write(trimBytes(velocity));
-                    buffer.write(TAB.getBytes());
-                }
-                if (temperatureRequired) {
-                    buffer.write(trimBytes(temperature));
-                    buffer.write(TAB.getBytes());
-                }
-                if (altitudeRequired) {
-                    buffer.write(trimBytes(altitude));
-                    buffer.write(TAB.getBytes());
-                }
-                if (pressureRequired) {
-                    buffer.write(trimBytes(pressure));
-                    buffer.write(TAB.getBytes());
-                }
-                if (attitudeRequired) {
-                    buffer.write(trimBytes(attitude));
+                for (int id : requiredIds) {
+                    buffer.write(trimBytes(cache[id]));
                     buffer.write(TAB.getBytes());
                 }
                 buffer.write(NEW_LINE.getBytes());
 
                 // write output
-                for (byte eachByte : buffer.toByteArray())
-                    WriteFilterOutputPort(eachByte);
+                byte[] line = buffer.toByteArray();
+                WriteFilterOutputPort(line, 0, line.length);
             } catch (IOException ex) {
                 throw new RuntimeException("Something went wrong: " + ex.getMessage());
             } finally {
@@ -144,57 +114,67 @@ public class FormattingFilter extends SimpleFilter {
      * @return
      */
     private boolean hasCachedAllRequiredItems() {
-        boolean timeCheck = true, velocityCheck = true, altitudeCheck = true, pressureCheck = true,
-                temperatureCheck = true, attitudeCheck = true;
-        if (timeRequired)
-            timeCheck = time != null;
-        if (velocityRequired)
-            velocityCheck = velocity != null;
-        if (altitudeRequired)
-            altitudeCheck = altitude != null;
-        if (pressureRequired)
-            pressureCheck = pressure != null;
-        if (temperatureRequired)
-            temperatureCheck = temperature != null;
-        if (attitudeRequired)
-            attitudeCheck = attitude != null;
-
-        return timeCheck && velocityCheck && altitudeCheck && pressureCheck && temperatureCheck && attitudeCheck;
+        for (int id : requiredIds) {
+            if (cache[id] == null)
+                return false;
+        }
+        return true;
     }
 
     /**
      * Reset the cache to prepare for another line.
      */
     private void resetCache() {
-        this.time = null;
-        this.velocity = null;
-        this.altitude = null;
-        this.pressure = null;
-        this.temperature = null;
-        this.attitude = null;
+        Arrays.fill(cache, null);
+    }
+
+    /**
+     * Configure whether the measurement with the given id is to be included in the line.
+     *
+     * @param id the id of the measurement, from 0 to {@link MeasurementConfig#MAX_ID}
+     * @param required true to include it
+     */
+    public void setRequired(int id, boolean required) {
+        if (id < 0 || id > MeasurementConfig.MAX_ID)
+            throw new IllegalArgumentException("id: " + id + " is out of range [0, " + MeasurementConfig.MAX_ID + "]");
+        this.required[id] = required;
+
+        int[] ids = new int[this.required.length];
+        int count = 0;
+        boolean[] placed = new boolean[this.required.length];
+        for (int lineId : LINE_ORDER) {
+            placed[lineId] = true;
+            if (this.required[lineId])
+                ids[count++] = lineId;
+        }
+        for (int otherId = 0; otherId < this.required.length; otherId++) {
+            if (!placed[otherId] && this.required[otherId])
+                ids[count++] = otherId;
+        }
+        this.requiredIds = Arrays.copyOf(ids, count);
     }
 
     public void setAttitudeRequired(boolean attitudeRequired) {
-        this.attitudeRequired = attitudeRequired;
+        setRequired(MeasurementConfig.ID_ATTITUDE, attitudeRequired);
     }
 
     public void setTemperatureRequired(boolean temperatureRequired) {
-        this.temperatureRequired = temperatureRequired;
+        setRequired(MeasurementConfig.ID_TEMPERATURE, temperatureRequired);
     }
 
     public void setPressureRequired(boolean pressureRequired) {
-        this.pressureRequired = pressureRequired;
+        setRequired(MeasurementConfig.ID_PRESSURE, pressureRequired);
     }
 
     public void setAltitudeRequired(boolean altitudeRequired) {
-        this.altitudeRequired = altitudeRequired;
+        setRequired(MeasurementConfig.ID_ALTITUDE, altitudeRequired);
     }
 
     public void setVelocityRequired(boolean velocityRequired) {
-        this.velocityRequired = velocityRequired;
+        setRequired(MeasurementConfig.ID_VELOCITY, velocityRequired);
     }
 
     public void setTimeRequired(boolean timeRequired) {
-        this.timeRequired = timeRequired;
+        setRequired(MeasurementConfig.ID_TIME, timeRequired);
     }
 }
@@ -0,0 +1,112 @@
+package shared;
+
+import framework.MeasurementConfig;
+import util.ConversionUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cuts a raw measurement stream into measurements and keeps only those with the given ids, the way a
+ * {@link DataDroppingFilter} right behind the source would. The stream is fed to {@link #project(ByteBuffer, ByteBuffer)}
+ * chunk by chunk; a measurement cut in two by the end of a chunk is continued with the next one. Dropped measurements
+ * are skipped by moving past them, kept ones are copied in bulk, so nothing is parsed but the ids.
+ *
+ * @since 1.0.0
+ */
+class MeasurementProjection {
+
+    private final MeasurementConfig context;
+
+    private final int idLength;
+
+    /**
+     * Whether the measurements with a given id are kept, indexed by id.
+     */
+    private final boolean[] kept = new boolean[MeasurementConfig.MAX_ID + 1];
+
+    /**
+     * The id being read and how many of its bytes have been read, when the id is cut in two by the end of a chunk.
+     */
+    private int id = 0;
+    private int idFill = 0;
+
+    /**
+     * The number of bytes of the current measurement not read yet, and whether they are kept.
+     */
+    private int remaining = 0;
+    private boolean keeping = false;
+
+    /**
+     * Default constructor.
+     *
+     * @param context the configuration object containing the length information of the measurements
+     * @param keptIds the ids of the measurements to be kept
+     */
+    MeasurementProjection(MeasurementConfig context, int... keptIds) {
+        this.context = context;
+        this.idLength = context.getIdLength();
+        for (int keptId : keptIds) {
+            if (!context.isExpected(keptId))
+                throw new IllegalArgumentException("id: " + keptId + " does not have corresponding measurement");
+            kept[keptId] = true;
+        }
+    }
+
+    /**
+     * @return the number of bytes {@link #project(ByteBuffer, ByteBuffer)} may write for a chunk of the given size.
+     */
+    int maxProjectedLength(int chunkSize) {
+        return chunkSize + idLength;
+    }
+
+    /**
+     * Move through the bytes remaining in {@code src}, copying the ids and measurements that are kept to {@code dst}.
+     *
+     * @param src the next chunk of the raw stream
+     * @param dst the buffer to write to, with at least {@link #maxProjectedLength(int)} bytes remaining
+     */
+    void project(ByteBuffer src, ByteBuffer dst) {
+        while (src.hasRemaining()) {
+            if (remaining == 0 && !readId(src, dst))
+                return;
+
+            int length = Math.min(remaining, src.remaining());
+            if (keeping) {
+                int limit = src.limit();
+                src.limit(src.position() + length);
+                dst.put(src);
+                src.limit(limit);
+            } else {
+                src.position(src.position() + length);
+            }
+            remaining -= length;
+        }
+    }
+
+    /**
+     * Read the id of the next measurement and write it to {@code dst} if the measurement is kept.
+     *
+     * @return false if the chunk ends before the id does
+     */
+    private boolean readId(ByteBuffer src, ByteBuffer dst) {
+        if (idFill == 0 && idLength == 4 && src.remaining() >= 4) {
+            id = src.getInt();
+            idFill = 4;
+        }
+        while (idFill < idLength) {
+            if (!src.hasRemaining())
+                return false;
+            id = (id << 8) | (src.get() & 0xFF);
+            idFill++;
+        }
+
+        int measurementId = id;
+        id = 0;
+        idFill = 0;
+        remaining = context.idForMeasurementLength(measurementId);
+        keeping = kept[measurementId];
+        if (keeping)
+            ConversionUtil.putId(dst, measurementId, idLength);
+        return true;
+    }
+}
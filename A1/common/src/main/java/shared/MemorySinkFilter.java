@@ -0,0 +1,43 @@
+package shared;
+
+import framework.SinkFilterTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A sink filter that collects the data in memory, e.g. the output of a pipeline running on one chunk of a file, to be
+ * written out once the chunks before it have been.
+ *
+ * @since 1.0.0
+ */
+public class MemorySinkFilter extends SinkFilterTemplate {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    public MemorySinkFilter(final String filterId) {
+        super(filterId);
+    }
+
+    @Override
+    protected void writeByteToSink(byte dataByte) {
+        out.write(dataByte);
+    }
+
+    @Override
+    protected void writeToSink(ByteBuffer data) {
+        if (data.hasArray()) {
+            out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+        } else {
+            super.writeToSink(data);
+        }
+    }
+
+    /**
+     * @return the data collected so far.
+     */
+    public byte[] toByteArray() {
+        return out.toByteArray();
+    }
+}
@@ -2,10 +2,10 @@ package shared;
 
 import framework.SimpleFilter;
 import framework.MeasurementConfig;
+import framework.MeasurementFrame;
+import framework.MeasurementType;
 import util.ConversionUtil;
-
-import java.text.DecimalFormat;
-import java.util.Arrays;
+import util.FixedPointFormat;
 
 /**
  * A filter that converts the pressure data to a string format.
@@ -19,10 +19,24 @@ public class PressureFormattingFilter extends SimpleFilter {
      */
     private String numberFormat = "#00.00000";
 
+    /**
+     * The number format compiled once, see {@link #setNumberFormat(String)}.
+     */
+    private FixedPointFormat format = new FixedPointFormat(numberFormat, ':');
+
     private boolean treatNegativeValueAsExtrapolated = false;
 
     public PressureFormattingFilter(String filterId, MeasurementConfig context) {
         super(context, filterId);
+        handleIds(MeasurementConfig.ID_PRESSURE);
+    }
+
+    /**
+     * Every pressure is formatted on its own.
+     */
+    @Override
+    protected boolean isStateless() {
+        return true;
     }
 
     /**
@@ -39,21 +53,42 @@ public class PressureFormattingFilter extends SimpleFilter {
         if (id != MeasurementConfig.ID_PRESSURE)
             return measurement;
 
+        return format(ConversionUtil.readDouble(measurement, 0));
+    }
+
+    /**
+     * Format the decoded pressure of the frame and leave everything else as is.
+     *
+     * @param frame the frame to be transformed
+     */
+    @Override
+    protected void transformFrame(MeasurementFrame frame) {
+        if (frame.has(MeasurementConfig.ID_PRESSURE))
+            frame.setBytes(MeasurementConfig.ID_PRESSURE, format(frame.getDouble(MeasurementConfig.ID_PRESSURE)),
+                    MeasurementType.TEXT);
+    }
+
+    /**
+     * Format pressure into padded bytes.
+     *
+     * @param pressure pressure data, negative if extrapolated and {@link #treatNegativeValueAsExtrapolated} is set
+     * @return the padded byte array of formatted pressure data
+     */
+    private byte[] format(double pressure) {
         // do format
-        double pressure = ConversionUtil.convertToDouble(measurement);
         boolean extrapolated = false;
         if (treatNegativeValueAsExtrapolated && pressure < 0.0d) {
             extrapolated = true;
             pressure = Math.abs(pressure);
         }
 
-        String formatted = new DecimalFormat(numberFormat).format(pressure);
-        formatted = formatted.replace(".", ":");
-        if (extrapolated)
-            formatted += "*";
-
-        // pad the byte array and return the formatted data.
-        return Arrays.copyOf(formatted.getBytes(), 9);
+        // format with the ':' decimal separator into the padded byte array, followed by '*' if extrapolated and
+        // there is room left.
+        byte[] formatted = new byte[9];
+        int length = format.format(pressure, formatted, 0, formatted.length);
+        if (extrapolated && length < formatted.length)
+            formatted[length] = '*';
+        return formatted;
     }
 
     public String getNumberFormat() {
@@ -62,6 +97,7 @@ public class PressureFormattingFilter extends SimpleFilter {
 
     public void setNumberFormat(String numberFormat) {
         this.numberFormat = numberFormat;
+        this.format = new FixedPointFormat(numberFormat, ':');
     }
 
     public boolean isTreatNegativeValueAsExtrapolated() {
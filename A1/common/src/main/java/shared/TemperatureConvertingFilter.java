@@ -2,10 +2,10 @@ package shared;
 
 import framework.SimpleFilter;
 import framework.MeasurementConfig;
+import framework.MeasurementFrame;
+import framework.MeasurementType;
 import util.ConversionUtil;
-
-import java.text.DecimalFormat;
-import java.util.Arrays;
+import util.FixedPointFormat;
 
 /**
  * The filter that converts temperature data from fahrenheit to celsius and formats it to string.
@@ -19,8 +19,22 @@ public class TemperatureConvertingFilter extends SimpleFilter {
      */
     private String numberFormat = "#000.00000";
 
+    /**
+     * The number format compiled once, see {@link #setNumberFormat(String)}.
+     */
+    private FixedPointFormat format = new FixedPointFormat(numberFormat);
+
     public TemperatureConvertingFilter(String filterId, MeasurementConfig context) {
         super(context, filterId);
+        handleIds(MeasurementConfig.ID_TEMPERATURE);
+    }
+
+    /**
+     * Every temperature is converted on its own.
+     */
+    @Override
+    protected boolean isStateless() {
+        return true;
     }
 
     /**
@@ -38,16 +52,35 @@ public class TemperatureConvertingFilter extends SimpleFilter {
         }
 
         // read data in fahrenheit
-        double tempInFahrenheit = ConversionUtil.convertToDouble(measurement);
+        double tempInFahrenheit = ConversionUtil.readDouble(measurement, 0);
+
+        return convert(tempInFahrenheit);
+    }
 
+    /**
+     * Do conversion for the decoded temperature of the frame and leave everything else as is.
+     *
+     * @param frame the frame to be transformed
+     */
+    @Override
+    protected void transformFrame(MeasurementFrame frame) {
+        if (frame.has(MeasurementConfig.ID_TEMPERATURE))
+            frame.setBytes(MeasurementConfig.ID_TEMPERATURE,
+                    convert(frame.getDouble(MeasurementConfig.ID_TEMPERATURE)), MeasurementType.TEXT);
+    }
+
+    /**
+     * Convert temperature from fahrenheit to celsius and format it.
+     *
+     * @param tempInFahrenheit temperature in fahrenheit
+     * @return padded bytes of the formatted temperature in celsius
+     */
+    private byte[] convert(double tempInFahrenheit) {
         // convert data to celsius
         double tempInCelsius = (tempInFahrenheit - 32d) / 1.8d;
 
-        // format data
-        String formatted = new DecimalFormat(numberFormat).format(tempInCelsius);
-
-        // return padded data
-        return Arrays.copyOf(formatted.getBytes(), 10);
+        // format data and return it padded
+        return format.format(tempInCelsius, 10);
     }
 
     public String getNumberFormat() {
@@ -56,5 +89,6 @@ public class TemperatureConvertingFilter extends SimpleFilter {
 
     public void setNumberFormat(String numberFormat) {
         this.numberFormat = numberFormat;
+        this.format = new FixedPointFormat(numberFormat);
     }
 }
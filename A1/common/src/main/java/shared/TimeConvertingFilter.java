@@ -2,12 +2,11 @@ package shared;
 
 import framework.SimpleFilter;
 import framework.MeasurementConfig;
+import framework.MeasurementFrame;
+import framework.MeasurementType;
+import util.CachedTimestampFormat;
 import util.ConversionUtil;
 
-import java.text.SimpleDateFormat;
-import java.util.Arrays;
-import java.util.Date;
-
 /**
  * The filter that formats time into string.
  *
@@ -21,8 +20,22 @@ public class TimeConvertingFilter extends SimpleFilter {
      */
     private String dateFormat = "yyyy:dd:hh:mm:ss";
 
+    /**
+     * The date format compiled once, see {@link #setDateFormat(String)}.
+     */
+    private CachedTimestampFormat format = new CachedTimestampFormat(dateFormat);
+
     public TimeConvertingFilter(String filterId, MeasurementConfig context) {
         super(context, filterId);
+        handleIds(MeasurementConfig.ID_TIME);
+    }
+
+    /**
+     * Every time is formatted on its own; the cached minute only saves work, it doesn't change the result.
+     */
+    @Override
+    protected boolean isStateless() {
+        return true;
     }
 
     /**
@@ -39,13 +52,32 @@ public class TimeConvertingFilter extends SimpleFilter {
             return measurement;
 
         // read time in milliseconds
-        long time = ConversionUtil.convertToLong(measurement);
+        long time = ConversionUtil.readLong(measurement, 0);
 
-        // format time
-        String formattedTime = new SimpleDateFormat(dateFormat).format(new Date(time));
+        return format(time);
+    }
 
-        // return padded bytes of the formatted time
-        return Arrays.copyOf(formattedTime.getBytes(), 16);
+    /**
+     * Perform formatting on the decoded time of the frame and leave everything else as is.
+     *
+     * @param frame the frame to be transformed
+     */
+    @Override
+    protected void transformFrame(MeasurementFrame frame) {
+        if (frame.has(MeasurementConfig.ID_TIME))
+            frame.setBytes(MeasurementConfig.ID_TIME, format(frame.getLong(MeasurementConfig.ID_TIME)),
+                    MeasurementType.TEXT);
+    }
+
+    /**
+     * Format time into padded bytes.
+     *
+     * @param time time in milliseconds
+     * @return padded bytes of the formatted time
+     */
+    private byte[] format(long time) {
+        // format time and return its padded bytes
+        return format.format(time, 16);
     }
 
     public String getDateFormat() {
@@ -54,5 +86,6 @@ public class TimeConvertingFilter extends SimpleFilter {
 
     public void setDateFormat(String dateFormat) {
         this.dateFormat = dateFormat;
+        this.format = new CachedTimestampFormat(dateFormat);
     }
 }
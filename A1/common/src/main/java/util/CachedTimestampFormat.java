@@ -0,0 +1,233 @@
+package util;
+
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * A date format compiled once from a {@link SimpleDateFormat} pattern, e.g. {@code "yyyy:dd:hh:mm:ss"}, that produces
+ * the same text as {@link SimpleDateFormat#format(Date)} in the default time zone and writes it as bytes straight into
+ * a caller supplied array.
+ *
+ * The pattern is cut into the second ({@code s}) and millisecond ({@code S}) fields and the parts in between. The
+ * parts in between only change from one minute to the next, so they are rendered with a {@link SimpleDateFormat} once
+ * per minute and cached; within the minute only the seconds and milliseconds are written, without allocating.
+ * Consecutive measurements are close in time, so the cache is rendered again about once a minute of data. A format
+ * is not thread safe; every filter keeps its own.
+ *
+ * @since 1.0.0
+ */
+public class CachedTimestampFormat {
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+    private final String pattern;
+
+    private final TimeZone zone;
+
+    /**
+     * The parts of the pattern in order. A part is either a second or millisecond field written for every value, or
+     * a run of everything else, rendered once per minute into {@link #rendered}.
+     */
+    private final Part[] parts;
+
+    /**
+     * The bytes of every part rendered for the cached minute, null for the second and millisecond fields.
+     */
+    private final byte[][] rendered;
+
+    /**
+     * The cached minute, from {@link #minuteStart} inclusive to {@link #minuteEnd} exclusive, in milliseconds since
+     * the epoch. Empty until the first value has been formatted.
+     */
+    private long minuteStart = 0;
+    private long minuteEnd = 0;
+
+    /**
+     * The offset of the time zone from UTC during the cached minute, in milliseconds.
+     */
+    private long offset = 0;
+
+    /**
+     * The array the text is put together in before it is copied (and padded or truncated) to the caller's array.
+     */
+    private byte[] scratch = new byte[32];
+
+    public CachedTimestampFormat(String pattern) {
+        this.pattern = pattern;
+        this.zone = TimeZone.getDefault();
+        this.parts = compile(pattern, zone);
+        this.rendered = new byte[parts.length][];
+    }
+
+    /**
+     * Format a time into exactly {@code len} bytes of {@code dst}: the formatted text, truncated if it is longer, or
+     * followed by 0 bytes if it is shorter, just like {@code Arrays.copyOf(formatted.getBytes(), len)}.
+     *
+     * @param time the time in milliseconds since the epoch
+     * @param dst the array to write to
+     * @param off the start offset in {@code dst}
+     * @param len the number of bytes to fill
+     * @return the length of the formatted text, which may be larger than {@code len}
+     */
+    public int format(long time, byte[] dst, int off, int len) {
+        if (time < minuteStart || time >= minuteEnd)
+            renderMinute(time);
+
+        int count = 0;
+        long millisOfMinute = floorMod(time + offset, MILLIS_PER_MINUTE);
+        for (int i = 0; i < parts.length; i++) {
+            if (rendered[i] != null) {
+                ensureScratch(count + rendered[i].length);
+                System.arraycopy(rendered[i], 0, scratch, count, rendered[i].length);
+                count += rendered[i].length;
+            } else {
+                long value = parts[i].letter == 's' ? millisOfMinute / 1000 : millisOfMinute % 1000;
+                count = writeNumber(value, parts[i].width, count);
+            }
+        }
+
+        System.arraycopy(scratch, 0, dst, off, Math.min(count, len));
+        if (count < len)
+            Arrays.fill(dst, off + count, off + len, (byte) 0);
+        return count;
+    }
+
+    /**
+     * Format a time into a new array of {@code len} bytes, see {@link #format(long, byte[], int, int)}.
+     *
+     * @param time the time in milliseconds since the epoch
+     * @param len the length of the array
+     * @return the padded or truncated bytes of the formatted time
+     */
+    public byte[] format(long time, int len) {
+        byte[] bytes = new byte[len];
+        format(time, bytes, 0, len);
+        return bytes;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Render the parts that stay the same during the minute of local time containing {@code time}. If the offset of
+     * the time zone changes during that minute, only {@code time} itself is cached.
+     */
+    private void renderMinute(long time) {
+        int offsetOfTime = zone.getOffset(time);
+        long start = time - floorMod(time + offsetOfTime, MILLIS_PER_MINUTE);
+        long end = start + MILLIS_PER_MINUTE;
+        if (zone.getOffset(start) != offsetOfTime || zone.getOffset(end - 1) != offsetOfTime) {
+            // the offset changes during this minute, so cache nothing but the time itself
+            start = time;
+            end = time + 1;
+        }
+
+        Date date = new Date(start);
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].format != null)
+                rendered[i] = parts[i].format.format(date).getBytes(Charset.defaultCharset());
+        }
+        minuteStart = start;
+        minuteEnd = end;
+        offset = offsetOfTime;
+    }
+
+    private int writeNumber(long value, int width, int count) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10)
+            digits++;
+        int length = Math.max(width, digits);
+        ensureScratch(count + length);
+        for (int i = count + length - 1; i >= count; i--) {
+            scratch[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return count + length;
+    }
+
+    private void ensureScratch(int length) {
+        if (length > scratch.length)
+            scratch = Arrays.copyOf(scratch, Math.max(length, scratch.length * 2));
+    }
+
+    private static long floorMod(long x, long y) {
+        return ((x % y) + y) % y;
+    }
+
+    /**
+     * Cut the pattern into second and millisecond fields and the runs of the pattern in between, keeping quoted
+     * text whole.
+     */
+    private static Part[] compile(String pattern, TimeZone zone) {
+        List<Part> parts = new ArrayList<Part>();
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            int end = i + 1;
+            if (c == '\'') {
+                // quoted text, '' being an escaped quote
+                while (end < pattern.length()) {
+                    if (pattern.charAt(end++) == '\'') {
+                        if (end < pattern.length() && pattern.charAt(end) == '\'')
+                            end++;
+                        else
+                            break;
+                    }
+                }
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                while (end < pattern.length() && pattern.charAt(end) == c)
+                    end++;
+            }
+
+            if (c == 's' || c == 'S') {
+                if (run.length() > 0)
+                    parts.add(new Part(run.toString(), zone));
+                run.setLength(0);
+                parts.add(new Part(c, end - i));
+            } else {
+                run.append(pattern, i, end);
+            }
+            i = end;
+        }
+        if (run.length() > 0)
+            parts.add(new Part(run.toString(), zone));
+        return parts.toArray(new Part[parts.size()]);
+    }
+
+    /**
+     * A second or millisecond field of the pattern, or a run of the pattern in between.
+     */
+    private static class Part {
+
+        /**
+         * The format of the run, null for a field.
+         */
+        private final SimpleDateFormat format;
+
+        /**
+         * The letter and the minimum number of digits of the field.
+         */
+        private final char letter;
+        private final int width;
+
+        private Part(String run, TimeZone zone) {
+            this.format = new SimpleDateFormat(run);
+            this.format.setTimeZone(zone);
+            this.letter = 0;
+            this.width = 0;
+        }
+
+        private Part(char letter, int width) {
+            this.format = null;
+            this.letter = letter;
+            this.width = width;
+        }
+    }
+}
@@ -1,27 +1,147 @@
 package util;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Data type conversion utility.
  *
+ * Besides the conversions of whole arrays, it reads and writes big-endian values at an offset of an existing
+ * {@code byte[]} or {@link ByteBuffer}, so decoding a measurement in place allocates nothing, and it hands out shared
+ * encodings of the small ints used as measurement ids.
+ *
  * @since 1.0.0
  */
 public class ConversionUtil {
 
+    /**
+     * Number of ints, from 0, whose encoding is cached by {@link #idBytes(int)}.
+     */
+    private static final int CACHED_IDS = 32;
+
+    private static final byte[][] ID_BYTES = new byte[CACHED_IDS][];
+
+    static {
+        for (int id = 0; id < CACHED_IDS; id++)
+            ID_BYTES[id] = convertToByteArray(id);
+    }
+
+    /**
+     * Encoding of a measurement id. Ids from 0 to 31 share one array each, which must therefore never be modified;
+     * other ids get a new array.
+     *
+     * @param id the id of the measurement
+     * @return the 4 big-endian bytes of the id
+     */
+    public static byte[] idBytes(int id) {
+        if (id >= 0 && id < CACHED_IDS)
+            return ID_BYTES[id];
+        return convertToByteArray(id);
+    }
+
+    public static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24
+                | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8
+                | (bytes[offset + 3] & 0xFF);
+    }
+
+    public static long readLong(byte[] bytes, int offset) {
+        return (readInt(bytes, offset) & 0xFFFFFFFFL) << 32 | (readInt(bytes, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    public static double readDouble(byte[] bytes, int offset) {
+        return Double.longBitsToDouble(readLong(bytes, offset));
+    }
+
+    public static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    public static void writeLong(byte[] bytes, int offset, long value) {
+        writeInt(bytes, offset, (int) (value >>> 32));
+        writeInt(bytes, offset + 4, (int) value);
+    }
+
+    public static void writeDouble(byte[] bytes, int offset, double value) {
+        writeLong(bytes, offset, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Read a big-endian int at an absolute offset of the buffer, whatever the byte order of the buffer. The position
+     * of the buffer is left as is.
+     */
+    public static int readInt(ByteBuffer buffer, int offset) {
+        int value = buffer.getInt(offset);
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes(value);
+    }
+
+    /**
+     * Read a big-endian long at an absolute offset of the buffer, see {@link #readInt(ByteBuffer, int)}.
+     */
+    public static long readLong(ByteBuffer buffer, int offset) {
+        long value = buffer.getLong(offset);
+        return buffer.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value);
+    }
+
+    public static double readDouble(ByteBuffer buffer, int offset) {
+        return Double.longBitsToDouble(readLong(buffer, offset));
+    }
+
+    /**
+     * Write a big-endian int at an absolute offset of the buffer, whatever the byte order of the buffer. The position
+     * of the buffer is left as is.
+     */
+    public static void writeInt(ByteBuffer buffer, int offset, int value) {
+        buffer.putInt(offset, buffer.order() == ByteOrder.BIG_ENDIAN ? value : Integer.reverseBytes(value));
+    }
+
+    /**
+     * Write a big-endian long at an absolute offset of the buffer, see {@link #writeInt(ByteBuffer, int, int)}.
+     */
+    public static void writeLong(ByteBuffer buffer, int offset, long value) {
+        buffer.putLong(offset, buffer.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value));
+    }
+
+    public static void writeDouble(ByteBuffer buffer, int offset, double value) {
+        writeLong(buffer, offset, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Write a measurement id at the position of the buffer as {@code idLength} big-endian bytes, the way
+     * {@link #convertToInt(byte[])} reads it back, and move the position past it.
+     *
+     * @param buffer the buffer to write to
+     * @param id the id of the measurement
+     * @param idLength the length of an id, see {@code MeasurementConfig#getIdLength()}
+     */
+    public static void putId(ByteBuffer buffer, int id, int idLength) {
+        if (idLength == 4) {
+            buffer.putInt(id);
+            return;
+        }
+        for (int i = idLength - 1; i >= 0; i--)
+            buffer.put(i >= 4 ? 0 : (byte) (id >>> (8 * i)));
+    }
+
     public static byte[] convertToByteArray(double value) {
         byte[] bytes = new byte[8];
-        ByteBuffer.wrap(bytes).putDouble(value);
+        writeDouble(bytes, 0, value);
         return bytes;
     }
 
     public static byte[] convertToByteArray(int value) {
         byte[] bytes = new byte[4];
-        ByteBuffer.wrap(bytes).putInt(value);
+        writeInt(bytes, 0, value);
         return bytes;
     }
 
     public static int convertToInt(byte[] measurement) {
+        if (measurement.length == 4)
+            return readInt(measurement, 0);
         int result = 0;
         for (int i=0; i< measurement.length; i++) {
             result = result | (measurement[i] & 0xFF);
@@ -33,6 +153,8 @@ public class ConversionUtil {
     }
 
     public static long convertToLong(byte[] measurement) {
+        if (measurement.length == 8)
+            return readLong(measurement, 0);
         long result = 0;
         for (int i=0; i< measurement.length; i++) {
             result = result | (measurement[i] & 0xFF);
@@ -0,0 +1,234 @@
+package util;
+
+import java.nio.charset.Charset;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+
+/**
+ * A number format compiled once from a {@link DecimalFormat} pattern of the shape used by the filters, e.g.
+ * {@code "#000000.00000"}: a minimum number of integer digits given by the {@code 0}s before the decimal point, and a
+ * minimum and maximum number of fraction digits given by the {@code 0}s and {@code #}s after it. It writes ASCII
+ * bytes straight into a caller supplied array and produces the same text as {@link DecimalFormat#format(double)}
+ * with the default locale, half-even rounding included, without allocating.
+ *
+ * The rare values the fast path cannot format exactly (not a number, infinite, too large, or too close to a rounding
+ * tie to decide in double arithmetic) and patterns it does not understand are formatted with a {@link DecimalFormat}
+ * built once from the same pattern. A format is not thread safe; every filter keeps its own.
+ *
+ * @since 1.0.0
+ */
+public class FixedPointFormat {
+
+    /**
+     * Powers of ten that are exactly representable as a double and a long.
+     */
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1L;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10L;
+    }
+
+    /**
+     * Largest scaled value whose integer part is still exact in a double.
+     */
+    private static final double MAX_EXACT = (double) (1L << 53);
+
+    private final String pattern;
+
+    /**
+     * The decimal separator written, the one of the default locale unless overridden.
+     */
+    private final char decimalSeparator;
+
+    /**
+     * The format used for what the fast path cannot handle.
+     */
+    private final DecimalFormat fallback;
+    private final char fallbackSeparator;
+
+    /**
+     * Whether the pattern can be formatted by the fast path, and the layout it prescribes.
+     */
+    private final boolean compiled;
+    private final int minIntegerDigits;
+    private final int minFractionDigits;
+    private final int maxFractionDigits;
+    private final boolean separatorAlwaysShown;
+
+    /**
+     * The array the text is put together in before it is copied (and padded or truncated) to the caller's array.
+     */
+    private final byte[] scratch;
+
+    /**
+     * Compile a format that writes the decimal separator of the default locale.
+     *
+     * @param pattern a {@link DecimalFormat} pattern
+     */
+    public FixedPointFormat(String pattern) {
+        this(pattern, DecimalFormatSymbols.getInstance().getDecimalSeparator());
+    }
+
+    /**
+     * Compile a format that writes the given decimal separator instead of the one of the default locale, e.g.
+     * {@code ':'}.
+     *
+     * @param pattern a {@link DecimalFormat} pattern
+     * @param decimalSeparator the decimal separator to be written
+     */
+    public FixedPointFormat(String pattern, char decimalSeparator) {
+        this.pattern = pattern;
+        this.decimalSeparator = decimalSeparator;
+        this.fallback = new DecimalFormat(pattern);
+        this.fallbackSeparator = fallback.getDecimalFormatSymbols().getDecimalSeparator();
+
+        int integerZeros = 0;
+        int fractionZeros = 0;
+        int fractionHashes = 0;
+        boolean fraction = false;
+        boolean valid = pattern.length() > 0;
+        for (int i = 0; i < pattern.length() && valid; i++) {
+            char c = pattern.charAt(i);
+            if (c == '.' && !fraction)
+                fraction = true;
+            else if (c == '0' && !fraction)
+                integerZeros++;
+            else if (c == '#' && !fraction)
+                valid = integerZeros == 0;
+            else if (c == '0')
+                valid = fractionHashes == 0 && ++fractionZeros > 0;
+            else if (c == '#')
+                fractionHashes++;
+            else
+                valid = false;
+        }
+
+        // the fast path only writes plain ASCII digits with at least one integer digit
+        DecimalFormatSymbols symbols = fallback.getDecimalFormatSymbols();
+        this.compiled = valid && integerZeros > 0 && fractionZeros + fractionHashes < POWERS_OF_TEN.length
+                && symbols.getZeroDigit() == '0' && symbols.getMinusSign() == '-'
+                && decimalSeparator < 0x80;
+        this.minIntegerDigits = integerZeros;
+        this.minFractionDigits = fractionZeros;
+        this.maxFractionDigits = fractionZeros + fractionHashes;
+        this.separatorAlwaysShown = fraction && maxFractionDigits == 0;
+        this.scratch = new byte[1 + Math.max(minIntegerDigits, 16) + 1 + maxFractionDigits];
+    }
+
+    /**
+     * Format a value into exactly {@code len} bytes of {@code dst}: the formatted text, truncated if it is longer, or
+     * followed by 0 bytes if it is shorter, just like {@code Arrays.copyOf(formatted.getBytes(), len)}.
+     *
+     * @param value the value to be formatted
+     * @param dst the array to write to
+     * @param off the start offset in {@code dst}
+     * @param len the number of bytes to fill
+     * @return the length of the formatted text, which may be larger than {@code len}
+     */
+    public int format(double value, byte[] dst, int off, int len) {
+        int count = formatFast(value);
+        if (count < 0)
+            return formatSlow(value, dst, off, len);
+
+        System.arraycopy(scratch, 0, dst, off, Math.min(count, len));
+        if (count < len)
+            Arrays.fill(dst, off + count, off + len, (byte) 0);
+        return count;
+    }
+
+    /**
+     * Format a value into a new array of {@code len} bytes, see {@link #format(double, byte[], int, int)}.
+     *
+     * @param value the value to be formatted
+     * @param len the length of the array
+     * @return the padded or truncated bytes of the formatted value
+     */
+    public byte[] format(double value, int len) {
+        byte[] bytes = new byte[len];
+        format(value, bytes, 0, len);
+        return bytes;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Format the value into {@link #scratch}.
+     *
+     * @return the number of bytes written, or -1 if the value has to be formatted by the fallback
+     */
+    private int formatFast(double value) {
+        if (!compiled || Double.isNaN(value) || Double.isInfinite(value))
+            return -1;
+
+        // DecimalFormat keeps the sign of negative zero and of negative values rounding to zero
+        boolean negative = (Double.doubleToRawLongBits(value) & Long.MIN_VALUE) != 0;
+        double scaled = Math.abs(value) * POWERS_OF_TEN[maxFractionDigits];
+        if (scaled >= MAX_EXACT)
+            return -1;
+
+        // the product is off the exact value by at most half an ulp, so only a remainder that close to one half
+        // leaves the direction of rounding undecided
+        long units = (long) scaled;
+        double remainder = scaled - units;
+        double tie = Math.abs(remainder - 0.5d);
+        if (tie <= Math.ulp(scaled))
+            return -1;
+        if (remainder > 0.5d)
+            units++;
+
+        long integer = units / POWERS_OF_TEN[maxFractionDigits];
+        long fraction = units % POWERS_OF_TEN[maxFractionDigits];
+
+        // drop the trailing fraction zeros the pattern makes optional
+        int fractionDigits = maxFractionDigits;
+        while (fractionDigits > minFractionDigits && fraction % 10 == 0) {
+            fraction /= 10;
+            fractionDigits--;
+        }
+
+        int integerDigits = Math.max(minIntegerDigits, digits(integer));
+        int count = (negative ? 1 : 0) + integerDigits
+                + (fractionDigits > 0 || separatorAlwaysShown ? 1 : 0) + fractionDigits;
+
+        int position = count;
+        for (int i = 0; i < fractionDigits; i++) {
+            scratch[--position] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        if (fractionDigits > 0 || separatorAlwaysShown)
+            scratch[--position] = (byte) decimalSeparator;
+        for (int i = 0; i < integerDigits; i++) {
+            scratch[--position] = (byte) ('0' + integer % 10);
+            integer /= 10;
+        }
+        if (negative)
+            scratch[--position] = '-';
+        return count;
+    }
+
+    private int formatSlow(double value, byte[] dst, int off, int len) {
+        String formatted = fallback.format(value);
+        if (decimalSeparator != fallbackSeparator)
+            formatted = formatted.replace(fallbackSeparator, decimalSeparator);
+        byte[] bytes = formatted.getBytes(Charset.defaultCharset());
+
+        System.arraycopy(bytes, 0, dst, off, Math.min(bytes.length, len));
+        if (bytes.length < len)
+            Arrays.fill(dst, off + bytes.length, off + len, (byte) 0);
+        return bytes.length;
+    }
+
+    private static int digits(long value) {
+        int digits = 0;
+        while (value > 0) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,258 @@
+package framework;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timestamp;
+
+/**
+ * The recorder of {@link FlightEvents} on runtimes with the flight recorder API. It is compiled apart from the rest
+ * of the framework, against Java 11, and only ever loaded by name, so that the framework itself keeps to the Java 8
+ * API.
+ *
+ * @since 1.0.0
+ */
+final class FlightEventRecorder extends FlightEvents.Recorder {
+
+    private final EventType channelStall = EventType.getEventType(ChannelStallEvent.class);
+
+    @Override
+    Object filterStarted(FilterFramework filter) {
+        FilterStartEvent start = new FilterStartEvent();
+        start.filter = filter.filterId;
+        start.type = filter.getClass().getName();
+        start.commit();
+
+        FilterStopEvent stop = new FilterStopEvent();
+        stop.filter = filter.filterId;
+        stop.type = start.type;
+        stop.begin();
+        return stop;
+    }
+
+    @Override
+    void filterStopped(Object stop, boolean failed) {
+        FilterStopEvent event = (FilterStopEvent) stop;
+        event.failed = failed;
+        event.commit();
+    }
+
+    @Override
+    boolean isStallRecorded() {
+        return channelStall.isEnabled();
+    }
+
+    @Override
+    Object stallStarted(Channel channel, String operation) {
+        ChannelStallEvent event = new ChannelStallEvent();
+        event.channel = channel.getName();
+        event.transport = channel.getClass().getSimpleName();
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void stallEnded(Object stall) {
+        ((ChannelStallEvent) stall).commit();
+    }
+
+    @Override
+    Object processingStarted(FilterFramework filter, int measurements) {
+        ProcessingEvent event = new ProcessingEvent();
+        if (!event.isEnabled())
+            return null;
+        event.filter = filter.filterId;
+        event.measurements = measurements;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void processingEnded(Object processing) {
+        ((ProcessingEvent) processing).commit();
+    }
+
+    @Override
+    void mergeDecided(FilterFramework filter, String input, long time, int open) {
+        MergeDecisionEvent event = new MergeDecisionEvent();
+        event.filter = filter.filterId;
+        event.input = input;
+        event.frameTime = time;
+        event.openInputs = open;
+        event.commit();
+    }
+
+    @Override
+    Object backlogFlushStarted(FilterFramework filter, String cause, int frames, double pressure) {
+        BacklogFlushEvent event = new BacklogFlushEvent();
+        if (!event.isEnabled())
+            return null;
+        event.filter = filter.filterId;
+        event.cause = cause;
+        event.frames = frames;
+        event.pressure = pressure;
+        FrameBacklog backlog = filter.getBacklog();
+        event.spilledFrames = backlog == null ? 0 : backlog.getSpilledFrames();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void backlogFlushed(Object flush) {
+        ((BacklogFlushEvent) flush).commit();
+    }
+
+    @Override
+    Object fileAccessStarted(FilterFramework filter, String path, String operation) {
+        FileAccessEvent event = new FileAccessEvent();
+        if (!event.isEnabled())
+            return null;
+        event.filter = filter.filterId;
+        event.path = path;
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void fileAccessed(Object access, long bytes) {
+        FileAccessEvent event = (FileAccessEvent) access;
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    @Name("framework.FilterStart")
+    @Label("Filter Start")
+    @Category("Pipe and Filter")
+    @Description("A filter has started running")
+    @StackTrace(false)
+    static class FilterStartEvent extends Event {
+        @Label("Filter")
+        String filter;
+
+        @Label("Type")
+        String type;
+    }
+
+    @Name("framework.FilterStop")
+    @Label("Filter Stop")
+    @Category("Pipe and Filter")
+    @Description("A filter has stopped running; the duration is the time it has run for")
+    @StackTrace(false)
+    static class FilterStopEvent extends Event {
+        @Label("Filter")
+        String filter;
+
+        @Label("Type")
+        String type;
+
+        @Label("Failed")
+        @Description("Whether the filter has died of an exception")
+        boolean failed;
+    }
+
+    @Name("framework.ChannelStall")
+    @Label("Channel Stall")
+    @Category("Pipe and Filter")
+    @Description("A filter has waited for data on an empty input channel, or for space on a full output channel")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static class ChannelStallEvent extends Event {
+        @Label("Channel")
+        @Description("The upstream and the downstream filter of the channel")
+        String channel;
+
+        @Label("Transport")
+        String transport;
+
+        @Label("Operation")
+        String operation;
+    }
+
+    @Name("framework.Processing")
+    @Label("Filter Processing")
+    @Category("Pipe and Filter")
+    @Description("A call of the transformation of a filter on a frame, or on a measurement of the byte transport; "
+            + "one call in 1024 is recorded")
+    @StackTrace(false)
+    static class ProcessingEvent extends Event {
+        @Label("Filter")
+        String filter;
+
+        @Label("Measurements")
+        int measurements;
+    }
+
+    @Name("framework.MergeDecision")
+    @Label("Merge Decision")
+    @Category("Pipe and Filter")
+    @Description("A merging filter has taken the frame with the smallest time from one of its inputs; one decision in "
+            + "1024 is recorded")
+    @StackTrace(false)
+    static class MergeDecisionEvent extends Event {
+        @Label("Filter")
+        String filter;
+
+        @Label("Input")
+        String input;
+
+        @Label("Frame Time")
+        @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+        long frameTime;
+
+        @Label("Open Inputs")
+        @Description("The number of inputs that have not ended yet")
+        int openInputs;
+    }
+
+    @Name("framework.BacklogFlush")
+    @Label("Backlog Flush")
+    @Category("Pipe and Filter")
+    @Description("A filter has replaced the pressure of the wild points in its backlog and written them out")
+    @StackTrace(false)
+    static class BacklogFlushEvent extends Event {
+        @Label("Filter")
+        String filter;
+
+        @Label("Cause")
+        String cause;
+
+        @Label("Frames")
+        int frames;
+
+        @Label("Pressure")
+        double pressure;
+
+        @Label("Spilled Frames")
+        @Description("The number of frames the backlog has spilled to disk so far")
+        long spilledFrames;
+    }
+
+    @Name("framework.FileAccess")
+    @Label("File Access")
+    @Category("Pipe and Filter")
+    @Description("A source or a sink has read, mapped, written or forced its file")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static class FileAccessEvent extends Event {
+        @Label("Filter")
+        String filter;
+
+        @Label("Path")
+        String path;
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+}
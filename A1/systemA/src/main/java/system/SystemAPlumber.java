@@ -1,9 +1,22 @@
 package system;
 
 import framework.FilterFramework;
+import framework.FilterRunner;
+import framework.ChannelType;
+import framework.ChunkedScan;
+import framework.FusedFilter;
 import framework.MeasurementConfig;
+import framework.ParallelFilter;
+import framework.PipelineConfig;
+import framework.SimpleFilter;
 import shared.*;
 
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Plumber for system A.
  *
@@ -19,46 +32,148 @@ public class SystemAPlumber {
         return args[0];
     }
 
+    private static TimeConvertingFilter newTimeFilter() {
+        return new TimeConvertingFilter("2",
+                MeasurementConfig.defaultConfig());                 // from this point on, time will have length 16
+    }
+
+    private static TemperatureConvertingFilter newTemperatureFilter() {
+        return new TemperatureConvertingFilter("3",
+                MeasurementConfig.defaultConfig()
+                        .expectTimeWithLength(16));                 // from this point on, temperature will have length 10
+    }
+
+    private static AltitudeConvertingFilter newAltitudeFilter() {
+        return new AltitudeConvertingFilter("4",
+                MeasurementConfig.defaultConfig()
+                        .expectTimeWithLength(16)
+                        .expectTemperatureWithLength(10));          // from this point on, altitude will have length 13
+    }
+
+    /**
+     * Connect the filter that follows the dropping filter behind the source: to the dropping filter, or with
+     * -Dframework.projection=true, when the source does the dropping itself, to the source directly.
+     */
+    private static void connectBehindSource(PipelineConfig config, FilterFramework filter,
+            DataDroppingFilter droppingFilter, FilterFramework source) {
+        if (config.isProjection()) {
+            filter.connect(source, config.getChannelType());
+        } else {
+            filter.connect(droppingFilter, config.getFilterChannelType());
+            droppingFilter.connect(source, config.getChannelType());
+        }
+    }
+
+    /**
+     * Leave the dropping filter behind the source out of the filters to be started when the source does the
+     * dropping itself.
+     */
+    private static List<FilterFramework> withoutDroppingFilter(PipelineConfig config, List<FilterFramework> filters,
+            DataDroppingFilter droppingFilter) {
+        if (!config.isProjection())
+            return filters;
+        List<FilterFramework> started = new ArrayList<FilterFramework>(filters);
+        started.remove(droppingFilter);
+        return started;
+    }
+
     public static void main(String[] args) throws Exception {
 
         System.out.println("System A running...");
 
+        PipelineConfig config = PipelineConfig.fromSystemProperties();
+        String inputFile = getBaseFolder(args) + "/FlightData.dat";
+        String outputFile = getBaseFolder(args) + "/OutputA.dat";
+
+        // with -Dframework.scan=N and N > 1, the input file is cut into chunks at frame starts and N chunks at a time
+        // run through pipelines of their own, the outputs being written in order
+        if (config.getScanParallelism() > 1) {
+            scanInChunks(config, inputFile, outputFile);
+            return;
+        }
+
+        // 0 - FileSourceFilter
+        FileSourceFilter fileSourceFilter = new FileSourceFilter("0", inputFile, config.getReadMode());
+
+        // 6 - FileSinkFilter
+        FilterFramework fileSinkFilter = new FileSinkFilter("6", outputFile, config.getWriteMode());
+
+        startFilters(config, connectFilters(config, fileSourceFilter, fileSinkFilter));
+    }
+
+    /**
+     * Run every chunk of the input file through a pipeline of its own, from a source reading the chunk to a sink
+     * collecting the output in memory.
+     */
+    private static void scanInChunks(final PipelineConfig config, final String inputFile, String outputFile)
+            throws Exception {
+        ChunkedScan scan = new ChunkedScan(inputFile, MeasurementConfig.defaultConfig(),
+                config.getScanParallelism()) {
+            @Override
+            protected byte[][] scanChunk(int index, long start, long end) throws Exception {
+                FileSourceFilter fileSourceFilter = new FileSourceFilter("0", inputFile, config.getReadMode());
+                fileSourceFilter.setRange(start, end);
+                MemorySinkFilter memorySinkFilter = new MemorySinkFilter("6");
+                startFilters(config, connectFilters(config, fileSourceFilter, memorySinkFilter));
+                return new byte[][]{memorySinkFilter.toByteArray()};
+            }
+        };
+
+        OutputStream out = new FileOutputStream(outputFile);
+        try {
+            scan.run(scan.cutAtFrames(), out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Create the filters between the source and the sink and connect them.
+     *
+     * @param config the configuration of the pipeline
+     * @param fileSourceFilter the source, filter 0
+     * @param fileSinkFilter the sink, filter 6
+     * @return the filters to be started, the source and the sink included
+     */
+    private static List<FilterFramework> connectFilters(PipelineConfig config, FileSourceFilter fileSourceFilter,
+            FilterFramework fileSinkFilter) {
+
+        // the channel wired to sources and sinks, selectable with -Dframework.channel=pipe|ring_buffer, and the one
+        // wired between measurement filters, which carries frames instead of bytes with -Dframework.frames=true
+        ChannelType channel = config.getChannelType();
+        ChannelType link = config.getFilterChannelType();
+
         /**================================================================================
          * Section A: create filters
          *
          * The filters to be created are as follows (They are indexed by their filter id):
-         * 0 - FileSourceFilter: reads input file
+         * 0 - FileSourceFilter: reads input file (given)
          * 1 - DataDroppingFilter: drop attitude, pressure and velocity measurements
          * 2 - TimeConvertingFilter: convert time to string format
          * 3 - TemperatureConvertingFilter: convert temperature from fahrenheit to celsius
          * 4 - AltitudeConvertingFilter: convert altitude from feet to meter
          * 5 - FormattingFilter: format time, temperature and altitude into one line
-         * 6 - FileSinkFilter: write output to file
+         * 6 - FileSinkFilter: write output to file (given)
          * ================================================================================
          */
-        // 0 - FileSourceFilter
-        FilterFramework fileSourceFilter = new FileSourceFilter("0", getBaseFolder(args) + "/FlightData.dat");
-
         // 1 - DataDroppingFilter
         DataDroppingFilter droppingFilter = new DataDroppingFilter("1", MeasurementConfig.defaultConfig());
         droppingFilter.setDropAttitude(true);
         droppingFilter.setDropPressure(true);
         droppingFilter.setDropVelocity(true);
 
+        // with -Dframework.projection=true, the source drops the measurements itself and filter 1 is left out
+        if (config.isProjection())
+            fileSourceFilter.setProjection(MeasurementConfig.defaultConfig(), droppingFilter.getKeptIds());
+
         // 2 - TimeConvertingFilter
-        FilterFramework timeFilter = new TimeConvertingFilter("2",
-                MeasurementConfig.defaultConfig());                 // from this point on, time will have length 16
+        TimeConvertingFilter timeFilter = newTimeFilter();
 
         // 3 - TemperatureConvertingFilter
-        FilterFramework temperatureFilter = new TemperatureConvertingFilter("3",
-                MeasurementConfig.defaultConfig()
-                        .expectTimeWithLength(16));                 // from this point on, temperature will have length 10
+        TemperatureConvertingFilter temperatureFilter = newTemperatureFilter();
 
         // 4 - AltitudeConvertingFilter
-        FilterFramework altitudeFilter = new AltitudeConvertingFilter("4",
-                MeasurementConfig.defaultConfig()
-                        .expectTimeWithLength(16)
-                        .expectTemperatureWithLength(10));          // from this point on, altitude will have length 13
+        AltitudeConvertingFilter altitudeFilter = newAltitudeFilter();
 
         // 5 - FormattingFilter
         FormattingFilter formattingFilter = new FormattingFilter("5",
@@ -71,33 +186,67 @@ public class SystemAPlumber {
         formattingFilter.setAltitudeRequired(true);
         formattingFilter.setTemperatureRequired(true);
 
-        // 6 - FileSinkFilter
-        FilterFramework fileSinkFilter = new FileSinkFilter("6", getBaseFolder(args) + "/OutputA.dat");
-
         /**==================================================================
          * Section B: connect filters
          *
          * Referencing the filters' id, the system will have a topology like:
          * 0 -> 1 -> 2 -> 3 -> 4 -> 5 -> 6
+         *
+         * With -Dframework.fusion=true, filters 1 to 5 run fused in a single thread:
+         * 0 -> 1-5 -> 6
+         *
+         * With -Dframework.projection=true, the source takes the place of filter 1:
+         * 0 -> 2 -> 3 -> 4 -> 5 -> 6, or 0 -> 2-5 -> 6 with fusion
+         *
+         * With -Dframework.parallelism=N and N > 1, filters 2 to 4 run fused in N replicas side by side (taking
+         * precedence over -Dframework.fusion=true), with the output kept in order:
+         * 0 -> 1 -> 2-4 (x N) -> 5 -> 6
          * ==================================================================
          */
-        fileSinkFilter.connect(formattingFilter);
-        formattingFilter.connect(altitudeFilter);
-        altitudeFilter.connect(temperatureFilter);
-        temperatureFilter.connect(timeFilter);
-        timeFilter.connect(droppingFilter);
-        droppingFilter.connect(fileSourceFilter);
+        List<FilterFramework> filters;
+        if (config.getParallelism() > 1) {
+            SimpleFilter[] replicas = new SimpleFilter[config.getParallelism()];
+            for (int i = 0; i < replicas.length; i++)
+                replicas[i] = new FusedFilter("2-4", newTimeFilter(), newTemperatureFilter(), newAltitudeFilter());
+            ParallelFilter parallelFilter = new ParallelFilter("2-4", replicas);
+            fileSinkFilter.connect(formattingFilter, channel);
+            formattingFilter.connect(parallelFilter, link);
+            connectBehindSource(config, parallelFilter, droppingFilter, fileSourceFilter);
+            filters = withoutDroppingFilter(config, Arrays.<FilterFramework>asList(fileSourceFilter, droppingFilter,
+                    parallelFilter, formattingFilter, fileSinkFilter), droppingFilter);
+        } else if (config.isFusion()) {
+            FusedFilter fusedFilter = config.isProjection()
+                    ? new FusedFilter("2-5", timeFilter, temperatureFilter, altitudeFilter, formattingFilter)
+                    : new FusedFilter("1-5",
+                            droppingFilter, timeFilter, temperatureFilter, altitudeFilter, formattingFilter);
+            fileSinkFilter.connect(fusedFilter, channel);
+            fusedFilter.connect(fileSourceFilter, channel);
+            filters = Arrays.<FilterFramework>asList(fileSourceFilter, fusedFilter, fileSinkFilter);
+        } else {
+            fileSinkFilter.connect(formattingFilter, channel);
+            formattingFilter.connect(altitudeFilter, link);
+            altitudeFilter.connect(temperatureFilter, link);
+            temperatureFilter.connect(timeFilter, link);
+            connectBehindSource(config, timeFilter, droppingFilter, fileSourceFilter);
+            filters = withoutDroppingFilter(config, Arrays.<FilterFramework>asList(fileSourceFilter, droppingFilter,
+                    timeFilter, temperatureFilter, altitudeFilter, formattingFilter, fileSinkFilter), droppingFilter);
+        }
 
+        return filters;
+    }
+
+    private static void startFilters(PipelineConfig config, List<FilterFramework> filters)
+            throws InterruptedException {
         /**========================
          * Section C: start filters
          * ========================
          */
-        fileSourceFilter.start();
-        droppingFilter.start();
-        timeFilter.start();
-        temperatureFilter.start();
-        altitudeFilter.start();
-        formattingFilter.start();
-        fileSinkFilter.start();
+        FilterRunner runner = config.newRunner();
+        try {
+            runner.start(filters);
+            runner.awaitCompletion();
+        } finally {
+            runner.shutdown();
+        }
     }
 }
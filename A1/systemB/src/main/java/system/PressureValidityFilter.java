@@ -1,11 +1,20 @@
 package system;
 
+import framework.BacklogPolicy;
+import framework.FlightEvents;
+import framework.FrameBacklog;
+import framework.FrameBatch;
 import framework.MeasurementConfig;
+import framework.MeasurementFrame;
 import framework.SplittingFilterTemplate;
 import util.ConversionUtil;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * A splitting filter that checks for any wild points in the pressure data. A wild point is any data point that varies
@@ -16,8 +25,16 @@ import java.util.Queue;
  * Any wild data points will be flushed through the upper output port. All valid data points, including the one that has
  * been extrapolated, will be flushed through the lower output port.
  *
- * This filter also caches a frame of data in the structure of {@link system.PressureValidityFilter.DataFrame}. This
- * provides convenience for calculating when referencing an entire frame of data.
+ * The frames with wild points wait for the next valid pressure in a {@link FrameBacklog} of at most a given number of
+ * frames, see {@link #useBacklog(int, BacklogPolicy)}, so a sensor stuck in a wild state does not fill up the heap.
+ * With the {@link BacklogPolicy#EXTRAPOLATE} policy, the oldest wild point beyond that number is extrapolated from the
+ * last valid pressure alone, as at the end of the stream.
+ *
+ * When a file is processed in chunks side by side (see {@link framework.ChunkedScan}), the filter of a chunk is handed
+ * what the chunks before and after it decide with {@link #continueChunk(Handoff)}: the last valid pressure before the
+ * chunk, and the first valid pressure after it, which the wild points left at the end of the chunk are extrapolated
+ * with. {@link #scanHandoffs(String, MeasurementConfig, long[])} finds both for every chunk in a quick pass over the
+ * pressures of the file.
  *
  * @since 1.0.0
  */
@@ -25,22 +42,82 @@ public class PressureValidityFilter extends SplittingFilterTemplate {
 
 
     /**
-     * Cache for the last valid frame of data.
+     * The pressure of the last valid frame of data, null until the first one.
+     */
+    private Double lastValidPressure = null;
+
+    /**
+     * The first valid pressure after the chunk this filter processes, see {@link #continueChunk(Handoff)}. Null if the
+     * stream ends with the input of this filter.
+     */
+    private Double nextValidPressure = null;
+
+    /**
+     * The ids of the measurements of a frame of data, in the order they are written to the output ports.
+     */
+    private static final int[] FRAME_IDS = {MeasurementConfig.ID_TIME, MeasurementConfig.ID_TEMPERATURE,
+            MeasurementConfig.ID_ALTITUDE, MeasurementConfig.ID_PRESSURE};
+
+    /**
+     * Number of extrapolated frames written to the lower output port at a time.
+     */
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * Cache for the current frame of data under processing, assembled measurement by measurement.
+     */
+    private final FrameBatch currentFrame = new FrameBatch(context, 1, FRAME_IDS);
+
+    /**
+     * Frames taken from the backlog and extrapolated, waiting to be written to the lower output port together.
      */
-    private DataFrame lastFrameWithValidPressure = null;
+    private final FrameBatch correctedFrames = new FrameBatch(context, BATCH_SIZE, FRAME_IDS);
 
     /**
-     * Cache for the current frame of data under processing
+     * Buffer a batch of frames is laid out in to be written to an output port in a single call.
      */
-    private DataFrame currentFrame = null;
+    private final ByteBuffer outputBuffer = ByteBuffer.allocate(BATCH_SIZE * FRAME_IDS.length
+            * (4 + MeasurementConfig.VALUE_LENGTH));
 
     /**
-     * Queue for any data frames containing wild pressure points.
+     * Backlog of the frames containing wild pressure points.
      */
-    private Queue<DataFrame> framesWithInvalidPressure = new LinkedList<DataFrame>();
+    private FrameBacklog wildFrames;
 
     public PressureValidityFilter(String filterId, MeasurementConfig context) {
         super(filterId, context);
+        useBacklog(FrameBacklog.DEFAULT_CAPACITY, BacklogPolicy.SPILL);
+    }
+
+    /**
+     * Keep at most {@code capacity} wild points in memory, and do with the ones beyond it as the policy says. Must be
+     * called before the filter is started.
+     *
+     * @param capacity the number of wild points kept in memory
+     * @param policy what to do with the wild points beyond the capacity
+     */
+    public void useBacklog(int capacity, BacklogPolicy policy) {
+        this.wildFrames = new FrameBacklog(filterId, capacity, policy, FRAME_IDS);
+    }
+
+    /**
+     * @return the backlog of wild points, with its counters.
+     */
+    @Override
+    public FrameBacklog getBacklog() {
+        return wildFrames;
+    }
+
+    /**
+     * Process a chunk of a file that is cut into chunks: continue from the last valid pressure before the chunk, and
+     * extrapolate the wild points at the end of the chunk with the first valid pressure after it, just as a single
+     * filter reading the whole file would. Must be called before the filter is started.
+     *
+     * @param handoff the pressures around the chunk, see {@link #scanHandoffs(String, MeasurementConfig, long[])}
+     */
+    public void continueChunk(Handoff handoff) {
+        this.lastValidPressure = handoff.lastValidPressure;
+        this.nextValidPressure = handoff.nextValidPressure;
     }
 
     /**
@@ -52,43 +129,36 @@ public class PressureValidityFilter extends SplittingFilterTemplate {
      */
     @Override
     protected void routeMeasurement(byte[] idBytes, byte[] measurement) {
-        // create frame structure if it is null
-        if (currentFrame == null)
-            currentFrame = new DataFrame();
+        // start a new frame if there is none
+        if (currentFrame.isEmpty())
+            currentFrame.addFrame();
 
         // cache data into the frame
         int id = ConversionUtil.convertToInt(idBytes);
-        if (id == MeasurementConfig.ID_TIME) {
-            currentFrame.time = measurement;
-        } else if (id == MeasurementConfig.ID_TEMPERATURE) {
-            currentFrame.temperature = measurement;
-        } else if (id == MeasurementConfig.ID_ALTITUDE) {
-            currentFrame.altitude = measurement;
-        } else if (id == MeasurementConfig.ID_PRESSURE) {
-            currentFrame.pressure = measurement;
-        } else {
+        if (!currentFrame.holds(id))
             throw new RuntimeException("Invalid id at this filter: " + id);
-        }
+        currentFrame.setBytes(0, id, measurement);
 
         // if we haven't collected all frame data, return for now. This function will be called again when new
         // measurement comes in.
-        if (!currentFrame.hasCollectedAll())
+        if (!currentFrame.isComplete(0))
             return;
 
 //        receivedCount++;
 //        System.out.println("[" + this.getName() + "] " + receivedCount);
 
         // get pressure data and test if it is valid
-        double currentPressure = ConversionUtil.convertToDouble(currentFrame.pressure);
+        double currentPressure = currentFrame.getDouble(0, MeasurementConfig.ID_PRESSURE);
         boolean currentPressureValid = isPressureValid(currentPressure);
 
-        // if pressure is a wild point, add the current data frame to the invalid queue and flush the current frame
+        // if pressure is a wild point, add the current data frame to the backlog and flush the current frame
         // to the upper (wild) output port. We don't have to worry about extrapolating for now since we must wait
         // until the next valid data frame to come in to do extrapolation.
         if (!currentPressureValid) {
-            framesWithInvalidPressure.add(currentFrame);
-            sendFrameToOutputPortOne(currentFrame);
-            currentFrame = null;
+            resolveOverflow();
+            wildFrames.add(currentFrame, 0);
+            WriteFilterOutputPortOne(layOut(currentFrame));
+            currentFrame.clear();
             return;
         }
 
@@ -96,88 +166,137 @@ public class PressureValidityFilter extends SplittingFilterTemplate {
 
         // if we have a backlog of invalid frames, extrapolate proper values for the frame and flush it to the
         // lower (valid) output port, maintaining the original order.
-        while (framesWithInvalidPressure.size() > 0) {
-            DataFrame correctedFrame = framesWithInvalidPressure.poll();
-            correctedFrame.pressure = extrapolatePressure(currentPressure, true);
-            correctedFrame.pressure = toNegative(correctedFrame.pressure);
-            sendFrameToOutputPortTwo(correctedFrame);
+        extrapolateWildFrames(currentPressure);
+
+        // flush the current (valid) frame to the lower (valid) output port. Also record the pressure of the current
+        // valid frame as the last valid pressure. Clear the cache for the current frame to prepare for the next frame.
+        lastValidPressure = currentPressure;
+        WriteFilterOutputPortTwo(layOut(currentFrame));
+        currentFrame.clear();
+    }
+
+    /**
+     * Frame by frame counterpart of {@link #routeMeasurement(byte[], byte[])}, working on the decoded pressure.
+     *
+     * @param frame frame containing time, temperature, altitude and pressure
+     */
+    @Override
+    protected void routeFrame(MeasurementFrame frame) {
+        double currentPressure = frame.getDouble(MeasurementConfig.ID_PRESSURE);
+
+        // a wild frame waits in the backlog for extrapolation and goes to the upper (wild) output port as is. The
+        // backlog keeps its own copy of the measurements, apart from the frame handed over to the next filter.
+        if (!isPressureValid(currentPressure)) {
+            resolveOverflow();
+            wildFrames.add(frame);
+            WriteFilterOutputPortOne(frame);
+            return;
         }
 
-        // flush the current (valid) frame to the lower (valid) output port. Also record the current valid frame as
-        // the last valid frame. Clear the cache for the current frame to prepare for the next frame.
-        lastFrameWithValidPressure = currentFrame;
-        sendFrameToOutputPortTwo(currentFrame);
-        currentFrame = null;
+        // extrapolate the backlog and flush it to the lower (valid) output port, maintaining the original order.
+        extrapolateWildFrames(currentPressure);
+
+        lastValidPressure = currentPressure;
+        WriteFilterOutputPortTwo(frame);
     }
 
     /**
      * In the event of end of stream, we must check if there are any remaining wild data frames. If so, they must be
      * treated as wild points occurring in the end of stream since any valid data frame before the end of stream will have
-     * caused the wild point backlog to be cleared.
+     * caused the wild point backlog to be cleared. At the end of a chunk followed by a valid pressure in a later chunk,
+     * they are extrapolated with that pressure instead.
      */
     @Override
     protected void reachedEndOfStream() {
-        // extrapolate the wild backlogs and send the proper values to lower (valid) output port.
-        while (framesWithInvalidPressure.size() > 0) {
-            DataFrame correctedFrame = framesWithInvalidPressure.poll();
-            correctedFrame.pressure = extrapolatePressure(null, false);
-            correctedFrame.pressure = toNegative(correctedFrame.pressure);
-            sendFrameToOutputPortTwo(correctedFrame);
-        }
+        // extrapolate the wild backlog and send the proper values to lower (valid) output port.
+        if (!wildFrames.isEmpty())
+            correctWildFrames(toNegative(extrapolateAtEndOfStream()), FlightEvents.FLUSH_END_OF_STREAM);
+        wildFrames.close();
     }
 
     /**
-     * Utility method to flush all bytes inside the data frame structure to the upper port.
-     *
-     * @param frame data frame to be flushed
+     * If the backlog is full and the policy is to extrapolate, extrapolate the oldest wild frame from the last valid
+     * pressure and flush it to the lower (valid) output port, making room for the next one.
      */
-    private void sendFrameToOutputPortOne(DataFrame frame) {
-        for (byte aByte : ConversionUtil.convertToByteArray(MeasurementConfig.ID_TIME))
-            WriteFilterOutputPortOne(aByte);
-        for (byte aByte : frame.time)
-            WriteFilterOutputPortOne(aByte);
-
-        for (byte aByte : ConversionUtil.convertToByteArray(MeasurementConfig.ID_TEMPERATURE))
-            WriteFilterOutputPortOne(aByte);
-        for (byte aByte : frame.temperature)
-            WriteFilterOutputPortOne(aByte);
-
-        for (byte aByte : ConversionUtil.convertToByteArray(MeasurementConfig.ID_ALTITUDE))
-            WriteFilterOutputPortOne(aByte);
-        for (byte aByte : frame.altitude)
-            WriteFilterOutputPortOne(aByte);
+    private void resolveOverflow() {
+        if (lastValidPressure == null)
+            return;
+        int row = wildFrames.pollOverflow(correctedFrames);
+        if (row < 0)
+            return;
+        double correctedPressure = toNegative(extrapolatePressure(null, false));
+        Object flush = FlightEvents.backlogFlushStarted(this, FlightEvents.FLUSH_OVERFLOW, 1, correctedPressure);
+        correctedFrames.setDouble(row, MeasurementConfig.ID_PRESSURE, correctedPressure);
+        flushCorrectedFrames();
+        FlightEvents.backlogFlushed(flush);
+    }
 
-        for (byte aByte : ConversionUtil.convertToByteArray(MeasurementConfig.ID_PRESSURE))
-            WriteFilterOutputPortOne(aByte);
-        for (byte aByte : frame.pressure)
-            WriteFilterOutputPortOne(aByte);
+    /**
+     * Extrapolate the wild backlog with the current (next) valid pressure and flush it to the lower (valid) output
+     * port, maintaining the original order.
+     *
+     * @param currentPressure the valid pressure following the wild points
+     */
+    private void extrapolateWildFrames(double currentPressure) {
+        if (wildFrames.isEmpty())
+            return;
+        double correctedPressure = toNegative(extrapolatePressure(currentPressure, true));
+        correctWildFrames(correctedPressure, FlightEvents.FLUSH_VALID_PRESSURE);
     }
 
     /**
-     * Utility method to flush all bytes inside the data frame structure to the lower port.
+     * Empty the backlog, setting the pressure of every wild frame to the corrected one, a batch at a time. The flush
+     * is recorded as a flight event.
      *
-     * @param frame data frame to be flushed
+     * @param correctedPressure the pressure replacing the wild points
+     * @param cause {@link FlightEvents#FLUSH_VALID_PRESSURE} or {@link FlightEvents#FLUSH_END_OF_STREAM}
      */
-    private void sendFrameToOutputPortTwo(DataFrame frame) {
-        for (byte aByte : ConversionUtil.convertToByteArray(MeasurementConfig.ID_TIME))
-            WriteFilterOutputPortTwo(aByte);
-        for (byte aByte : frame.time)
-            WriteFilterOutputPortTwo(aByte);
+    private void correctWildFrames(double correctedPressure, String cause) {
+        Object flush = FlightEvents.backlogFlushStarted(this, cause, wildFrames.size(), correctedPressure);
+        while (!wildFrames.isEmpty()) {
+            int row = wildFrames.poll(correctedFrames);
+            correctedFrames.setDouble(row, MeasurementConfig.ID_PRESSURE, correctedPressure);
+            if (correctedFrames.isFull())
+                flushCorrectedFrames();
+        }
+        flushCorrectedFrames();
+        FlightEvents.backlogFlushed(flush);
+    }
 
-        for (byte aByte : ConversionUtil.convertToByteArray(MeasurementConfig.ID_TEMPERATURE))
-            WriteFilterOutputPortTwo(aByte);
-        for (byte aByte : frame.temperature)
-            WriteFilterOutputPortTwo(aByte);
+    private double extrapolateAtEndOfStream() {
+        if (nextValidPressure != null)
+            return extrapolatePressure(nextValidPressure, true);
+        return extrapolatePressure(null, false);
+    }
 
-        for (byte aByte : ConversionUtil.convertToByteArray(MeasurementConfig.ID_ALTITUDE))
-            WriteFilterOutputPortTwo(aByte);
-        for (byte aByte : frame.altitude)
-            WriteFilterOutputPortTwo(aByte);
+    /**
+     * Utility method to flush the corrected frames to the lower port, as they are if the port carries frames,
+     * otherwise laid out in one buffer.
+     */
+    private void flushCorrectedFrames() {
+        if (correctedFrames.isEmpty())
+            return;
+        if (outputCarriesFrames(outputFilterIds.get(1))) {
+            for (int row = 0; row < correctedFrames.size(); row++)
+                WriteFilterOutputPortTwo(correctedFrames.toFrame(row));
+        } else {
+            WriteFilterOutputPortTwo(layOut(correctedFrames));
+        }
+        correctedFrames.clear();
+    }
 
-        for (byte aByte : ConversionUtil.convertToByteArray(MeasurementConfig.ID_PRESSURE))
-            WriteFilterOutputPortTwo(aByte);
-        for (byte aByte : frame.pressure)
-            WriteFilterOutputPortTwo(aByte);
+    /**
+     * Utility method to lay out all bytes of a batch of frames, ids included, in one buffer so that the frames can be
+     * written to a port in a single call.
+     *
+     * @param frames the frames to be flushed
+     * @return buffer ready to be written, valid until the next call
+     */
+    private ByteBuffer layOut(FrameBatch frames) {
+        outputBuffer.clear();
+        frames.writeTo(outputBuffer);
+        outputBuffer.flip();
+        return outputBuffer;
     }
 
     /**
@@ -187,16 +306,73 @@ public class PressureValidityFilter extends SplittingFilterTemplate {
      * @return true if pressure is a valid point, false if pressure is a wild point.
      */
     private boolean isPressureValid(double pressure) {
+        return isPressureValid(pressure, lastValidPressure);
+    }
+
+    private static boolean isPressureValid(double pressure, Double lastValidPressure) {
         // negative values are invalid
         if (pressure < 0.0d)
             return false;
 
         // no record of last valid pressure, meaning first record in stream, must be valid.
-        if (lastFrameWithValidPressure == null || lastFrameWithValidPressure.pressure == null)
+        if (lastValidPressure == null)
             return true;
 
         // invalid if variation is greater than 10 PSI.
-        return Math.abs(pressure - ConversionUtil.convertToDouble(lastFrameWithValidPressure.pressure)) <= 10.0d;
+        return Math.abs(pressure - lastValidPressure) <= 10.0d;
+    }
+
+    /**
+     * Find the pressures handed to the filters of the chunks a file is cut into. The file is scanned from start to end,
+     * but only the ids and the pressures are read: the other measurements are skipped over.
+     *
+     * @param fileName the absolute path of the file
+     * @param context the configuration object containing the length information of the measurements in the file
+     * @param cuts the positions the chunks start at followed by the size of the file, see
+     * {@link framework.ChunkedScan#cutAtFrames()}
+     * @return the handoff of every chunk
+     * @throws IOException thrown when the file cannot be read.
+     */
+    public static Handoff[] scanHandoffs(String fileName, MeasurementConfig context, long[] cuts) throws IOException {
+        Handoff[] handoffs = new Handoff[cuts.length - 1];
+        for (int i = 0; i < handoffs.length; i++)
+            handoffs[i] = new Handoff();
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 20));
+        try {
+            byte[] idBytes = new byte[context.getIdLength()];
+            byte[] pressureBytes = new byte[context.idForMeasurementLength(MeasurementConfig.ID_PRESSURE)];
+            Double lastValidPressure = null;
+            long position = 0;
+            int chunk = 0;
+            // the chunks before this one have their next valid pressure
+            int resolved = 0;
+            while (position < cuts[cuts.length - 1]) {
+                while (chunk + 1 < handoffs.length && position >= cuts[chunk + 1])
+                    handoffs[++chunk].lastValidPressure = lastValidPressure;
+
+                in.readFully(idBytes);
+                int id = ConversionUtil.convertToInt(idBytes);
+                int length = context.idForMeasurementLength(id);
+                position += idBytes.length + length;
+
+                if (id != MeasurementConfig.ID_PRESSURE) {
+                    if (in.skipBytes(length) != length)
+                        throw new EOFException("the measurement with id " + id + " is cut short");
+                    continue;
+                }
+                in.readFully(pressureBytes);
+                double pressure = ConversionUtil.readDouble(pressureBytes, 0);
+                if (!isPressureValid(pressure, lastValidPressure))
+                    continue;
+                lastValidPressure = pressure;
+                for (; resolved < chunk; resolved++)
+                    handoffs[resolved].nextValidPressure = pressure;
+            }
+        } finally {
+            in.close();
+        }
+        return handoffs;
     }
 
     /**
@@ -205,50 +381,55 @@ public class PressureValidityFilter extends SplittingFilterTemplate {
      * @param currentPressure current pressure data
      * @param currentPressureValid validity of the current pressure data.
      *
-     * @return extrapolated result in bytes
+     * @return extrapolated result
      */
-    private byte[] extrapolatePressure(Double currentPressure, boolean currentPressureValid) {
+    private double extrapolatePressure(Double currentPressure, boolean currentPressureValid) {
         double value;
 
         // we have both last valid pressure data and the current (next) valid pressure data (wild point at middle of stream)
-        if ((lastFrameWithValidPressure != null && lastFrameWithValidPressure.pressure != null) && currentPressureValid)
-            value = (currentPressure + ConversionUtil.convertToDouble(lastFrameWithValidPressure.pressure)) / 2.0d;
+        if (lastValidPressure != null && currentPressureValid)
+            value = (currentPressure + lastValidPressure) / 2.0d;
 
         // we have current (next) valid pressure data but no last valid data (wild points at start of stream)
-        else if ((lastFrameWithValidPressure == null || lastFrameWithValidPressure.pressure == null) && currentPressureValid)
+        else if (lastValidPressure == null && currentPressureValid)
             value = currentPressure;
 
         // we have last valid data but not current (next) valid data (wild points at end of stream)
-        else if ((lastFrameWithValidPressure != null && lastFrameWithValidPressure.pressure != null) && currentPressure == null)
-            value = ConversionUtil.convertToDouble(lastFrameWithValidPressure.pressure);
+        else if (lastValidPressure != null && currentPressure == null)
+            value = lastValidPressure;
 
         // impossible state
         else
             throw new IllegalStateException("Impossible state");
 
-        return ConversionUtil.convertToByteArray(value);
+        return value;
     }
 
-    private byte[] toNegative(byte[] doubleBytes) {
-        double value = ConversionUtil.convertToDouble(doubleBytes);
-        return ConversionUtil.convertToByteArray(0.0d - Math.abs(value));
+    private double toNegative(double value) {
+        return 0.0d - Math.abs(value);
     }
 
     /**
-     * Structure for caching a frame of data containing time, temperature, altitude and pressure. We didn't bother
-     * to encapsulate accessing and mutating behavior since this structure will only be used internally.
+     * The pressures around a chunk of a file that is cut into chunks, see {@link #continueChunk(Handoff)}.
      */
-    class DataFrame {
-        public byte[] time;
-        public byte[] temperature;
-        public byte[] altitude;
-        public byte[] pressure;
+    public static class Handoff {
+
+        /**
+         * The pressure of the last valid frame before the chunk, null if there is none.
+         */
+        private Double lastValidPressure;
+
+        /**
+         * The pressure of the first valid frame after the chunk, null if there is none.
+         */
+        private Double nextValidPressure;
+
+        public Double getLastValidPressure() {
+            return lastValidPressure;
+        }
 
-        public boolean hasCollectedAll() {
-            return time != null &&
-                    temperature != null &&
-                    altitude != null &&
-                    pressure != null;
+        public Double getNextValidPressure() {
+            return nextValidPressure;
         }
     }
 }
@@ -1,10 +1,20 @@
 package system;
 
 import framework.FilterFramework;
+import framework.FilterRunner;
+import framework.ChannelType;
+import framework.ChunkedScan;
+import framework.FusedFilter;
 import framework.MeasurementConfig;
+import framework.PipelineConfig;
 import shared.*;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Plumber for system B
@@ -21,41 +31,153 @@ public class SystemBPlumber {
         return args[0];
     }
 
+    /**
+     * Connect the filter that follows the dropping filter behind the source: to the dropping filter, or with
+     * -Dframework.projection=true, when the source does the dropping itself, to the source directly.
+     */
+    private static void connectBehindSource(PipelineConfig config, FilterFramework filter,
+            DataDroppingFilter droppingFilter, FilterFramework source) {
+        if (config.isProjection()) {
+            filter.connect(source, config.getChannelType());
+        } else {
+            filter.connect(droppingFilter, config.getFilterChannelType());
+            droppingFilter.connect(source, config.getChannelType());
+        }
+    }
+
+    /**
+     * Leave the dropping filters behind the sources out of the filters to be started when the sources do the
+     * dropping themselves.
+     */
+    private static List<FilterFramework> withoutDroppingFilters(PipelineConfig config, List<FilterFramework> filters,
+            DataDroppingFilter... droppingFilters) {
+        if (!config.isProjection())
+            return filters;
+        List<FilterFramework> started = new ArrayList<FilterFramework>(filters);
+        started.removeAll(Arrays.asList(droppingFilters));
+        return started;
+    }
+
     public static void main(String[] args) throws Exception {
 
         System.out.println("System B running...");
 
+        PipelineConfig config = PipelineConfig.fromSystemProperties();
+        String inputFile = getBaseFolder(args) + "/FlightData.dat";
+        String invalidOutputFile = getBaseFolder(args) + "/WildPoints.dat";
+        String validOutputFile = getBaseFolder(args) + "/OutputB.dat";
+
+        // with -Dframework.scan=N and N > 1, the input file is cut into chunks at frame starts and N chunks at a time
+        // run through pipelines of their own, the outputs being written in order
+        if (config.getScanParallelism() > 1) {
+            scanInChunks(config, inputFile, invalidOutputFile, validOutputFile);
+            return;
+        }
+
+        // 0 - FileSourceFilter
+        FileSourceFilter fileSourceFilter = new FileSourceFilter("0", inputFile, config.getReadMode());
+
+        // 7.1 - FileSinkFilter (wild stream)
+        FileSinkFilter invalidFileSink = new FileSinkFilter("7.1", invalidOutputFile, config.getWriteMode());
+
+        // 8.2 - FileSinkFilter (valid stream)
+        FileSinkFilter validFileSink = new FileSinkFilter("8.2", validOutputFile, config.getWriteMode());
+
+        startFilters(config, connectFilters(config, fileSourceFilter, invalidFileSink, validFileSink, null));
+    }
+
+    /**
+     * Run every chunk of the input file through a pipeline of its own, from a source reading the chunk to sinks
+     * collecting the outputs in memory. The pressure validity filter of every chunk continues from the chunks before.
+     */
+    private static void scanInChunks(final PipelineConfig config, final String inputFile, String invalidOutputFile,
+            String validOutputFile) throws Exception {
+        ChunkedScan scan = new ChunkedScan(inputFile, MeasurementConfig.defaultConfig(),
+                config.getScanParallelism()) {
+            private PressureValidityFilter.Handoff[] handoffs;
+
+            @Override
+            public long[] cutAtFrames() throws IOException {
+                long[] cuts = super.cutAtFrames();
+                handoffs = PressureValidityFilter.scanHandoffs(inputFile, MeasurementConfig.defaultConfig(), cuts);
+                return cuts;
+            }
+
+            @Override
+            protected byte[][] scanChunk(int index, long start, long end) throws Exception {
+                FileSourceFilter fileSourceFilter = new FileSourceFilter("0", inputFile, config.getReadMode());
+                fileSourceFilter.setRange(start, end);
+                MemorySinkFilter invalidMemorySink = new MemorySinkFilter("7.1");
+                MemorySinkFilter validMemorySink = new MemorySinkFilter("8.2");
+                startFilters(config, connectFilters(config, fileSourceFilter, invalidMemorySink, validMemorySink,
+                        handoffs[index]));
+                return new byte[][]{invalidMemorySink.toByteArray(), validMemorySink.toByteArray()};
+            }
+        };
+
+        OutputStream invalidOut = new FileOutputStream(invalidOutputFile);
+        OutputStream validOut = new FileOutputStream(validOutputFile);
+        try {
+            scan.run(scan.cutAtFrames(), invalidOut, validOut);
+        } finally {
+            invalidOut.close();
+            validOut.close();
+        }
+    }
+
+    /**
+     * Create the filters between the source and the sinks and connect them.
+     *
+     * @param config the configuration of the pipeline
+     * @param fileSourceFilter the source, filter 0
+     * @param invalidFileSink the sink of the wild stream, filter 7.1
+     * @param validFileSink the sink of the valid stream, filter 8.2
+     * @param handoff the pressures around the chunk of the file the source reads, null if it reads the whole file
+     * @return the filters to be started, the source and the sinks included
+     */
+    private static List<FilterFramework> connectFilters(PipelineConfig config, FileSourceFilter fileSourceFilter,
+            FilterFramework invalidFileSink, FilterFramework validFileSink, PressureValidityFilter.Handoff handoff) {
+
+        // the channel wired to sources and sinks, selectable with -Dframework.channel=pipe|ring_buffer, and the one
+        // wired between measurement filters, which carries frames instead of bytes with -Dframework.frames=true
+        ChannelType channel = config.getChannelType();
+        ChannelType link = config.getFilterChannelType();
+
         /**=========================================================================================================
          * Section A: Create filters
          *
          * The filters to be created are as follows (They are indexed by their filter id):
-         * 0 - FileSourceFilter: read source from the file
+         * 0 - FileSourceFilter: read source from the file (given)
          * 1 - DataDroppingFilter: drop attitude and velocity measurements
          * 2 - PressureValidityFilter: identity and extrapolate wild pressure points and route them accordingly
          * 3.1 - DataDroppingFilter: (wild stream) drop attitude, velocity, altitude and temperature measurements
          * 4.1 - TimeConvertingFilter: (wild stream) format time measurement
          * 5.1 - PressureFormattingFilter: (wild stream) format pressure measurement
          * 6.1 - FormattingFilter: (wild stream) format time and pressure into a single line
-         * 7.1 - FileSinkFilter: (wild stream) read wild points to an output file
+         * 7.1 - FileSinkFilter: (wild stream) read wild points to an output file (given)
          * 3.2 - TimeConvertingFilter: (valid stream) format time measurement
          * 4.2 - TemperatureConvertingFilter: (valid stream) convert temperature from fahrenheit to celsius
          * 5.2 - AltitudeConvertingFilter: (valid stream) convert altitude from feet to meter
          * 6.2 - PressureFormattingFilter: (valid stream) format pressure
          * 7.2 - FormattingFilter: (valid stream) format time, temperature, altitude and pressure into a single line
-         * 8.2 - FileSinkFilter: (valid stream) write result to file
+         * 8.2 - FileSinkFilter: (valid stream) write result to file (given)
          * ==========================================================================================================
          */
 
-        // 0 - FileSourceFilter
-        FilterFramework fileSourceFilter = new FileSourceFilter("0", getBaseFolder(args) + "/FlightData.dat");
-
         // 1 - DataDroppingFilter
         DataDroppingFilter droppingFilter = new DataDroppingFilter("1", MeasurementConfig.defaultConfig());
         droppingFilter.setDropAttitude(true);
         droppingFilter.setDropVelocity(true);
 
+        // with -Dframework.projection=true, the source drops the measurements itself and filter 1 is left out
+        if (config.isProjection())
+            fileSourceFilter.setProjection(MeasurementConfig.defaultConfig(), droppingFilter.getKeptIds());
+
         // 2 - PressureValidityFilter
         PressureValidityFilter splitFilter = new PressureValidityFilter("2", MeasurementConfig.defaultConfig());
+        splitFilter.useBacklog(config.getBacklogCapacity(), config.getBacklogPolicy());
+        if (handoff != null)
+            splitFilter.continueChunk(handoff);
 
         // 3.1 - DataDroppingFilter (wild stream)
         DataDroppingFilter invalidDroppingFilter = new DataDroppingFilter("3.1", MeasurementConfig.defaultConfig());
@@ -80,9 +202,6 @@ public class SystemBPlumber {
         invalidFormattingFilter.setTimeRequired(true);
         invalidFormattingFilter.setPressureRequired(true);
 
-        // 7.1 - FileSinkFilter (wild stream)
-        FileSinkFilter invalidFileSink = new FileSinkFilter("7.1", getBaseFolder(args) + "/WildPoints.dat");
-
         // 3.2 - TimeConvertingFilter (valid stream)
         TimeConvertingFilter validTimeConvertingFilter = new TimeConvertingFilter("3.2", MeasurementConfig.defaultConfig());
 
@@ -117,52 +236,90 @@ public class SystemBPlumber {
         validFormattingFilter.setTemperatureRequired(true);
         validFormattingFilter.setPressureRequired(true);
 
-        // 8.2 - FileSinkFilter (valid stream)
-        FileSinkFilter validFileSink = new FileSinkFilter("8.2", getBaseFolder(args) + "/OutputB.dat");
-
         /**==================================================================
          * Section B: Connect the filters
          * Referencing the filters' id, the system will have a topology like:
          *              /-> 3.1 -> 4.1 -> 5.1 -> 6.1 -> 7.1
          * 0 -> 1 -> 2
          *              \-> 3.2 -> 4.2 -> 5.2 -> 6.2 -> 7.2 -> 8.2
+         *
+         * With -Dframework.fusion=true, each stream runs fused in a single thread:
+         *              /-> 3.1-6.1 -> 7.1
+         * 0 -> 1 -> 2
+         *              \-> 3.2-7.2 -> 8.2
+         *
+         * With -Dframework.projection=true, the source takes the place of filter 1 and feeds 2 directly.
          * ==================================================================
          */
 
-        invalidFileSink.connect(invalidFormattingFilter);
-        invalidFormattingFilter.connect(invalidPressureFormattingFilter);
-        invalidPressureFormattingFilter.connect(invalidTimeConvertingFilter);
-        invalidTimeConvertingFilter.connect(invalidDroppingFilter);
-        validFileSink.connect(validFormattingFilter);
-        validFormattingFilter.connect(validPressureFormattingFilter);
-        validPressureFormattingFilter.connect(validAltitudeConvertingFilter);
-        validAltitudeConvertingFilter.connect(validTemperatureConvertingFilter);
-        validTemperatureConvertingFilter.connect(validTimeConvertingFilter);
-        invalidDroppingFilter.connect(splitFilter);
-        validTimeConvertingFilter.connect(splitFilter);
-        splitFilter.connect(droppingFilter);
-        droppingFilter.connect(fileSourceFilter);
+        List<FilterFramework> filters;
+        if (config.isFusion()) {
+            FusedFilter invalidStream = new FusedFilter("3.1-6.1", invalidDroppingFilter, invalidTimeConvertingFilter,
+                    invalidPressureFormattingFilter, invalidFormattingFilter);
+            FusedFilter validStream = new FusedFilter("3.2-7.2", validTimeConvertingFilter,
+                    validTemperatureConvertingFilter, validAltitudeConvertingFilter, validPressureFormattingFilter,
+                    validFormattingFilter);
+
+            invalidFileSink.connect(invalidStream, channel);
+            validFileSink.connect(validStream, channel);
+            invalidStream.connect(splitFilter, link);
+            validStream.connect(splitFilter, link);
+            connectBehindSource(config, splitFilter, droppingFilter, fileSourceFilter);
+
+            filters = withoutDroppingFilters(config, Arrays.asList(
+                    fileSourceFilter,
+                    droppingFilter,
+                    splitFilter,
+                    validStream,
+                    validFileSink,
+                    invalidStream,
+                    invalidFileSink), droppingFilter);
+        } else {
+            invalidFileSink.connect(invalidFormattingFilter, channel);
+            invalidFormattingFilter.connect(invalidPressureFormattingFilter, link);
+            invalidPressureFormattingFilter.connect(invalidTimeConvertingFilter, link);
+            invalidTimeConvertingFilter.connect(invalidDroppingFilter, link);
+            validFileSink.connect(validFormattingFilter, channel);
+            validFormattingFilter.connect(validPressureFormattingFilter, link);
+            validPressureFormattingFilter.connect(validAltitudeConvertingFilter, link);
+            validAltitudeConvertingFilter.connect(validTemperatureConvertingFilter, link);
+            validTemperatureConvertingFilter.connect(validTimeConvertingFilter, link);
+            invalidDroppingFilter.connect(splitFilter, link);
+            validTimeConvertingFilter.connect(splitFilter, link);
+            connectBehindSource(config, splitFilter, droppingFilter, fileSourceFilter);
+
+            filters = withoutDroppingFilters(config, Arrays.asList(
+                    fileSourceFilter,
+                    droppingFilter,
+                    splitFilter,
+                    validTimeConvertingFilter,
+                    validTemperatureConvertingFilter,
+                    validAltitudeConvertingFilter,
+                    validPressureFormattingFilter,
+                    validFormattingFilter,
+                    validFileSink,
+                    invalidDroppingFilter,
+                    invalidTimeConvertingFilter,
+                    invalidPressureFormattingFilter,
+                    invalidFormattingFilter,
+                    invalidFileSink), droppingFilter);
+        }
+
+        return filters;
+    }
 
+    private static void startFilters(PipelineConfig config, List<FilterFramework> filters)
+            throws InterruptedException {
         /**============================
          * Section C: Start the filters
          * ============================
          */
-        for (Thread filter : Arrays.asList(
-                fileSourceFilter,
-                droppingFilter,
-                splitFilter,
-                validTimeConvertingFilter,
-                validTemperatureConvertingFilter,
-                validAltitudeConvertingFilter,
-                validPressureFormattingFilter,
-                validFormattingFilter,
-                validFileSink,
-                invalidDroppingFilter,
-                invalidTimeConvertingFilter,
-                invalidPressureFormattingFilter,
-                invalidFormattingFilter,
-                invalidFileSink)) {
-            filter.start();
+        FilterRunner runner = config.newRunner();
+        try {
+            runner.start(filters);
+            runner.awaitCompletion();
+        } finally {
+            runner.shutdown();
         }
     }
 }
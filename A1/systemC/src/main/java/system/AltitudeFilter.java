@@ -1,11 +1,12 @@
 package system;
 
+import framework.FrameBatch;
 import framework.MeasurementConfig;
+import framework.MeasurementFrame;
 import framework.SplittingFilterTemplate;
 import util.ConversionUtil;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * A filter that routes the entire data frame whose altitude is below a certain threshold to the upper output port and
@@ -21,9 +22,15 @@ public class AltitudeFilter extends SplittingFilterTemplate {
     private double threshold = 10000d;
 
     /**
-     * Cache for the current data frame
+     * Cache for the current data frame, holding time, altitude and pressure in the order they are written
      */
-    private DataFrame currentFrame;
+    private final FrameBatch currentFrame = new FrameBatch(context, 1, MeasurementConfig.ID_TIME,
+            MeasurementConfig.ID_ALTITUDE, MeasurementConfig.ID_PRESSURE);
+
+    /**
+     * Buffer the current data frame is laid out in, ids included, to be routed in a single write
+     */
+    private final ByteBuffer frameBuffer = ByteBuffer.allocate(3 * (4 + MeasurementConfig.VALUE_LENGTH));
 
     public AltitudeFilter(String filterId, MeasurementConfig context) {
         super(filterId, context);
@@ -40,43 +47,50 @@ public class AltitudeFilter extends SplittingFilterTemplate {
         int id = ConversionUtil.convertToInt(idBytes);
 
         // create frame if not exists
-        if (currentFrame == null)
-            currentFrame = new DataFrame();
+        if (currentFrame.isEmpty())
+            currentFrame.addFrame();
 
         // cache frame data (collect only time, pressure and altitude and assume at this stage, all other measurements
         // have been dropped)
-        if (id == MeasurementConfig.ID_TIME)
-            currentFrame.time = measurement;
-        else if (id == MeasurementConfig.ID_PRESSURE)
-            currentFrame.pressure = measurement;
-        else if (id == MeasurementConfig.ID_ALTITUDE)
-            currentFrame.altitude = measurement;
-        else
+        if (!currentFrame.holds(id))
             throw new RuntimeException("measurement with id " + id + " should have been discarded already!");
+        currentFrame.setBytes(0, id, measurement);
 
         // if we haven't collected everything, return for now
-        if (!currentFrame.hasCollectedAll())
+        if (!currentFrame.isComplete(0))
             return;
 
         // from this point on, we have the current data frame containing time, pressure and altitude.
 
-        try {
-            // if less than threshold (by default, 10K), route to upper port
-            if (currentFrame.altitudeInFeet() < threshold) {
-                for (byte eachByte : currentFrame.getAllBytes())
-                    WriteFilterOutputPortOne(eachByte);
-            }
-            // otherwise, route to lower port
-            else {
-                for (byte eachByte : currentFrame.getAllBytes())
-                    WriteFilterOutputPortTwo(eachByte);
-            }
-        } catch (IOException ex) {
-            throw new RuntimeException("Encountered error while routing measurement: " + ex.getMessage());
-        } finally {
-            // reset the current frame after routing to prepare for the next frame
-            currentFrame = null;
+        frameBuffer.clear();
+        currentFrame.writeTo(0, frameBuffer);
+        frameBuffer.flip();
+
+        // if less than threshold (by default, 10K), route to upper port
+        if (currentFrame.getDouble(0, MeasurementConfig.ID_ALTITUDE) < threshold) {
+            WriteFilterOutputPortOne(frameBuffer);
+        }
+        // otherwise, route to lower port
+        else {
+            WriteFilterOutputPortTwo(frameBuffer);
         }
+
+        // reset the current frame after routing to prepare for the next frame
+        currentFrame.clear();
+    }
+
+    /**
+     * Frame by frame counterpart of {@link #routeMeasurement(byte[], byte[])}, working on the decoded altitude.
+     *
+     * @param frame frame containing time, altitude and pressure
+     */
+    @Override
+    protected void routeFrame(MeasurementFrame frame) {
+        // if less than threshold (by default, 10K), route to upper port, otherwise, route to lower port
+        if (frame.getDouble(MeasurementConfig.ID_ALTITUDE) < threshold)
+            WriteFilterOutputPortOne(frame);
+        else
+            WriteFilterOutputPortTwo(frame);
     }
 
     @Override
@@ -91,39 +105,4 @@ public class AltitudeFilter extends SplittingFilterTemplate {
     public void setThreshold(double threshold) {
         this.threshold = threshold;
     }
-
-    /**
-     * Structure to hold time, altitude and pressure data, represents a data frame
-     */
-    class DataFrame {
-        public byte[] time;
-        public byte[] altitude;
-        public byte[] pressure;
-
-        public double altitudeInFeet() {
-            return ConversionUtil.convertToDouble(altitude);
-        }
-
-        public boolean hasCollectedAll() {
-            return time != null &&
-                    altitude != null &&
-                    pressure != null;
-        }
-
-        /**
-         * Utility method to align all the bytes for time, altitude and pressure data (with id)
-         * @return
-         * @throws IOException
-         */
-        public byte[] getAllBytes() throws IOException {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            out.write(ConversionUtil.convertToByteArray(MeasurementConfig.ID_TIME));
-            out.write(time);
-            out.write(ConversionUtil.convertToByteArray(MeasurementConfig.ID_ALTITUDE));
-            out.write(altitude);
-            out.write(ConversionUtil.convertToByteArray(MeasurementConfig.ID_PRESSURE));
-            out.write(pressure);
-            return out.toByteArray();
-        }
-    }
 }
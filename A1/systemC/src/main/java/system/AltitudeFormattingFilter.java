@@ -2,10 +2,10 @@ package system;
 
 import framework.SimpleFilter;
 import framework.MeasurementConfig;
+import framework.MeasurementFrame;
+import framework.MeasurementType;
 import util.ConversionUtil;
-
-import java.text.DecimalFormat;
-import java.util.Arrays;
+import util.FixedPointFormat;
 
 /**
  * Simple filter to format the altitude data into string.
@@ -19,8 +19,22 @@ public class AltitudeFormattingFilter extends SimpleFilter {
      */
     private String numberFormat = "#000000.00000";
 
+    /**
+     * The number format compiled once, see {@link #setNumberFormat(String)}.
+     */
+    private FixedPointFormat format = new FixedPointFormat(numberFormat);
+
     public AltitudeFormattingFilter(String filterId, MeasurementConfig context) {
         super(context, filterId);
+        handleIds(MeasurementConfig.ID_ALTITUDE);
+    }
+
+    /**
+     * Every altitude is formatted on its own.
+     */
+    @Override
+    protected boolean isStateless() {
+        return true;
     }
 
     /**
@@ -37,13 +51,32 @@ public class AltitudeFormattingFilter extends SimpleFilter {
             return measurement;
 
         // read measurement to double
-        double altitudeInFeet = ConversionUtil.convertToDouble(measurement);
+        double altitudeInFeet = ConversionUtil.readDouble(measurement, 0);
 
-        // format to string
-        String formatted = new DecimalFormat(numberFormat).format(altitudeInFeet);
+        return format(altitudeInFeet);
+    }
 
-        // return padded bytes
-        return Arrays.copyOf(formatted.getBytes(), 13);
+    /**
+     * Perform string format on the decoded altitude of the frame and leave everything else as is.
+     *
+     * @param frame the frame to be transformed
+     */
+    @Override
+    protected void transformFrame(MeasurementFrame frame) {
+        if (frame.has(MeasurementConfig.ID_ALTITUDE))
+            frame.setBytes(MeasurementConfig.ID_ALTITUDE, format(frame.getDouble(MeasurementConfig.ID_ALTITUDE)),
+                    MeasurementType.TEXT);
+    }
+
+    /**
+     * Format altitude into padded bytes.
+     *
+     * @param altitudeInFeet altitude in feet
+     * @return padded bytes of the formatted altitude
+     */
+    private byte[] format(double altitudeInFeet) {
+        // format and return padded bytes
+        return format.format(altitudeInFeet, 13);
     }
 
     public String getNumberFormat() {
@@ -52,5 +85,6 @@ public class AltitudeFormattingFilter extends SimpleFilter {
 
     public void setNumberFormat(String numberFormat) {
         this.numberFormat = numberFormat;
+        this.format = new FixedPointFormat(numberFormat);
     }
 }
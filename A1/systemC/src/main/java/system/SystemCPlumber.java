@@ -1,9 +1,17 @@
 package system;
 
+import framework.ChannelType;
+import framework.ExternalSortFilter;
+import framework.FilterFramework;
+import framework.FilterRunner;
+import framework.FusedFilter;
 import framework.MeasurementConfig;
+import framework.PipelineConfig;
 import shared.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Plumber for system C
@@ -12,6 +20,11 @@ import java.util.Arrays;
  */
 public class SystemCPlumber {
 
+    /**
+     * The recordings merged when no other is given.
+     */
+    private static final String[] DEFAULT_INPUTS = {"SubSetA.dat", "SubSetB.dat"};
+
     private static String getBaseFolder(String[] args) {
         if (args.length <= 0) {
             System.out.println("Please provide the absolute execution folder path as the first argument");
@@ -20,16 +33,88 @@ public class SystemCPlumber {
         return args[0];
     }
 
+    /**
+     * Connect the filter that follows the dropping filter behind the source: to the dropping filter, or with
+     * -Dframework.projection=true, when the source does the dropping itself, to the source directly.
+     */
+    private static void connectBehindSource(PipelineConfig config, FilterFramework filter,
+            DataDroppingFilter droppingFilter, FilterFramework source) {
+        if (config.isProjection()) {
+            filter.connect(source, config.getChannelType());
+        } else {
+            filter.connect(droppingFilter, config.getFilterChannelType());
+            droppingFilter.connect(source, config.getChannelType());
+        }
+    }
+
+    /**
+     * The names of the recordings to merge, in the base folder: the arguments following it, or SubSetA.dat and
+     * SubSetB.dat if there are none.
+     */
+    private static List<String> getInputs(String[] args) {
+        if (args.length <= 1)
+            return Arrays.asList(DEFAULT_INPUTS);
+        return Arrays.asList(args).subList(1, args.length);
+    }
+
+    /**
+     * The filter ids of the source, the dropping filter and the external sort filter of an input: 1, 2 and 19 for
+     * the first one, 3, 4 and 20 for the second one, and from 21 on, three by three, for every further one.
+     */
+    private static String[] getInputFilterIds(int input) {
+        if (input < 2)
+            return new String[] {String.valueOf(2 * input + 1), String.valueOf(2 * input + 2),
+                    String.valueOf(19 + input)};
+        int first = 21 + 3 * (input - 2);
+        return new String[] {String.valueOf(first), String.valueOf(first + 1), String.valueOf(first + 2)};
+    }
+
+    /**
+     * Connect every input of the time sort filter to what is behind its source, in the order of the inputs: through
+     * its external sort filter when the recordings are sorted first with -Dframework.sort, of which there are none
+     * otherwise.
+     */
+    private static void connectSortInputs(PipelineConfig config, TimeSortFilter timeSortFilter,
+            List<ExternalSortFilter> sortFilters, List<DataDroppingFilter> droppingFilters,
+            List<FileSourceFilter> sources) {
+        for (int i = 0; i < sources.size(); i++) {
+            if (sortFilters.isEmpty()) {
+                connectBehindSource(config, timeSortFilter, droppingFilters.get(i), sources.get(i));
+            } else {
+                timeSortFilter.connect(sortFilters.get(i), config.getFilterChannelType());
+                connectBehindSource(config, sortFilters.get(i), droppingFilters.get(i), sources.get(i));
+            }
+        }
+    }
+
+    /**
+     * The filters reading the recordings, to be started first: the sources, and their dropping filters unless the
+     * sources do the dropping themselves.
+     */
+    private static List<FilterFramework> getInputFilters(PipelineConfig config, List<FileSourceFilter> sources,
+            List<DataDroppingFilter> droppingFilters) {
+        List<FilterFramework> filters = new ArrayList<FilterFramework>(sources);
+        if (!config.isProjection())
+            filters.addAll(droppingFilters);
+        return filters;
+    }
+
     public static void main(String[] args) throws Exception {
 
         System.out.println("System C running...");
 
+        // the channel wired to sources and sinks, selectable with -Dframework.channel=pipe|ring_buffer, and the one
+        // wired between measurement filters, which carries frames instead of bytes with -Dframework.frames=true
+        PipelineConfig config = PipelineConfig.fromSystemProperties();
+        ChannelType channel = config.getChannelType();
+        ChannelType link = config.getFilterChannelType();
+
         /**===============================================================================
          * Section A: Create filters
          * The filters to be created are as follows (They are indexed by their filter id):
-         * 1 - FileSourceFilter: read data from file
+         * 1 - FileSourceFilter: read data from file, SubSetA.dat by default
          * 2 - DataDroppingFilter: drop attitude, temperature and velocity data
-         * 3 - FileSourceFilter: read data from file
+         * 3 - FileSourceFilter: read data from file, SubSetB.dat by default
          * 4 - DataDroppingFilter: drop attitude, temperature and velocity data
          * 5 - TimeSortFilter: time align the incoming data
          * 6 - AltitudeFilter: filter out any data frame with altitude less than 10K
@@ -45,26 +130,42 @@ public class SystemCPlumber {
          * 16 - PressureFormattingFilter: format pressure
          * 17 - FormattingFilter: format time, pressure into a single line
          * 18 - FileSinkFilter: write to file
+         * 19 - ExternalSortFilter: sort stream A by time, with -Dframework.sort only
+         * 20 - ExternalSortFilter: sort stream B by time, with -Dframework.sort only
+         *
+         * Every further recording given after the base folder gets a FileSourceFilter, a DataDroppingFilter and an
+         * ExternalSortFilter of its own, 21 to 23 for the third one, 24 to 26 for the fourth one, and so on.
          * ===============================================================================
          */
+        List<String> inputs = getInputs(args);
+        List<FileSourceFilter> sources = new ArrayList<FileSourceFilter>();
+        List<DataDroppingFilter> droppingFilters = new ArrayList<DataDroppingFilter>();
+        List<ExternalSortFilter> sortFilters = new ArrayList<ExternalSortFilter>();
+        for (int i = 0; i < inputs.size(); i++) {
+            String[] ids = getInputFilterIds(i);
 
-        // 1 - FileSourceFilter
-        FileSourceFilter fileSourceA = new FileSourceFilter("1", getBaseFolder(args) + "/SubSetA.dat");
+            // 1, 3 - FileSourceFilter
+            FileSourceFilter source = new FileSourceFilter(ids[0], getBaseFolder(args) + "/" + inputs.get(i),
+                    config.getReadMode());
+            sources.add(source);
 
-        // 2 - DataDroppingFilter
-        DataDroppingFilter streamADrop = new DataDroppingFilter("2", MeasurementConfig.defaultConfig());
-        streamADrop.setDropAttitude(true);
-        streamADrop.setDropTemperature(true);
-        streamADrop.setDropVelocity(true);
+            // 2, 4 - DataDroppingFilter
+            DataDroppingFilter droppingFilter = new DataDroppingFilter(ids[1], MeasurementConfig.defaultConfig());
+            droppingFilter.setDropAttitude(true);
+            droppingFilter.setDropTemperature(true);
+            droppingFilter.setDropVelocity(true);
+            droppingFilters.add(droppingFilter);
 
-        // 3  - FileSourceFilter
-        FileSourceFilter fileSourceB = new FileSourceFilter("3", getBaseFolder(args) + "/SubSetB.dat");
+            // with -Dframework.projection=true, the sources drop the measurements themselves and filters 2 and 4 are
+            // left out
+            if (config.isProjection())
+                source.setProjection(MeasurementConfig.defaultConfig(), droppingFilter.getKeptIds());
 
-        // 4 - DataDroppingFilter
-        DataDroppingFilter streamBDrop = new DataDroppingFilter("4", MeasurementConfig.defaultConfig());
-        streamBDrop.setDropAttitude(true);
-        streamBDrop.setDropTemperature(true);
-        streamBDrop.setDropVelocity(true);
+            // 19, 20 - ExternalSortFilter, for recordings that are not in time order
+            if (config.isSort())
+                sortFilters.add(new ExternalSortFilter(ids[2], MeasurementConfig.defaultConfig(),
+                        config.getSortMemoryBudget()));
+        }
 
         // 5 - TimeSortFilter
         TimeSortFilter timeSortFilter = new TimeSortFilter("5", MeasurementConfig.defaultConfig());
@@ -90,7 +191,8 @@ public class SystemCPlumber {
         formattingFilter1.setAltitudeRequired(true);
 
         // 11 - FileSinkFilter
-        FileSinkFilter lessThan10KSink = new FileSinkFilter("11", getBaseFolder(args) + "/LessThan10K.dat");
+        FileSinkFilter lessThan10KSink = new FileSinkFilter("11", getBaseFolder(args) + "/LessThan10K.dat",
+                config.getWriteMode());
 
         // 12 - DataDroppingFilter
         DataDroppingFilter dropAltitudeFilter = new DataDroppingFilter("12", MeasurementConfig.defaultConfig());
@@ -98,6 +200,7 @@ public class SystemCPlumber {
 
         // 13 - WildPressureFilter
         WildPressureFilter wildPressureFilter = new WildPressureFilter("13", MeasurementConfig.defaultConfig());
+        wildPressureFilter.useBacklog(config.getBacklogCapacity(), config.getBacklogPolicy());
 
         // 14 - JunkSinkFilter
         JunkSinkFilter junkSinkFilter = new JunkSinkFilter("14");
@@ -116,7 +219,8 @@ public class SystemCPlumber {
         formattingFilter2.setPressureRequired(true);
 
         // 18 - FileSinkFilter
-        FileSinkFilter pressureWildPointsSink = new FileSinkFilter("18", getBaseFolder(args) + "/PressureWildPoints.dat");
+        FileSinkFilter pressureWildPointsSink = new FileSinkFilter("18",
+                getBaseFolder(args) + "/PressureWildPoints.dat", config.getWriteMode());
 
 
         /**===================================================================
@@ -128,51 +232,89 @@ public class SystemCPlumber {
          * 3 -> 4 /           \             /-> 14
          *                     \-> 12 -> 13
          *                                  \-> 15 -> 16 -> 17 -> 18
+         *
+         * With -Dframework.fusion=true, 7 to 10 and 15 to 17 each run fused in a single thread:
+         * 6 -> 7-10 -> 11 and 13 -> 15-17 -> 18
+         *
+         * With -Dframework.projection=true, the sources take the place of filters 2 and 4: 1 -> 5 and 3 -> 5
+         *
+         * With -Dframework.sort, each stream is sorted by time before it is merged: 2 -> 19 -> 5 and 4 -> 20 -> 5
+         *
+         * Every further recording is merged the same way, e.g. 21 -> 22 -> 5, or 21 -> 22 -> 23 -> 5 with
+         * -Dframework.sort
          * ===================================================================
          */
-        lessThan10KSink.connect(formattingFilter1);
-        formattingFilter1.connect(altitudeFormattingFilter);
-        altitudeFormattingFilter.connect(timeConvertingFilter1);
-        timeConvertingFilter1.connect(dropPressureFilter);
-        dropPressureFilter.connect(altitudeFilter);
-        pressureWildPointsSink.connect(formattingFilter2);
-        formattingFilter2.connect(pressureFormattingFilter);
-        pressureFormattingFilter.connect(timeConvertingFilter2);
-        junkSinkFilter.connect(wildPressureFilter);
-        timeConvertingFilter2.connect(wildPressureFilter);
-        wildPressureFilter.connect(dropAltitudeFilter);
-        dropAltitudeFilter.connect(altitudeFilter);
-        altitudeFilter.connect(timeSortFilter);
-        timeSortFilter.connect(streamADrop);
-        timeSortFilter.connect(streamBDrop);
-        streamADrop.connect(fileSourceA);
-        streamBDrop.connect(fileSourceB);
+        List<FilterFramework> filters = getInputFilters(config, sources, droppingFilters);
+        if (config.isFusion()) {
+            FusedFilter lessThan10KStream = new FusedFilter("7-10", dropPressureFilter, timeConvertingFilter1,
+                    altitudeFormattingFilter, formattingFilter1);
+            FusedFilter wildPointsStream = new FusedFilter("15-17", timeConvertingFilter2, pressureFormattingFilter,
+                    formattingFilter2);
+
+            lessThan10KSink.connect(lessThan10KStream, channel);
+            lessThan10KStream.connect(altitudeFilter, link);
+            pressureWildPointsSink.connect(wildPointsStream, channel);
+            junkSinkFilter.connect(wildPressureFilter, channel);
+            wildPointsStream.connect(wildPressureFilter, link);
+            wildPressureFilter.connect(dropAltitudeFilter, link);
+            dropAltitudeFilter.connect(altitudeFilter, link);
+            altitudeFilter.connect(timeSortFilter, link);
+            connectSortInputs(config, timeSortFilter, sortFilters, droppingFilters, sources);
+
+            filters.addAll(Arrays.asList(
+                    timeSortFilter,
+                    altitudeFilter,
+                    lessThan10KStream,
+                    lessThan10KSink,
+                    dropAltitudeFilter,
+                    wildPressureFilter,
+                    junkSinkFilter,
+                    wildPointsStream,
+                    pressureWildPointsSink));
+        } else {
+            lessThan10KSink.connect(formattingFilter1, channel);
+            formattingFilter1.connect(altitudeFormattingFilter, link);
+            altitudeFormattingFilter.connect(timeConvertingFilter1, link);
+            timeConvertingFilter1.connect(dropPressureFilter, link);
+            dropPressureFilter.connect(altitudeFilter, link);
+            pressureWildPointsSink.connect(formattingFilter2, channel);
+            formattingFilter2.connect(pressureFormattingFilter, link);
+            pressureFormattingFilter.connect(timeConvertingFilter2, link);
+            junkSinkFilter.connect(wildPressureFilter, channel);
+            timeConvertingFilter2.connect(wildPressureFilter, link);
+            wildPressureFilter.connect(dropAltitudeFilter, link);
+            dropAltitudeFilter.connect(altitudeFilter, link);
+            altitudeFilter.connect(timeSortFilter, link);
+            connectSortInputs(config, timeSortFilter, sortFilters, droppingFilters, sources);
+
+            filters.addAll(Arrays.asList(
+                    timeSortFilter,
+                    altitudeFilter,
+                    dropPressureFilter,
+                    timeConvertingFilter1,
+                    altitudeFormattingFilter,
+                    formattingFilter1,
+                    lessThan10KSink,
+                    dropAltitudeFilter,
+                    wildPressureFilter,
+                    junkSinkFilter,
+                    timeConvertingFilter2,
+                    pressureFormattingFilter,
+                    formattingFilter2,
+                    pressureWildPointsSink));
+        }
+        filters.addAll(sortFilters);
 
         /**========================
          * Section C: Start filters
          * ========================
          */
-        for (Thread filter : Arrays.asList(
-                fileSourceA,
-                fileSourceB,
-                streamADrop,
-                streamBDrop,
-                timeSortFilter,
-                altitudeFilter,
-                dropPressureFilter,
-                timeConvertingFilter1,
-                altitudeFormattingFilter,
-                formattingFilter1,
-                lessThan10KSink,
-                dropAltitudeFilter,
-                wildPressureFilter,
-                junkSinkFilter,
-                timeConvertingFilter2,
-                pressureFormattingFilter,
-                formattingFilter2,
-                pressureWildPointsSink
-        )) {
-            filter.start();
+        FilterRunner runner = config.newRunner();
+        try {
+            runner.start(filters);
+            runner.awaitCompletion();
+        } finally {
+            runner.shutdown();
         }
     }
 }
@@ -1,11 +1,15 @@
 package system;
 
+import framework.BacklogPolicy;
+import framework.FlightEvents;
+import framework.FrameBacklog;
+import framework.FrameBatch;
 import framework.MeasurementConfig;
+import framework.MeasurementFrame;
 import framework.SplittingFilterTemplate;
 import util.ConversionUtil;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.nio.ByteBuffer;
 
 /**
  * A splitting filter that identifies data frames that contains wild pressure points and extrapolates them.
@@ -13,27 +17,72 @@ import java.util.Queue;
  *
  * This filter also assumes only time and pressure data is available at this stage.
  *
+ * Wild points wait for the next valid pressure in a {@link FrameBacklog}, which keeps a bounded number of them in
+ * memory, see {@link #useBacklog(int, BacklogPolicy)}.
+ *
  * @since 1.0.0
  */
 public class WildPressureFilter extends SplittingFilterTemplate {
 
     /**
-     * Cache for the last valid frame of data.
+     * The pressure of the last valid frame of data, null until the first one.
+     */
+    private Double lastValidPressure = null;
+
+    /**
+     * The ids of the measurements of a frame of data, in the order they are written to the output ports.
+     */
+    private static final int[] FRAME_IDS = {MeasurementConfig.ID_TIME, MeasurementConfig.ID_PRESSURE};
+
+    /**
+     * Number of extrapolated frames written to the lower output port at a time.
+     */
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * Cache for the current frame of data under processing, assembled measurement by measurement.
+     */
+    private final FrameBatch currentFrame = new FrameBatch(context, 1, FRAME_IDS);
+
+    /**
+     * Frames taken from the backlog and extrapolated, waiting to be written to the lower output port together.
      */
-    private DataFrame lastFrameWithValidPressure = null;
+    private final FrameBatch correctedFrames = new FrameBatch(context, BATCH_SIZE, FRAME_IDS);
 
     /**
-     * Cache for the current frame of data under processing
+     * Buffer a batch of frames is laid out in to be written to an output port in a single call.
      */
-    private DataFrame currentFrame = null;
+    private final ByteBuffer outputBuffer = ByteBuffer.allocate(BATCH_SIZE * FRAME_IDS.length
+            * (4 + MeasurementConfig.VALUE_LENGTH));
 
     /**
-     * Queue for any data frames containing wild pressure points.
+     * Backlog of the frames containing wild pressure points.
      */
-    private Queue<DataFrame> framesWithInvalidPressure = new LinkedList<DataFrame>();
+    private FrameBacklog wildFrames;
 
     public WildPressureFilter(String filterId, MeasurementConfig context) {
         super(filterId, context);
+        useBacklog(FrameBacklog.DEFAULT_CAPACITY, BacklogPolicy.SPILL);
+    }
+
+    /**
+     * Keep at most {@code capacity} wild points in memory. Beyond it, they are spilled to a temporary file, or with
+     * {@link BacklogPolicy#EXTRAPOLATE}, the oldest one is extrapolated from the last valid pressure and sent down the
+     * lower output stream right away. Must be called before the filter is started.
+     *
+     * @param capacity the number of wild points kept in memory
+     * @param policy what to do with the wild points beyond the capacity
+     */
+    public void useBacklog(int capacity, BacklogPolicy policy) {
+        this.wildFrames = new FrameBacklog(filterId, capacity, policy, FRAME_IDS);
+    }
+
+    /**
+     * @return the backlog of wild points, with its counters.
+     */
+    @Override
+    public FrameBacklog getBacklog() {
+        return wildFrames;
     }
 
     /**
@@ -45,31 +94,28 @@ public class WildPressureFilter extends SplittingFilterTemplate {
      */
     @Override
     protected void routeMeasurement(byte[] idBytes, byte[] measurement) {
-        // create frame structure if it is null
-        if (currentFrame == null)
-            currentFrame = new DataFrame();
+        // start a new frame if there is none
+        if (currentFrame.isEmpty())
+            currentFrame.addFrame();
 
         // cache data into the frame
         int id = ConversionUtil.convertToInt(idBytes);
-        if (id == MeasurementConfig.ID_TIME) {
-            currentFrame.time = measurement;
-        } else if (id == MeasurementConfig.ID_PRESSURE) {
-            currentFrame.pressure = measurement;
-        } else {
+        if (!currentFrame.holds(id))
             throw new RuntimeException("Invalid id at this filter: " + id);
-        }
+        currentFrame.setBytes(0, id, measurement);
 
         // if we haven't collected all frame data, return for now. This function will be called again when new
         // measurement comes in.
-        if (!currentFrame.hasCollectedAll())
+        if (!currentFrame.isComplete(0))
             return;
 
-        // get pressure data and test if it is valid, if invalid, add it to the invalid queue and return
-        double currentPressure = ConversionUtil.convertToDouble(currentFrame.pressure);
+        // get pressure data and test if it is valid, if invalid, add it to the backlog and return
+        double currentPressure = currentFrame.getDouble(0, MeasurementConfig.ID_PRESSURE);
         boolean currentPressureValid = isPressureValid(currentPressure);
         if (!currentPressureValid) {
-            framesWithInvalidPressure.add(currentFrame);
-            currentFrame = null;
+            resolveOverflow();
+            wildFrames.add(currentFrame, 0);
+            currentFrame.clear();
             return;
         }
 
@@ -77,17 +123,34 @@ public class WildPressureFilter extends SplittingFilterTemplate {
 
         // if we have a backlog of invalid frames, extrapolate proper values for the frame and flush it to the
         // lower (extrapolated) output port, maintaining the original order.
-        while (framesWithInvalidPressure.size() > 0) {
-            DataFrame correctedFrame = framesWithInvalidPressure.poll();
-            correctedFrame.pressure = extrapolatePressure(currentPressure, true);
-            sendFrameToOutputPortTwo(correctedFrame);
+        extrapolateWildFrames(currentPressure);
+
+        // flush the current (valid) frame to the upper (valid) output port. Also record the pressure of the current
+        // valid frame as the last valid pressure. Clear the cache for the current frame to prepare for the next frame.
+        lastValidPressure = currentPressure;
+        WriteFilterOutputPortOne(layOut(currentFrame));
+        currentFrame.clear();
+    }
+
+    /**
+     * Frame by frame counterpart of {@link #routeMeasurement(byte[], byte[])}, working on the decoded pressure.
+     *
+     * @param frame frame containing time and pressure
+     */
+    @Override
+    protected void routeFrame(MeasurementFrame frame) {
+        double currentPressure = frame.getDouble(MeasurementConfig.ID_PRESSURE);
+        if (!isPressureValid(currentPressure)) {
+            resolveOverflow();
+            wildFrames.add(frame);
+            return;
         }
 
-        // flush the current (valid) frame to the upper (valid) output port. Also record the current valid frame as
-        // the last valid frame. Clear the cache for the current frame to prepare for the next frame.
-        lastFrameWithValidPressure = currentFrame;
-        sendFrameToOutputPortOne(currentFrame);
-        currentFrame = null;
+        // extrapolate the backlog and flush it to the lower (extrapolated) output port, maintaining the original order.
+        extrapolateWildFrames(currentPressure);
+
+        lastValidPressure = currentPressure;
+        WriteFilterOutputPortOne(frame);
     }
 
     /**
@@ -97,45 +160,84 @@ public class WildPressureFilter extends SplittingFilterTemplate {
      */
     @Override
     protected void reachedEndOfStream() {
-        while (framesWithInvalidPressure.size() > 0) {
-            DataFrame correctedFrame = framesWithInvalidPressure.poll();
-            correctedFrame.pressure = extrapolatePressure(null, false);
-            sendFrameToOutputPortTwo(correctedFrame);
-        }
+        if (!wildFrames.isEmpty())
+            correctWildFrames(extrapolatePressure(null, false), FlightEvents.FLUSH_END_OF_STREAM);
+        wildFrames.close();
+    }
+
+    /**
+     * If the backlog is full and its policy says so, extrapolate the oldest wild frame from the last valid pressure
+     * and flush it to the lower (extrapolated) output port, making room for the next one.
+     */
+    private void resolveOverflow() {
+        if (lastValidPressure == null)
+            return;
+        int row = wildFrames.pollOverflow(correctedFrames);
+        if (row < 0)
+            return;
+        double correctedPressure = extrapolatePressure(null, false);
+        Object flush = FlightEvents.backlogFlushStarted(this, FlightEvents.FLUSH_OVERFLOW, 1, correctedPressure);
+        correctedFrames.setDouble(row, MeasurementConfig.ID_PRESSURE, correctedPressure);
+        flushCorrectedFrames();
+        FlightEvents.backlogFlushed(flush);
     }
 
     /**
-     * Utility method to flush all bytes inside the data frame structure to the upper port.
+     * Extrapolate every frame of the backlog with the valid pressure that ends it, and flush them in order.
      *
-     * @param frame data frame to be flushed
-     */
-    private void sendFrameToOutputPortOne(DataFrame frame) {
-        for (byte aByte : ConversionUtil.convertToByteArray(MeasurementConfig.ID_TIME))
-            WriteFilterOutputPortOne(aByte);
-        for (byte aByte : frame.time)
-            WriteFilterOutputPortOne(aByte);
-
-        for (byte aByte : ConversionUtil.convertToByteArray(MeasurementConfig.ID_PRESSURE))
-            WriteFilterOutputPortOne(aByte);
-        for (byte aByte : frame.pressure)
-            WriteFilterOutputPortOne(aByte);
+     * @param currentPressure the valid pressure following the wild points
+     */
+    private void extrapolateWildFrames(double currentPressure) {
+        if (!wildFrames.isEmpty())
+            correctWildFrames(extrapolatePressure(currentPressure, true), FlightEvents.FLUSH_VALID_PRESSURE);
     }
 
     /**
-     * Utility method to flush all bytes inside the data frame structure to the lower port.
+     * Empty the backlog into the lower port, a batch at a time, with the extrapolated pressure in every frame, and
+     * record a flight event of it.
      *
-     * @param frame data frame to be flushed
-     */
-    private void sendFrameToOutputPortTwo(DataFrame frame) {
-        for (byte aByte : ConversionUtil.convertToByteArray(MeasurementConfig.ID_TIME))
-            WriteFilterOutputPortTwo(aByte);
-        for (byte aByte : frame.time)
-            WriteFilterOutputPortTwo(aByte);
-
-        for (byte aByte : ConversionUtil.convertToByteArray(MeasurementConfig.ID_PRESSURE))
-            WriteFilterOutputPortTwo(aByte);
-        for (byte aByte : frame.pressure)
-            WriteFilterOutputPortTwo(aByte);
+     * @param correctedPressure the extrapolated pressure
+     * @param cause {@link FlightEvents#FLUSH_VALID_PRESSURE} or {@link FlightEvents#FLUSH_END_OF_STREAM}
+     */
+    private void correctWildFrames(double correctedPressure, String cause) {
+        Object flush = FlightEvents.backlogFlushStarted(this, cause, wildFrames.size(), correctedPressure);
+        while (!wildFrames.isEmpty()) {
+            int row = wildFrames.poll(correctedFrames);
+            correctedFrames.setDouble(row, MeasurementConfig.ID_PRESSURE, correctedPressure);
+            if (correctedFrames.isFull())
+                flushCorrectedFrames();
+        }
+        flushCorrectedFrames();
+        FlightEvents.backlogFlushed(flush);
+    }
+
+    /**
+     * Utility method to flush the corrected frames to the lower port, one by one if the port carries frames, otherwise
+     * as one write of bytes.
+     */
+    private void flushCorrectedFrames() {
+        if (correctedFrames.isEmpty())
+            return;
+        if (outputCarriesFrames(outputFilterIds.get(1))) {
+            for (int row = 0; row < correctedFrames.size(); row++)
+                WriteFilterOutputPortTwo(correctedFrames.toFrame(row));
+        } else {
+            WriteFilterOutputPortTwo(layOut(correctedFrames));
+        }
+        correctedFrames.clear();
+    }
+
+    /**
+     * Utility method to lay out all bytes of the frames, ids included, in {@link #outputBuffer}.
+     *
+     * @param frames the frames to be flushed
+     * @return buffer ready to be written, overwritten by the next call
+     */
+    private ByteBuffer layOut(FrameBatch frames) {
+        outputBuffer.clear();
+        frames.writeTo(outputBuffer);
+        outputBuffer.flip();
+        return outputBuffer;
     }
 
     /**
@@ -150,11 +252,11 @@ public class WildPressureFilter extends SplittingFilterTemplate {
             return false;
 
         // no record of last valid pressure, meaning first record in stream, must be valid.
-        if (lastFrameWithValidPressure == null || lastFrameWithValidPressure.pressure == null)
+        if (lastValidPressure == null)
             return true;
 
         // invalid if variation is greater than 10 PSI.
-        return Math.abs(pressure - ConversionUtil.convertToDouble(lastFrameWithValidPressure.pressure)) <= 10.0d;
+        return Math.abs(pressure - lastValidPressure) <= 10.0d;
     }
 
     /**
@@ -163,41 +265,27 @@ public class WildPressureFilter extends SplittingFilterTemplate {
      * @param currentPressure current pressure data
      * @param currentPressureValid validity of the current pressure data.
      *
-     * @return extrapolated result in bytes
+     * @return extrapolated result
      */
-    private byte[] extrapolatePressure(Double currentPressure, boolean currentPressureValid) {
+    private double extrapolatePressure(Double currentPressure, boolean currentPressureValid) {
         double value;
 
         // we have both last valid pressure data and the current (next) valid pressure data (wild point at middle of stream)
-        if ((lastFrameWithValidPressure != null && lastFrameWithValidPressure.pressure != null) && currentPressureValid)
-            value = (currentPressure + ConversionUtil.convertToDouble(lastFrameWithValidPressure.pressure)) / 2.0d;
+        if (lastValidPressure != null && currentPressureValid)
+            value = (currentPressure + lastValidPressure) / 2.0d;
 
         // we have current (next) valid pressure data but no last valid data (wild points at start of stream)
-        else if ((lastFrameWithValidPressure == null || lastFrameWithValidPressure.pressure == null) && currentPressureValid)
+        else if (lastValidPressure == null && currentPressureValid)
             value = currentPressure;
 
         // we have last valid data but not current (next) valid data (wild points at end of stream)
-        else if ((lastFrameWithValidPressure != null && lastFrameWithValidPressure.pressure != null) && currentPressure == null)
-            value = ConversionUtil.convertToDouble(lastFrameWithValidPressure.pressure);
+        else if (lastValidPressure != null && currentPressure == null)
+            value = lastValidPressure;
 
         // impossible state
         else
             throw new IllegalStateException("Impossible state");
 
-        return ConversionUtil.convertToByteArray(value);
-    }
-
-    /**
-     * Structure for caching a frame of data containing time and pressure. We didn't bother
-     * to encapsulate accessing and mutating behavior since this structure will only be used internally.
-     */
-    class DataFrame {
-        public byte[] time;
-        public byte[] pressure;
-
-        public boolean hasCollectedAll() {
-            return time != null &&
-                    pressure != null;
-        }
+        return value;
     }
 }